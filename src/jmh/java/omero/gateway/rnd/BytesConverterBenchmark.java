@@ -0,0 +1,119 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import omero.util.ReadOnlyByteArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** 
+ * Compares the per-pixel conversion of a tile with the bulk conversion,
+ * for every pixels type supported by {@link DataSink}.
+ * Run with <code>gradle jmh</code>.
+ *
+ * @since 5.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesConverterBenchmark
+{
+
+    /** The pixels type to convert. */
+    @Param({"int8", "uint8", "int16", "uint16", "int32", "uint32", "float",
+        "double"})
+    public String pixelsType;
+
+    /** The number of pixels along each side of the tile. */
+    @Param({"512"})
+    public int tileSize;
+
+    /** The number of bytes per pixel. */
+    private int bytesPerPixel;
+
+    /** The converter for the pixels type. */
+    private BytesConverter converter;
+
+    /** The raw data used by the per-pixel conversion. */
+    private ReadOnlyByteArray array;
+
+    /** The raw data used by the bulk conversion. */
+    private ByteBuffer buffer;
+
+    /** The converted values. */
+    private double[] values;
+
+    /** Fills a tile with random data. */
+    @Setup
+    public void setUp()
+    {
+        bytesPerPixel = DataSink.getBytesPerPixels(pixelsType);
+        converter = BytesConverter.getConverter(pixelsType);
+        values = new double[tileSize*tileSize];
+        byte[] data = new byte[values.length*bytesPerPixel];
+        new Random(42).nextBytes(data);
+        array = new ReadOnlyByteArray(data, 0, data.length);
+        buffer = ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Converts the tile one pixel at a time.
+     *
+     * @return The converted values.
+     */
+    @Benchmark
+    public double[] perPixel()
+    {
+        for (int i = 0; i < values.length; i++)
+            values[i] = converter.pack(array, i*bytesPerPixel, bytesPerPixel);
+        return values;
+    }
+
+    /**
+     * Converts the tile in one call.
+     *
+     * @return The converted values.
+     */
+    @Benchmark
+    public double[] bulk()
+    {
+        converter.pack(buffer, bytesPerPixel, values, values.length);
+        return values;
+    }
+
+}
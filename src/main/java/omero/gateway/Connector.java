@@ -23,6 +23,10 @@ package omero.gateway;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -30,21 +34,39 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.keyvalue.MultiKey;
 import org.apache.commons.lang.StringUtils;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import ome.formats.OMEROMetadataStoreClient;
 import omero.ServerError;
@@ -94,6 +116,7 @@ import omero.cmd.CmdCallbackI;
 import omero.cmd.DoAll;
 import omero.cmd.Request;
 import omero.gateway.exception.DSOutOfServiceException;
+import omero.gateway.util.HealthMonitor;
 import omero.grid.SharedResourcesPrx;
 import omero.grid.SharedResourcesPrxHelper;
 import omero.log.LogMessage;
@@ -115,9 +138,18 @@ class Connector
      * The elapsed time before checking if the services need to be
      * kept alive.
      */
-    private final int ELAPSED_TIME = 30000;
+    static final long ELAPSED_TIME = 30000;
 
-    /** Keeps track of the last keep alive action.*/
+    /**
+     * The idle time (in milliseconds) after which the services need to be
+     * kept alive, see {@link #setKeepAliveThreshold(long)}.
+     */
+    private volatile long keepAliveThreshold = ELAPSED_TIME;
+
+    /**
+     * Keeps track of the last time the session was known to be alive, i.e.
+     * of the last keep alive action or successful call.
+     */
     private final AtomicLong lastKeepAlive = new AtomicLong(System.currentTimeMillis());
 
     /** 
@@ -144,8 +176,18 @@ class Connector
      */
     private ServiceFactoryPrx entryUnencrypted;
 
-    /** Collection of stateless services to prevent re-lookup */
-    private final Map<String, ServiceInterfacePrx> statelessServices;
+    /**
+     * Collection of stateless services to prevent re-lookup (keys: name and
+     * whether the service is encrypted)
+     */
+    private final Cache<MultiKey, ServiceInterfacePrx> statelessServices;
+
+    /**
+     * The tracked wrappers of the stateless services, one per service
+     * (keys: interface and proxy), see {@link #track(Class, Object)}.
+     */
+    private final ConcurrentMap<MultiKey, Object> trackedServices =
+            new ConcurrentHashMap<MultiKey, Object>();
 
     /** Collection of stateful services to prevent re-lookup.
      * {@link RenderingEnginePrx} and {@link OMEROMetadataStoreClient}
@@ -167,7 +209,98 @@ class Connector
      */
     //TODO: this should be reviewed, since if getConnector(String) is used
     //outside of the import process there could be a race condition.
-    private final Cache<String, Connector> derived;
+    private volatile Cache<String, Connector> derived;
+
+    /**
+     * Guards the replacement of {@link #derived}: held for reading while a
+     * derived connector is created or removed, for writing while the cache
+     * is replaced.
+     */
+    private final ReadWriteLock derivedLock = new ReentrantReadWriteLock();
+
+    /**
+     * The evicted derived connectors which were still in use, closed once
+     * idle, see {@link #cleanUpDerived()}.
+     */
+    private final Queue<Connector> retired =
+            new ConcurrentLinkedQueue<Connector>();
+
+    /** The default maximum number of derived connectors. */
+    static final long MAX_DERIVED = 256;
+
+    /**
+     * The default time (in milliseconds) after which an unused derived
+     * connector is closed.
+     */
+    static final long DERIVED_IDLE_TIME = 600000;
+
+    /**
+     * The default time (in milliseconds) during which an evicted derived
+     * connector is kept open after it has last been handed out, so that the
+     * caller can still use the services it got from it.
+     */
+    static final long DERIVED_LEASE_TIME = 60000;
+
+    /**
+     * The time (in milliseconds) during which an evicted derived connector
+     * is kept open after it has last been handed out.
+     */
+    private volatile long derivedLeaseTime = DERIVED_LEASE_TIME;
+
+    /**
+     * The time this connector has last been handed out as a derived one,
+     * guarded by this object.
+     */
+    private long leased;
+
+    /**
+     * Set once this connector, evicted, is being closed, guarded by this
+     * object.
+     */
+    private boolean discarded;
+
+    /**
+     * Closes the evicted derived connectors and the idle pooled stores, may
+     * be <code>null</code>.
+     */
+    private volatile Executor backgroundExecutor;
+
+    /** Creates the clients of the derived connectors. */
+    private volatile Function<ServerInformation, client> clientFactory =
+            new Function<ServerInformation, client>() {
+                @Override
+                public client apply(ServerInformation server) {
+                    return new client(server.getHostname(), server.getPort());
+                }
+            };
+
+    /** The default maximum number of pooled stores handed out per type. */
+    static final int MAX_POOLED_STORES = 8;
+
+    /**
+     * The time (in milliseconds) to wait for a pooled store if all are
+     * handed out.
+     */
+    private static final long POOLED_STORE_WAIT = 60000;
+
+    /**
+     * The default time (in milliseconds) after which a released pooled
+     * store is closed if not reused.
+     */
+    static final long POOLED_STORE_IDLE_TIME = 300000;
+
+    /** The maximum number of pooled stores handed out per type. */
+    private volatile int storePoolSize = MAX_POOLED_STORES;
+
+    /**
+     * The time (in milliseconds) after which a released pooled store is
+     * closed if not reused.
+     */
+    private volatile long storeIdleTime = POOLED_STORE_IDLE_TIME;
+
+    /** The pools of reusable stateful services by service name. */
+    private final ConcurrentMap<String, StatefulServicePool> storePools =
+            new ConcurrentHashMap<String, StatefulServicePool>();
 
     /** The name of the group. To be removed when we can use groupId.*/
     private String groupName;
@@ -180,6 +313,16 @@ class Connector
     
     /** The PropertyChangeSupport */
     private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+
+    /** The number of calls in flight on the stateless services */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Learns the health of the connection from the calls, may be null */
+    private volatile HealthMonitor healthMonitor;
+
+    /** Notified of the calls made through the services */
+    private volatile ServiceCallListener callListener =
+            ServiceCallListener.NOOP;
     
     /**
      * Creates a new instance.
@@ -235,7 +378,7 @@ class Connector
         this.entryEncrypted = entryEncrypted;
         this.context = context;
         final MapMaker mapMaker = new MapMaker();
-        statelessServices = mapMaker.makeMap();
+        statelessServices = CacheBuilder.newBuilder().recordStats().build();
         importStores = mapMaker.makeMap();
         statefulServices = Multimaps.<String, StatefulServiceInterfacePrx>
         synchronizedMultimap(
@@ -244,7 +387,7 @@ class Connector
         synchronizedMultimap(
                 HashMultimap.<Long, RenderingEnginePrx>create());
 
-        derived = CacheBuilder.newBuilder().build();
+        derived = createDerivedCache(MAX_DERIVED, DERIVED_IDLE_TIME);
     }
     
     /**
@@ -285,8 +428,9 @@ class Connector
     SharedResourcesPrx getSharedResources()
             throws DSOutOfServiceException
     {
-        return SharedResourcesPrxHelper.uncheckedCast(
-                get(omero.constants.SHAREDRESOURCES.value, true));
+        return track(SharedResourcesPrx.class,
+                SharedResourcesPrxHelper.uncheckedCast(
+                        get(omero.constants.SHAREDRESOURCES.value, true)));
     }
 
     /**
@@ -299,9 +443,10 @@ class Connector
     IRenderingSettingsPrx getRenderingSettingsService()
             throws DSOutOfServiceException
     {
-        return IRenderingSettingsPrxHelper.uncheckedCast(
-                get(omero.constants.RENDERINGSETTINGS.value,
-                        unsecureClient == null));
+        return track(IRenderingSettingsPrx.class,
+                IRenderingSettingsPrxHelper.uncheckedCast(
+                        get(omero.constants.RENDERINGSETTINGS.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -314,9 +459,10 @@ class Connector
     IRepositoryInfoPrx getRepositoryService()
             throws DSOutOfServiceException
     {
-        return IRepositoryInfoPrxHelper.uncheckedCast(
-                get(omero.constants.REPOSITORYINFO.value,
-                        unsecureClient == null));
+        return track(IRepositoryInfoPrx.class,
+                IRepositoryInfoPrxHelper.uncheckedCast(
+                        get(omero.constants.REPOSITORYINFO.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -329,9 +475,10 @@ class Connector
     IScriptPrx getScriptService()
             throws DSOutOfServiceException
     {
-        return IScriptPrxHelper.uncheckedCast(
-                get(omero.constants.SCRIPTSERVICE.value,
-                        unsecureClient == null));
+        return track(IScriptPrx.class,
+                IScriptPrxHelper.uncheckedCast(
+                        get(omero.constants.SCRIPTSERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -344,9 +491,10 @@ class Connector
     IContainerPrx getPojosService()
             throws DSOutOfServiceException
     {
-        return IContainerPrxHelper.uncheckedCast(
-                get(omero.constants.CONTAINERSERVICE.value,
-                        unsecureClient == null));
+        return track(IContainerPrx.class,
+                IContainerPrxHelper.uncheckedCast(
+                        get(omero.constants.CONTAINERSERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -359,9 +507,10 @@ class Connector
     IQueryPrx getQueryService()
             throws DSOutOfServiceException
     {
-        return IQueryPrxHelper.uncheckedCast(
-                get(omero.constants.QUERYSERVICE.value,
-                        unsecureClient == null));
+        return track(IQueryPrx.class,
+                IQueryPrxHelper.uncheckedCast(
+                        get(omero.constants.QUERYSERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -374,9 +523,10 @@ class Connector
     IUpdatePrx getUpdateService()
             throws DSOutOfServiceException
     {
-        return IUpdatePrxHelper.uncheckedCast(
-                get(omero.constants.UPDATESERVICE.value,
-                        unsecureClient == null));
+        return track(IUpdatePrx.class,
+                IUpdatePrxHelper.uncheckedCast(
+                        get(omero.constants.UPDATESERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -389,9 +539,10 @@ class Connector
     IMetadataPrx getMetadataService()
             throws DSOutOfServiceException
     {
-        return IMetadataPrxHelper.uncheckedCast(
-                get(omero.constants.METADATASERVICE.value,
-                        unsecureClient == null));
+        return track(IMetadataPrx.class,
+                IMetadataPrxHelper.uncheckedCast(
+                        get(omero.constants.METADATASERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -404,8 +555,9 @@ class Connector
      IRoiPrx getROIService()
             throws DSOutOfServiceException
     {
-        return IRoiPrxHelper.uncheckedCast(
-                get(omero.constants.ROISERVICE.value, unsecureClient == null));
+        return track(IRoiPrx.class,
+                IRoiPrxHelper.uncheckedCast(
+                        get(omero.constants.ROISERVICE.value, unsecureClient == null)));
     }
 
     /**
@@ -418,9 +570,10 @@ class Connector
      IConfigPrx getConfigService()
             throws DSOutOfServiceException
     {
-        return IConfigPrxHelper.uncheckedCast(
-                get(omero.constants.CONFIGSERVICE.value,
-                        unsecureClient == null));
+        return track(IConfigPrx.class,
+                IConfigPrxHelper.uncheckedCast(
+                        get(omero.constants.CONFIGSERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -433,9 +586,10 @@ class Connector
      ThumbnailStorePrx getThumbnailService()
             throws DSOutOfServiceException
     {
-        return ThumbnailStorePrxHelper.uncheckedCast(
-                create(omero.constants.THUMBNAILSTORE.value,
-                        unsecureClient == null));
+        return trackStateful(ThumbnailStorePrx.class,
+                ThumbnailStorePrxHelper.uncheckedCast(
+                        create(omero.constants.THUMBNAILSTORE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -448,9 +602,10 @@ class Connector
      ExporterPrx getExporterService()
             throws DSOutOfServiceException
     {
-        return ExporterPrxHelper.uncheckedCast(
-                create(omero.constants.EXPORTERSERVICE.value,
-                        unsecureClient == null));
+        return trackStateful(ExporterPrx.class,
+                ExporterPrxHelper.uncheckedCast(
+                        create(omero.constants.EXPORTERSERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -463,9 +618,10 @@ class Connector
      RawFileStorePrx getRawFileService()
             throws DSOutOfServiceException
     {
-        return RawFileStorePrxHelper.uncheckedCast(
-                create(omero.constants.RAWFILESTORE.value,
-                        unsecureClient == null));
+        return trackStateful(RawFileStorePrx.class,
+                RawFileStorePrxHelper.uncheckedCast(
+                        create(omero.constants.RAWFILESTORE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -478,9 +634,63 @@ class Connector
      RawPixelsStorePrx getPixelsStore()
             throws DSOutOfServiceException
     {
-        return RawPixelsStorePrxHelper.uncheckedCast(
-                create(omero.constants.RAWPIXELSSTORE.value,
-                        unsecureClient == null));
+        return trackStateful(RawPixelsStorePrx.class,
+                RawPixelsStorePrxHelper.uncheckedCast(
+                        create(omero.constants.RAWPIXELSSTORE.value,
+                                unsecureClient == null)));
+    }
+
+    /**
+     * Returns a {@link RawFileStorePrx} service from the pool, see
+     * {@link #release(StatefulServiceInterfacePrx)}.
+     *
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             Thrown if the service cannot be initialized or all pooled
+     *             services are in use.
+     */
+     RawFileStorePrx acquireRawFileStore()
+            throws DSOutOfServiceException
+    {
+        return trackStateful(RawFileStorePrx.class,
+                RawFileStorePrxHelper.uncheckedCast(
+                        acquire(omero.constants.RAWFILESTORE.value, false)));
+    }
+
+    /**
+     * Returns a {@link RawPixelsStorePrx} service from the pool, see
+     * {@link #release(StatefulServiceInterfacePrx)}.
+     *
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             Thrown if the service cannot be initialized or all pooled
+     *             services are in use.
+     */
+     RawPixelsStorePrx acquirePixelsStore()
+            throws DSOutOfServiceException
+    {
+        return acquirePixelsStore(false);
+    }
+
+    /**
+     * Returns a {@link RawPixelsStorePrx} service from the pool, see
+     * {@link #release(StatefulServiceInterfacePrx)}.
+     *
+     * @param create Pass <code>true</code> to create a service which is
+     *               closed when released if all pooled services are in use,
+     *               <code>false</code> to wait for one.
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             Thrown if the service cannot be initialized or all pooled
+     *             services are in use.
+     */
+     RawPixelsStorePrx acquirePixelsStore(boolean create)
+            throws DSOutOfServiceException
+    {
+        return trackStateful(RawPixelsStorePrx.class,
+                RawPixelsStorePrxHelper.uncheckedCast(
+                        acquire(omero.constants.RAWPIXELSSTORE.value,
+                                create)));
     }
 
     /**
@@ -493,9 +703,10 @@ class Connector
      IPixelsPrx getPixelsService()
             throws DSOutOfServiceException
     {
-        return IPixelsPrxHelper.uncheckedCast(
-                get(omero.constants.PIXELSSERVICE.value,
-                        unsecureClient == null));
+        return track(IPixelsPrx.class,
+                IPixelsPrxHelper.uncheckedCast(
+                        get(omero.constants.PIXELSSERVICE.value,
+                                unsecureClient == null)));
     }
 
      /**
@@ -508,9 +719,10 @@ class Connector
       ITypesPrx getTypesService()
              throws DSOutOfServiceException
      {
-         return ITypesPrxHelper.uncheckedCast(
-                 get(omero.constants.TYPESSERVICE.value,
-                         unsecureClient == null));
+         return track(ITypesPrx.class,
+                 ITypesPrxHelper.uncheckedCast(
+                         get(omero.constants.TYPESSERVICE.value,
+                                 unsecureClient == null)));
      }
 
     /**
@@ -523,8 +735,10 @@ class Connector
      SearchPrx getSearchService()
             throws DSOutOfServiceException
     {
-        return SearchPrxHelper.uncheckedCast(
-                create(omero.constants.SEARCH.value, unsecureClient == null));
+        return trackStateful(SearchPrx.class,
+                SearchPrxHelper.uncheckedCast(
+                        create(omero.constants.SEARCH.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -537,9 +751,10 @@ class Connector
      IProjectionPrx getProjectionService()
             throws DSOutOfServiceException
     {
-        return IProjectionPrxHelper.uncheckedCast(
-                get(omero.constants.PROJECTIONSERVICE.value,
-                        unsecureClient == null));
+        return track(IProjectionPrx.class,
+                IProjectionPrxHelper.uncheckedCast(
+                        get(omero.constants.PROJECTIONSERVICE.value,
+                                unsecureClient == null)));
     }
 
     /**
@@ -568,8 +783,9 @@ class Connector
      IAdminPrx getAdminService(boolean secure)
             throws DSOutOfServiceException
     {
-        return IAdminPrxHelper.uncheckedCast(
-                get(omero.constants.ADMINSERVICE.value, secure));
+        return track(IAdminPrx.class,
+                IAdminPrxHelper.uncheckedCast(
+                        get(omero.constants.ADMINSERVICE.value, secure)));
     }
 
     //
@@ -636,7 +852,7 @@ class Connector
 
         prx.setCompressionLevel(compression);
         reServices.put(pixelsID, prx);
-        return prx;
+        return trackStateful(RenderingEnginePrx.class, prx);
     }
 
     /**
@@ -648,8 +864,9 @@ class Connector
             throws Throwable
     {
         String uuid = secureClient.getSessionId();
-        statelessServices.clear();
+        invalidateStatelessServices();
         reServices.clear();
+        clearStorePools();
         statefulServices.clear();
         secureClient.closeSession();
         if (unsecureClient != null) {
@@ -690,6 +907,7 @@ class Connector
         if (networkup) {
             shutDownServices(true);
         }
+        invalidateStatelessServices();
         String id = secureClient.getSessionId();
         secureClient.__del__(); // Won't throw.
         this.pcs.firePropertyChange(Gateway.PROP_SESSION_CLOSED, null, id);
@@ -738,6 +956,15 @@ class Connector
             }
         }
         derived.invalidateAll();
+        Connector c;
+        while ((c = retired.poll()) != null) {
+            try {
+                c.close(networkup);
+            } catch (Throwable e) {
+                logger.warn(this, String.format("Failed to close(%s) service: %s",
+                        networkup, c));
+            }
+        }
     }
 
     /** 
@@ -782,10 +1009,82 @@ class Connector
 
         if (success) {
             lastKeepAlive.set(System.currentTimeMillis());
+        } else {
+            // The proxies are bound to the dead session.
+            invalidateStatelessServices();
         }
         return success;
     }
 
+    /**
+     * Keeps the services alive without blocking: the keep alive requests are
+     * sent asynchronously and the returned future completes with
+     * <code>true</code> if the session is alive, <code>false</code>
+     * otherwise.
+     * 
+     * @return See above.
+     */
+    CompletableFuture<Boolean> keepSessionAliveAsync()
+    {
+        CompletableFuture<Boolean> alive = keepAliveAsync(entryEncrypted,
+                "Failed encrypted keep alive: ");
+        if (entryUnencrypted != null) {
+            alive = alive.thenCombine(keepAliveAsync(entryUnencrypted,
+                    "failed unencrypted keep alive: "),
+                    new BiFunction<Boolean, Boolean, Boolean>() {
+                        @Override
+                        public Boolean apply(Boolean encrypted,
+                                Boolean unencrypted) {
+                            return encrypted && unencrypted;
+                        }
+                    });
+        }
+        return alive.thenApply(new Function<Boolean, Boolean>() {
+            @Override
+            public Boolean apply(Boolean success) {
+                if (success) {
+                    lastKeepAlive.set(System.currentTimeMillis());
+                } else {
+                    // The proxies are bound to the dead session.
+                    invalidateStatelessServices();
+                }
+                return success;
+            }
+        });
+    }
+
+    /**
+     * Sends an asynchronous keep alive request to the specified entry point.
+     * 
+     * @param entry The entry point.
+     * @param message The message logged if the request fails.
+     * @return See above.
+     */
+    private CompletableFuture<Boolean> keepAliveAsync(
+            final ServiceFactoryPrx entry, final String message)
+    {
+        final CompletableFuture<Boolean> result =
+                new CompletableFuture<Boolean>();
+        try {
+            entry.begin_keepAllAlive(null, new Ice.Callback() {
+                @Override
+                public void completed(Ice.AsyncResult r) {
+                    try {
+                        entry.end_keepAllAlive(r);
+                        result.complete(true);
+                    } catch (Exception e) {
+                        logger.warn(Connector.this, new LogMessage(message, e));
+                        result.complete(false);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            logger.warn(this, new LogMessage(message, e));
+            result.complete(false);
+        }
+        return result;
+    }
+
     /**
      * Closes the specified proxy.
      * 
@@ -797,6 +1096,8 @@ class Connector
             return;
         }
 
+        for (StatefulServicePool pool : storePools.values())
+            pool.discard(proxy);
         try {
             proxy.close();
         } catch (Ice.ObjectNotExistException e) {
@@ -855,6 +1156,7 @@ class Connector
 
     /** Shuts down the stateful services.*/
      void shutdownStateful() {
+        clearStorePools();
         Collection<StatefulServiceInterfacePrx> proxies = null;
         synchronized (statefulServices) {
             proxies = statefulServices.values();
@@ -937,40 +1239,75 @@ class Connector
         if (StringUtils.isBlank(userName)) 
             return this;
 
-        return derived.get(userName, new Callable<Connector>() {
-            @Override
-            public Connector call() throws Exception {
-                if (groupName == null) {
-                    ExperimenterGroup g = getAdminService().getGroup(
-                            context.getGroupID());
-                    groupName = g.getName().getValue();
+        while (true) {
+            Connector c = loadDerived(userName);
+            // Not closed before the lease time even if evicted meanwhile.
+            synchronized (c) {
+                if (!c.discarded) {
+                    c.leased = System.currentTimeMillis();
+                    return c;
                 }
-                // Create a connector.
-                Principal p = new Principal();
-                p.group = groupName;
-                p.name = userName;
-                p.eventType = "Sessions";
-                ISessionPrx prx = entryEncrypted.getSessionService();
-                Session session = prx.getSession(secureClient.getSessionId());
-                long timeout = session.getTimeToIdle().getValue();
-                session = prx.createSessionWithTimeouts(p, 0, timeout);
-                // Create the userSession
-                omero.client client = new omero.client(context
-                        .getServerInformation().getHostname(), context
-                        .getServerInformation().getPort());
-                ServiceFactoryPrx userSession = client.createSession(session
-                        .getUuid().getValue(), session.getUuid().getValue());
-                Connector.this.pcs.firePropertyChange(Gateway.PROP_SESSION_CREATED, null, client.getSessionId());
-                final Connector c = new Connector(context.copy(), client,
-                        userSession, unsecureClient == null, userName, logger);
-                for (PropertyChangeListener l : Connector.this.pcs
-                        .getPropertyChangeListeners())
-                    c.addPropertyChangeListener(l);
-                Connector.this.pcs.firePropertyChange(Gateway.PROP_CONNECTOR_CREATED, null, client.getSessionId()+"_"+userName);
-                logger.debug(this, "Created derived connector: " + userName);
-                return c;
             }
-        });
+        }
+    }
+
+    /**
+     * Returns the connector associated to the specified user, creating it
+     * if required.
+     *
+     * @param userName
+     *            The name of the user.
+     * @return See above.
+     * @throws ExecutionException Thrown if the connector can't be created.
+     */
+    private Connector loadDerived(final String userName)
+            throws ExecutionException
+    {
+        derivedLock.readLock().lock();
+        try {
+            return derived.get(userName, new Callable<Connector>() {
+                @Override
+                public Connector call() throws Exception {
+                    if (groupName == null) {
+                        ExperimenterGroup g = getAdminService().getGroup(
+                                context.getGroupID());
+                        groupName = g.getName().getValue();
+                    }
+                    // Create a connector.
+                    Principal p = new Principal();
+                    p.group = groupName;
+                    p.name = userName;
+                    p.eventType = "Sessions";
+                    ISessionPrx prx = entryEncrypted.getSessionService();
+                    Session session = prx.getSession(secureClient.getSessionId());
+                    long timeout = session.getTimeToIdle().getValue();
+                    session = prx.createSessionWithTimeouts(p, 0, timeout);
+                    // Create the userSession
+                    omero.client client = clientFactory.apply(
+                            context.getServerInformation());
+                    ServiceFactoryPrx userSession = client.createSession(session
+                            .getUuid().getValue(), session.getUuid().getValue());
+                    Connector.this.pcs.firePropertyChange(Gateway.PROP_SESSION_CREATED, null, client.getSessionId());
+                    final Connector c = new Connector(context.copy(), client,
+                            userSession, unsecureClient == null, userName, logger);
+                    for (PropertyChangeListener l : Connector.this.pcs
+                            .getPropertyChangeListeners())
+                        c.addPropertyChangeListener(l);
+                    c.setHealthMonitor(healthMonitor);
+                    c.setServiceCallListener(callListener);
+                    c.setKeepAliveThreshold(keepAliveThreshold);
+                    c.setBackgroundExecutor(backgroundExecutor);
+                    c.setClientFactory(clientFactory);
+                    c.setStorePoolSize(storePoolSize);
+                    c.setStoreIdleTime(storeIdleTime);
+                    Connector.this.pcs.firePropertyChange(Gateway.PROP_CONNECTOR_CREATED, null, client.getSessionId()+"_"+userName);
+                    logger.debug(this, "Created derived connector: " + userName);
+                    return c;
+                }
+            });
+        } finally {
+            derivedLock.readLock().unlock();
+        }
     }
     
     //
@@ -987,7 +1324,246 @@ class Connector
     {
         long last = lastKeepAlive.get();
         long elapsed = System.currentTimeMillis() - last;
-        return elapsed > ELAPSED_TIME;
+        return elapsed > keepAliveThreshold;
+    }
+
+    /**
+     * Sets the idle time after which the services of this connector and its
+     * derived connectors need to be kept alive.
+     *
+     * @param threshold The time in milliseconds.
+     */
+    void setKeepAliveThreshold(long threshold) {
+        this.keepAliveThreshold = threshold;
+        for (Connector c : derived.asMap().values())
+            c.setKeepAliveThreshold(threshold);
+    }
+
+    /**
+     * Creates the cache of derived connectors. The evicted connectors are
+     * closed once idle, explicitly removed ones have to be closed by the
+     * caller.
+     *
+     * @param maxSize The maximum number of connectors.
+     * @param idleTime The time in milliseconds after which an unused
+     *                 connector is evicted.
+     * @return See above.
+     */
+    private Cache<String, Connector> createDerivedCache(long maxSize,
+            long idleTime) {
+        return CacheBuilder.newBuilder().maximumSize(maxSize)
+                .expireAfterAccess(idleTime, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .removalListener(new RemovalListener<String, Connector>() {
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<String, Connector> n) {
+                        if (n.wasEvicted() && n.getValue() != null)
+                            retire(n.getValue());
+                    }
+                }).build();
+    }
+
+    /**
+     * Keeps an evicted derived connector until the next call to
+     * {@link #cleanUpDerived()}, which closes it unless it is still in use,
+     * e.g. by an import, or has recently been handed out, see
+     * {@link #DERIVED_LEASE_TIME}. The connector may have been evicted
+     * while being handed out, before its lease has been recorded.
+     *
+     * @param c The derived connector.
+     */
+    private void retire(Connector c) {
+        retired.add(c);
+        logger.debug(this, "Deferred closing evicted derived connector: "
+                + c.username);
+    }
+
+    /**
+     * Returns <code>true</code> if the specified derived connector is busy
+     * or has been handed out less than the lease time ago,
+     * <code>false</code> otherwise.
+     *
+     * @param c The derived connector.
+     * @return See above.
+     */
+    private boolean isInUse(Connector c) {
+        synchronized (c) {
+            return c.isBusy()
+                    || System.currentTimeMillis() - c.leased < derivedLeaseTime;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if calls are in flight, stateful services
+     * or import stores are open, <code>false</code> otherwise.
+     *
+     * @return See above.
+     */
+    boolean isBusy() {
+        return getLoad() > 0 || !importStores.isEmpty();
+    }
+
+    /**
+     * Closes the session of an evicted derived connector, in the background
+     * if possible.
+     *
+     * @param c The derived connector.
+     */
+    private void closeEvicted(final Connector c) {
+        Runnable close = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    c.close(true);
+                    logger.debug(Connector.this, "Closed derived connector: "
+                            + c.username);
+                } catch (Throwable e) {
+                    logger.warn(Connector.this, new LogMessage(
+                            "Failed to close derived connector: ", e));
+                }
+            }
+        };
+        runInBackground(close);
+    }
+
+    /**
+     * Runs the specified task with the background executor, or in the
+     * calling thread if there is none or it has been shut down.
+     *
+     * @param task The task.
+     */
+    private void runInBackground(Runnable task) {
+        Executor executor = backgroundExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // shut down, run in this thread
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Sets the bounds of the derived connectors cache.
+     *
+     * @param maxSize The maximum number of derived connectors.
+     * @param idleTime The time in milliseconds after which an unused derived
+     *                 connector is closed.
+     */
+    void setDerivedLimits(long maxSize, long idleTime) {
+        Cache<String, Connector> cache = createDerivedCache(maxSize, idleTime);
+        derivedLock.writeLock().lock();
+        try {
+            cache.putAll(derived.asMap());
+            derived = cache;
+        } finally {
+            derivedLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the time during which an evicted derived connector is kept open
+     * after it has last been handed out.
+     *
+     * @param leaseTime The time in milliseconds.
+     */
+    void setDerivedLeaseTime(long leaseTime) {
+        this.derivedLeaseTime = leaseTime;
+    }
+
+    /**
+     * Sets the executor used to close the evicted derived connectors and
+     * the idle pooled stores.
+     *
+     * @param executor The executor, may be <code>null</code>.
+     */
+    void setBackgroundExecutor(Executor executor) {
+        this.backgroundExecutor = executor;
+    }
+
+    /**
+     * Sets the factory creating the clients of the derived connectors.
+     *
+     * @param factory The factory.
+     */
+    void setClientFactory(Function<ServerInformation, client> factory) {
+        this.clientFactory = factory;
+    }
+
+    /**
+     * Evicts the derived connectors which have been idle for too long and
+     * closes the evicted ones no longer in use.
+     */
+    void cleanUpDerived() {
+        derived.cleanUp();
+        for (Connector c : retired) {
+            synchronized (c) {
+                if (isInUse(c) || !retired.remove(c))
+                    continue;
+                c.discarded = true;
+            }
+            closeEvicted(c);
+        }
+    }
+
+    /**
+     * Returns the number of open derived connectors.
+     *
+     * @return See above.
+     */
+    long getDerivedCount() {
+        return derived.size() + retired.size();
+    }
+
+    /**
+     * Returns the statistics of the derived connectors cache: each miss
+     * opened a session, each eviction closed one.
+     *
+     * @return See above.
+     */
+    CacheStats getDerivedStats() {
+        return derived.stats();
+    }
+
+    /**
+     * Returns the connectors derived from this one for other users,
+     * including the evicted ones still in use.
+     *
+     * @return See above.
+     */
+    List<Connector> getDerivedConnectors() {
+        List<Connector> l = new ArrayList<Connector>(derived.asMap().values());
+        l.addAll(retired);
+        return l;
+    }
+
+    /**
+     * Removes and closes the specified derived connector, e.g. because its
+     * session has died.
+     *
+     * @param c The derived connector.
+     */
+    void removeDerived(Connector c) {
+        boolean removed = retired.remove(c);
+        if (!removed && c.username != null) {
+            derivedLock.readLock().lock();
+            try {
+                removed = derived.asMap().remove(c.username, c);
+            } finally {
+                derivedLock.readLock().unlock();
+            }
+        }
+        if (removed) {
+            try {
+                c.close(false);
+            } catch (Throwable e) {
+                logger.warn(this, new LogMessage(
+                        "Failed to close derived connector: ", e));
+            }
+        }
     }
 
     /**
@@ -999,24 +1575,470 @@ class Connector
      * @return See above.
      * @throws DSOutOfServiceException Thrown if an error occurred.
      */
-    private ServiceInterfacePrx get(String name, boolean secure)
+    private ServiceInterfacePrx get(final String name, boolean secure)
             throws DSOutOfServiceException {
+        // Without unencrypted session both lookups use the same entry point
+        final ServiceFactoryPrx entry = !secure && entryUnencrypted != null ?
+                entryUnencrypted : entryEncrypted;
         try {
-            ServiceInterfacePrx prx = statelessServices.get(name);
-            if (!secure && prx != null) { // Reload if secure is true. //TODO: Why?
-                return prx;
+            return statelessServices.get(
+                    new MultiKey(name, entry == entryEncrypted),
+                    new Callable<ServiceInterfacePrx>() {
+                        @Override
+                        public ServiceInterfacePrx call() throws Exception {
+                            ServiceInterfacePrx prx = entry.getByName(name);
+                            pcs.firePropertyChange(
+                                    Gateway.PROP_STATELESS_SERVICE_CREATED,
+                                    null, prx);
+                            return prx;
+                        }
+                    });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new DSOutOfServiceException("Could not load " + name,
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Removes the stateless services and their tracked wrappers, e.g. once
+     * the session is gone.
+     */
+    private void invalidateStatelessServices() {
+        statelessServices.invalidateAll();
+        trackedServices.clear();
+    }
+
+    /**
+     * Returns the tracked wrapper of the specified stateless service, see
+     * {@link #wrap(Class, Object)}. The wrapper is created once per service
+     * and reused by the following lookups.
+     *
+     * @param type The interface of the service.
+     * @param prx The service.
+     * @return See above.
+     */
+    private <T> T track(Class<T> type, T prx) {
+        if (prx == null)
+            return null;
+        MultiKey key = new MultiKey(type, prx);
+        Object tracked = trackedServices.get(key);
+        if (tracked == null) {
+            tracked = wrap(type, prx);
+            Object existing = trackedServices.putIfAbsent(key, tracked);
+            if (existing != null)
+                tracked = existing;
+        }
+        return type.cast(tracked);
+    }
+
+    /**
+     * Wraps the specified service to count the calls in flight and to report
+     * them to the {@link HealthMonitor} and the {@link ServiceCallListener}.
+     * The local <code>ice_</code> methods and the asynchronous
+     * <code>begin_</code> and <code>end_</code> methods are passed through,
+     * the asynchronous calls are counted through their
+     * {@link TrackedCallback} instead.
+     *
+     * @param type The interface of the service.
+     * @param prx The service.
+     * @return See above.
+     */
+    private <T> T wrap(Class<T> type, T prx) {
+        if (prx == null)
+            return null;
+        String name = type.getSimpleName();
+        String service = name.endsWith("Prx") ?
+                name.substring(0, name.length() - 3) : name;
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] {type}, new TrackingHandler(prx, service)));
+    }
+
+    /**
+     * Returns the service wrapped by {@link #wrap(Class, Object)}, or the
+     * specified object if not a tracked wrapper.
+     *
+     * @param o The object.
+     * @return See above.
+     */
+    static Object untrack(Object o) {
+        if (o instanceof Proxy && Proxy.isProxyClass(o.getClass())) {
+            InvocationHandler h = Proxy.getInvocationHandler(o);
+            if (h instanceof TrackingHandler)
+                return ((TrackingHandler) h).prx;
+        }
+        return o;
+    }
+
+    /**
+     * Replaces the tracked wrappers passed as arguments, or in arrays of
+     * proxies passed as arguments, by the services they wrap: the wrappers
+     * cannot be marshalled by Ice. Nothing is allocated unless a wrapper is
+     * found.
+     *
+     * @param args The arguments, may be <code>null</code>.
+     * @return See above.
+     */
+    private static Object[] untrackAll(Object[] args) {
+        if (args == null)
+            return null;
+        Object[] result = args;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            Object plain = arg instanceof Ice.ObjectPrx[] ?
+                    untrackAll((Object[]) arg) : untrack(arg);
+            if (plain != arg) {
+                if (result == args)
+                    result = args.clone();
+                result[i] = plain;
             }
-            if (!secure && entryUnencrypted != null) {
-                prx = entryUnencrypted.getByName(name);
-            } else {
-                prx = entryEncrypted.getByName(name);
+        }
+        return result;
+    }
+
+    /** Counts the calls made through a tracked wrapper. */
+    private final class TrackingHandler implements InvocationHandler {
+
+        /** The service. */
+        private final Object prx;
+
+        /** The name of the service. */
+        private final String service;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param prx The service.
+         * @param service The name of the service.
+         */
+        TrackingHandler(Object prx, String service) {
+            this.prx = prx;
+            this.service = service;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals"))
+                    return proxy == args[0] || prx.equals(untrack(args[0]));
+                return method.invoke(prx, args);
+            }
+            args = untrackAll(args);
+            String name = method.getName();
+            boolean begin = name.startsWith("begin_");
+            if (begin || name.startsWith("end_")
+                    || name.startsWith("ice_")) {
+                int n = args == null ? 0 : args.length;
+                if (begin && n > 0 && args[n - 1] instanceof TrackedCallback)
+                    ((TrackedCallback) args[n - 1]).started(Connector.this,
+                            service, name.substring(6));
+                try {
+                    return method.invoke(prx, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            callStarted();
+            // Neither timed nor measured without listener.
+            boolean timed = callListener != ServiceCallListener.NOOP;
+            long start = timed ? System.nanoTime() : 0;
+            Object result = null;
+            Throwable error = null;
+            try {
+                result = method.invoke(prx, args);
+                return result;
+            } catch (InvocationTargetException e) {
+                error = e.getCause();
+                throw error;
+            } finally {
+                callCompleted(service, name,
+                        timed ? System.nanoTime() - start : 0,
+                        timed ? countBytes(args, result) : 0, error);
+            }
+        }
+    }
+
+    /**
+     * Counts a call as in flight, see
+     * {@link #callCompleted(String, String, long, long, Throwable)}.
+     */
+    void callStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records the completion of a call counted by {@link #callStarted()}
+     * and reports it to the {@link HealthMonitor} and the
+     * {@link ServiceCallListener}.
+     *
+     * @param service The name of the service.
+     * @param operation The name of the operation.
+     * @param duration The duration of the call in nanoseconds.
+     * @param bytes The number of binary payload bytes, see
+     *              {@link #countBytes(Object[], Object)}.
+     * @param error The exception thrown by the call or <code>null</code>.
+     */
+    void callCompleted(String service, String operation, long duration,
+            long bytes, Throwable error) {
+        inFlight.decrementAndGet();
+        HealthMonitor monitor = healthMonitor;
+        if (error == null) {
+            if (monitor != null)
+                monitor.recordSuccess();
+            // The session is in use, no need to ping it.
+            lastKeepAlive.set(System.currentTimeMillis());
+        } else {
+            boolean lost = monitor != null && monitor.recordFailure(error);
+            if (lost || error instanceof Ice.ObjectNotExistException) {
+                // Check the session on next use.
+                lastKeepAlive.set(0);
             }
-            statelessServices.put(name, prx);
-            this.pcs.firePropertyChange(Gateway.PROP_STATELESS_SERVICE_CREATED, null, prx);
+        }
+        ServiceCallListener listener = callListener;
+        if (listener != ServiceCallListener.NOOP)
+            notifyCall(listener, service, operation, duration, bytes, error);
+    }
+
+    /**
+     * Wraps the specified stateful service if a {@link ServiceCallListener}
+     * is set, see {@link #wrap(Class, Object)}. Without listener the service
+     * is returned as is to avoid any overhead on bulk data transfers.
+     *
+     * @param type The interface of the service.
+     * @param prx The service.
+     * @return See above.
+     */
+    private <T> T trackStateful(Class<T> type, T prx) {
+        if (callListener == ServiceCallListener.NOOP)
             return prx;
-        } catch (Exception e) {
-            throw new DSOutOfServiceException("Could not load " + name, e);
+        return wrap(type, prx);
+    }
+
+    /**
+     * Notifies the listener of a call, a failing listener doesn't affect
+     * the call.
+     *
+     * @param listener The listener.
+     * @param service The name of the service.
+     * @param operation The name of the operation.
+     * @param duration The duration of the call in nanoseconds.
+     * @param bytes The number of bytes transferred.
+     * @param error The exception thrown by the call or <code>null</code>.
+     */
+    private void notifyCall(ServiceCallListener listener, String service,
+            String operation, long duration, long bytes, Throwable error) {
+        try {
+            listener.callCompleted(service, operation, duration, bytes, error);
+        } catch (Throwable t) {
+            logger.debug(this, new LogMessage("Service call listener failed",
+                    t));
+        }
+    }
+
+    /**
+     * Returns the size of the binary data (pixels, file content) passed to
+     * or returned by a call.
+     *
+     * @param args The arguments of the call.
+     * @param result The result of the call.
+     * @return See above.
+     */
+    private static long countBytes(Object[] args, Object result) {
+        long n = result instanceof byte[] ? ((byte[]) result).length : 0;
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof byte[])
+                    n += ((byte[]) arg).length;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Sets the listener notified of the calls made through the services of
+     * this connector and its derived connectors. Stateful services already
+     * handed out are not affected.
+     *
+     * @param listener The listener, <code>null</code> to reset to
+     *                 {@link ServiceCallListener#NOOP}.
+     */
+    void setServiceCallListener(ServiceCallListener listener) {
+        this.callListener = listener == null ? ServiceCallListener.NOOP
+                : listener;
+        for (Connector c : derived.asMap().values())
+            c.setServiceCallListener(listener);
+    }
+
+    /**
+     * Sets the monitor learning the health of the connection from the calls
+     * made through this connector.
+     *
+     * @param healthMonitor The monitor, may be <code>null</code>.
+     */
+    void setHealthMonitor(HealthMonitor healthMonitor) {
+        this.healthMonitor = healthMonitor;
+    }
+
+    /**
+     * Returns <code>true</code> if the services need to be kept alive and
+     * no other thread is already doing so, <code>false</code> otherwise.
+     *
+     * @return See above.
+     */
+    boolean claimKeepAlive() {
+        long last = lastKeepAlive.get();
+        return System.currentTimeMillis() - last > keepAliveThreshold
+                && lastKeepAlive.compareAndSet(last,
+                        System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the load of this connector: the number of calls in flight on
+     * the stateless services plus the number of open stateful services.
+     *
+     * @return See above.
+     */
+    int getLoad() {
+        int idle = 0;
+        for (StatefulServicePool pool : storePools.values())
+            idle += pool.getIdleCount();
+        return inFlight.get() + statefulServices.size() - idle
+                + reServices.size();
+    }
+
+    /**
+     * Returns <code>true</code> if the specified stateful service has been
+     * created by this connector, <code>false</code> otherwise.
+     *
+     * @param proxy The service.
+     * @return See above.
+     */
+    boolean owns(StatefulServiceInterfacePrx proxy) {
+        return statefulServices.containsValue(proxy)
+                || reServices.containsValue(proxy);
+    }
+
+    /**
+     * Returns the statistics of the stateless services cache: a hit is a
+     * lookup served without round trip to the server.
+     *
+     * @return See above.
+     */
+    CacheStats getStatelessServiceStats() {
+        return statelessServices.stats();
+    }
+
+    /**
+     * Hands out a pooled stateful service, reusing a released one if
+     * available.
+     *
+     * @param name The name of the service.
+     * @param create Pass <code>true</code> to create a service which isn't
+     *               pooled if all are in use, <code>false</code> to wait.
+     * @return See above.
+     * @throws DSOutOfServiceException Thrown if the service cannot be
+     *                                 created or all are in use.
+     */
+    private StatefulServiceInterfacePrx acquire(String name, boolean create)
+            throws DSOutOfServiceException {
+        StatefulServicePool pool = storePools.get(name);
+        if (pool == null) {
+            StatefulServicePool created = new StatefulServicePool(
+                    storePoolSize);
+            pool = storePools.putIfAbsent(name, created);
+            if (pool == null)
+                pool = created;
+        }
+        try {
+            if (create && !pool.reserve(0))
+                return create(name, unsecureClient == null);
+            if (!create && !pool.reserve(POOLED_STORE_WAIT))
+                throw new DSOutOfServiceException("All " + name
+                        + " services are in use");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DSOutOfServiceException("Interrupted while waiting for "
+                    + name, e);
+        }
+        try {
+            StatefulServiceInterfacePrx prx = pool.pollIdle();
+            if (prx == null)
+                prx = create(name, unsecureClient == null);
+            pool.lend(prx);
+            return prx;
+        } catch (DSOutOfServiceException e) {
+            pool.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases a service handed out by
+     * {@link #acquireRawFileStore()} or {@link #acquirePixelsStore()} for
+     * reuse. Services which weren't pooled or have been invalidated are
+     * closed.
+     *
+     * @param proxy The service.
+     */
+    void release(StatefulServiceInterfacePrx proxy) {
+        if (proxy == null)
+            return;
+        for (StatefulServicePool pool : storePools.values()) {
+            if (pool.recycle(proxy))
+                return;
         }
+        close(proxy);
+    }
+
+    /**
+     * Sets the maximum number of pooled stores handed out per type. Only
+     * taken into account for pools created afterwards.
+     *
+     * @param size The maximum number.
+     */
+    void setStorePoolSize(int size) {
+        this.storePoolSize = size;
+    }
+
+    /**
+     * Sets the time after which a released pooled store is closed if not
+     * reused, see {@link #closeIdleStores()}.
+     *
+     * @param idleTime The time in milliseconds.
+     */
+    void setStoreIdleTime(long idleTime) {
+        this.storeIdleTime = idleTime;
+    }
+
+    /**
+     * Closes, in the background, the released pooled stores which haven't
+     * been reused for the idle time, releasing the file or pixels buffer
+     * they still hold on the server.
+     */
+    void closeIdleStores() {
+        final List<StatefulServiceInterfacePrx> expired =
+                new ArrayList<StatefulServiceInterfacePrx>();
+        for (StatefulServicePool pool : storePools.values())
+            expired.addAll(pool.expire(storeIdleTime));
+        if (expired.isEmpty())
+            return;
+        runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                for (StatefulServiceInterfacePrx prx : expired)
+                    close(prx);
+            }
+        });
+    }
+
+    /**
+     * Invalidates the pooled stores, e.g. because the session is closed.
+     * The idle stores remain registered as stateful services, hence are
+     * closed or discarded with them.
+     */
+    private void clearStorePools() {
+        for (StatefulServicePool pool : storePools.values())
+            pool.clear();
     }
 
     /**
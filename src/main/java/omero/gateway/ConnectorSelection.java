@@ -0,0 +1,40 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway;
+
+/**
+ * The strategies used by the {@link Gateway} to pick one of the
+ * {@link Connector}s of a group when several are pooled, see
+ * {@link Gateway#setConnectorPoolSize(int)}.
+ *
+ * @since 5.5
+ */
+public enum ConnectorSelection {
+
+    /** Use the connectors in turn */
+    ROUND_ROBIN,
+
+    /**
+     * Use the connector with the fewest calls in flight and open stateful
+     * services
+     */
+    LEAST_LOADED
+}
@@ -33,12 +33,17 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
@@ -71,10 +76,16 @@ import omero.api.ThumbnailStorePrx;
 import omero.cmd.CmdCallbackI;
 import omero.cmd.HandlePrx;
 import omero.cmd.Request;
+import omero.cmd.Response;
+import omero.cmd.Status;
 import omero.gateway.cache.CacheService;
+import omero.gateway.cache.DefaultCacheService;
 import omero.gateway.exception.ConnectionStatus;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.facility.Facility;
+import omero.gateway.facility.RawDataFacility;
+import omero.gateway.util.GatewayExecutor;
+import omero.gateway.util.HealthMonitor;
 import omero.gateway.util.NetworkChecker;
 import omero.grid.ProcessCallbackI;
 import omero.grid.ScriptProcessPrx;
@@ -82,14 +93,17 @@ import omero.grid.SharedResourcesPrx;
 import omero.log.LogMessage;
 import omero.log.Logger;
 import omero.model.ExperimenterGroupI;
+import omero.model.Session;
 import omero.gateway.model.ExperimenterData;
 import omero.gateway.model.GroupData;
 import omero.gateway.util.PojoMapper;
 import Glacier2.CannotCreateSessionException;
 import Glacier2.PermissionDeniedException;
+import Ice.Current;
 import Ice.DNSException;
 import Ice.SocketException;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -159,6 +173,62 @@ public class Gateway implements AutoCloseable {
     /** Keeps the session alive */
     private ScheduledThreadPoolExecutor keepAliveExecutor;
 
+    /** The number of threads closing the evicted derived connectors */
+    private static final int CLOSE_THREADS = 2;
+
+    /**
+     * Closes the evicted derived connectors, off the keep-alive thread as
+     * closing a session blocks
+     */
+    private GatewayExecutor closeExecutor;
+
+    /** The time (in seconds) between two background network checks */
+    private static final long HEALTH_CHECK_PERIOD = 5;
+
+    /** Tracks the health of the connection, <code>null</code> if offline */
+    private volatile HealthMonitor healthMonitor;
+
+    /** Notified of the calls made through the services */
+    private volatile ServiceCallListener serviceCallListener =
+            ServiceCallListener.NOOP;
+
+    /** The default time (in milliseconds) between two keep alive sweeps */
+    private static final long KEEP_ALIVE_PERIOD = 60000;
+
+    /** The minimum time (in milliseconds) between two keep alive sweeps */
+    private static final long MIN_KEEP_ALIVE_PERIOD = 1000;
+
+    /**
+     * The time (in milliseconds) between two keep alive sweeps, adapted to
+     * the session timeout
+     */
+    private volatile long keepAlivePeriod = KEEP_ALIVE_PERIOD;
+
+    /**
+     * The idle time (in milliseconds) after which a session is pinged,
+     * adapted to the session timeout
+     */
+    private volatile long keepAliveThreshold = Connector.ELAPSED_TIME;
+
+    /** The maximum number of derived connectors per connector */
+    private volatile long maxDerivedConnectors = Connector.MAX_DERIVED;
+
+    /**
+     * The time (in milliseconds) after which an unused derived connector is
+     * closed
+     */
+    private volatile long derivedIdleTime = Connector.DERIVED_IDLE_TIME;
+
+    /** The maximum number of pooled stores handed out per connector */
+    private volatile int statefulServicePoolSize = Connector.MAX_POOLED_STORES;
+
+    /**
+     * The time (in milliseconds) after which a released pooled store is
+     * closed if not reused
+     */
+    private volatile long statefulServiceIdleTime =
+            Connector.POOLED_STORE_IDLE_TIME;
+
     /** The login credentials used for connecting to the server */
     private LoginCredentials login;
 
@@ -170,6 +240,23 @@ public class Gateway implements AutoCloseable {
             .<Long, Connector> synchronizedListMultimap(LinkedListMultimap
                     .<Long, Connector> create());
 
+    /** The maximum number of {@link Connector}s per group */
+    private volatile int connectorPoolSize = 1;
+
+    /** How a {@link Connector} of a group is picked */
+    private volatile ConnectorSelection connectorSelection =
+            ConnectorSelection.LEAST_LOADED;
+
+    /** Counter for the round-robin selection of the {@link Connector}s */
+    private final AtomicInteger connectorIndex = new AtomicInteger();
+
+    /**
+     * The groups whose pool is growing, so that a single {@link Connector}
+     * is added at a time per group without blocking the other groups
+     */
+    private final ConcurrentMap<Long, Boolean> growingPools =
+            new ConcurrentHashMap<Long, Boolean>();
+
     /** Optional reference to a {@link CacheService} */
     private CacheService cacheService;
 
@@ -183,11 +270,22 @@ public class Gateway implements AutoCloseable {
     private boolean executorShutdownOnDisconnect = false;
 
     /**
-     * Creates a new Gateway instance
+     * Thread pool for the tasks the library waits for, see
+     * {@link #submitWorker(Callable)}
+     */
+    private final GatewayExecutor workerService = GatewayExecutor
+            .newWorkerExecutor();
+
+    /** Limits the number of concurrent tile requests to the server */
+    private volatile Semaphore tileRequestPermits = new Semaphore(
+            RawDataFacility.DEFAULT_MAX_CONCURRENT_TILE_REQUESTS, true);
+
+    /**
+     * Creates a new Gateway instance using a {@link DefaultCacheService}
      * @param log A {@link Logger}
      */
     public Gateway(Logger log) {
-        this(log, null, null, false);
+        this(log, new DefaultCacheService(), null, false);
     }
 
     /**
@@ -211,21 +309,24 @@ public class Gateway implements AutoCloseable {
      *            A {@link CacheService}, can be <code>null</code>
      * @param executorService
      *            A {@link ExecutorService} for handling asynchronous tasks, can
-     *            be <code>null</code> (in which case the Java built-in cached
-     *            thread pool will be used)
+     *            be <code>null</code> (in which case a bounded
+     *            {@link GatewayExecutor} will be used, see
+     *            {@link GatewayExecutor#newBoundedExecutor()}; pass
+     *            {@link GatewayExecutor#newVirtualThreadExecutor(int)} to run
+     *            each task on a virtual thread)
      * @param executorShutdownOnDisconnect
      *            Flag to indicate that executor threads should be shutdown on
      *            disconnect (only taken into account if an
-     *            {@link ExecutorService} was provided; the default cached
-     *            thread pool will be shut down by default)
+     *            {@link ExecutorService} was provided; the default
+     *            executor will be shut down by default)
      */
     public Gateway(Logger log, CacheService cacheService,
             ExecutorService executorService,
             boolean executorShutdownOnDisconnect) {
         this.log = log;
         this.cacheService = cacheService;
-        this.executorService = executorService == null ? Executors
-                .newCachedThreadPool() : executorService;
+        this.executorService = executorService == null ? GatewayExecutor
+                .newBoundedExecutor() : executorService;
         this.executorShutdownOnDisconnect = executorService == null ? true
                 : executorShutdownOnDisconnect;
     }
@@ -240,6 +341,71 @@ public class Gateway implements AutoCloseable {
     public <T> Future<T> submit(Callable<T> task) {
         return executorService.submit(task);
     }
+
+    /**
+     * Submits a task which the caller, possibly itself a task of the
+     * {@link #getExecutorService()}, blocks waiting for, e.g. the reads
+     * fanned out by a {@link omero.gateway.rnd.DataSink} or the prefetch of
+     * a {@link omero.gateway.facility.PagedIterator}. These tasks run on a
+     * separate bounded pool of daemon threads, see
+     * {@link GatewayExecutor#newWorkerExecutor()}, so that they cannot be
+     * starved by the tasks of the executor service waiting for them.
+     * 
+     * @param task
+     *            The task
+     * @return The callback reference
+     */
+    public <T> Future<T> submitWorker(Callable<T> task) {
+        return workerService.submit(task);
+    }
+
+    /**
+     * Returns the {@link ExecutorService} handling the asynchronous tasks.
+     * Unless a custom one was passed to the constructor this is a
+     * {@link GatewayExecutor} providing the number of active and queued
+     * tasks.
+     * 
+     * @return See above
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Returns the {@link Semaphore} limiting the number of concurrent tile
+     * requests the {@link RawDataFacility}s of this gateway send to the
+     * server.
+     * 
+     * @return See above
+     */
+    public Semaphore getTileRequestPermits() {
+        return tileRequestPermits;
+    }
+
+    /**
+     * Sets the maximum number of concurrent tile requests the
+     * {@link RawDataFacility}s of this gateway send to the server. Requests
+     * in flight are not affected.
+     * 
+     * @param max
+     *            The maximum number of concurrent requests
+     */
+    public void setMaxConcurrentTileRequests(int max) {
+        if (max < 1)
+            throw new IllegalArgumentException("Invalid number of requests");
+        tileRequestPermits = new Semaphore(max, true);
+    }
+
+    /**
+     * Returns the pool running the tasks submitted by
+     * {@link #submitWorker(Callable)}, providing the number of active and
+     * queued tasks.
+     * 
+     * @return See above
+     */
+    public GatewayExecutor getWorkerExecutor() {
+        return workerService;
+    }
     
     // Public connection handling methods
 
@@ -274,6 +440,27 @@ public class Gateway implements AutoCloseable {
         }
     }
 
+    /**
+     * Shuts the executor down, waiting for the still running tasks.
+     * 
+     * @param executor
+     *            The executor
+     */
+    private void shutDown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+                    getLogger().warn(this,
+                            "Could not terminate all asynchronous tasks");
+            }
+        } catch (InterruptedException ie) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Get the currently logged in user
      * 
@@ -289,19 +476,10 @@ public class Gateway implements AutoCloseable {
     public void disconnect() {
         if (executorShutdownOnDisconnect) {
             // shutdown still running asynchronous tasks
-            executorService.shutdown();
-            try {
-                if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
-                    executorService.shutdownNow();
-                    if (!executorService.awaitTermination(30, TimeUnit.SECONDS))
-                        getLogger().warn(this,
-                                "Could not terminate all asynchronous tasks");
-                }
-            } catch (InterruptedException ie) {
-                executorService.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+            shutDown(executorService);
         }
+        // the asynchronous tasks may have been waiting for the workers
+        shutDown(workerService);
         
         boolean online = isNetworkUp(false);
         List<Connector> connectors = getAllConnectors();
@@ -322,6 +500,9 @@ public class Gateway implements AutoCloseable {
         groupConnectorMap.clear();
         if (keepAliveExecutor != null)
             keepAliveExecutor.shutdown();
+        if (closeExecutor != null)
+            closeExecutor.shutdown();
+        healthMonitor = null;
         connected = false;
         if (cacheService != null)
             cacheService.shutDown();
@@ -429,6 +610,118 @@ public class Gateway implements AutoCloseable {
         return serverVersion;
     }
 
+    /**
+     * Get the information about the server the Gateway is connected to
+     * 
+     * @return See above, <code>null</code> if not logged in
+     */
+    public ServerInformation getServerInformation() {
+        return login == null ? null : login.getServer();
+    }
+
+    /**
+     * Get the statistics of the stateless service proxy caches of all the
+     * current connections. Each miss is a lookup round trip to the server,
+     * each hit a round trip saved.
+     * 
+     * @return See above.
+     */
+    public CacheStats getServiceCacheStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Connector c : getAllConnectors())
+            stats = stats.plus(c.getStatelessServiceStats());
+        return stats;
+    }
+
+    /**
+     * Bounds the connectors (each with its own session) derived to act on
+     * behalf of other users, see {@link SecurityContext#sudo()}. The least
+     * recently used connectors are closed when there are more than
+     * <code>maxSize</code> per connection, or when they haven't been used for
+     * <code>idleTime</code>. The defaults are 256 and 10 minutes.
+     * 
+     * @param maxSize
+     *            The maximum number of derived connectors per connection
+     * @param idleTime
+     *            The time after which an unused derived connector is closed
+     * @param unit
+     *            The unit of <code>idleTime</code>
+     */
+    public void setDerivedConnectorLimits(long maxSize, long idleTime,
+            TimeUnit unit) {
+        if (maxSize < 0 || idleTime < 0)
+            throw new IllegalArgumentException("Invalid limits: " + maxSize
+                    + ", " + idleTime);
+        this.maxDerivedConnectors = maxSize;
+        this.derivedIdleTime = unit.toMillis(idleTime);
+        for (Connector c : getAllConnectors())
+            c.setDerivedLimits(maxDerivedConnectors, derivedIdleTime);
+    }
+
+    /**
+     * Get the number of currently open derived connectors, i.e. sessions
+     * opened on behalf of other users.
+     * 
+     * @return See above.
+     */
+    public long getDerivedConnectorCount() {
+        long n = 0;
+        for (Connector c : getAllConnectors())
+            n += c.getDerivedCount();
+        return n;
+    }
+
+    /**
+     * Get the statistics of the derived connector caches of all the current
+     * connections. Each miss opened a session on behalf of another user,
+     * each eviction closed one.
+     * 
+     * @return See above.
+     */
+    public CacheStats getDerivedConnectorStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Connector c : getAllConnectors())
+            stats = stats.plus(c.getDerivedStats());
+        return stats;
+    }
+
+    /**
+     * Sets the maximum number of {@link Connector}s, i.e. sessions, opened
+     * per group. The connectors are created lazily, when all the existing
+     * ones are busy, so that multi-threaded clients can spread their calls
+     * over several sessions. The default is <code>1</code>.
+     * 
+     * @param size
+     *            The maximum number of {@link Connector}s per group
+     */
+    public void setConnectorPoolSize(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Invalid pool size: " + size);
+        this.connectorPoolSize = size;
+    }
+
+    /**
+     * Get the maximum number of {@link Connector}s opened per group.
+     * 
+     * @return See above.
+     */
+    public int getConnectorPoolSize() {
+        return connectorPoolSize;
+    }
+
+    /**
+     * Sets how one of the {@link Connector}s of a group is picked, the
+     * default is {@link ConnectorSelection#LEAST_LOADED}.
+     * 
+     * @param selection
+     *            The selection strategy
+     */
+    public void setConnectorSelection(ConnectorSelection selection) {
+        if (selection == null)
+            throw new IllegalArgumentException("No selection strategy");
+        this.connectorSelection = selection;
+    }
+
     /**
      * Get a {@link Facility} to perform further operations with the server
      * 
@@ -510,6 +803,41 @@ public class Gateway implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Directly submit a {@link Request} to the server, running the specified
+     * task once the request has finished, before the threads waiting on the
+     * callback are woken up.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param cmd
+     *            The {@link Request} to submit
+     * @param onFinished
+     *            The task to run once the request has finished
+     * @return A callback reference, {@link CmdCallbackI}
+     * @throws Throwable If an error occurred
+     */
+    public CmdCallbackI submit(SecurityContext ctx, Request cmd,
+            final Runnable onFinished) throws Throwable {
+        Connector c = getConnector(ctx, true, false);
+        if (c != null) {
+            client client = c.getClient();
+            HandlePrx handle = client.getSession().submit(cmd);
+            return new CmdCallbackI(client, handle) {
+                @Override
+                public void onFinished(Response rsp, Status status,
+                        Current current) {
+                    try {
+                        onFinished.run();
+                    } finally {
+                        super.onFinished(rsp, status, current);
+                    }
+                }
+            };
+        }
+        return null;
+    }
+
     /**
      * Close Import for a certain user
      *
@@ -837,6 +1165,112 @@ public class Gateway implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Returns a {@link RawFileStorePrx} service from a pool of reusable
+     * services, saving the creation of a new one on the server. At most
+     * {@link #setStatefulServicePoolSize(int)} of them are handed out per
+     * connection at the same time; this method waits until one is released
+     * if required. The service has to be handed back with
+     * {@link #releaseService(SecurityContext, StatefulServiceInterfacePrx)}
+     * (or {@link #closeService(SecurityContext, StatefulServiceInterfacePrx)}
+     * if it failed), and must be initialized with <code>setFileId</code>
+     * before use. A released service is not reset: it keeps the file of the
+     * last <code>setFileId</code> call open on the server until it is
+     * reused, or closed after {@link #setStatefulServiceIdleTime(long, TimeUnit)}.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             Thrown if the service cannot be initialized.
+     */
+    public RawFileStorePrx acquireRawFileStore(SecurityContext ctx)
+            throws DSOutOfServiceException {
+        Connector c = getConnector(ctx, true, false);
+        if (c != null)
+            return c.acquireRawFileStore();
+        return null;
+    }
+
+    /**
+     * Returns a {@link RawPixelsStorePrx} service from a pool of reusable
+     * services, see {@link #acquireRawFileStore(SecurityContext)}. The
+     * service must be initialized with <code>setPixelsId</code> before use.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             Thrown if the service cannot be initialized.
+     */
+    public RawPixelsStorePrx acquirePixelsStore(SecurityContext ctx)
+            throws DSOutOfServiceException {
+        return acquirePixelsStore(ctx, false);
+    }
+
+    /**
+     * Returns a {@link RawPixelsStorePrx} service from a pool of reusable
+     * services, see {@link #acquirePixelsStore(SecurityContext)}. If all the
+     * pooled services are in use, either waits for one or creates a new
+     * service, which is closed by
+     * {@link #releaseService(SecurityContext, StatefulServiceInterfacePrx)}.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param create
+     *            Pass <code>true</code> to create a service rather than wait
+     *            for a pooled one.
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             Thrown if the service cannot be initialized.
+     */
+    public RawPixelsStorePrx acquirePixelsStore(SecurityContext ctx,
+            boolean create) throws DSOutOfServiceException {
+        Connector c = getConnector(ctx, true, false);
+        if (c != null)
+            return c.acquirePixelsStore(create);
+        return null;
+    }
+
+    /**
+     * Sets the maximum number of pooled {@link RawFileStorePrx} and
+     * {@link RawPixelsStorePrx} services (each) handed out per connection at
+     * the same time, see {@link #acquireRawFileStore(SecurityContext)}. The
+     * default is 8. Affects the connections opened afterwards.
+     * 
+     * @param size
+     *            The maximum number of services
+     */
+    public void setStatefulServicePoolSize(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Invalid pool size: " + size);
+        this.statefulServicePoolSize = size;
+    }
+
+    /**
+     * Sets the time after which a released pooled {@link RawFileStorePrx} or
+     * {@link RawPixelsStorePrx} service is closed if not reused, see
+     * {@link #acquireRawFileStore(SecurityContext)}. Until then, the service
+     * keeps its file or pixels buffer open on the server. The default is 5
+     * minutes.
+     * 
+     * @param idleTime
+     *            The time after which an idle service is closed
+     * @param unit
+     *            The unit of <code>idleTime</code>
+     */
+    public void setStatefulServiceIdleTime(long idleTime, TimeUnit unit) {
+        if (idleTime < 0)
+            throw new IllegalArgumentException("Invalid idle time: "
+                    + idleTime);
+        this.statefulServiceIdleTime = unit.toMillis(idleTime);
+        for (Connector c : getAllConnectors()) {
+            c.setStoreIdleTime(statefulServiceIdleTime);
+            for (Connector d : c.getDerivedConnectors())
+                d.setStoreIdleTime(statefulServiceIdleTime);
+        }
+    }
+
     /**
      * Returns the {@link IPixelsPrx} service.
      * 
@@ -997,6 +1431,35 @@ public class Gateway implements AutoCloseable {
         }
     }
 
+    /**
+     * Creates the {@link client} for the specified credentials. No connection
+     * is made until a session is created or joined.
+     * 
+     * @param c
+     *            The {@link LoginCredentials}
+     * @return See above.
+     */
+    client createClient(LoginCredentials c) {
+        List<String> args = c.getArguments();
+        if (args != null)
+            return new client(args.toArray(new String[args.size()]));
+        return createClient(c.getServer());
+    }
+
+    /**
+     * Creates a client connecting to the specified server, e.g. for the
+     * sessions opened on behalf of other users.
+     * 
+     * @param server
+     *            The server
+     * @return See above.
+     */
+    client createClient(ServerInformation server) {
+        if (server.getPort() > 0)
+            return new client(server.getHostname(), server.getPort());
+        return new client(server.getHostname());
+    }
+
     /**
      * Initiates a session
      * 
@@ -1019,17 +1482,11 @@ public class Gateway implements AutoCloseable {
 
         List<String> args = c.getArguments();
         String username;
-        if (args != null) {
-            secureClient = new client(args.toArray(new String[args.size()]));
+        secureClient = createClient(c);
+        if (args != null)
             username = secureClient.getProperty("omero.user");
-        } else {
+        else
             username = c.getUser().getUsername();
-            if (c.getServer().getPort() > 0)
-                secureClient = new client(c.getServer().getHostname(), c
-                        .getServer().getPort());
-            else
-                secureClient = new client(c.getServer().getHostname());
-        }
         secureClient.setAgent(c.getApplicationName());
         ServiceFactoryPrx entryEncrypted = null;
         
@@ -1078,6 +1535,17 @@ public class Gateway implements AutoCloseable {
             }
         }
 
+        keepAliveExecutor = new ScheduledThreadPoolExecutor(1);
+        closeExecutor = GatewayExecutor.newWorkerExecutor(CLOSE_THREADS,
+                "omero-gateway-close-");
+        HealthMonitor monitor = new HealthMonitor(networkChecker,
+                keepAliveExecutor, log);
+        monitor.start(HEALTH_CHECK_PERIOD, TimeUnit.SECONDS);
+        healthMonitor = monitor;
+
+        keepAlivePeriod = KEEP_ALIVE_PERIOD;
+        keepAliveThreshold = Connector.ELAPSED_TIME;
+        final ScheduledThreadPoolExecutor executor = keepAliveExecutor;
         Runnable r = new Runnable() {
             public void run() {
                 try {
@@ -1089,11 +1557,15 @@ public class Gateway implements AutoCloseable {
                                 new LogMessage(
                                         "Exception while keeping the services alive",
                                         t));
+                } finally {
+                    // Reschedule, the period may have been adapted meanwhile
+                    if (!executor.isShutdown())
+                        executor.schedule(this, keepAlivePeriod,
+                                TimeUnit.MILLISECONDS);
                 }
             }
         };
-        keepAliveExecutor = new ScheduledThreadPoolExecutor(1);
-        keepAliveExecutor.scheduleWithFixedDelay(r, 60, 60, TimeUnit.SECONDS);
+        keepAliveExecutor.schedule(r, keepAlivePeriod, TimeUnit.MILLISECONDS);
         
         return secureClient;
     }
@@ -1133,6 +1605,7 @@ public class Gateway implements AutoCloseable {
         SecurityContext ctx = null;
         try {
             ServiceFactoryPrx entryEncrypted = client.getSession();
+            adaptKeepAlive(entryEncrypted, client.getSessionId());
             
             // version check
             ResourceBundle bundle = ResourceBundle.getBundle("omero");
@@ -1164,9 +1637,7 @@ public class Gateway implements AutoCloseable {
                 ctx.setServerInformation(cred.getServer());
                 connector = new Connector(ctx, client, entryEncrypted,
                         cred.isEncryption(), log);
-                for (PropertyChangeListener l : this.pcs
-                        .getPropertyChangeListeners())
-                    connector.addPropertyChangeListener(l);
+                initConnector(connector);
                 this.pcs.firePropertyChange(Gateway.PROP_CONNECTOR_CREATED, null, client.getSessionId());
                 groupConnectorMap.put(ctx.getGroupID(), connector);
                 if (defaultID == cred.getGroupID())
@@ -1178,9 +1649,7 @@ public class Gateway implements AutoCloseable {
                     ctx.setCompression(cred.getCompression());
                     connector = new Connector(ctx, client, entryEncrypted,
                             cred.isEncryption(), log);
-                    for (PropertyChangeListener l : this.pcs
-                            .getPropertyChangeListeners())
-                        connector.addPropertyChangeListener(l);
+                    initConnector(connector);
                     exp = getUserDetails(ctx, userName);
                     groupConnectorMap.put(ctx.getGroupID(), connector);
                 } catch (Exception e) {
@@ -1201,8 +1670,7 @@ public class Gateway implements AutoCloseable {
             ctx.setCompression(cred.getCompression());
             connector = new Connector(ctx, client, entryEncrypted,
                     cred.isEncryption(), log);
-            for(PropertyChangeListener l : this.pcs.getPropertyChangeListeners())
-                connector.addPropertyChangeListener(l);
+            initConnector(connector);
             this.pcs.firePropertyChange(Gateway.PROP_CONNECTOR_CREATED, null, client.getSessionId());
             groupConnectorMap.put(ctx.getGroupID(), connector);
             return exp;
@@ -1223,23 +1691,21 @@ public class Gateway implements AutoCloseable {
      *             Thrown if the service cannot be initialized.
      */
     private void keepSessionAlive() throws DSOutOfServiceException {
-        // Check if network is up before keeping service otherwise
-        // we block until timeout.
-        try {
-            isNetworkUp(false);
-        } catch (Exception e) {
+        // Don't send requests which would block until timeout
+        HealthMonitor monitor = healthMonitor;
+        if (monitor != null && !monitor.isNetworkUp())
             throw new DSOutOfServiceException("Network not available");
-        }
-        Iterator<Connector> i = getAllConnectors().iterator();
-        Connector c;
-        while (i.hasNext()) {
-            c = i.next();
-            if (c.needsKeepAlive()) {
-                if (!c.keepSessionAlive()) {
-                    // Session has died, e. g. due to server restart.
-                    // Remove connectors, so new ones will be created as requested.
-                    groupConnectorMap.removeAll(c.getGroupID());
-                }
+        // Only idle sessions are pinged, the requests are sent
+        // asynchronously so that all sessions are handled concurrently.
+        for (Connector c : getAllConnectors()) {
+            c.cleanUpDerived();
+            c.closeIdleStores();
+            if (c.claimKeepAlive())
+                keepAliveInBackground(c, null);
+            for (Connector d : c.getDerivedConnectors()) {
+                d.closeIdleStores();
+                if (d.claimKeepAlive())
+                    keepAliveInBackground(d, c);
             }
         }
     }
@@ -1315,20 +1781,67 @@ public class Gateway implements AutoCloseable {
      * Checks if the network interface is up.
      * 
      * @param useCachedValue
-     *            Uses the result of the last check instead of really performing
-     *            the test if the last check is not older than 5 sec
+     *            Uses the state learnt from the outcome of the calls and the
+     *            background checks instead of really performing the test;
+     *            this never blocks
      * @return See above
      */
     public boolean isNetworkUp(boolean useCachedValue) {
+        HealthMonitor monitor = healthMonitor;
+        if (useCachedValue && monitor != null)
+            return monitor.isNetworkUp();
+        boolean up = false;
         try {
-            if (networkChecker != null)
-                return networkChecker.isNetworkup(useCachedValue);
-            return true;
+            up = networkChecker == null
+                    || networkChecker.isNetworkup(useCachedValue);
         } catch (Throwable t) {
             if (log != null)
                 log.warn(this, new LogMessage("Error on isNetworkUp check", t));
         }
-        return false;
+        if (monitor != null)
+            monitor.setNetworkUp(up);
+        return up;
+    }
+
+    /**
+     * Get the monitor tracking the health of the connection.
+     * 
+     * @return See above, <code>null</code> if not logged in
+     */
+    public HealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+
+    /**
+     * Sets the listener notified of every call made through the services
+     * provided by this gateway, e.g. a
+     * {@link omero.gateway.util.ServiceCallMetrics}. Affects the services
+     * requested afterwards.
+     * With {@link ServiceCallListener#NOOP}, the default, the calls are not
+     * timed nor measured and the stateful services are returned as is. The
+     * calls to the stateless services still go through a reflective proxy
+     * (a {@link java.lang.reflect.Method#invoke} and an in-flight counter
+     * update per call), needed to track the calls in flight and the health
+     * of the connection.
+     * 
+     * @param listener
+     *            The listener, <code>null</code> to reset to
+     *            {@link ServiceCallListener#NOOP}
+     */
+    public void setServiceCallListener(ServiceCallListener listener) {
+        serviceCallListener = listener == null ? ServiceCallListener.NOOP
+                : listener;
+        for (Connector c : getAllConnectors())
+            c.setServiceCallListener(serviceCallListener);
+    }
+
+    /**
+     * Get the listener notified of the service calls.
+     * 
+     * @return See above
+     */
+    public ServiceCallListener getServiceCallListener() {
+        return serviceCallListener;
     }
 
     /**
@@ -1384,7 +1897,7 @@ public class Gateway implements AutoCloseable {
     public void closeService(SecurityContext ctx,
             StatefulServiceInterfacePrx svc) {
         try {
-            Connector c = getConnector(ctx, false, true);
+            Connector c = getOwner(ctx, svc);
             if (c != null) {
                 c.close(svc);
             } else {
@@ -1396,6 +1909,64 @@ public class Gateway implements AutoCloseable {
         }
     }
 
+    /**
+     * Releases a service obtained from
+     * {@link #acquireRawFileStore(SecurityContext)} or
+     * {@link #acquirePixelsStore(SecurityContext)} so that it can be reused.
+     * Only release services left in a clean state (e.g. saved after
+     * writing); services which failed should be closed with
+     * {@link #closeService(SecurityContext, StatefulServiceInterfacePrx)}.
+     * Services which are not pooled are closed.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param svc
+     *            The service to release
+     */
+    public void releaseService(SecurityContext ctx,
+            StatefulServiceInterfacePrx svc) {
+        try {
+            Connector c = getOwner(ctx, svc);
+            if (c != null) {
+                c.release(svc);
+            } else {
+                svc.close(); // Last ditch effort to close.
+            }
+        } catch (Exception e) {
+            if (log != null)
+                log.warn(this,
+                        String.format("Failed to release %s: %s", svc, e));
+        }
+    }
+
+    /**
+     * Returns the {@link Connector} which created the specified service.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param svc
+     *            The service
+     * @return See above
+     * @throws DSOutOfServiceException
+     *             If the connection is broken
+     */
+    private Connector getOwner(SecurityContext ctx,
+            StatefulServiceInterfacePrx svc) throws DSOutOfServiceException {
+        // The service may belong to another connector of the pool, or to a
+        // derived connector evicted meanwhile.
+        synchronized (groupConnectorMap) {
+            for (Connector owner : groupConnectorMap.get(ctx.getGroupID())) {
+                if (owner.owns(svc))
+                    return owner;
+                for (Connector d : owner.getDerivedConnectors()) {
+                    if (d.owns(svc))
+                        return d;
+                }
+            }
+        }
+        return getConnector(ctx, false, true);
+    }
+
     /**
      * Create a {@link RawPixelsStorePrx}
      * 
@@ -1473,21 +2044,7 @@ public class Gateway implements AutoCloseable {
      */
     public Connector getConnector(SecurityContext ctx, boolean recreate,
             boolean permitNull) throws DSOutOfServiceException {
-        try {
-            isNetworkUp(true); // Need safe version?
-        } catch (Exception e1) {
-            if (permitNull) {
-                if (log != null)
-                    log.warn(
-                        this,
-                        new LogMessage(
-                                "Failed to check network. Returning null connector",
-                                e1));
-                return null;
-            }
-            throw new DSOutOfServiceException("Network not available", e1, ConnectionStatus.NETWORK);
-        }
-
+        // Never blocks, see HealthMonitor.
         if (!isNetworkUp(true)) {
             if (permitNull) {
                 if (log != null)
@@ -1508,25 +2065,33 @@ public class Gateway implements AutoCloseable {
         }
 
         Connector c = null;
-        List<Connector> clist = groupConnectorMap.get(ctx.getGroupID());
+        List<Connector> clist;
+        synchronized (groupConnectorMap) {
+            clist = new ArrayList<Connector>(
+                    groupConnectorMap.get(ctx.getGroupID()));
+        }
         if (clist.size() > 0) {
-            c = clist.get(0);
-            if (c.needsKeepAlive()) {
-                // Check if network is up before keeping service otherwise
-                // we block until timeout.
-                try {
-                    isNetworkUp(true);
-                } catch (Exception e) {
-                    throw new DSOutOfServiceException("Network down.", e,
-                            ConnectionStatus.NETWORK);
-                }
-                if (!c.keepSessionAlive()) {
-                    // Session has died, e. g. due to server restart.
-                    // Remove connectors, so a new ones will be created.
-                    groupConnectorMap.removeAll(c.getGroupID());
-                    c = null;
+            c = selectConnector(clist);
+            if (recreate && clist.size() < connectorPoolSize
+                    && isPoolBusy(clist)) {
+                // All connectors are busy, add one to the pool unless being
+                // done by another thread: use the selected one meanwhile.
+                Long groupId = ctx.getGroupID();
+                if (growingPools.putIfAbsent(groupId, Boolean.TRUE) == null) {
+                    try {
+                        if (groupConnectorMap.get(groupId).size()
+                                < connectorPoolSize) {
+                            Connector added = createConnector(ctx, true);
+                            if (added != null)
+                                c = added;
+                        }
+                    } finally {
+                        growingPools.remove(groupId);
+                    }
                 }
             }
+            if (c.claimKeepAlive())
+                keepAliveInBackground(c, null);
         }
 
         // We are going to create a connector and activate a session.
@@ -1556,6 +2121,130 @@ public class Gateway implements AutoCloseable {
         return c;
     }
 
+    /**
+     * Keeps the services of the specified {@link Connector} alive without
+     * blocking the caller. If the session has died, e.g. due to a server
+     * restart, the {@link Connector} is removed so that a new one is created
+     * on the next request.
+     * 
+     * @param c
+     *            The {@link Connector}
+     * @param parent
+     *            The {@link Connector} <code>c</code> is derived from or
+     *            <code>null</code>
+     */
+    private void keepAliveInBackground(final Connector c,
+            final Connector parent) {
+        c.keepSessionAliveAsync().thenAccept(new Consumer<Boolean>() {
+            @Override
+            public void accept(Boolean alive) {
+                if (alive)
+                    return;
+                if (parent != null)
+                    parent.removeDerived(c);
+                else
+                    groupConnectorMap.remove(c.getGroupID(), c);
+            }
+        });
+    }
+
+    /**
+     * Adapts the keep alive intervals to the timeout of the session: idle
+     * sessions are pinged after half the timeout, checking at least four
+     * times per timeout.
+     * 
+     * @param entry
+     *            The entry point
+     * @param sessionId
+     *            The id of the session
+     */
+    private void adaptKeepAlive(ServiceFactoryPrx entry, String sessionId) {
+        try {
+            Session session = entry.getSessionService().getSession(sessionId);
+            long timeout = session.getTimeToIdle() == null ? 0 : session
+                    .getTimeToIdle().getValue();
+            if (timeout <= 0)
+                return;
+            keepAliveThreshold = Math.min(Connector.ELAPSED_TIME * 10,
+                    timeout / 2);
+            keepAlivePeriod = Math.max(MIN_KEEP_ALIVE_PERIOD,
+                    Math.min(KEEP_ALIVE_PERIOD, timeout / 4));
+        } catch (Exception e) {
+            if (log != null)
+                log.debug(this, new LogMessage(
+                        "Could not get the session timeout", e));
+        }
+    }
+
+    /**
+     * Initializes a new {@link Connector}.
+     * 
+     * @param c
+     *            The {@link Connector}
+     */
+    private void initConnector(Connector c) {
+        for (PropertyChangeListener l : this.pcs.getPropertyChangeListeners())
+            c.addPropertyChangeListener(l);
+        c.setHealthMonitor(healthMonitor);
+        c.setServiceCallListener(serviceCallListener);
+        c.setKeepAliveThreshold(keepAliveThreshold);
+        c.setBackgroundExecutor(closeExecutor);
+        c.setClientFactory(new Function<ServerInformation, client>() {
+            @Override
+            public client apply(ServerInformation server) {
+                return createClient(server);
+            }
+        });
+        c.setStorePoolSize(statefulServicePoolSize);
+        c.setStoreIdleTime(statefulServiceIdleTime);
+        if (maxDerivedConnectors != Connector.MAX_DERIVED
+                || derivedIdleTime != Connector.DERIVED_IDLE_TIME)
+            c.setDerivedLimits(maxDerivedConnectors, derivedIdleTime);
+    }
+
+    /**
+     * Returns <code>true</code> if all the {@link Connector}s of a group
+     * are in use, whatever the selection mode.
+     * 
+     * @param clist
+     *            The {@link Connector}s of the group
+     * @return See above
+     */
+    private static boolean isPoolBusy(List<Connector> clist) {
+        for (Connector c : clist) {
+            if (c.getLoad() == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Picks one of the {@link Connector}s of a group.
+     * 
+     * @param clist
+     *            The {@link Connector}s of the group, not empty
+     * @return See above
+     */
+    private Connector selectConnector(List<Connector> clist) {
+        if (clist.size() == 1)
+            return clist.get(0);
+        if (connectorSelection == ConnectorSelection.ROUND_ROBIN) {
+            int i = (connectorIndex.getAndIncrement() & Integer.MAX_VALUE)
+                    % clist.size();
+            return clist.get(i);
+        }
+        Connector c = null;
+        int min = Integer.MAX_VALUE;
+        for (Connector candidate : clist) {
+            int load = candidate.getLoad();
+            if (load < min) {
+                min = load;
+                c = candidate;
+            }
+        }
+        return c;
+    }
+
     /**
      * Shuts down the connectors created while creating/importing data for other
      * users.
@@ -1636,16 +2325,11 @@ public class Gateway implements AutoCloseable {
         try {
             ctx.setServerInformation(login.getServer());
 
-            client client;
+            client client = createClient(login);
             ServiceFactoryPrx prx;
             if (login.getArguments() != null) {
-                List<String> args = login.getArguments();
-                client = new client(
-                        args.toArray(new String[args.size()]));
                 prx = client.createSession();
             } else {
-                client = new client(login.getServer().getHostname(),
-                        login.getServer().getPort());
                 prx = client.createSession(login.getUser().getUsername(), login
                         .getUser().getPassword());
             }
@@ -1655,9 +2339,7 @@ public class Gateway implements AutoCloseable {
                 throw new IllegalArgumentException("must set security context with a valid group ID");
             }
             c = new Connector(ctx, client, prx, login.isEncryption(), log);
-            for (PropertyChangeListener l : this.pcs
-                    .getPropertyChangeListeners())
-                c.addPropertyChangeListener(l);
+            initConnector(c);
             this.pcs.firePropertyChange(Gateway.PROP_CONNECTOR_CREATED, null, client.getSessionId());
             groupConnectorMap.put(ctx.getGroupID(), c);
         } catch (Throwable e) {
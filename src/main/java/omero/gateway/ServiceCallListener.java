@@ -0,0 +1,69 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway;
+
+/**
+ * Notified of every call made through the services provided by the
+ * {@link Gateway}, see {@link Gateway#setServiceCallListener(ServiceCallListener)}.
+ * Implementations are invoked on the calling thread and must be thread-safe
+ * and fast; {@link omero.gateway.util.ServiceCallMetrics} aggregates the
+ * calls per service and operation.
+ *
+ * @since 5.5
+ */
+public interface ServiceCallListener {
+
+    /**
+     * The default listener, ignoring the calls. While it is set the calls are
+     * neither timed nor measured and the stateful services are not wrapped;
+     * the calls to the stateless services still go through a reflective
+     * wrapper counting the calls in flight for the health monitoring, see
+     * {@link Gateway#setServiceCallListener(ServiceCallListener)}.
+     */
+    ServiceCallListener NOOP = new ServiceCallListener() {
+        @Override
+        public void callCompleted(String service, String operation,
+                long durationNanos, long bytes, Throwable error) {
+        }
+    };
+
+    /**
+     * Invoked when a call has completed.
+     *
+     * @param service
+     *            The name of the service, e.g. <code>IQuery</code>
+     * @param operation
+     *            The name of the operation, e.g. <code>findAllByQuery</code>
+     * @param durationNanos
+     *            The duration of the call in nanoseconds
+     * @param bytes
+     *            The binary payload bytes, i.e. the size of the
+     *            <code>byte[]</code> arguments and result (e.g. pixels or
+     *            file content). The other arguments and results, e.g. the
+     *            objects of IQuery or IContainer calls, are not measured
+     *            and count as <code>0</code>
+     * @param error
+     *            The exception thrown by the call or <code>null</code> if it
+     *            succeeded
+     */
+    void callCompleted(String service, String operation, long durationNanos,
+            long bytes, Throwable error);
+}
@@ -0,0 +1,228 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import omero.api.StatefulServiceInterfacePrx;
+
+/**
+ * A pool of reusable stateful services of one type (e.g.
+ * <code>RawFileStore</code>) of a {@link Connector}. At most
+ * <code>maxSize</code> services are handed out at the same time; released
+ * services are kept for reuse, saving the round trip creating a new one.
+ * <p>
+ * The services are not reset when released: an idle service still holds
+ * its server-side state, e.g. the file or pixels buffer opened by the last
+ * <code>setFileId</code> or <code>setPixelsId</code> call, until it is
+ * reused and initialized again or closed. The services idle for too long
+ * are handed back by {@link #expire(long)} to be closed.
+ *
+ * @since 5.5
+ */
+class StatefulServicePool {
+
+    /** A service handed out. */
+    private static final class Lease {
+
+        /** The service. */
+        private final StatefulServiceInterfacePrx prx;
+
+        /** Set if the service has been invalidated while handed out. */
+        private volatile boolean stale;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param prx The service.
+         */
+        private Lease(StatefulServiceInterfacePrx prx) {
+            this.prx = prx;
+        }
+    }
+
+    /** Limits the number of services handed out. */
+    private final Semaphore permits;
+
+    /** A service available for reuse. */
+    private static final class Idle {
+
+        /** The service. */
+        private final StatefulServiceInterfacePrx prx;
+
+        /** The time the service has been released at. */
+        private final long released = System.currentTimeMillis();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param prx The service.
+         */
+        private Idle(StatefulServiceInterfacePrx prx) {
+            this.prx = prx;
+        }
+    }
+
+    /** The services available for reuse, most recently released first. */
+    private final BlockingDeque<Idle> idle = new LinkedBlockingDeque<Idle>();
+
+    /** The services handed out. */
+    private final ConcurrentMap<StatefulServiceInterfacePrx, Lease> borrowed =
+            new ConcurrentHashMap<StatefulServiceInterfacePrx, Lease>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSize The maximum number of services handed out at the same
+     *                time.
+     */
+    StatefulServicePool(int maxSize) {
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Reserves a service, waiting if all are handed out.
+     *
+     * @param timeout The maximum time to wait in milliseconds.
+     * @return <code>true</code> if reserved, <code>false</code> if the
+     *         timeout elapsed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean reserve(long timeout) throws InterruptedException {
+        return permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels a reservation, e.g. because the service couldn't be created.
+     */
+    void cancel() {
+        permits.release();
+    }
+
+    /**
+     * Returns a service available for reuse or <code>null</code>.
+     *
+     * @return See above.
+     */
+    StatefulServiceInterfacePrx pollIdle() {
+        Idle i = idle.pollFirst();
+        return i == null ? null : i.prx;
+    }
+
+    /**
+     * Removes the services which have been available for reuse for more
+     * than the given time.
+     *
+     * @param idleTime The time in milliseconds.
+     * @return The removed services, to be closed.
+     */
+    List<StatefulServiceInterfacePrx> expire(long idleTime) {
+        List<StatefulServiceInterfacePrx> l =
+                new ArrayList<StatefulServiceInterfacePrx>();
+        long limit = System.currentTimeMillis() - idleTime;
+        Idle i;
+        // The least recently released services are at the end.
+        while ((i = idle.peekLast()) != null && i.released <= limit) {
+            if (idle.removeLastOccurrence(i))
+                l.add(i.prx);
+        }
+        return l;
+    }
+
+    /**
+     * Registers the reserved service as handed out.
+     *
+     * @param prx The service.
+     */
+    void lend(StatefulServiceInterfacePrx prx) {
+        borrowed.put(prx, new Lease(prx));
+    }
+
+    /**
+     * Takes back a service handed out by this pool for reuse.
+     *
+     * @param prx The service.
+     * @return <code>true</code> if the service is kept for reuse,
+     *         <code>false</code> if it wasn't handed out by this pool or
+     *         has been invalidated meanwhile, i.e. it has to be closed.
+     */
+    boolean recycle(StatefulServiceInterfacePrx prx) {
+        Lease lease = borrowed.remove(prx);
+        if (lease == null)
+            return false;
+        if (!lease.stale)
+            idle.offerFirst(new Idle(lease.prx));
+        permits.release();
+        return !lease.stale;
+    }
+
+    /**
+     * Forgets a service handed out by this pool, e.g. because it is closed.
+     *
+     * @param prx The service.
+     */
+    void discard(StatefulServiceInterfacePrx prx) {
+        if (borrowed.remove(prx) != null)
+            permits.release();
+    }
+
+    /**
+     * Invalidates all services, e.g. because the session has been closed.
+     * The services handed out won't be reused when released.
+     *
+     * @return The services which were available for reuse.
+     */
+    List<StatefulServiceInterfacePrx> clear() {
+        List<StatefulServiceInterfacePrx> l =
+                new ArrayList<StatefulServiceInterfacePrx>();
+        Idle i;
+        while ((i = idle.pollFirst()) != null)
+            l.add(i.prx);
+        for (Lease lease : borrowed.values())
+            lease.stale = true;
+        return l;
+    }
+
+    /**
+     * Returns the number of services available for reuse.
+     *
+     * @return See above.
+     */
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of services handed out.
+     *
+     * @return See above.
+     */
+    int getBorrowedCount() {
+        return borrowed.size();
+    }
+}
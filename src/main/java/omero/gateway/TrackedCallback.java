@@ -0,0 +1,83 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway;
+
+import Ice.Callback;
+
+/**
+ * An Ice callback for the asynchronous (AMI) calls, which are counted by
+ * the {@link Connector} running them: the call is in flight from the
+ * <code>begin_</code> method until {@link #done(Throwable)} is invoked,
+ * typically once {@link #completed(Ice.AsyncResult)} has collected the
+ * result. The call is then reported to the {@link ServiceCallListener} and
+ * to the health monitor of the {@link Gateway}. The callback isn't counted
+ * if passed to a service which isn't tracked.
+ *
+ * @since 5.5
+ */
+public abstract class TrackedCallback extends Callback {
+
+    /** The connector running the call or <code>null</code>. */
+    private Connector connector;
+
+    /** The name of the service. */
+    private String service;
+
+    /** The name of the operation. */
+    private String operation;
+
+    /** The time the call started at, in nanoseconds. */
+    private long start;
+
+    /**
+     * Invoked by the tracked services when the call starts.
+     *
+     * @param connector The connector running the call.
+     * @param service The name of the service.
+     * @param operation The name of the operation.
+     */
+    synchronized void started(Connector connector, String service,
+            String operation) {
+        this.connector = connector;
+        this.service = service;
+        this.operation = operation;
+        start = System.nanoTime();
+        connector.callStarted();
+    }
+
+    /**
+     * Marks the call as completed, only the first invocation is taken into
+     * account.
+     *
+     * @param error The exception thrown by the call or <code>null</code> if
+     *              it succeeded.
+     */
+    public void done(Throwable error) {
+        Connector c;
+        synchronized (this) {
+            c = connector;
+            connector = null;
+        }
+        if (c != null)
+            c.callCompleted(service, operation, System.nanoTime() - start, 0,
+                    error);
+    }
+}
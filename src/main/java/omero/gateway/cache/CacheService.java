@@ -110,6 +110,20 @@ public interface CacheService
      */
     public void setCacheEntries(int cacheID, int entries);
 
+    /**
+     * Returns the hit, miss and eviction counts of the specified cache.
+     *
+     * Returns <code>null</code> unless overridden.
+     *
+     * @param cacheID The id of the cache.
+     * @return See above or <code>null</code> if there's no such cache or
+     *         no statistics are kept.
+     */
+    public default CacheStatistics getStatistics(int cacheID)
+    {
+        return null;
+    }
+
     /** Clears all the caches. */
     public void clearAllCaches();
 
@@ -0,0 +1,124 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.cache;
+
+/**
+ * A snapshot of the statistics of a cache created by a
+ * {@link CacheService}.
+ *
+ * @since 5.5
+ */
+public class CacheStatistics
+{
+
+    /** The number of lookups which found an element. */
+    private final long hitCount;
+
+    /** The number of lookups which did not find an element. */
+    private final long missCount;
+
+    /** The number of elements removed to honor the size limit. */
+    private final long evictionCount;
+
+    /** The number of elements currently held. */
+    private final int size;
+
+    /** The maximum number of elements. */
+    private final int maximumSize;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param hitCount The number of lookups which found an element.
+     * @param missCount The number of lookups which did not find an element.
+     * @param evictionCount The number of elements removed to honor the
+     *                      size limit.
+     * @param size The number of elements currently held.
+     * @param maximumSize The maximum number of elements.
+     */
+    public CacheStatistics(long hitCount, long missCount, long evictionCount,
+            int size, int maximumSize)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the number of lookups which found an element.
+     *
+     * @return See above.
+     */
+    public long getHitCount() { return hitCount; }
+
+    /**
+     * Returns the number of lookups which did not find an element.
+     *
+     * @return See above.
+     */
+    public long getMissCount() { return missCount; }
+
+    /**
+     * Returns the ratio of lookups which found an element, <code>1</code>
+     * if there was no lookup.
+     *
+     * @return See above.
+     */
+    public double getHitRate()
+    {
+        long total = hitCount+missCount;
+        return total == 0 ? 1.0 : (double) hitCount/total;
+    }
+
+    /**
+     * Returns the number of elements removed to honor the size limit.
+     * Elements removed by {@link CacheService#clearCache(int)} or replaced
+     * by a new value are not counted.
+     *
+     * @return See above.
+     */
+    public long getEvictionCount() { return evictionCount; }
+
+    /**
+     * Returns the number of elements currently held.
+     *
+     * @return See above.
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Returns the maximum number of elements.
+     *
+     * @return See above.
+     */
+    public int getMaximumSize() { return maximumSize; }
+
+    @Override
+    public String toString()
+    {
+        return "CacheStatistics[hits="+hitCount+", misses="+missCount+
+                ", evictions="+evictionCount+", size="+size+"/"+maximumSize+
+                "]";
+    }
+
+}
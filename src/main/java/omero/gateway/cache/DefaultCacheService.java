@@ -0,0 +1,278 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The default {@link CacheService}.
+ * <p>
+ * The {@link #DEFAULT} and {@link #IN_MEMORY} caches hold the elements in
+ * memory, see {@link MemoryCache}; the {@link #PERSISTENCE_ON_DISK} caches
+ * hold serialized copies of the elements in memory-mapped files, see
+ * {@link DiskCache}. The size of a cache is its maximum number of
+ * elements.
+ * </p>
+ * The service may be used from several threads. Adding an element to or
+ * reading an element from a cache which does not exist, e.g. removed by
+ * {@link #shutDown()} when the gateway is disconnected, does nothing.
+ * The service can still be used after {@link #shutDown()}.
+ *
+ * @since 5.5
+ */
+public class DefaultCacheService
+    implements CacheService
+{
+
+    /** The prefix of the directory created when none is specified. */
+    private static final String PREFIX = "omero-cache";
+
+    /** The caches by id. */
+    private final Map<Integer, ElementCache> caches =
+            new ConcurrentHashMap<Integer, ElementCache>();
+
+    /** Used to assign the ids. */
+    private final AtomicInteger ids = new AtomicInteger();
+
+    /** The directory specified or <code>null</code>. */
+    private final Path root;
+
+    /** The directory created for the disk caches or <code>null</code>. */
+    private Path directory;
+
+    /**
+     * Creates a new instance. The disk caches are kept in a temporary
+     * directory, removed by {@link #shutDown()}.
+     */
+    public DefaultCacheService()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory The directory under which the disk caches are kept,
+     *                  or <code>null</code> to use a temporary directory.
+     */
+    public DefaultCacheService(File directory)
+    {
+        this.root = directory == null ? null :
+            directory.toPath().toAbsolutePath();
+    }
+
+    /**
+     * Creates the directory of a new disk cache.
+     *
+     * @return See above.
+     * @throws IOException If the directory cannot be created.
+     */
+    private synchronized Path createDirectory()
+        throws IOException
+    {
+        if (directory == null || !Files.isDirectory(directory)) {
+            if (root == null) {
+                directory = Files.createTempDirectory(PREFIX);
+            } else {
+                Files.createDirectories(root);
+                directory = Files.createTempDirectory(root, PREFIX);
+            }
+        }
+        return Files.createTempDirectory(directory, "cache");
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#createCache()
+     */
+    public int createCache()
+    {
+        return createCache(DEFAULT, CACHE_SIZE);
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}. Creates an
+     * in-memory cache if the directory of a disk cache cannot be created.
+     * @see CacheService#createCache(int, int)
+     */
+    public int createCache(int type, int size)
+    {
+        ElementCache cache;
+        switch (type) {
+            case DEFAULT:
+            case IN_MEMORY:
+                cache = new MemoryCache(size);
+                break;
+            case PERSISTENCE_ON_DISK:
+                try {
+                    cache = new DiskCache(createDirectory(), size);
+                } catch (IOException e) {
+                    cache = new MemoryCache(size);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Cache type not "+
+                        "supported: "+type);
+        }
+        int id = ids.incrementAndGet();
+        caches.put(id, cache);
+        return id;
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#createCache(int)
+     */
+    public int createCache(int type)
+    {
+        return createCache(type, CACHE_SIZE);
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#removeCache(int)
+     */
+    public void removeCache(int cacheID)
+    {
+        ElementCache cache = caches.remove(cacheID);
+        if (cache != null)
+            cache.close();
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}. Adding a
+     * <code>null</code> element removes the element.
+     * @see CacheService#addElement(int, Object, Object)
+     */
+    public void addElement(int cacheID, Object key, Object element)
+    {
+        if (key == null)
+            return;
+        ElementCache cache = caches.get(cacheID);
+        if (cache != null)
+            cache.put(key, element);
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#getElement(int, Object)
+     */
+    public Object getElement(int cacheID, Object key)
+    {
+        if (key == null)
+            return null;
+        ElementCache cache = caches.get(cacheID);
+        return cache == null ? null : cache.get(key);
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#clearCache(int)
+     */
+    public void clearCache(int cacheID)
+    {
+        ElementCache cache = caches.get(cacheID);
+        if (cache != null)
+            cache.clear();
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}. The least
+     * valuable elements are evicted if the cache shrinks.
+     * @see CacheService#setCacheEntries(int, int)
+     */
+    public void setCacheEntries(int cacheID, int entries)
+    {
+        ElementCache cache = caches.get(cacheID);
+        if (cache != null)
+            cache.resize(entries);
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#getStatistics(int)
+     */
+    public CacheStatistics getStatistics(int cacheID)
+    {
+        ElementCache cache = caches.get(cacheID);
+        return cache == null ? null : cache.getStatistics();
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}.
+     * @see CacheService#clearAllCaches()
+     */
+    public void clearAllCaches()
+    {
+        for (ElementCache cache : caches.values())
+            cache.clear();
+    }
+
+    /**
+     * Implemented as specified by {@link CacheService}. Removes all the
+     * caches and the files of the disk caches.
+     * @see CacheService#shutDown()
+     */
+    public void shutDown()
+    {
+        for (Integer id : caches.keySet())
+            removeCache(id);
+        Path dir;
+        synchronized (this) {
+            dir = directory;
+            directory = null;
+        }
+        if (dir != null)
+            delete(dir);
+    }
+
+    /**
+     * Deletes a directory and its content, ignoring failures.
+     *
+     * @param dir The directory.
+     */
+    private static void delete(Path dir)
+    {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path p : children) {
+                if (Files.isDirectory(p))
+                    delete(p);
+                else
+                    Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+        try {
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+}
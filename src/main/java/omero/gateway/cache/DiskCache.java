@@ -0,0 +1,364 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the elements on disk, up to a given number of elements. The
+ * elements are serialized and appended to memory-mapped segment files;
+ * the keys and the location of the elements are kept in memory. The
+ * least recently used elements are evicted first.
+ * <p>
+ * A segment is deleted once all its elements have been evicted, removed or
+ * replaced. The elements still live in a segment which is less than half
+ * used are moved to the current segment, so that the files do not take up
+ * more than about twice the size of the elements.
+ * </p>
+ * Elements which are not {@link Serializable} are not cached. Each lookup
+ * returns a new copy of the element.
+ *
+ * @since 5.5
+ */
+class DiskCache
+    extends ElementCache
+{
+
+    /** The default capacity of a segment. */
+    static final int SEGMENT_SIZE = 1 << 20;
+
+    /** The extension of the segment files. */
+    private static final String SUFFIX = ".segment";
+
+    /** A memory-mapped segment file. */
+    private static final class Segment
+    {
+
+        /** The file. */
+        private final Path file;
+
+        /** The mapped content of the file. */
+        private final MappedByteBuffer buffer;
+
+        /** The location of the elements held, by key. */
+        private final Map<Object, Location> entries =
+                new HashMap<Object, Location>();
+
+        /** The number of bytes of the elements held. */
+        private long liveBytes;
+
+        /**
+         * Creates the file and maps it.
+         *
+         * @param file The file.
+         * @param capacity The size of the file.
+         * @throws IOException If the file cannot be created or mapped.
+         */
+        Segment(Path file, int capacity)
+            throws IOException
+        {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        capacity);
+            }
+        }
+
+        /**
+         * Deletes the file. The mapping is released when the buffer is
+         * garbage collected.
+         */
+        void delete()
+        {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // e.g. still mapped on some platforms, removed with the
+                // directory later on
+            }
+        }
+    }
+
+    /** The location of an element. */
+    private static final class Location
+    {
+
+        /** The segment holding the element. */
+        private Segment segment;
+
+        /** The offset of the element in the segment. */
+        private int offset;
+
+        /** The length of the serialized element. */
+        private int length;
+    }
+
+    /** The directory holding the segments. */
+    private final Path directory;
+
+    /** The location of the elements, least recently used first. */
+    private final LinkedHashMap<Object, Location> index =
+            new LinkedHashMap<Object, Location>(16, 0.75f, true);
+
+    /** The segment the elements are appended to or <code>null</code>. */
+    private Segment current;
+
+    /** Used to name the segment files. */
+    private long segmentCount;
+
+    /** The maximum number of elements. */
+    private int maximumSize;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory The directory holding the segments, owned by this
+     *                  cache.
+     * @param maximumSize The maximum number of elements.
+     */
+    DiskCache(Path directory, int maximumSize)
+    {
+        this.directory = directory;
+        this.maximumSize = Math.max(0, maximumSize);
+    }
+
+    @Override
+    Object get(Object key)
+    {
+        byte[] data;
+        synchronized (this) {
+            Location l = index.get(key);
+            if (l == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            data = new byte[l.length];
+            ByteBuffer b = l.segment.buffer.duplicate();
+            b.position(l.offset);
+            b.get(data);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(data))) {
+            Object element = in.readObject();
+            hits.incrementAndGet();
+            return element;
+        } catch (IOException | ClassNotFoundException e) {
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    @Override
+    void put(Object key, Object element)
+    {
+        if (!(element instanceof Serializable)) {
+            remove(key);
+            return;
+        }
+        byte[] data;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(element);
+            }
+            data = bytes.toByteArray();
+        } catch (IOException e) {
+            // e.g. a field which is not serializable
+            remove(key);
+            return;
+        }
+        synchronized (this) {
+            if (maximumSize == 0)
+                return;
+            Location l = index.get(key);
+            if (l != null)
+                release(key, l);
+            else
+                l = new Location();
+            try {
+                append(key, l, data);
+            } catch (IOException e) {
+                index.remove(key);
+                return;
+            }
+            index.put(key, l);
+            evict();
+        }
+    }
+
+    @Override
+    synchronized void remove(Object key)
+    {
+        Location l = index.remove(key);
+        if (l != null)
+            release(key, l);
+    }
+
+    @Override
+    synchronized void clear()
+    {
+        index.clear();
+        current = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                directory, "*"+SUFFIX)) {
+            for (Path file : files)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // ignore, the directory is removed with the service
+        }
+    }
+
+    @Override
+    synchronized void close()
+    {
+        clear();
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // ignore, the directory is removed with the service
+        }
+    }
+
+    @Override
+    synchronized void resize(int maximumSize)
+    {
+        this.maximumSize = Math.max(0, maximumSize);
+        evict();
+    }
+
+    @Override
+    synchronized int size()
+    {
+        return index.size();
+    }
+
+    @Override
+    synchronized int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * Writes an element to the current segment, starting a new one if
+     * there's not enough room left.
+     *
+     * @param key The key.
+     * @param l The location to update.
+     * @param data The serialized element.
+     * @throws IOException If a new segment cannot be created.
+     */
+    private void append(Object key, Location l, byte[] data)
+        throws IOException
+    {
+        if (current == null || current.buffer.remaining() < data.length) {
+            if (current != null && current.entries.isEmpty())
+                current.delete();
+            current = new Segment(directory.resolve(
+                    (segmentCount++)+SUFFIX),
+                    Math.max(SEGMENT_SIZE, data.length));
+        }
+        l.segment = current;
+        l.offset = current.buffer.position();
+        l.length = data.length;
+        current.buffer.put(data);
+        current.entries.put(key, l);
+        current.liveBytes += data.length;
+    }
+
+    /**
+     * Marks the space used by an element as free. Deletes its segment if
+     * it is now empty, or moves the remaining elements if the segment is
+     * less than half used.
+     *
+     * @param key The key.
+     * @param l The location of the element.
+     */
+    private void release(Object key, Location l)
+    {
+        Segment s = l.segment;
+        s.entries.remove(key);
+        s.liveBytes -= l.length;
+        if (s == current)
+            return;
+        if (s.entries.isEmpty()) {
+            s.delete();
+        } else if (s.liveBytes*2 < s.buffer.position()) {
+            compact(s);
+        }
+    }
+
+    /**
+     * Moves the elements of a segment to the current segment and deletes
+     * it. The locations are updated in place, so the access order of the
+     * elements is not changed.
+     *
+     * @param s The segment.
+     */
+    private void compact(Segment s)
+    {
+        for (Map.Entry<Object, Location> e :
+                new ArrayList<Map.Entry<Object, Location>>(
+                        s.entries.entrySet())) {
+            Location l = e.getValue();
+            byte[] data = new byte[l.length];
+            ByteBuffer b = s.buffer.duplicate();
+            b.position(l.offset);
+            b.get(data);
+            try {
+                append(e.getKey(), l, data);
+            } catch (IOException ex) {
+                index.remove(e.getKey());
+            }
+        }
+        s.entries.clear();
+        s.delete();
+    }
+
+    /** Evicts the least recently used elements until the cache fits. */
+    private void evict()
+    {
+        while (index.size() > maximumSize) {
+            Object key = index.keySet().iterator().next();
+            release(key, index.remove(key));
+            evictions.incrementAndGet();
+        }
+    }
+
+}
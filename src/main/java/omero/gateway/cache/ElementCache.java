@@ -0,0 +1,111 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache managed by the {@link DefaultCacheService}.
+ * Implementations must be thread-safe.
+ *
+ * @since 5.5
+ */
+abstract class ElementCache
+{
+
+    /** The number of lookups which found an element. */
+    final AtomicLong hits = new AtomicLong();
+
+    /** The number of lookups which did not find an element. */
+    final AtomicLong misses = new AtomicLong();
+
+    /** The number of elements removed to honor the size limit. */
+    final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Returns the element or <code>null</code>.
+     *
+     * @param key The key.
+     * @return See above.
+     */
+    abstract Object get(Object key);
+
+    /**
+     * Adds or replaces an element. The element may be rejected, or evict
+     * another one, if the cache is full.
+     *
+     * @param key The key.
+     * @param element The element.
+     */
+    abstract void put(Object key, Object element);
+
+    /**
+     * Removes an element.
+     *
+     * @param key The key.
+     */
+    abstract void remove(Object key);
+
+    /** Removes all the elements. */
+    abstract void clear();
+
+    /**
+     * Changes the maximum number of elements, evicting elements if needed.
+     *
+     * @param maximumSize The new maximum number of elements.
+     */
+    abstract void resize(int maximumSize);
+
+    /**
+     * Returns the number of elements currently held.
+     *
+     * @return See above.
+     */
+    abstract int size();
+
+    /**
+     * Returns the maximum number of elements.
+     *
+     * @return See above.
+     */
+    abstract int getMaximumSize();
+
+    /**
+     * Removes all the elements and releases the resources. The cache
+     * must not be used afterwards.
+     */
+    void close()
+    {
+        clear();
+    }
+
+    /**
+     * Returns a snapshot of the statistics.
+     *
+     * @return See above.
+     */
+    CacheStatistics getStatistics()
+    {
+        return new CacheStatistics(hits.get(), misses.get(), evictions.get(),
+                size(), getMaximumSize());
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.cache;
+
+/**
+ * Estimates how often keys were accessed recently, i.e. the TinyLFU
+ * popularity filter. Uses a count-min sketch of 4-bit counters, four
+ * counters per key. All counters are halved once the number of recorded
+ * accesses reaches ten times the maximum number of elements, so that
+ * keys which are no longer used lose their weight.
+ * Not thread-safe, guarded by the owning {@link MemoryCache}.
+ *
+ * @since 5.5
+ */
+class FrequencySketch
+{
+
+    /** The seeds of the four hash functions. */
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L,
+        0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    /** Clears the high bit of each 4-bit counter after a shift. */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /** The counters, 16 per slot. */
+    private long[] table = new long[0];
+
+    /** The number of accesses after which the counters are halved. */
+    private int sampleSize;
+
+    /** The number of accesses recorded since the last reset. */
+    private int count;
+
+    /**
+     * Sizes the sketch for the specified number of elements. The counts
+     * recorded so far are lost if the table grows or shrinks.
+     *
+     * @param maximumSize The maximum number of elements of the cache.
+     */
+    void setMaximumSize(int maximumSize)
+    {
+        int n = Math.max(8, Integer.highestOneBit(
+                Math.max(1, maximumSize)-1) << 1);
+        n = Math.min(n, 1 << 24);
+        sampleSize = (int) Math.min(10L*Math.max(1, maximumSize),
+                Integer.MAX_VALUE);
+        if (table.length != n) {
+            table = new long[n];
+            count = 0;
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of the key,
+     * <code>0</code> to <code>15</code>.
+     *
+     * @param key The key.
+     * @return See above.
+     */
+    int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int offset = (start+i) << 2;
+            frequency = Math.min(frequency,
+                    (int) ((table[index] >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key.
+     *
+     * @param key The key.
+     */
+    void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int offset = (start+i) << 2;
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++count >= sampleSize)
+            reset();
+    }
+
+    /** Halves all the counters. */
+    private void reset()
+    {
+        for (int i = 0; i < table.length; i++)
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        count /= 2;
+    }
+
+    /**
+     * Returns the slot of the counter of the i-th hash function.
+     *
+     * @param hash The spread hash code of the key.
+     * @param i The hash function.
+     * @return See above.
+     */
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash+SEEDS[i])*SEEDS[i];
+        h += h >>> 32;
+        return (int) h & (table.length-1);
+    }
+
+    /**
+     * Improves the distribution of poor hash codes.
+     *
+     * @param x The hash code.
+     * @return See above.
+     */
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x)*0x45d9f3b;
+        x = ((x >>> 16) ^ x)*0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the elements in memory, up to a given number of elements, using
+ * the W-TinyLFU policy: new elements enter a small LRU window (1% of the
+ * size); the elements leaving the window are only admitted into the main
+ * area if they were accessed more often recently than the element they
+ * would replace, according to a {@link FrequencySketch}. The main area is
+ * a segmented LRU, elements accessed twice move from the probation to the
+ * protected segment (80% of the main area).
+ * This keeps frequently used elements in the cache when it is swept by
+ * one-off lookups, e.g. when browsing a large hierarchy.
+ *
+ * @since 5.5
+ */
+class MemoryCache
+    extends ElementCache
+{
+
+    /** Identifies the window. */
+    private static final int WINDOW = 0;
+
+    /** Identifies the probation segment of the main area. */
+    private static final int PROBATION = 1;
+
+    /** Identifies the protected segment of the main area. */
+    private static final int PROTECTED = 2;
+
+    /** An element and the segment holding it. */
+    private static final class Node
+    {
+
+        /** The element. */
+        private Object value;
+
+        /** One of the constants defined by this class. */
+        private int segment;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param value The element.
+         * @param segment The segment.
+         */
+        Node(Object value, int segment)
+        {
+            this.value = value;
+            this.segment = segment;
+        }
+    }
+
+    /** All the elements. */
+    private final Map<Object, Node> data = new HashMap<Object, Node>();
+
+    /** The elements of the window, least recently used first. */
+    private final LinkedHashMap<Object, Node> window =
+            new LinkedHashMap<Object, Node>(16, 0.75f, true);
+
+    /** The elements on probation, least recently used first. */
+    private final LinkedHashMap<Object, Node> probation =
+            new LinkedHashMap<Object, Node>(16, 0.75f, true);
+
+    /** The protected elements, least recently used first. */
+    private final LinkedHashMap<Object, Node> protectedSegment =
+            new LinkedHashMap<Object, Node>(16, 0.75f, true);
+
+    /** The recent access frequencies. */
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    /** The maximum number of elements. */
+    private int maximumSize;
+
+    /** The maximum number of elements in the window. */
+    private int maximumWindow;
+
+    /** The maximum number of elements in the main area. */
+    private int maximumMain;
+
+    /** The maximum number of elements in the protected segment. */
+    private int maximumProtected;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maximumSize The maximum number of elements.
+     */
+    MemoryCache(int maximumSize)
+    {
+        resize(maximumSize);
+    }
+
+    @Override
+    synchronized Object get(Object key)
+    {
+        sketch.increment(key);
+        Node node = data.get(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        onAccess(key, node);
+        hits.incrementAndGet();
+        return node.value;
+    }
+
+    @Override
+    synchronized void put(Object key, Object element)
+    {
+        if (element == null) {
+            remove(key);
+            return;
+        }
+        if (maximumSize == 0)
+            return;
+        sketch.increment(key);
+        Node node = data.get(key);
+        if (node != null) {
+            node.value = element;
+            onAccess(key, node);
+            return;
+        }
+        node = new Node(element, WINDOW);
+        data.put(key, node);
+        window.put(key, node);
+        evict();
+    }
+
+    @Override
+    synchronized void remove(Object key)
+    {
+        Node node = data.remove(key);
+        if (node != null)
+            getSegment(node.segment).remove(key);
+    }
+
+    @Override
+    synchronized void clear()
+    {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    @Override
+    synchronized void resize(int maximumSize)
+    {
+        this.maximumSize = Math.max(0, maximumSize);
+        maximumWindow = this.maximumSize == 0 ? 0 :
+            Math.max(1, this.maximumSize/100);
+        maximumMain = this.maximumSize-maximumWindow;
+        maximumProtected = (int) (maximumMain*4L/5);
+        sketch.setMaximumSize(this.maximumSize);
+        evict();
+    }
+
+    @Override
+    synchronized int size()
+    {
+        return data.size();
+    }
+
+    @Override
+    synchronized int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the map holding the elements of a segment.
+     *
+     * @param segment One of the constants defined by this class.
+     * @return See above.
+     */
+    private LinkedHashMap<Object, Node> getSegment(int segment)
+    {
+        switch (segment) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedSegment;
+        }
+    }
+
+    /**
+     * Updates the position of an element which was read or replaced.
+     *
+     * @param key The key.
+     * @param node The element.
+     */
+    private void onAccess(Object key, Node node)
+    {
+        if (node.segment == PROBATION) {
+            probation.remove(key);
+            node.segment = PROTECTED;
+            protectedSegment.put(key, node);
+            demote();
+        } else {
+            // Moves the element to the end of the access order.
+            getSegment(node.segment).get(key);
+        }
+    }
+
+    /**
+     * Moves the least recently used protected elements back to the
+     * probation segment until the protected segment fits.
+     */
+    private void demote()
+    {
+        Iterator<Map.Entry<Object, Node>> i =
+                protectedSegment.entrySet().iterator();
+        while (protectedSegment.size() > maximumProtected && i.hasNext()) {
+            Map.Entry<Object, Node> e = i.next();
+            i.remove();
+            e.getValue().segment = PROBATION;
+            probation.put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Evicts elements until each area fits. The elements leaving the
+     * window compete with the least recently used element of the main
+     * area.
+     */
+    private void evict()
+    {
+        while (probation.size()+protectedSegment.size() > maximumMain) {
+            Object victim = getVictim();
+            getSegment(data.remove(victim).segment).remove(victim);
+            evictions.incrementAndGet();
+        }
+        demote();
+        Iterator<Map.Entry<Object, Node>> i = window.entrySet().iterator();
+        while (window.size() > maximumWindow && i.hasNext()) {
+            Map.Entry<Object, Node> e = i.next();
+            i.remove();
+            admit(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Moves an element leaving the window to the main area if it is
+     * accessed more often than the element it would replace, otherwise
+     * evicts it.
+     *
+     * @param key The key of the element leaving the window.
+     * @param node The element.
+     */
+    private void admit(Object key, Node node)
+    {
+        if (probation.size()+protectedSegment.size() < maximumMain) {
+            node.segment = PROBATION;
+            probation.put(key, node);
+            return;
+        }
+        Object victim = getVictim();
+        if (victim != null &&
+                sketch.frequency(key) > sketch.frequency(victim)) {
+            getSegment(data.remove(victim).segment).remove(victim);
+            node.segment = PROBATION;
+            probation.put(key, node);
+        } else {
+            data.remove(key);
+        }
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Returns the key of the least recently used element of the main area
+     * or <code>null</code> if it is empty.
+     *
+     * @return See above.
+     */
+    private Object getVictim()
+    {
+        if (!probation.isEmpty())
+            return probation.keySet().iterator().next();
+        if (!protectedSegment.isEmpty())
+            return protectedSegment.keySet().iterator().next();
+        return null;
+    }
+
+}
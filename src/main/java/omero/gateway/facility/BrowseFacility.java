@@ -26,13 +26,34 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.keyvalue.MultiKey;
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang.StringUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+import omero.RLong;
+import omero.RType;
+import omero.ServerError;
 import omero.api.IContainerPrx;
 import omero.api.IQueryPrx;
 import omero.api.IScriptPrx;
@@ -75,6 +96,31 @@ public class BrowseFacility extends Facility {
     /** MIME type for lookup tables */
     private static final String LUT_MIMETYPE = "text/x-lut";
 
+    /** The maximum number of ids in the <code>in</code> clause of a query */
+    private static final int MAX_IDS = 500;
+
+    /** The maximum number of chunks of ids queried concurrently */
+    private static final int MAX_CONCURRENT_CHUNKS = 4;
+
+    /** The model type names by class name, see {@link #getModelName(String)} */
+    private static final ConcurrentMap<String, String> modelNames =
+            new ConcurrentHashMap<String, String>();
+
+    /**
+     * The optional cache of the objects returned by the <code>find</code>
+     * methods (keys: group id or <code>-1</code> for all groups, model type
+     * and object id). Holds copies, see {@link #copy(IObject)}.
+     */
+    private volatile Cache<MultiKey, IObject> objectCache;
+
+    /**
+     * The groups the objects of the object cache are held for (keys: model
+     * type and object id), so that an object can be removed without
+     * scanning the cache. Guards the updates of the cache.
+     */
+    private final Map<MultiKey, Set<Long>> objectGroups =
+            new HashMap<MultiKey, Set<Long>>();
+
     /**
      * Creates a new instance
      *
@@ -85,6 +131,248 @@ public class BrowseFacility extends Facility {
         super(gateway);
     }
 
+    /**
+     * Turns caching of the objects returned by the <code>findObject</code>
+     * and <code>findIObject</code> methods on or off. The objects saved,
+     * updated or deleted through the {@link DataManagerFacility} are removed
+     * from the cache; changes made by other clients are picked up once the
+     * entries expire. The changes made through the other facilities, e.g.
+     * {@link ROIFacility#saveROIs(SecurityContext, long, Collection)}, or
+     * directly through the services are not tracked either, use
+     * {@link #invalidateObjects(Collection)} after such changes. Each call
+     * returns its own copy of the cached object, which can be modified
+     * freely.
+     * 
+     * @param maxSize
+     *            The maximum number of objects to hold, pass <code>0</code>
+     *            to turn caching off.
+     * @param ttl
+     *            The time after which an object is reloaded from the server
+     * @param unit
+     *            The unit of the time to live
+     */
+    public void setObjectCache(long maxSize, long ttl, TimeUnit unit) {
+        Cache<MultiKey, IObject> old = objectCache;
+        objectCache = maxSize > 0 ? CacheBuilder.newBuilder()
+                .maximumSize(maxSize).expireAfterWrite(ttl, unit)
+                .recordStats()
+                .removalListener(new RemovalListener<MultiKey, IObject>() {
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<MultiKey, IObject> n) {
+                        if (n.getCause() != RemovalCause.REPLACED)
+                            unindexObject(n.getKey());
+                    }
+                }).<MultiKey, IObject> build() : null;
+        if (old != null)
+            old.invalidateAll();
+    }
+
+    /**
+     * Returns the statistics of the object cache or <code>null</code> if
+     * caching is turned off.
+     * 
+     * @return See above.
+     */
+    public CacheStats getObjectCacheStats() {
+        Cache<MultiKey, IObject> objects = objectCache;
+        return objects == null ? null : objects.stats();
+    }
+
+    /**
+     * Removes all the objects from the object cache.
+     */
+    public void invalidateObjectCache() {
+        Cache<MultiKey, IObject> objects = objectCache;
+        if (objects != null)
+            objects.invalidateAll();
+    }
+
+    /**
+     * Removes the specified objects from the object cache, whatever the
+     * group they were loaded for.
+     * 
+     * @param objects
+     *            The objects, the ones without id are ignored
+     */
+    public void invalidateObjects(Collection<? extends IObject> objects) {
+        Cache<MultiKey, IObject> cache = objectCache;
+        if (cache == null || CollectionUtils.isEmpty(objects))
+            return;
+        List<MultiKey> stale = new ArrayList<MultiKey>();
+        synchronized (objectGroups) {
+            for (IObject o : objects) {
+                if (o == null || o.getId() == null)
+                    continue;
+                String type = getModelName(o.getClass().getName());
+                long id = o.getId().getValue();
+                Set<Long> groups = objectGroups.remove(new MultiKey(type, id));
+                if (groups != null) {
+                    for (Long groupId : groups)
+                        stale.add(new MultiKey(groupId, type, id));
+                }
+            }
+            cache.invalidateAll(stale);
+        }
+    }
+
+    /**
+     * Adds an object to the object cache and to the index of the groups it
+     * is held for.
+     * 
+     * @param objects
+     *            The object cache.
+     * @param key
+     *            The key of the object, see {@link #getObjectKey}.
+     * @param obj
+     *            The object.
+     */
+    private void cacheObject(Cache<MultiKey, IObject> objects, MultiKey key,
+            IObject obj) {
+        synchronized (objectGroups) {
+            MultiKey object = new MultiKey(key.getKey(1), key.getKey(2));
+            Set<Long> groups = objectGroups.get(object);
+            if (groups == null) {
+                groups = new HashSet<Long>();
+                objectGroups.put(object, groups);
+            }
+            groups.add((Long) key.getKey(0));
+            objects.put(key, obj);
+        }
+    }
+
+    /**
+     * Removes an object removed from the object cache from the index of the
+     * groups it is held for, unless it has been cached again meanwhile.
+     * 
+     * @param key
+     *            The key of the object, see {@link #getObjectKey}.
+     */
+    private void unindexObject(MultiKey key) {
+        synchronized (objectGroups) {
+            Cache<MultiKey, IObject> objects = objectCache;
+            if (objects != null && objects.asMap().containsKey(key))
+                return;
+            MultiKey object = new MultiKey(key.getKey(1), key.getKey(2));
+            Set<Long> groups = objectGroups.get(object);
+            if (groups != null) {
+                groups.remove(key.getKey(0));
+                if (groups.isEmpty())
+                    objectGroups.remove(object);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the model type, e.g. <code>Image</code> for
+     * <code>Image</code>, <code>ImageI</code> or
+     * <code>omero.model.ImageI</code>.
+     * 
+     * @param klassName
+     *            The simple or full name of the model interface or class
+     * @return See above.
+     */
+    private static String getModelName(String klassName) {
+        String name = modelNames.get(klassName);
+        if (name != null)
+            return name;
+        name = klassName.substring(klassName.lastIndexOf('.') + 1);
+        if (name.length() > 1 && name.endsWith("I")) {
+            try {
+                Class<?> c = Class.forName("omero.model." + name);
+                if (!c.isInterface() && IObject.class.isAssignableFrom(c))
+                    name = name.substring(0, name.length() - 1);
+            } catch (ClassNotFoundException e) {
+                // Not an implementation class.
+            }
+        }
+        modelNames.put(klassName, name);
+        return name;
+    }
+
+    /**
+     * Returns the key of an object in the object cache.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param klassName
+     *            The type of object.
+     * @param id
+     *            The object's id.
+     * @param allGroups
+     *            Pass <code>true</code> if looking in all groups
+     * @return See above.
+     */
+    private static MultiKey getObjectKey(SecurityContext ctx,
+            String klassName, long id, boolean allGroups) {
+        return new MultiKey(allGroups ? -1L : ctx.getGroupID(),
+                getModelName(klassName), id);
+    }
+
+    /**
+     * Loads an object, from the object cache if turned on.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param klassName
+     *            The type of object to retrieve.
+     * @param id
+     *            The object's id.
+     * @param allGroups
+     *            Pass <code>true</code> to look for all groups
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws ServerError
+     *             If the object can't be loaded
+     */
+    private IObject find(SecurityContext ctx, String klassName, long id,
+            boolean allGroups) throws DSOutOfServiceException, ServerError {
+        Cache<MultiKey, IObject> objects = objectCache;
+        MultiKey key = null;
+        if (objects != null) {
+            key = getObjectKey(ctx, klassName, id, allGroups);
+            IObject obj = copy(objects.getIfPresent(key));
+            if (obj != null)
+                return obj;
+        }
+
+        Map<String, String> m = new HashMap<String, String>();
+        if (allGroups) {
+            m.put("omero.group", "-1");
+        } else {
+            m.put("omero.group", "" + ctx.getGroupID());
+        }
+
+        IQueryPrx service = gateway.getQueryService(ctx);
+        IObject obj = service.find(klassName, id, m);
+        if (objects != null) {
+            IObject copy = copy(obj);
+            if (copy != null)
+                cacheObject(objects, key, copy);
+        }
+        return obj;
+    }
+
+    /**
+     * Returns a deep copy of an object, so that the entries of the object
+     * cache are not modified by the callers.
+     * 
+     * @param obj
+     *            The object to copy, may be <code>null</code>.
+     * @return See above or <code>null</code> if the object can't be copied.
+     */
+    private static IObject copy(IObject obj) {
+        if (obj == null)
+            return null;
+        try {
+            return (IObject) SerializationUtils.clone(obj);
+        } catch (SerializationException e) {
+            // e.g. a field which is not serializable, not cached.
+            return null;
+        }
+    }
+
     /**
      * Retrieves hierarchy trees rooted by a given node.
      * i.e. the requested node as root and all of its descendants.
@@ -205,6 +493,72 @@ public class BrowseFacility extends Facility {
         return (T) PojoMapper.asDataObject(obj);
     }
 
+    /**
+     * Asynchronous version of
+     * {@link #findObject(SecurityContext, Class, long, boolean)}. The
+     * returned future completes exceptionally with a
+     * {@link DSOutOfServiceException} or {@link DSAccessException} if the
+     * object can't be retrieved.
+     *
+     * @param ctx
+     *            The security context.
+     * @param klass
+     *            The type of object to retrieve.
+     * @param id
+     *            The object's id.
+     * @param allGroups
+     *            Pass <code>true</code> to take all groups into account,
+     *            <code>false</code> to only use ctx's group
+     * @return The last version of the object (or <code>null</code> it doesn't exist).
+     */
+    public <T extends DataObject> CompletableFuture<T> findObjectAsync(
+            final SecurityContext ctx, Class<T> klass, final long id,
+            boolean allGroups) {
+        if (klass == null || id < 0)
+            return CompletableFuture.completedFuture(null);
+
+        final String klassName = PojoMapper.getModelType(klass).getSimpleName();
+        final Cache<MultiKey, IObject> objects = objectCache;
+        final MultiKey key = objects == null ? null : getObjectKey(ctx,
+                klassName, id, allGroups);
+        if (objects != null) {
+            IObject obj = copy(objects.getIfPresent(key));
+            if (obj != null)
+                return CompletableFuture.completedFuture(
+                        (T) PojoMapper.asDataObject(obj));
+        }
+
+        final Map<String, String> m = new HashMap<String, String>();
+        if (allGroups) {
+            m.put("omero.group", "-1");
+        } else {
+            m.put("omero.group", "" + ctx.getGroupID());
+        }
+
+        return invokeAsync(new AsyncCall<T>() {
+            IQueryPrx service;
+
+            @Override
+            void begin(Ice.Callback callback) throws Exception {
+                service = gateway.getQueryService(ctx);
+                service.begin_find(klassName, id, m, callback);
+            }
+
+            @Override
+            T end(Ice.AsyncResult r) throws Exception {
+                IObject obj = service.end_find(r);
+                if (obj == null)
+                    return null;
+                if (objects != null) {
+                    IObject copy = copy(obj);
+                    if (copy != null)
+                        cacheObject(objects, key, copy);
+                }
+                return (T) PojoMapper.asDataObject(obj);
+            }
+        }, "Cannot retrieve the requested object with object ID: " + id);
+    }
+
     /**
      * Retrieves an updated version of the specified object.
      *
@@ -273,15 +627,7 @@ public class BrowseFacility extends Facility {
             return null;
 
         try {
-            Map<String, String> m = new HashMap<String, String>();
-            if (allGroups) {
-                m.put("omero.group", "-1");
-            } else {
-                m.put("omero.group", "" + ctx.getGroupID());
-            }
-
-            IQueryPrx service = gateway.getQueryService(ctx);
-            return service.find(klassName, id, m);
+            return find(ctx, klassName, id, allGroups);
         } catch (Throwable t) {
             handleException(this, t,
                     "Cannot retrieve the requested object with "
@@ -317,17 +663,9 @@ public class BrowseFacility extends Facility {
             return null;
 
         try {
-            Map<String, String> m = new HashMap<String, String>();
-            if (allGroups) {
-                m.put("omero.group", "-1");
-            } else {
-                m.put("omero.group", "" + ctx.getGroupID());
-            }
-
             Class klass = PojoMapper.getModelType(pojoName);
 
-            IQueryPrx service = gateway.getQueryService(ctx);
-            IObject iobj = service.find(klass.getSimpleName(), id, m);
+            IObject iobj = find(ctx, klass.getSimpleName(), id, allGroups);
             if (iobj == null)
                 return null;
             return PojoMapper.asDataObject(iobj);
@@ -360,8 +698,8 @@ public class BrowseFacility extends Facility {
             return null;
 
         try {
-            IQueryPrx service = gateway.getQueryService(ctx);
-            return service.find(o.getClass().getName(), o.getId().getValue());
+            return find(ctx, o.getClass().getName(), o.getId().getValue(),
+                    false);
         } catch (Throwable t) {
             handleException(this, t,
                     "Cannot retrieve the requested object with "
@@ -547,6 +885,31 @@ public class BrowseFacility extends Facility {
         return Collections.emptyList();
     }
 
+    /**
+     * Asynchronous version of
+     * {@link #getProjects(SecurityContext, long, Collection)}. The returned
+     * future completes exceptionally with a {@link DSOutOfServiceException}
+     * or {@link DSAccessException} if the projects can't be loaded.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param ownerId The id of the user (if <code><0</code> the projects
+     *            of all users are considered)
+     * @param ids
+     *            The ids of the projects to fetch
+     * @return A collection of {@link ProjectData}s
+     */
+    public CompletableFuture<Collection<ProjectData>> getProjectsAsync(
+            SecurityContext ctx, long ownerId, Collection<Long> ids) {
+        ParametersI param = null;
+        if (ownerId >= 0) {
+            param = new ParametersI();
+            param.exp(omero.rtypes.rlong(ownerId));
+        }
+        return loadContainersAsync(ctx, ProjectData.class, ids, param,
+                "Could not load projects");
+    }
+
     /** Load Datasets */
 
     /**
@@ -673,6 +1036,76 @@ public class BrowseFacility extends Facility {
         return Collections.emptyList();
     }
 
+    /**
+     * Asynchronous version of
+     * {@link #getDatasets(SecurityContext, long, Collection)}. The returned
+     * future completes exceptionally with a {@link DSOutOfServiceException}
+     * or {@link DSAccessException} if the datasets can't be loaded.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param ownerId The id of the user (if <code><0</code> the datasets
+     *            of all users are considered)
+     * @param ids
+     *            The ids of the datasets to load
+     * @return A collection of {@link DatasetData}s
+     */
+    public CompletableFuture<Collection<DatasetData>> getDatasetsAsync(
+            SecurityContext ctx, long ownerId, Collection<Long> ids) {
+        ParametersI param = new ParametersI();
+        if (ownerId >= 0)
+            param.exp(omero.rtypes.rlong(ownerId));
+        param.leaves();
+        return loadContainersAsync(ctx, DatasetData.class, ids, param,
+                "Could not load datasets");
+    }
+
+    /**
+     * Loads the containers of the given type asynchronously
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param type
+     *            The type of the containers
+     * @param ids
+     *            The ids of the containers
+     * @param param
+     *            The parameters, can be <code>null</code>
+     * @param message
+     *            The context message used if the call fails
+     * @return See above
+     */
+    private <T extends DataObject> CompletableFuture<Collection<T>> loadContainersAsync(
+            final SecurityContext ctx, Class<T> type, Collection<Long> ids,
+            final ParametersI param, String message) {
+        if (CollectionUtils.isEmpty(ids))
+            return CompletableFuture.completedFuture(
+                    (Collection<T>) Collections.<T>emptyList());
+
+        final List<Long> idsList = new ArrayList<Long>(ids);
+        final String typeName = PojoMapper.getModelType(type).getName();
+        return invokeAsync(new AsyncCall<Collection<T>>() {
+            IContainerPrx service;
+
+            @Override
+            void begin(Ice.Callback callback) throws Exception {
+                service = gateway.getPojosService(ctx);
+                service.begin_loadContainerHierarchy(typeName, idsList,
+                        param, callback);
+            }
+
+            @Override
+            Collection<T> end(Ice.AsyncResult r) throws Exception {
+                List<IObject> containers = service
+                        .end_loadContainerHierarchy(r);
+                Collection<T> result = new ArrayList<T>(containers.size());
+                for (IObject obj : containers)
+                    result.add((T) PojoMapper.asDataObject(obj));
+                return result;
+            }
+        }, message);
+    }
+
     /** Load Screens */
 
     /**
@@ -1166,6 +1599,52 @@ public class BrowseFacility extends Facility {
         return Collections.emptyList();
     }
 
+    /**
+     * Asynchronous version of
+     * {@link #getImages(SecurityContext, Collection, ParametersI)}. The
+     * returned future completes exceptionally with a
+     * {@link DSOutOfServiceException} or {@link DSAccessException} if the
+     * images can't be loaded.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param ids
+     *            The ids of the images to load
+     * @param params
+     *            Custom parameters, can be <code>null</code>
+     * @return A collection of {@link ImageData}s
+     */
+    public CompletableFuture<Collection<ImageData>> getImagesAsync(
+            final SecurityContext ctx, Collection<Long> ids,
+            final ParametersI params) {
+        if (CollectionUtils.isEmpty(ids))
+            return CompletableFuture.completedFuture(
+                    (Collection<ImageData>) Collections.<ImageData>emptyList());
+
+        final List<Long> idsList = new ArrayList<Long>(ids);
+        return invokeAsync(new AsyncCall<Collection<ImageData>>() {
+            IContainerPrx service;
+
+            @Override
+            void begin(Ice.Callback callback) throws Exception {
+                service = gateway.getPojosService(ctx);
+                service.begin_getImages(
+                        PojoMapper.getModelType(ImageData.class).getName(),
+                        idsList, params, callback);
+            }
+
+            @Override
+            Collection<ImageData> end(Ice.AsyncResult r) throws Exception {
+                List<Image> images = service.end_getImages(r);
+                Collection<ImageData> result = new ArrayList<ImageData>(
+                        images.size());
+                for (Image img : images)
+                    result.add((ImageData) PojoMapper.asDataObject(img));
+                return result;
+            }
+        }, "Could not load images");
+    }
+
     /**
      * Get orphaned images for a certain user
      *
@@ -1201,6 +1680,469 @@ public class BrowseFacility extends Facility {
         return Collections.emptySet();
     }
 
+    /** Paged iteration */
+
+    /**
+     * Iterates over the images of the logged in user (or of all users if
+     * the {@link SecurityContext} doesn't specify an experimenter), loading
+     * them one page at a time, see {@link PagedIterator}. Unlike
+     * {@link #getUserImages(SecurityContext)}, the size of the requests and
+     * the memory used don't grow with the number of images.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pageSize
+     *            The number of images loaded per request
+     * @return See above.
+     */
+    public PagedIterator<ImageData> iterateUserImages(
+            final SecurityContext ctx, int pageSize) {
+        return new PagedIterator<ImageData>(gateway, pageSize) {
+            @Override
+            List<Long> loadIds(long lastId, int limit)
+                    throws DSOutOfServiceException, DSAccessException {
+                StringBuilder sb = new StringBuilder();
+                sb.append("select img.id from Image as img ");
+                sb.append("where img.id > :lastId");
+                ParametersI param = new ParametersI();
+                if (ctx.getExperimenter() >= 0) {
+                    sb.append(" and img.details.owner.id = :userID");
+                    param.addLong("userID", ctx.getExperimenter());
+                }
+                sb.append(" order by img.id");
+                return loadPageIds(ctx, sb.toString(), param, lastId, limit,
+                        "Could not load images");
+            }
+
+            @Override
+            Collection<ImageData> load(List<Long> ids)
+                    throws DSOutOfServiceException, DSAccessException {
+                return getImages(ctx, ids);
+            }
+        };
+    }
+
+    /**
+     * Iterates over the orphaned images, i.e. neither in a dataset nor in a
+     * well, loading them one page at a time, see {@link PagedIterator}.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param userID
+     *            The id of the user (if <code>&lt;0</code> the images of all
+     *            users are considered)
+     * @param pageSize
+     *            The number of images loaded per request
+     * @return See above.
+     */
+    public PagedIterator<ImageData> iterateOrphanedImages(
+            final SecurityContext ctx, final long userID, int pageSize) {
+        return new PagedIterator<ImageData>(gateway, pageSize) {
+            @Override
+            List<Long> loadIds(long lastId, int limit)
+                    throws DSOutOfServiceException, DSAccessException {
+                StringBuilder sb = new StringBuilder();
+                sb.append("select img.id from Image as img ");
+                sb.append("where img.id > :lastId");
+                sb.append(" and not exists (select obl from "
+                        + "DatasetImageLink as obl where obl.child = img.id)");
+                sb.append(" and not exists (select ws from WellSample as "
+                        + "ws where ws.image = img.id)");
+                ParametersI param = new ParametersI();
+                if (userID >= 0) {
+                    sb.append(" and img.details.owner.id = :userID");
+                    param.addLong("userID", userID);
+                }
+                sb.append(" order by img.id");
+                return loadPageIds(ctx, sb.toString(), param, lastId, limit,
+                        "Could not load orphaned images");
+            }
+
+            @Override
+            Collection<ImageData> load(List<Long> ids)
+                    throws DSOutOfServiceException, DSAccessException {
+                return getImages(ctx, ids);
+            }
+        };
+    }
+
+    /**
+     * Iterates over the datasets, loading them one page at a time, see
+     * {@link PagedIterator}. The datasets are loaded like by
+     * {@link #getDatasets(SecurityContext)}, i.e. without their images.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pageSize
+     *            The number of datasets loaded per request
+     * @return See above.
+     */
+    public PagedIterator<DatasetData> iterateDatasets(
+            final SecurityContext ctx, int pageSize) {
+        return new PagedIterator<DatasetData>(gateway, pageSize) {
+            @Override
+            List<Long> loadIds(long lastId, int limit)
+                    throws DSOutOfServiceException, DSAccessException {
+                return loadPageIds(ctx, "select d.id from Dataset as d "
+                        + "where d.id > :lastId order by d.id",
+                        new ParametersI(), lastId, limit,
+                        "Could not load datasets");
+            }
+
+            @Override
+            Collection<DatasetData> load(List<Long> ids)
+                    throws DSOutOfServiceException, DSAccessException {
+                try {
+                    // Unlike getDatasets(ctx, ids), don't load the images.
+                    IContainerPrx service = gateway.getPojosService(ctx);
+                    List<IObject> datasets = service.loadContainerHierarchy(
+                            PojoMapper.getModelType(DatasetData.class)
+                                    .getName(), ids, new ParametersI());
+                    Collection<DatasetData> result =
+                            new ArrayList<DatasetData>(datasets.size());
+                    for (IObject ds : datasets)
+                        result.add((DatasetData) PojoMapper.asDataObject(ds));
+                    return result;
+                } catch (Throwable t) {
+                    handleException(BrowseFacility.this, t,
+                            "Could not load datasets");
+                }
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the projects, loading them one page at a time, see
+     * {@link PagedIterator}. The projects are loaded like by
+     * {@link #getProjects(SecurityContext)}.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pageSize
+     *            The number of projects loaded per request
+     * @return See above.
+     */
+    public PagedIterator<ProjectData> iterateProjects(
+            final SecurityContext ctx, int pageSize) {
+        return new PagedIterator<ProjectData>(gateway, pageSize) {
+            @Override
+            List<Long> loadIds(long lastId, int limit)
+                    throws DSOutOfServiceException, DSAccessException {
+                return loadPageIds(ctx, "select p.id from Project as p "
+                        + "where p.id > :lastId order by p.id",
+                        new ParametersI(), lastId, limit,
+                        "Could not load projects");
+            }
+
+            @Override
+            Collection<ProjectData> load(List<Long> ids)
+                    throws DSOutOfServiceException, DSAccessException {
+                return getProjects(ctx, ids);
+            }
+        };
+    }
+
+    /**
+     * Runs the query selecting the ids of a page.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param query
+     *            The query, selecting the ids greater than
+     *            <code>:lastId</code> in ascending order
+     * @param param
+     *            The parameters of the query
+     * @param lastId
+     *            The last id of the previous page
+     * @param limit
+     *            The maximum number of ids
+     * @param message
+     *            The message used if the query fails
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    private List<Long> loadPageIds(SecurityContext ctx, String query,
+            ParametersI param, long lastId, int limit, String message)
+            throws DSOutOfServiceException, DSAccessException {
+        try {
+            param.addLong("lastId", lastId);
+            param.page(0, limit);
+            IQueryPrx svc = gateway.getQueryService(ctx);
+            List<List<RType>> rows = svc.projection(query, param);
+            List<Long> ids = new ArrayList<Long>(rows.size());
+            for (List<RType> row : rows)
+                ids.add(((RLong) row.get(0)).getValue());
+            return ids;
+        } catch (Throwable t) {
+            handleException(this, t, message);
+        }
+        return Collections.emptyList();
+    }
+
+    /** Listings */
+
+    /**
+     * Lists the images of the logged in user (or of all users if the
+     * {@link SecurityContext} doesn't specify an experimenter), in ascending
+     * id order. Unlike {@link #getUserImages(SecurityContext)}, only the
+     * id, owner, name, dimensions and pixels type of the images are loaded,
+     * see {@link ImageListing}. The images are loaded a page at a time,
+     * each page being added to the listing before the next one is loaded.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public ImageListing listUserImages(SecurityContext ctx)
+            throws DSOutOfServiceException, DSAccessException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("select img.id from Image as img ");
+        sb.append("where img.id > :lastId");
+        ParametersI param = new ParametersI();
+        if (ctx.getExperimenter() >= 0) {
+            sb.append(" and img.details.owner.id = :userID");
+            param.addLong("userID", ctx.getExperimenter());
+        }
+        sb.append(" order by img.id");
+        ImageListing result = new ImageListing(0);
+        long lastId = -1;
+        List<Long> ids;
+        do {
+            ids = loadPageIds(ctx, sb.toString(), param, lastId, MAX_IDS,
+                    "Could not load images");
+            addImages(ctx, result, ids);
+            if (!ids.isEmpty())
+                lastId = ids.get(ids.size() - 1);
+        } while (ids.size() == MAX_IDS);
+        result.trimToSize();
+        return result;
+    }
+
+    /**
+     * Lists the images with the specified ids, in ascending id order.
+     * Unlike {@link #getImages(SecurityContext, Collection)}, only the id,
+     * owner, name, dimensions and pixels type of the images are loaded, see
+     * {@link ImageListing}.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param ids
+     *            The ids of the images
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public ImageListing listImages(SecurityContext ctx, Collection<Long> ids)
+            throws DSOutOfServiceException, DSAccessException {
+        if (CollectionUtils.isEmpty(ids))
+            return new ImageListing(0);
+        List<Long> sorted = new ArrayList<Long>(new TreeSet<Long>(ids));
+        ImageListing result = new ImageListing(0);
+        for (int i = 0; i < sorted.size(); i += MAX_IDS)
+            addImages(ctx, result, sorted.subList(i,
+                    Math.min(i + MAX_IDS, sorted.size())));
+        result.trimToSize();
+        return result;
+    }
+
+    /**
+     * Lists the images contained in the specified datasets, in ascending id
+     * order. The images are selected through the links of the datasets,
+     * without loading the datasets, and only their id, owner, name,
+     * dimensions and pixels type are loaded, see {@link ImageListing}. An
+     * image contained in several datasets is listed once.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param datasetIds
+     *            The ids of the datasets
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public ImageListing listImagesForDatasets(SecurityContext ctx,
+            Collection<Long> datasetIds) throws DSOutOfServiceException,
+            DSAccessException {
+        if (CollectionUtils.isEmpty(datasetIds))
+            return new ImageListing(0);
+        String query = "select distinct img.id from DatasetImageLink as link "
+                + "join link.child as img where link.parent.id in (:ids)";
+        List<Long> idsList = new ArrayList<Long>(
+                new LinkedHashSet<Long>(datasetIds));
+        // Only the ids are held, an image may be in several chunks.
+        Set<Long> imageIds = new TreeSet<Long>();
+        for (int i = 0; i < idsList.size(); i += MAX_IDS) {
+            ParametersI param = new ParametersI();
+            param.addIds(idsList.subList(i,
+                    Math.min(i + MAX_IDS, idsList.size())));
+            for (List<RType> row : project(ctx, query, param,
+                    "Could not load images"))
+                imageIds.add(ObjectListing.toLong(row.get(0)));
+        }
+        return listImages(ctx, imageIds);
+    }
+
+    /**
+     * Lists the datasets of a user, in ascending id order. Unlike
+     * {@link #getDatasets(SecurityContext, long)}, only the id, owner and
+     * name of the datasets are loaded, the images are not, see
+     * {@link DatasetListing}. The datasets are loaded a page at a time,
+     * each page being added to the listing before the next one is loaded.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param ownerId
+     *            The id of the user (if <code>&lt;0</code> the datasets of
+     *            all users are listed)
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public DatasetListing listDatasets(SecurityContext ctx, long ownerId)
+            throws DSOutOfServiceException, DSAccessException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("select " + DatasetListing.COLUMNS + " from Dataset as d ");
+        sb.append("where d.id > :lastId ");
+        ParametersI param = new ParametersI();
+        if (ownerId >= 0) {
+            sb.append("and d.details.owner.id = :userID ");
+            param.addLong("userID", ownerId);
+        }
+        sb.append("order by d.id");
+        DatasetListing result = new DatasetListing(0);
+        long lastId = -1;
+        List<List<RType>> page;
+        do {
+            param.addLong("lastId", lastId);
+            param.page(0, MAX_IDS);
+            page = project(ctx, sb.toString(), param,
+                    "Could not load datasets");
+            for (List<RType> row : page)
+                result.add(row);
+            if (!page.isEmpty())
+                lastId = result.getId(result.size() - 1);
+        } while (page.size() == MAX_IDS);
+        result.trimToSize();
+        return result;
+    }
+
+    /**
+     * Lists the wells of a plate, in ascending id order. Unlike
+     * {@link #getWells(SecurityContext, long)}, only the id, owner, plate,
+     * row and column of the wells are loaded, the well samples and images
+     * are not, see {@link WellListing}.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param plateId
+     *            The id of the plate
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public WellListing listWells(SecurityContext ctx, long plateId)
+            throws DSOutOfServiceException, DSAccessException {
+        if (plateId < 0)
+            return new WellListing(0);
+        ParametersI param = new ParametersI();
+        param.addLong("plateID", plateId);
+        List<List<RType>> rows = project(ctx, "select "
+                + WellListing.COLUMNS + " from Well as well "
+                + "where well.plate.id = :plateID order by well.id", param,
+                "Could not load wells");
+        WellListing result = new WellListing(rows.size());
+        for (List<RType> row : rows)
+            result.add(row);
+        return result;
+    }
+
+    /**
+     * Runs a projection query.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param query
+     *            The query
+     * @param param
+     *            The parameters of the query
+     * @param message
+     *            The message used if the query fails
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    private List<List<RType>> project(SecurityContext ctx, String query,
+            ParametersI param, String message)
+            throws DSOutOfServiceException, DSAccessException {
+        try {
+            IQueryPrx svc = gateway.getQueryService(ctx);
+            return svc.projection(query, param);
+        } catch (Throwable t) {
+            handleException(this, t, message);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Adds the images with the specified ids to a listing. One row is added
+     * per image, even if it has several pixels sets.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param listing
+     *            The listing
+     * @param ids
+     *            The ids of the images, in ascending order, greater than the
+     *            ids of the listing, at most {@link #MAX_IDS}
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    private void addImages(SecurityContext ctx, ImageListing listing,
+            List<Long> ids) throws DSOutOfServiceException, DSAccessException {
+        if (ids.isEmpty())
+            return;
+        ParametersI param = new ParametersI();
+        param.addIds(ids);
+        List<List<RType>> rows = project(ctx, "select " + ImageListing.COLUMNS
+                + " from Image as img " + ImageListing.JOINS
+                + "where img.id in (:ids) order by img.id", param,
+                "Could not load images");
+        for (List<RType> row : rows) {
+            int n = listing.size();
+            if (n == 0 || listing.getId(n - 1) != ObjectListing.toLong(
+                    row.get(0)))
+                listing.add(row);
+        }
+    }
+
     /**
      * Loads the images for a particular user
      *
@@ -1251,7 +2193,9 @@ public class BrowseFacility extends Facility {
     }
 
     /**
-     * Load all images belonging to particular datasets
+     * Load all images belonging to particular datasets. The images are
+     * selected through the links of the datasets, without loading the
+     * datasets; each image is returned once.
      *
      * @param ctx
      *            The {@link SecurityContext}
@@ -1266,30 +2210,14 @@ public class BrowseFacility extends Facility {
      */
     public Collection<ImageData> getImagesForDatasets(SecurityContext ctx,
             Collection<Long> datasetIds) throws DSOutOfServiceException, DSAccessException {
-        if (CollectionUtils.isEmpty(datasetIds))
-            return Collections.emptyList();
-
-        try {
-            Collection<ImageData> result = new ArrayList<ImageData>();
-
-            Collection<DatasetData> datasets = getDatasets(ctx, datasetIds);
-            for (DatasetData ds : datasets) {
-                for (Object obj : ds.getImages()) {
-                    if (obj instanceof ImageData)
-                        result.add((ImageData) obj);
-                }
-            }
-
-            return result;
-        } catch (Throwable t) {
-            handleException(this, t, "Could not load images");
-        }
-
-        return Collections.emptyList();
+        return getLinkedImages(ctx, "from DatasetImageLink as link "
+                + "join link.child as img ", "link.parent.id", datasetIds);
     }
 
     /**
-     * Load all images belonging to particular projects
+     * Load all images belonging to particular projects. The images are
+     * selected through the links of the projects and datasets, without
+     * loading the containers; each image is returned once.
      *
      * @param ctx
      *            The {@link SecurityContext}
@@ -1304,22 +2232,118 @@ public class BrowseFacility extends Facility {
      */
     public Collection<ImageData> getImagesForProjects(SecurityContext ctx,
             Collection<Long> projectIds) throws DSOutOfServiceException, DSAccessException {
-        if (CollectionUtils.isEmpty(projectIds))
+        return getLinkedImages(ctx, "from ProjectDatasetLink as pdl "
+                + "join pdl.child as ds join ds.imageLinks as link "
+                + "join link.child as img ", "pdl.parent.id", projectIds);
+    }
+
+    /**
+     * Loads the images linked to the specified containers. The ids are
+     * split into chunks of at most {@link #MAX_IDS}, at most
+     * {@link #MAX_CONCURRENT_CHUNKS} of them being queried concurrently.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param from
+     *            The <code>from</code> clause, joining the links to the
+     *            images aliased <code>img</code>
+     * @param idPath
+     *            The property path of the ids of the containers
+     * @param ids
+     *            The ids of the containers
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    private Collection<ImageData> getLinkedImages(final SecurityContext ctx,
+            String from, String idPath, Collection<Long> ids)
+            throws DSOutOfServiceException, DSAccessException {
+        if (CollectionUtils.isEmpty(ids))
             return Collections.emptyList();
 
-        try {
-            Collection<ProjectData> projects = getProjects(ctx, projectIds);
-            Collection<Long> dsIds = new ArrayList<Long>();
-            for (ProjectData proj : projects) {
-                for (DatasetData ds : proj.getDatasets())
-                    dsIds.add(ds.getId());
+        StringBuilder sb = new StringBuilder();
+        sb.append("select distinct img ");
+        sb.append(from);
+        sb.append("left outer join fetch img.details.owner as owner ");
+        sb.append("left outer join fetch img.pixels as pix ");
+        sb.append("left outer join fetch pix.pixelsType as pt ");
+        sb.append("where " + idPath + " in (:ids)");
+        final String query = sb.toString();
+
+        List<Long> idsList = new ArrayList<Long>(new LinkedHashSet<Long>(ids));
+        List<ParametersI> params = new ArrayList<ParametersI>();
+        for (int i = 0; i < idsList.size(); i += MAX_IDS) {
+            ParametersI param = new ParametersI();
+            param.addIds(idsList.subList(i,
+                    Math.min(i + MAX_IDS, idsList.size())));
+            params.add(param);
+        }
+
+        // The next chunks are submitted as the previous ones are consumed.
+        List<CompletableFuture<List<IObject>>> chunks =
+                new ArrayList<CompletableFuture<List<IObject>>>();
+        Map<Long, ImageData> result = new LinkedHashMap<Long, ImageData>();
+        for (int i = 0; i < params.size(); i++) {
+            while (chunks.size() < params.size()
+                    && chunks.size() < i + MAX_CONCURRENT_CHUNKS)
+                chunks.add(findAllAsync(ctx, query,
+                        params.get(chunks.size())));
+            List<IObject> images = null;
+            try {
+                images = chunks.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                handleException(this, e, "Could not load images");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof DSOutOfServiceException)
+                    throw (DSOutOfServiceException) e.getCause();
+                if (e.getCause() instanceof DSAccessException)
+                    throw (DSAccessException) e.getCause();
+                handleException(this, e.getCause(), "Could not load images");
+            }
+            chunks.set(i, null);
+            // An image may be linked to containers of different chunks.
+            for (IObject img : images) {
+                Long id = img.getId().getValue();
+                if (!result.containsKey(id))
+                    result.put(id, (ImageData) PojoMapper.asDataObject(img));
             }
-            return getImagesForDatasets(ctx, dsIds);
-        } catch (Throwable t) {
-            handleException(this, t, "Could not load images");
         }
+        return new ArrayList<ImageData>(result.values());
+    }
 
-        return Collections.emptyList();
+    /**
+     * Runs a query asynchronously, see {@link IQueryPrx#findAllByQuery}.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param query
+     *            The query
+     * @param param
+     *            The parameters of the query
+     * @return See above.
+     */
+    private CompletableFuture<List<IObject>> findAllAsync(
+            final SecurityContext ctx, final String query,
+            final ParametersI param) {
+        return this.<List<IObject>> invokeAsync(
+                new AsyncCall<List<IObject>>() {
+            IQueryPrx service;
+
+            @Override
+            void begin(Ice.Callback callback) throws Exception {
+                service = gateway.getQueryService(ctx);
+                service.begin_findAllByQuery(query, param, callback);
+            }
+
+            @Override
+            List<IObject> end(Ice.AsyncResult r) throws Exception {
+                return service.end_findAllByQuery(r);
+            }
+        }, "Could not load images");
     }
 
     /**
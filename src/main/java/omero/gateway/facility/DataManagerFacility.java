@@ -40,12 +40,12 @@ import java.util.concurrent.Future;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 
-import omero.ServerError;
 import omero.api.IContainerPrx;
 import omero.api.IUpdatePrx;
 import omero.cmd.CmdCallbackI;
 import omero.api.RawFileStorePrx;
 import omero.cmd.Delete2;
+import omero.cmd.Request;
 import omero.cmd.graphs.ChildOption;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
@@ -186,7 +186,7 @@ public class DataManagerFacility extends Facility {
 
             Delete2 del = Requests.delete().target(targetObjects)
                     .option(new ChildOption(inc, ex, null, null)).build();
-            return gateway.submit(ctx, del);
+            return submitDelete(ctx, del);
         } catch (Throwable t) {
             handleException(this, t, "Cannot delete the object.");
         }
@@ -217,13 +217,38 @@ public class DataManagerFacility extends Facility {
             for (final IObject object : objects) {
                 request.target(object);
             }
-            return gateway.submit(ctx, request.build());
+            return submitDelete(ctx, request.build());
         } catch (Throwable t) {
             handleException(this, t, "Cannot delete the object.");
         }
         return null;
     }
     
+    /**
+     * Submits a deletion. The deletion may cascade to any number of objects,
+     * so the object cache of the {@link BrowseFacility} is cleared, and
+     * cleared again once the deletion has finished, since the objects may
+     * have been loaded meanwhile.
+     *
+     * @param ctx
+     *            The security context.
+     * @param del
+     *            The deletion.
+     * @return The {@link CmdCallbackI}
+     * @throws Throwable
+     *             If the deletion can't be submitted.
+     */
+    private CmdCallbackI submitDelete(SecurityContext ctx, Request del)
+            throws Throwable {
+        browse.invalidateObjectCache();
+        return gateway.submit(ctx, del, new Runnable() {
+            @Override
+            public void run() {
+                browse.invalidateObjectCache();
+            }
+        });
+    }
+
     /**
      * Updates the specified object.
      *
@@ -248,9 +273,11 @@ public class DataManagerFacility extends Facility {
         
         try {
             IUpdatePrx service = gateway.getUpdateService(ctx);
-            if (options == null)
-                return service.saveAndReturnObject(object);
-            return service.saveAndReturnObject(object, options);
+            IObject result = options == null ? service
+                    .saveAndReturnObject(object) : service.saveAndReturnObject(
+                    object, options);
+            invalidate(object, result);
+            return result;
         } catch (Throwable t) {
             handleException(this, t, "Cannot update the object.");
         }
@@ -304,6 +331,7 @@ public class DataManagerFacility extends Facility {
         try {
             IUpdatePrx service = gateway.getUpdateService(ctx);
             IObject result = service.saveAndReturnObject(object);
+            invalidate(object, result);
             return result;
         } catch (Throwable t) {
             handleException(this, t, "Cannot update the object.");
@@ -338,10 +366,11 @@ public class DataManagerFacility extends Facility {
         
         try {
             IUpdatePrx service = gateway.getUpdateService(ctx, userName);
-
-            if (options == null)
-                return service.saveAndReturnObject(object);
-            return service.saveAndReturnObject(object, options);
+            IObject result = options == null ? service
+                    .saveAndReturnObject(object) : service.saveAndReturnObject(
+                    object, options);
+            invalidate(object, result);
+            return result;
         } catch (Throwable t) {
             handleException(this, t, "Cannot update the object.");
         }
@@ -400,6 +429,7 @@ public class DataManagerFacility extends Facility {
         try {
             IUpdatePrx service = gateway.getUpdateService(ctx, userName);
             IObject result = service.saveAndReturnObject(object);
+            invalidate(object, result);
             return result;
         } catch (Throwable t) {
             handleException(this, t, "Cannot update the object.");
@@ -434,7 +464,10 @@ public class DataManagerFacility extends Facility {
         
         try {
             IUpdatePrx service = gateway.getUpdateService(ctx, userName);
-            return service.saveAndReturnArray(objects);
+            List<IObject> result = service.saveAndReturnArray(objects);
+            browse.invalidateObjects(objects);
+            browse.invalidateObjects(result);
+            return result;
         } catch (Throwable t) {
             handleException(this, t, "Cannot update the object.");
         }
@@ -467,6 +500,7 @@ public class DataManagerFacility extends Facility {
         try {
             IContainerPrx service = gateway.getPojosService(ctx);
             IObject r = service.updateDataObject(object, options);
+            invalidate(object, r);
             return browse.findIObject(ctx, r);
         } catch (Throwable t) {
             handleException(this, t, "Cannot update the object.");
@@ -501,8 +535,10 @@ public class DataManagerFacility extends Facility {
         try {
             IContainerPrx service = gateway.getPojosService(ctx);
             List<IObject> l = service.updateDataObjects(objects, options);
+            browse.invalidateObjects(objects);
             if (l == null)
                 return l;
+            browse.invalidateObjects(l);
             Iterator<IObject> i = l.iterator();
             List<IObject> r = new ArrayList<IObject>(l.size());
             IObject io;
@@ -663,7 +699,7 @@ public class DataManagerFacility extends Facility {
                     originalFile = (OriginalFile) saveAndReturnObject(ctx,
                             originalFile);
 
-                    rawFileStore = gateway.getRawFileService(ctx);
+                    rawFileStore = gateway.acquireRawFileStore(ctx);
                     rawFileStore.setFileId(originalFile.getId().getValue());
                     stream = new FileInputStream(file);
                     long pos = 0;
@@ -672,11 +708,7 @@ public class DataManagerFacility extends Facility {
                     ByteBuffer bbuf;
                     while (((rlen = stream.read(buf)) > 0)) {
                         if (Thread.currentThread().isInterrupted()) {
-                            stream.close();
-                            try {
-                                rawFileStore.close();
-                            } catch (ServerError e) {
-                            }
+                            // closed in finally, it holds unsaved data
                             return null;
                         }
                         rawFileStore.write(buf, pos, rlen);
@@ -686,6 +718,8 @@ public class DataManagerFacility extends Facility {
                     }
 
                     originalFile = rawFileStore.save();
+                    gateway.releaseService(ctx, rawFileStore);
+                    rawFileStore = null;
                     FileAnnotation fa = new FileAnnotationI();
                     fa.setFile(originalFile);
                     if (description != null)
@@ -701,12 +735,8 @@ public class DataManagerFacility extends Facility {
                 } finally {
                     if (stream != null)
                         stream.close();
-                    if (rawFileStore != null) {
-                        try {
-                            rawFileStore.close();
-                        } catch (ServerError e) {
-                        }
-                    }
+                    if (rawFileStore != null)
+                        gateway.closeService(ctx, rawFileStore);
                 }
             }
         };
@@ -808,4 +838,19 @@ public class DataManagerFacility extends Facility {
         return null;
     }
     
+    /**
+     * Removes the saved object from the cache of the {@link BrowseFacility}.
+     * 
+     * @param object
+     *            The object passed to the server
+     * @param result
+     *            The object returned by the server, may be <code>null</code>
+     */
+    private void invalidate(IObject object, IObject result) {
+        List<IObject> l = new ArrayList<IObject>(2);
+        l.add(object);
+        l.add(result);
+        browse.invalidateObjects(l);
+    }
+
 }
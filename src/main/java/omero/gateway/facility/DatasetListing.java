@@ -0,0 +1,75 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.facility;
+
+import java.util.Arrays;
+import java.util.List;
+
+import omero.RType;
+
+/**
+ * A compact listing of datasets: the id, owner and name of each dataset,
+ * see {@link ObjectListing}.
+ *
+ * @since 5.5
+ */
+public class DatasetListing extends ObjectListing {
+
+    /** The columns of the projection query, on the <code>d</code> alias. */
+    static final String COLUMNS = "d.id, d.details.owner.id, d.name";
+
+    /** The names of the datasets. */
+    private String[] names;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The initial capacity.
+     */
+    DatasetListing(int capacity) {
+        super(capacity);
+        names = new String[capacity];
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        names = Arrays.copyOf(names, capacity);
+    }
+
+    @Override
+    int add(List<RType> row) {
+        int i = super.add(row);
+        names[i] = toText(row.get(2));
+        return i;
+    }
+
+    /**
+     * Returns the name of a dataset.
+     *
+     * @param index The index of the dataset.
+     * @return See above.
+     */
+    public String getName(int index) {
+        return names[checkIndex(index)];
+    }
+
+}
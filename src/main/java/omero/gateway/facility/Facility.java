@@ -25,6 +25,7 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.net.UnknownHostException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import ome.conditions.SessionTimeoutException;
@@ -34,11 +35,14 @@ import omero.ResourceError;
 import omero.SecurityViolation;
 import omero.SessionException;
 import omero.gateway.Gateway;
+import omero.gateway.TrackedCallback;
 import omero.gateway.exception.ConnectionStatus;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.log.LogMessage;
 import Glacier2.CannotCreateSessionException;
+import Ice.AsyncResult;
+import Ice.Callback;
 import Ice.CommunicatorDestroyedException;
 import Ice.ConnectionLostException;
 import Ice.ConnectionRefusedException;
@@ -305,6 +309,111 @@ public abstract class Facility {
         throw new DSAccessException("Cannot access data. \n" + message, t);
     }
 
+    /**
+     * Runs an asynchronous (AMI) Ice invocation and exposes its outcome as a
+     * {@link CompletableFuture}. No thread is blocked while the request is
+     * in flight; the future is completed by the Ice client thread pool, so
+     * dependent stages doing expensive work should use one of the
+     * <code>*Async</code> methods of {@link CompletableFuture} with an
+     * executor. Failures are translated like in
+     * {@link #handleException(Object, Throwable, String)}, i.e. the future
+     * completes exceptionally with a {@link DSOutOfServiceException} or a
+     * {@link DSAccessException}. The invocation is counted as in flight by
+     * the connector of the service until its result has been collected, see
+     * {@link TrackedCallback}.
+     * 
+     * @param call
+     *            The invocation
+     * @param message
+     *            The context message used if the invocation fails
+     * @return See above
+     */
+    <T> CompletableFuture<T> invokeAsync(final AsyncCall<T> call,
+            final String message) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        TrackedCallback callback = new TrackedCallback() {
+            @Override
+            public void completed(AsyncResult r) {
+                T result = null;
+                Throwable error = null;
+                try {
+                    result = call.end(r);
+                } catch (Throwable t) {
+                    error = t;
+                }
+                // Not in flight anymore when the dependent stages run.
+                done(error);
+                if (error == null)
+                    future.complete(result);
+                else
+                    future.completeExceptionally(translateException(error,
+                            message));
+            }
+        };
+        try {
+            call.begin(callback);
+        } catch (Throwable t) {
+            callback.done(t);
+            future.completeExceptionally(translateException(t, message));
+        }
+        return future;
+    }
+
+    /**
+     * Converts the exception into the one
+     * {@link #handleException(Object, Throwable, String)} would throw.
+     * 
+     * @param t
+     *            The exception
+     * @param message
+     *            The context message
+     * @return See above
+     */
+    private Throwable translateException(Throwable t, String message) {
+        try {
+            handleException(this, t, message);
+        } catch (DSOutOfServiceException e) {
+            return e;
+        } catch (DSAccessException e) {
+            return e;
+        }
+        return t;
+    }
+
+    /**
+     * An asynchronous Ice invocation, see
+     * {@link Facility#invokeAsync(AsyncCall, String)}
+     * 
+     * @param <T>
+     *            The type of the result
+     */
+    abstract static class AsyncCall<T> {
+
+        /**
+         * Starts the invocation, i.e. calls the <code>begin_</code> method
+         * of the service passing the callback along.
+         * 
+         * @param callback
+         *            The callback to pass to the <code>begin_</code> method
+         * @throws Exception
+         *             If the invocation can't be started
+         */
+        abstract void begin(Callback callback) throws Exception;
+
+        /**
+         * Collects the result of the invocation, i.e. calls the
+         * <code>end_</code> method of the service and converts the returned
+         * value if required.
+         * 
+         * @param r
+         *            The result handed to the callback
+         * @return See above
+         * @throws Exception
+         *             If the invocation failed
+         */
+        abstract T end(AsyncResult r) throws Exception;
+    }
+
     /**
      * Returns one of the constants defined by this class or <code>-1</code>.
      * 
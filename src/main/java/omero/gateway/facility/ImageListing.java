@@ -0,0 +1,194 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.facility;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import omero.RType;
+
+/**
+ * A compact listing of images: the id, owner, name, dimensions and pixels
+ * type of each image, see {@link ObjectListing}. The dimensions are
+ * <code>-1</code> and the pixels type <code>null</code> for an image
+ * without pixels. For an image with several pixels sets, they are the ones
+ * of the first pixels set returned by the server.
+ *
+ * @since 5.5
+ */
+public class ImageListing extends ObjectListing {
+
+    /**
+     * The columns of the projection query, on the <code>img</code>,
+     * <code>pix</code> and <code>pt</code> aliases, see {@link #JOINS}.
+     */
+    static final String COLUMNS = "img.id, img.details.owner.id, img.name, "
+            + "pix.sizeX, pix.sizeY, pix.sizeZ, pix.sizeC, pix.sizeT, "
+            + "pt.value";
+
+    /** The joins of the pixels and pixels type of the images. */
+    static final String JOINS = "left outer join img.pixels as pix "
+            + "left outer join pix.pixelsType as pt ";
+
+    /** The names of the images. */
+    private String[] names;
+
+    /** The number of pixels along the X-axis. */
+    private int[] sizeX;
+
+    /** The number of pixels along the Y-axis. */
+    private int[] sizeY;
+
+    /** The number of z-sections. */
+    private int[] sizeZ;
+
+    /** The number of channels. */
+    private int[] sizeC;
+
+    /** The number of timepoints. */
+    private int[] sizeT;
+
+    /** The pixels types. */
+    private String[] pixelsTypes;
+
+    /** Used to share the pixels types, there are only a few of them. */
+    private final Map<String, String> types = new HashMap<String, String>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The initial capacity.
+     */
+    ImageListing(int capacity) {
+        super(capacity);
+        names = new String[capacity];
+        sizeX = new int[capacity];
+        sizeY = new int[capacity];
+        sizeZ = new int[capacity];
+        sizeC = new int[capacity];
+        sizeT = new int[capacity];
+        pixelsTypes = new String[capacity];
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        names = Arrays.copyOf(names, capacity);
+        sizeX = Arrays.copyOf(sizeX, capacity);
+        sizeY = Arrays.copyOf(sizeY, capacity);
+        sizeZ = Arrays.copyOf(sizeZ, capacity);
+        sizeC = Arrays.copyOf(sizeC, capacity);
+        sizeT = Arrays.copyOf(sizeT, capacity);
+        pixelsTypes = Arrays.copyOf(pixelsTypes, capacity);
+    }
+
+    @Override
+    int add(List<RType> row) {
+        int i = super.add(row);
+        names[i] = toText(row.get(2));
+        sizeX[i] = toInt(row.get(3));
+        sizeY[i] = toInt(row.get(4));
+        sizeZ[i] = toInt(row.get(5));
+        sizeC[i] = toInt(row.get(6));
+        sizeT[i] = toInt(row.get(7));
+        String type = toText(row.get(8));
+        if (type != null) {
+            String shared = types.get(type);
+            if (shared == null)
+                types.put(type, shared = type);
+            pixelsTypes[i] = shared;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the name of an image.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public String getName(int index) {
+        return names[checkIndex(index)];
+    }
+
+    /**
+     * Returns the number of pixels along the X-axis of an image.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public int getSizeX(int index) {
+        return sizeX[checkIndex(index)];
+    }
+
+    /**
+     * Returns the number of pixels along the Y-axis of an image.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public int getSizeY(int index) {
+        return sizeY[checkIndex(index)];
+    }
+
+    /**
+     * Returns the number of z-sections of an image.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public int getSizeZ(int index) {
+        return sizeZ[checkIndex(index)];
+    }
+
+    /**
+     * Returns the number of channels of an image.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public int getSizeC(int index) {
+        return sizeC[checkIndex(index)];
+    }
+
+    /**
+     * Returns the number of timepoints of an image.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public int getSizeT(int index) {
+        return sizeT[checkIndex(index)];
+    }
+
+    /**
+     * Returns the pixels type of an image, e.g. <code>uint8</code>.
+     *
+     * @param index The index of the image.
+     * @return See above.
+     */
+    public String getPixelsType(int index) {
+        return pixelsTypes[checkIndex(index)];
+    }
+
+}
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.Arrays;
 
@@ -239,21 +240,7 @@ public class MetadataFacility extends Facility {
             }
             Map<Long, List<IObject>> annos = proxy.loadAnnotations(type, ids,
                     annoTypes, userIds, null);
-            for (Entry<Long, List<IObject>> e : annos.entrySet()) {
-                long id = e.getKey();
-                DataObject dobj = null;
-                for (DataObject o : objects) {
-                    if (o.getId() == id) {
-                        dobj = o;
-                        break;
-                    }
-                }
-                List<AnnotationData> list = new ArrayList<AnnotationData>();
-                for (IObject a : e.getValue()) {
-                    list.add((AnnotationData) PojoMapper.asDataObject(a));
-                }
-                result.put(dobj, list);
-            }
+            result = asAnnotationMap(objects, annos);
         } catch (Throwable t) {
             handleException(this, t, "Cannot get annotations.");
         }
@@ -261,4 +248,113 @@ public class MetadataFacility extends Facility {
         return result;
     }
 
+    /**
+     * Asynchronous version of
+     * {@link #getAnnotations(SecurityContext, List, List, List)}. The
+     * returned future completes exceptionally with a
+     * {@link DSOutOfServiceException} or {@link DSAccessException} if the
+     * annotations can't be loaded, or with an
+     * {@link IllegalArgumentException} if the objects are not all of the
+     * same type or a type is not supported.
+     *
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param objects
+     *            The {@link DataObject}s to load the annotations for (have to
+     *            be all of the same type)
+     * @param annotationTypes
+     *            The type of annotations to load (can be <code>null</code>)
+     * @param userIds
+     *            Only load annotations of certain users (can be
+     *            <code>null</code>, i. e. all users)
+     * @return Lists of {@link AnnotationData} mapped to the {@link DataObject}
+     *         they are attached to.
+     */
+    public CompletableFuture<Map<DataObject, List<AnnotationData>>> getAnnotationsAsync(
+            final SecurityContext ctx, final List<? extends DataObject> objects,
+            List<Class<? extends AnnotationData>> annotationTypes,
+            final List<Long> userIds) {
+        if (CollectionUtils.isEmpty(objects))
+            return CompletableFuture
+                    .completedFuture((Map<DataObject, List<AnnotationData>>) new HashMap<DataObject, List<AnnotationData>>());
+
+        String t = null;
+        final List<Long> ids = new ArrayList<Long>();
+        List<String> types = null;
+        try {
+            for (DataObject obj : objects) {
+                if (t == null)
+                    t = PojoMapper.getModelType(obj.getClass()).getName();
+                else if (!t.equals(PojoMapper.getModelType(obj.getClass())
+                        .getName()))
+                    throw new IllegalArgumentException(
+                            "All objects have to be the same type");
+                ids.add(obj.getId());
+            }
+            if (annotationTypes != null) {
+                types = new ArrayList<String>(annotationTypes.size());
+                for (Class c : annotationTypes)
+                    types.add(PojoMapper.getModelType(c).getName());
+            }
+        } catch (IllegalArgumentException e) {
+            CompletableFuture<Map<DataObject, List<AnnotationData>>> failed =
+                    new CompletableFuture<Map<DataObject, List<AnnotationData>>>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        final String type = t;
+        final List<String> annoTypes = types;
+
+        return invokeAsync(
+                new AsyncCall<Map<DataObject, List<AnnotationData>>>() {
+                    IMetadataPrx proxy;
+
+                    @Override
+                    void begin(Ice.Callback callback) throws Exception {
+                        proxy = gateway.getMetadataService(ctx);
+                        proxy.begin_loadAnnotations(type, ids, annoTypes,
+                                userIds, null, callback);
+                    }
+
+                    @Override
+                    Map<DataObject, List<AnnotationData>> end(
+                            Ice.AsyncResult r) throws Exception {
+                        return asAnnotationMap(objects,
+                                proxy.end_loadAnnotations(r));
+                    }
+                }, "Cannot get annotations.");
+    }
+
+    /**
+     * Maps the loaded annotations to the {@link DataObject}s they are
+     * attached to.
+     *
+     * @param objects
+     *            The {@link DataObject}s the annotations were loaded for
+     * @param annos
+     *            The annotations by object id
+     * @return See above
+     */
+    private Map<DataObject, List<AnnotationData>> asAnnotationMap(
+            List<? extends DataObject> objects,
+            Map<Long, List<IObject>> annos) {
+        Map<DataObject, List<AnnotationData>> result = new HashMap<DataObject, List<AnnotationData>>();
+        for (Entry<Long, List<IObject>> e : annos.entrySet()) {
+            long id = e.getKey();
+            DataObject dobj = null;
+            for (DataObject o : objects) {
+                if (o.getId() == id) {
+                    dobj = o;
+                    break;
+                }
+            }
+            List<AnnotationData> list = new ArrayList<AnnotationData>();
+            for (IObject a : e.getValue()) {
+                list.add((AnnotationData) PojoMapper.asDataObject(a));
+            }
+            result.put(dobj, list);
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,206 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.facility;
+
+import java.util.Arrays;
+import java.util.List;
+
+import omero.RType;
+
+/**
+ * A compact, read-only listing of objects, as returned by the
+ * <code>list*</code> methods of the {@link BrowseFacility}. Only a few
+ * properties of each object are loaded, using a projection query, and they
+ * are held in one array per property rather than one object graph per
+ * object, so that large catalogs can be scanned using a fraction of the
+ * bandwidth and memory needed to load the corresponding
+ * {@link omero.gateway.model.DataObject}s.
+ * <p>
+ * The objects are accessed by index, from <code>0</code> to
+ * {@link #size()}<code>-1</code>, in ascending id order.
+ * </p>
+ *
+ * @since 5.5
+ */
+public abstract class ObjectListing {
+
+    /** The ids of the objects. */
+    private long[] ids;
+
+    /** The ids of the owners of the objects. */
+    private long[] ownerIds;
+
+    /** The number of objects. */
+    private int size;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The initial capacity, the listing grows as objects
+     *                 are added.
+     */
+    ObjectListing(int capacity) {
+        ids = new long[capacity];
+        ownerIds = new long[capacity];
+    }
+
+    /**
+     * Adds an object, read from a row of the projection query. The first
+     * two columns are the ids of the object and of its owner.
+     *
+     * @param row The row.
+     * @return The index of the object.
+     */
+    int add(List<RType> row) {
+        if (size == ids.length)
+            resize(Math.max(16, 2 * size));
+        ids[size] = toLong(row.get(0));
+        ownerIds[size] = toLong(row.get(1));
+        return size++;
+    }
+
+    /**
+     * Resizes the arrays holding the properties of the objects. Subclasses
+     * resize their own arrays too.
+     *
+     * @param capacity The new capacity, not less than the number of objects.
+     */
+    void resize(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        ownerIds = Arrays.copyOf(ownerIds, capacity);
+    }
+
+    /**
+     * Releases the unused capacity, once all the objects have been added.
+     */
+    void trimToSize() {
+        if (size < ids.length)
+            resize(size);
+    }
+
+    /**
+     * Returns the number of objects.
+     *
+     * @return See above.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if there's no object.
+     *
+     * @return See above.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the id of an object.
+     *
+     * @param index The index of the object.
+     * @return See above.
+     */
+    public long getId(int index) {
+        return ids[checkIndex(index)];
+    }
+
+    /**
+     * Returns the id of the owner of an object.
+     *
+     * @param index The index of the object.
+     * @return See above.
+     */
+    public long getOwnerId(int index) {
+        return ownerIds[checkIndex(index)];
+    }
+
+    /**
+     * Returns the ids of the objects, in the order of the listing.
+     *
+     * @return See above.
+     */
+    public long[] getIds() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Returns the index of the object with the specified id.
+     *
+     * @param id The id of the object.
+     * @return See above or <code>-1</code> if there's no such object.
+     */
+    public int indexOf(long id) {
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * Checks that an index is valid.
+     *
+     * @param index The index.
+     * @return The index.
+     */
+    int checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", size: " + size);
+        return index;
+    }
+
+    /**
+     * Returns the value of a numeric column.
+     *
+     * @param value The value, may be <code>null</code>.
+     * @return See above or <code>-1</code> if <code>value</code> is
+     *         <code>null</code>.
+     */
+    static long toLong(RType value) {
+        Object v = omero.rtypes.unwrap(value);
+        return v instanceof Number ? ((Number) v).longValue() : -1;
+    }
+
+    /**
+     * Returns the value of a numeric column.
+     *
+     * @param value The value, may be <code>null</code>.
+     * @return See above or <code>-1</code> if <code>value</code> is
+     *         <code>null</code>.
+     */
+    static int toInt(RType value) {
+        Object v = omero.rtypes.unwrap(value);
+        return v instanceof Number ? ((Number) v).intValue() : -1;
+    }
+
+    /**
+     * Returns the value of a text column.
+     *
+     * @param value The value, may be <code>null</code>.
+     * @return See above or <code>null</code> if <code>value</code> is
+     *         <code>null</code>.
+     */
+    static String toText(RType value) {
+        Object v = omero.rtypes.unwrap(value);
+        return v == null ? null : v.toString();
+    }
+
+}
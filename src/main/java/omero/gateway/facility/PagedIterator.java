@@ -0,0 +1,240 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.facility;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import omero.gateway.Gateway;
+import omero.gateway.exception.DSAccessException;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.gateway.model.DataObject;
+
+/**
+ * Iterates over objects loaded from the server one page at a time, in
+ * ascending id order. The pages are selected by id keyset, i.e. each page
+ * starts after the last id of the previous page, so that the pages remain
+ * cheap to query however far the iteration goes, and objects created or
+ * deleted meanwhile do not shift the pages. The next page is loaded in the
+ * background, see {@link Gateway#submitWorker(Callable)}, while the current
+ * one is consumed.
+ * <p>
+ * The {@link DSOutOfServiceException} or {@link DSAccessException} thrown
+ * when a page can't be loaded is rethrown by {@link #hasNext()} and
+ * {@link #next()} as the cause of an
+ * {@link UncheckedExecutionException}. Call {@link #close()}, or close the
+ * {@link #stream()}, to discard the page being prefetched when the
+ * iteration stops early.
+ * </p>
+ * Instances are not thread-safe.
+ *
+ * @param <T> The type of the objects
+ * @since 5.5
+ */
+public abstract class PagedIterator<T extends DataObject> implements
+        Iterator<T>, AutoCloseable {
+
+    /** Sorts the objects of a page by id. */
+    private static final Comparator<DataObject> BY_ID =
+            new Comparator<DataObject>() {
+        @Override
+        public int compare(DataObject o1, DataObject o2) {
+            return Long.compare(o1.getId(), o2.getId());
+        }
+    };
+
+    /** The objects of a page and the ids the page was selected by. */
+    private static final class Page<T> {
+
+        /** The ids of the objects. */
+        private final List<Long> ids;
+
+        /** The objects. */
+        private final List<T> objects;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param ids The ids of the objects.
+         * @param objects The objects.
+         */
+        Page(List<Long> ids, List<T> objects) {
+            this.ids = ids;
+            this.objects = objects;
+        }
+    }
+
+    /** Reference to the {@link Gateway}, used to load the pages. */
+    private final Gateway gateway;
+
+    /** The maximum number of objects per page. */
+    private final int pageSize;
+
+    /** The objects of the current page not returned yet. */
+    private Iterator<T> current = Collections.<T> emptyIterator();
+
+    /** The page being loaded or <code>null</code> if there's none left. */
+    private Future<Page<T>> next;
+
+    /** Set once the first page has been requested. */
+    private boolean started;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param gateway Reference to the {@link Gateway}.
+     * @param pageSize The maximum number of objects per page.
+     */
+    PagedIterator(Gateway gateway, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Invalid page size: "
+                    + pageSize);
+        this.gateway = gateway;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Returns the ids of the objects of a page, in ascending order.
+     *
+     * @param lastId The last id of the previous page, <code>-1</code> for
+     *               the first page.
+     * @param limit The maximum number of ids to return.
+     * @return See above.
+     * @throws DSOutOfServiceException If the connection is broken, or not
+     *                                 logged in.
+     * @throws DSAccessException If an error occurred while trying to
+     *                           retrieve data from OMERO service.
+     */
+    abstract List<Long> loadIds(long lastId, int limit)
+        throws DSOutOfServiceException, DSAccessException;
+
+    /**
+     * Loads the objects with the specified ids.
+     *
+     * @param ids The ids, not empty.
+     * @return See above.
+     * @throws DSOutOfServiceException If the connection is broken, or not
+     *                                 logged in.
+     * @throws DSAccessException If an error occurred while trying to
+     *                           retrieve data from OMERO service.
+     */
+    abstract Collection<T> load(List<Long> ids)
+        throws DSOutOfServiceException, DSAccessException;
+
+    /**
+     * Starts loading the page following the specified id.
+     *
+     * @param lastId The last id of the previous page, <code>-1</code> for
+     *               the first page.
+     * @return See above.
+     */
+    private Future<Page<T>> submit(final long lastId) {
+        return gateway.submitWorker(new Callable<Page<T>>() {
+            @Override
+            public Page<T> call() throws Exception {
+                List<Long> ids = loadIds(lastId, pageSize);
+                if (ids.isEmpty())
+                    return new Page<T>(ids, Collections.<T> emptyList());
+                List<T> objects = new ArrayList<T>(load(ids));
+                Collections.sort(objects, BY_ID);
+                return new Page<T>(ids, objects);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            started = true;
+            next = submit(-1);
+        }
+        while (!current.hasNext()) {
+            if (next == null)
+                return false;
+            Page<T> page;
+            try {
+                page = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedExecutionException(e);
+            } catch (ExecutionException e) {
+                next = null;
+                throw new UncheckedExecutionException(e.getCause());
+            }
+            // A short page is the last one.
+            next = page.ids.size() < pageSize ? null :
+                submit(page.ids.get(page.ids.size() - 1));
+            current = page.objects.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current.next();
+    }
+
+    /**
+     * Returns a sequential stream over the remaining objects. Closing the
+     * stream closes this iterator.
+     *
+     * @return See above.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.DISTINCT |
+                Spliterator.NONNULL), false).onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        close();
+                    }
+                });
+    }
+
+    /**
+     * Stops the iteration, cancelling the loading of the next page.
+     */
+    @Override
+    public void close() {
+        started = true;
+        if (next != null)
+            next.cancel(false);
+        next = null;
+        current = Collections.<T> emptyIterator();
+    }
+
+}
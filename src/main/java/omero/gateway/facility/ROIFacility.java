@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -176,6 +177,41 @@ public class ROIFacility extends Facility {
         return null;
     }
 
+    /**
+     * Asynchronous version of {@link #loadROI(SecurityContext, long)}. The
+     * returned future completes exceptionally with a
+     * {@link DSOutOfServiceException} or {@link DSAccessException} if the
+     * ROI can't be loaded.
+     *
+     * @param ctx
+     *            The security context.
+     * @param roiId
+     *            The ROI's id.
+     * @return See above.
+     */
+    public CompletableFuture<ROIResult> loadROIAsync(final SecurityContext ctx,
+            final long roiId) {
+        if (roiId < 0)
+            return CompletableFuture.completedFuture(null);
+
+        return invokeAsync(new AsyncCall<ROIResult>() {
+            IRoiPrx svc;
+
+            @Override
+            void begin(Ice.Callback callback) throws Exception {
+                svc = gateway.getROIService(ctx);
+                svc.begin_findByRoi(roiId, new RoiOptions(), callback);
+            }
+
+            @Override
+            ROIResult end(Ice.AsyncResult r) throws Exception {
+                RoiResult rr = svc.end_findByRoi(r);
+                return new ROIResult(
+                        PojoMapper.<ROIData> asCastedDataObjects(rr.rois));
+            }
+        }, "Couldn't get ROI " + roiId);
+    }
+
     /**
      * Loads the ROI related to the specified image.
      *
@@ -212,6 +248,50 @@ public class ROIFacility extends Facility {
         return results;
     }
 
+    /**
+     * Asynchronous version of
+     * {@link #loadROIsByPlane(SecurityContext, long, int, int)}. The returned
+     * future completes exceptionally with a {@link DSOutOfServiceException}
+     * or {@link DSAccessException} if the ROIs can't be loaded.
+     *
+     * @param ctx
+     *            The security context.
+     * @param imageID
+     *            The image's ID.
+     * @param z
+     *          The selection z-section.
+     * @param t
+     *          The selection timepoint.
+     * @return See above.
+     */
+    public CompletableFuture<List<ROIResult>> loadROIsByPlaneAsync(
+            final SecurityContext ctx, final long imageID, final int z,
+            final int t) {
+        if (imageID < 0)
+            return CompletableFuture
+                    .completedFuture((List<ROIResult>) new ArrayList<ROIResult>());
+
+        return invokeAsync(new AsyncCall<List<ROIResult>>() {
+            IRoiPrx svc;
+
+            @Override
+            void begin(Ice.Callback callback) throws Exception {
+                svc = gateway.getROIService(ctx);
+                svc.begin_findByPlane(imageID, z, t, new RoiOptions(),
+                        callback);
+            }
+
+            @Override
+            List<ROIResult> end(Ice.AsyncResult r) throws Exception {
+                RoiResult rr = svc.end_findByPlane(r);
+                List<ROIResult> results = new ArrayList<ROIResult>();
+                results.add(new ROIResult(
+                        PojoMapper.<ROIData> asCastedDataObjects(rr.rois)));
+                return results;
+            }
+        }, "Couldn't get ROIs by plane.");
+    }
+
 
     /**
      * Loads the ROI related to the specified image.
@@ -20,9 +20,22 @@
  */
 package omero.gateway.facility;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+import omero.api.ResolutionDescription;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
@@ -30,11 +43,23 @@ import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.exception.DataSourceException;
 import omero.gateway.model.PixelsData;
 import omero.gateway.rnd.DataSink;
+import omero.gateway.rnd.DiskTileCache;
+import omero.gateway.rnd.Hypercube;
+import omero.gateway.rnd.PixelStatistics;
 import omero.gateway.rnd.Plane2D;
+import omero.gateway.rnd.Tile;
+import omero.gateway.rnd.TileIterator;
+import omero.gateway.rnd.TileCache;
 import omero.romio.PlaneDef;
 
-import org.apache.commons.collections.MapIterator;
-import org.apache.commons.collections.map.MultiKeyMap;
+import org.apache.commons.collections.keyvalue.MultiKey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * A {@link Facility} for accessing raw data
@@ -46,8 +71,41 @@ import org.apache.commons.collections.map.MultiKeyMap;
 
 public class RawDataFacility extends Facility implements AutoCloseable {
 
-    /** Cache the {@link DataSink}s for re-use (keys: ctx.groupid and pixelsId) */
-    private MultiKeyMap cache = new MultiKeyMap();
+    /** The default maximum number of {@link DataSink}s kept open */
+    public static final long DEFAULT_MAX_DATASINKS = 100;
+
+    /** The default time (in seconds) an unused {@link DataSink} is kept open */
+    public static final long DEFAULT_DATASINK_IDLE_TIME = 300;
+
+    /** The default number of pixels stores used to read tiles in parallel */
+    public static final int DEFAULT_TILE_FETCH_PARALLELISM = 4;
+
+    /** The default maximum number of concurrent tile requests per server */
+    public static final int DEFAULT_MAX_CONCURRENT_TILE_REQUESTS = 8;
+
+    /** The maximum width and height of the tiles read to compute statistics */
+    public static final int DEFAULT_STATISTICS_TILE_SIZE = 1024;
+
+    /** The number of pixels stores used to read tiles in parallel */
+    private volatile int tileFetchParallelism = DEFAULT_TILE_FETCH_PARALLELISM;
+
+    /** The pool computing the statistics, created on first use */
+    private ForkJoinPool statisticsPool;
+
+    /**
+     * Cache the {@link DataSink}s for re-use (keys: ctx.groupid, pixelsId and
+     * resolution level).
+     * Each {@link DataSink} holds a stateful service on the server, which is
+     * closed when the {@link DataSink} is evicted, or once it is released by
+     * the calls still using it, see {@link DataSink#retain()}.
+     */
+    private volatile Cache<MultiKey, DataSink> cache;
+
+    /** The optional cache for the tiles read by {@link #getTile} */
+    private volatile TileCache tileCache;
+
+    /** The optional persistent cache for the planes and tiles */
+    private volatile DiskTileCache diskTileCache;
 
     /**
      * Creates a new instance
@@ -57,6 +115,341 @@ public class RawDataFacility extends Facility implements AutoCloseable {
      */
     RawDataFacility(Gateway gateway) {
         super(gateway);
+        cache = createCache(DEFAULT_MAX_DATASINKS, DEFAULT_DATASINK_IDLE_TIME,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sets the bounds of the {@link DataSink} cache. The {@link DataSink}s
+     * currently held are closed, once no longer in use.
+     * 
+     * @param maxSize
+     *            The maximum number of {@link DataSink}s kept open
+     * @param idleTime
+     *            The time an unused {@link DataSink} is kept open
+     * @param unit
+     *            The unit of the idle time
+     */
+    public void setDataSinkCacheLimits(long maxSize, long idleTime,
+            TimeUnit unit) {
+        Cache<MultiKey, DataSink> old = cache;
+        cache = createCache(maxSize, idleTime, unit);
+        old.invalidateAll();
+    }
+
+    /**
+     * Turns caching of the tiles read by {@link #getTile} on or off. The
+     * tiles are held outside of the Java heap, the least recently used ones
+     * are evicted when the size limit is reached. The tiles are kept when the
+     * {@link DataSink} of their pixels set is evicted, use
+     * {@link #close(SecurityContext, PixelsData)} to remove them.
+     * 
+     * @param maxBytes
+     *            The maximum number of bytes to hold, pass <code>0</code> to
+     *            turn caching off.
+     */
+    public void setTileCacheSize(long maxBytes) {
+        TileCache old = tileCache;
+        tileCache = maxBytes > 0 ? new TileCache(maxBytes) : null;
+        for (DataSink ds : cache.asMap().values())
+            ds.setTileCache(tileCache);
+        if (old != null)
+            old.clear();
+    }
+
+    /**
+     * Returns the tile cache or <code>null</code> if caching is turned off.
+     * 
+     * @return See above.
+     */
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Sets the persistent cache for the planes and tiles, pass
+     * <code>null</code> to turn it off. The same cache can be shared by
+     * several facilities. The cached data of a pixels set is discarded when
+     * the pixels set has been updated, which requires its update event to
+     * be loaded.
+     * 
+     * @param diskTileCache
+     *            The cache.
+     */
+    public void setDiskTileCache(DiskTileCache diskTileCache) {
+        this.diskTileCache = diskTileCache;
+        for (DataSink ds : cache.asMap().values())
+            ds.setDiskCache(diskTileCache);
+    }
+
+    /**
+     * Returns the persistent cache for the planes and tiles or
+     * <code>null</code> if turned off.
+     * 
+     * @return See above.
+     */
+    public DiskTileCache getDiskTileCache() {
+        return diskTileCache;
+    }
+
+    /**
+     * Closes the {@link DataSink} of the specified pixels set, if any. This
+     * also removes its tiles from the cache.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pixels
+     *            The {@link PixelsData} object
+     */
+    public void close(SecurityContext ctx, PixelsData pixels) {
+        List<MultiKey> keys = new ArrayList<MultiKey>();
+        for (MultiKey key : cache.asMap().keySet()) {
+            if (key.getKey(0).equals(ctx.getGroupID())
+                    && key.getKey(1).equals(pixels.getId()))
+                keys.add(key);
+        }
+        cache.invalidateAll(keys);
+        TileCache tiles = tileCache;
+        if (tiles != null)
+            tiles.invalidate(ctx.getGroupID(), pixels.getId());
+    }
+
+    /**
+     * Get the statistics (hit, miss and eviction counts) of the
+     * {@link DataSink} cache.
+     * 
+     * @return See above.
+     */
+    public CacheStats getDataSinkCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Creates the {@link DataSink} cache
+     * 
+     * @param maxSize
+     *            The maximum number of {@link DataSink}s kept open
+     * @param idleTime
+     *            The time an unused {@link DataSink} is kept open
+     * @param unit
+     *            The unit of the idle time
+     * @return See above.
+     */
+    private Cache<MultiKey, DataSink> createCache(long maxSize, long idleTime,
+            TimeUnit unit) {
+        return CacheBuilder.newBuilder().maximumSize(maxSize)
+                .expireAfterAccess(idleTime, unit).recordStats()
+                .removalListener(new RemovalListener<MultiKey, DataSink>() {
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<MultiKey, DataSink> n) {
+                        n.getValue().close();
+                    }
+                }).build();
+    }
+
+    /**
+     * Computes the statistics (minimum, maximum, mean, standard deviation,
+     * histogram and percentiles) of the pixel values of the whole Z/T stack
+     * of the given channels on the client. The histogram covers the range of
+     * the pixels type, see
+     * {@link #getStatistics(SecurityContext, PixelsData, int[], double, double, int)}
+     * for floating point pixels types.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pixels
+     *            The {@link PixelsData} object
+     * @param channels
+     *            The channel indices
+     * @param binCount
+     *            The number of bins of the histogram
+     * @return A {@link Map} of statistics, where the key is the channel index
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     * @throws IllegalArgumentException
+     *             If the stack has more than {@link Integer#MAX_VALUE} tiles.
+     */
+    public Map<Integer, PixelStatistics> getStatistics(SecurityContext ctx,
+            PixelsData pixels, int[] channels, int binCount)
+            throws DataSourceException {
+        if (pixels == null)
+            return Collections.emptyMap();
+
+        String type = pixels.getPixelType();
+        double min, max;
+        if (DataSink.UINT_8.equals(type)) {
+            min = 0;
+            max = 256;
+        } else if (DataSink.INT_8.equals(type)) {
+            min = Byte.MIN_VALUE;
+            max = Byte.MAX_VALUE + 1;
+        } else if (DataSink.UINT_16.equals(type)) {
+            min = 0;
+            max = 65536;
+        } else if (DataSink.INT_16.equals(type)) {
+            min = Short.MIN_VALUE;
+            max = Short.MAX_VALUE + 1;
+        } else if (DataSink.UINT_32.equals(type)) {
+            min = 0;
+            max = 4294967296d;
+        } else if (DataSink.INT_32.equals(type)) {
+            min = Integer.MIN_VALUE;
+            max = Integer.MAX_VALUE + 1d;
+        } else {
+            throw new IllegalArgumentException("A histogram range is "
+                    + "required for the pixels type " + type);
+        }
+        return getStatistics(ctx, pixels, channels, min, max, binCount);
+    }
+
+    /**
+     * Computes the statistics (minimum, maximum, mean, standard deviation,
+     * histogram and percentiles) of the pixel values of the whole Z/T stack
+     * of the given channels on the client. The planes are read as tiles of
+     * at most {@link #DEFAULT_STATISTICS_TILE_SIZE} pixels square, see
+     * {@link #getStatistics(SecurityContext, PixelsData, Collection, double, double, int)}.
+     * The tiles are created as they are read and their data is dropped once
+     * accumulated, so that the memory used does not grow with the stack.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pixels
+     *            The {@link PixelsData} object
+     * @param channels
+     *            The channel indices
+     * @param rangeMin
+     *            The lower bound of the histogram range
+     * @param rangeMax
+     *            The upper bound of the histogram range
+     * @param binCount
+     *            The number of bins of the histogram
+     * @return A {@link Map} of statistics, where the key is the channel index
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     * @throws IllegalArgumentException
+     *             If the stack has more than {@link Integer#MAX_VALUE} tiles.
+     */
+    public Map<Integer, PixelStatistics> getStatistics(SecurityContext ctx,
+            PixelsData pixels, int[] channels, double rangeMin,
+            double rangeMax, int binCount) throws DataSourceException {
+        if (pixels == null)
+            return Collections.emptyMap();
+
+        final int size = DEFAULT_STATISTICS_TILE_SIZE;
+        final int sizeX = pixels.getSizeX();
+        final int sizeY = pixels.getSizeY();
+        final int sizeZ = pixels.getSizeZ();
+        final int sizeT = pixels.getSizeT();
+        final int tilesX = (sizeX + size - 1) / size;
+        final int tilesY = (sizeY + size - 1) / size;
+        final int[] cs = channels.clone();
+        long n = (long) cs.length * sizeT * sizeZ * tilesY * tilesX;
+        if (n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many tiles: " + n);
+        final int count = (int) n;
+        // The tiles are created as they are read, in CTZYX order.
+        Collection<Tile> tiles = new AbstractCollection<Tile>() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public Iterator<Tile> iterator() {
+                return new Iterator<Tile>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < count;
+                    }
+
+                    @Override
+                    public Tile next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        int i = index++;
+                        int x = (i % tilesX) * size;
+                        i /= tilesX;
+                        int y = (i % tilesY) * size;
+                        i /= tilesY;
+                        int z = i % sizeZ;
+                        i /= sizeZ;
+                        int t = i % sizeT;
+                        int c = cs[i / sizeT];
+                        return new Tile(z, t, c, x, y,
+                                Math.min(size, sizeX - x),
+                                Math.min(size, sizeY - y));
+                    }
+                };
+            }
+        };
+        return getStatistics(ctx, pixels, tiles, rangeMin, rangeMax,
+                binCount);
+    }
+
+    /**
+     * Computes the statistics (minimum, maximum, mean, standard deviation,
+     * histogram and percentiles) of the pixel values of the given tiles on
+     * the client, per channel. The tiles are read in parallel like by
+     * {@link #getTiles(SecurityContext, PixelsData, Collection)}, then
+     * decoded and accumulated one at a time by each worker of a fork-join
+     * pool shared by the calls, with one worker per processor, and the
+     * partial results are merged. The percentiles are estimated from the histogram.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param pixels
+     *            The {@link PixelsData} object
+     * @param tiles
+     *            The tiles, e.g. whole planes or a tile grid, of any channel
+     * @param rangeMin
+     *            The lower bound of the histogram range
+     * @param rangeMax
+     *            The upper bound of the histogram range
+     * @param binCount
+     *            The number of bins of the histogram
+     * @return A {@link Map} of statistics, where the key is the channel index
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     */
+    public Map<Integer, PixelStatistics> getStatistics(SecurityContext ctx,
+            PixelsData pixels, Collection<Tile> tiles, double rangeMin,
+            double rangeMax, int binCount) throws DataSourceException {
+        if (pixels == null || tiles == null)
+            return Collections.emptyMap();
+
+        DataSink ds;
+        try {
+            ds = getDataSink(ctx, pixels, gateway);
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+        try {
+            return ds.getStatistics(tiles, rangeMin, rangeMax, binCount,
+                    tileFetchParallelism, gateway.getTileRequestPermits(),
+                    getStatisticsPool());
+        } finally {
+            ds.release();
+        }
+    }
+
+    /**
+     * Returns the pool decoding and accumulating the tiles read to compute
+     * statistics, creating it if needed. The pool is shared by all the
+     * calls and is shut down when this facility is closed.
+     * 
+     * @return See above.
+     */
+    private synchronized ForkJoinPool getStatisticsPool() {
+        if (statisticsPool == null)
+            statisticsPool = new ForkJoinPool(
+                    Runtime.getRuntime().availableProcessors());
+        return statisticsPool;
     }
 
     /**
@@ -129,8 +522,13 @@ public class RawDataFacility extends Facility implements AutoCloseable {
             if (plane == null)
                 plane = new PlaneDef(omeis.providers.re.data.PlaneDef.XY, 0, 0,
                         0, 0, null, -1);
-            return getDataSink(ctx, pixels, gateway).getHistogram(channels,
-                    binCount, globalRange, plane);
+            DataSink ds = getDataSink(ctx, pixels, gateway);
+            try {
+                return ds.getHistogram(channels, binCount, globalRange,
+                        plane);
+            } finally {
+                ds.release();
+            }
         } catch (Exception e) {
             handleException(this, e, "Couldn't get histogram data.");
         }
@@ -160,11 +558,48 @@ public class RawDataFacility extends Facility implements AutoCloseable {
      */
     public Plane2D getPlane(SecurityContext ctx, PixelsData pixels, int z,
             int t, int c) throws DSOutOfServiceException, DSAccessException {
+        return getPlane(ctx, pixels, z, t, c, 0);
+    }
+
+    /**
+     * Extracts a 2D plane from the pixels set at the specified resolution
+     * level of a pyramidal pixels set. Connection to the PixelsStore will be
+     * closed automatically.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param level
+     *            The resolution level, <code>0</code> being the full
+     *            resolution, see
+     *            {@link #getResolutionDescriptions(SecurityContext, PixelsData)}
+     * @return A plane 2D object that encapsulates the actual plane pixels.
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public Plane2D getPlane(SecurityContext ctx, PixelsData pixels, int z,
+            int t, int c, int level)
+            throws DSOutOfServiceException, DSAccessException {
         if (pixels == null)
             return null;
         
         try {
-            return getDataSink(ctx, pixels, gateway).getPlane(z, t, c);
+            DataSink ds = getDataSink(ctx, pixels, level, gateway);
+            try {
+                return ds.getPlane(z, t, c);
+            } finally {
+                ds.release();
+            }
         } catch (Exception e) {
             handleException(this, e, "Couldn't get plane z=" + z + " t=" + t
                     + " c=" + c);
@@ -201,19 +636,414 @@ public class RawDataFacility extends Facility implements AutoCloseable {
     public Plane2D getTile(SecurityContext ctx, PixelsData pixels, int z,
             int t, int c, int x, int y, int w, int h)
             throws DataSourceException {
+        return getTile(ctx, pixels, z, t, c, x, y, w, h, 0);
+    }
+
+    /**
+     * Extracts a 2D tile from the pixels set at the specified resolution
+     * level of a pyramidal pixels set. The coordinates are relative to that
+     * level.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @param w
+     *            The width of the tile
+     * @param h
+     *            The height of the tile
+     * @param level
+     *            The resolution level, <code>0</code> being the full
+     *            resolution, see
+     *            {@link #getResolutionDescriptions(SecurityContext, PixelsData)}
+     * @return A plane 2D object that encapsulates the actual tile pixels.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the plane data from the
+     *             pixels source.
+     */
+    public Plane2D getTile(SecurityContext ctx, PixelsData pixels, int z,
+            int t, int c, int x, int y, int w, int h, int level)
+            throws DataSourceException {
         if (pixels == null)
             return null;
         
         try {
-            return getDataSink(ctx, pixels, gateway).getTile(z, t, c, x, y, w,
-                    h);
+            DataSink ds = getDataSink(ctx, pixels, level, gateway);
+            try {
+                return ds.getTile(z, t, c, x, y, w, h);
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Returns the resolution levels of the pixels set, the full resolution
+     * first. A pixels set which is not pyramidal has a single level.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object.
+     * @return See above.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the levels from the
+     *             pixels source.
+     */
+    public List<ResolutionDescription> getResolutionDescriptions(
+            SecurityContext ctx, PixelsData pixels)
+            throws DataSourceException {
+        if (pixels == null)
+            return Collections.emptyList();
+
+        try {
+            DataSink ds = getDataSink(ctx, pixels, gateway);
+            try {
+                return Arrays.asList(ds.getResolutionDescriptions());
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Extracts a Z-stack from the pixels set in one call.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @return The planes of the stack in one contiguous buffer.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     */
+    public Hypercube getStack(SecurityContext ctx, PixelsData pixels, int c,
+            int t) throws DataSourceException {
+        if (pixels == null)
+            return null;
+
+        try {
+            DataSink ds = getDataSink(ctx, pixels, gateway);
+            try {
+                return ds.getStack(c, t);
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Extracts all the planes of a timepoint from the pixels set in one call.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @return The planes of the timepoint, in ZC order, in one contiguous
+     *         buffer.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     */
+    public Hypercube getTimepoint(SecurityContext ctx, PixelsData pixels,
+            int t) throws DataSourceException {
+        if (pixels == null)
+            return null;
+
+        try {
+            DataSink ds = getDataSink(ctx, pixels, gateway);
+            try {
+                return ds.getTimepoint(t);
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Extracts a 5D block from the pixels set in one call. The arrays are in
+     * <code>XYZCT</code> order.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param offset
+     *            The offset of the block.
+     * @param size
+     *            The size of the block.
+     * @param step
+     *            The step along each dimension, pass <code>null</code> to
+     *            read every pixel.
+     * @return The block in one contiguous buffer.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     */
+    public Hypercube getHypercube(SecurityContext ctx, PixelsData pixels,
+            int[] offset, int[] size, int[] step) throws DataSourceException {
+        if (pixels == null)
+            return null;
+
+        try {
+            DataSink ds = getDataSink(ctx, pixels, gateway);
+            try {
+                return ds.getHypercube(offset, size, step);
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Streams all the 2D planes of the pixels set in the given dimension
+     * order. The next planes are read ahead asynchronously, at most
+     * <code>readAhead</code> planes per split of the stream are held in
+     * memory. The planes are returned as {@link Tile}s covering the whole
+     * plane, {@link Tile#getPlane()} throws a {@link DataSourceException} if
+     * a plane could not be retrieved.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param dimensionOrder
+     *            The traversal order, e.g. <code>XYZCT</code> to vary the
+     *            z-section fastest and the timepoint slowest.
+     * @param readAhead
+     *            The maximum number of planes read ahead.
+     * @param parallel
+     *            Pass <code>true</code> for a parallel stream.
+     * @return See above. Close the stream if not all the planes are
+     *         consumed, so that the pixels store can be closed once the
+     *         {@link DataSink} is evicted.
+     * @throws DataSourceException
+     *             If the pixels source can't be accessed.
+     */
+    public Stream<Tile> getPlanes(SecurityContext ctx, PixelsData pixels,
+            String dimensionOrder, int readAhead, boolean parallel)
+            throws DataSourceException {
+        if (pixels == null)
+            return Stream.empty();
+
+        try {
+            DataSink ds = getDataSink(ctx, pixels, gateway);
+            try {
+                return ds.getPlanes(dimensionOrder, readAhead,
+                        parallel);
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Extracts 2D tiles from the pixels set. The tiles are read in parallel
+     * from several pixels stores, see {@link #setTileFetchParallelism(int)}
+     * and {@link #setMaxConcurrentTileRequests(int)}. The returned iterator
+     * blocks until the next tile is available, the tiles are returned in the
+     * order in which they complete. {@link Tile#getPlane()} throws a
+     * {@link DataSourceException} if a tile could not be retrieved. Only a
+     * few tiles per pixels store are read ahead of the consumer; close the
+     * iterator if not all the tiles are consumed.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param tiles
+     *            The tiles to fetch.
+     * @return See above.
+     * @throws DataSourceException
+     *             If the pixels source can't be accessed.
+     */
+    public TileIterator getTiles(SecurityContext ctx, PixelsData pixels,
+            Collection<Tile> tiles) throws DataSourceException {
+        return getTiles(ctx, pixels, tiles, 0);
+    }
+
+    /**
+     * Extracts 2D tiles from the pixels set at the specified resolution
+     * level of a pyramidal pixels set, see
+     * {@link #getTiles(SecurityContext, PixelsData, Collection)}. The
+     * coordinates of the tiles are relative to that level.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param tiles
+     *            The tiles to fetch.
+     * @param level
+     *            The resolution level, <code>0</code> being the full
+     *            resolution, see
+     *            {@link #getResolutionDescriptions(SecurityContext, PixelsData)}
+     * @return See above.
+     * @throws DataSourceException
+     *             If the pixels source can't be accessed.
+     */
+    public TileIterator getTiles(SecurityContext ctx, PixelsData pixels,
+            Collection<Tile> tiles, int level) throws DataSourceException {
+        if (pixels == null || tiles == null)
+            return TileIterator.empty();
+
+        try {
+            DataSink ds = getDataSink(ctx, pixels, level, gateway);
+            try {
+                return ds.getTiles(tiles, tileFetchParallelism,
+                        gateway.getTileRequestPermits());
+            } finally {
+                ds.release();
+            }
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Extracts a whole 2D plane as a grid of tiles, see
+     * {@link #getTiles(SecurityContext, PixelsData, Collection)}. The tiles
+     * at the right and bottom edges are cropped to the size of the plane.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param tileWidth
+     *            The width of the tiles
+     * @param tileHeight
+     *            The height of the tiles
+     * @return See above.
+     * @throws DataSourceException
+     *             If the pixels source can't be accessed.
+     */
+    public TileIterator getTiles(SecurityContext ctx, PixelsData pixels,
+            int z, int t, int c, int tileWidth, int tileHeight)
+            throws DataSourceException {
+        return getTiles(ctx, pixels, z, t, c, tileWidth, tileHeight, 0);
+    }
+
+    /**
+     * Extracts a whole 2D plane at the specified resolution level of a
+     * pyramidal pixels set as a grid of tiles, see
+     * {@link #getTiles(SecurityContext, PixelsData, int, int, int, int, int)}.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param tileWidth
+     *            The width of the tiles
+     * @param tileHeight
+     *            The height of the tiles
+     * @param level
+     *            The resolution level, <code>0</code> being the full
+     *            resolution, see
+     *            {@link #getResolutionDescriptions(SecurityContext, PixelsData)}
+     * @return See above.
+     * @throws DataSourceException
+     *             If the pixels source can't be accessed.
+     */
+    public TileIterator getTiles(SecurityContext ctx, PixelsData pixels,
+            int z, int t, int c, int tileWidth, int tileHeight, int level)
+            throws DataSourceException {
+        if (pixels == null)
+            return TileIterator.empty();
+        if (tileWidth <= 0 || tileHeight <= 0)
+            throw new IllegalArgumentException("Invalid tile size");
+
+        DataSink ds;
+        try {
+            ds = getDataSink(ctx, pixels, level, gateway);
         } catch (DSOutOfServiceException e) {
             throw new DataSourceException("Can't initiate DataSink", e);
         }
+        int sizeX = ds.getSizeX();
+        int sizeY = ds.getSizeY();
+        ds.release();
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int y = 0; y < sizeY; y += tileHeight) {
+            for (int x = 0; x < sizeX; x += tileWidth) {
+                tiles.add(new Tile(z, t, c, x, y,
+                        Math.min(tileWidth, sizeX - x),
+                        Math.min(tileHeight, sizeY - y)));
+            }
+        }
+        return getTiles(ctx, pixels, tiles, level);
+    }
+
+    /**
+     * Sets the number of pixels stores used by
+     * {@link #getTiles(SecurityContext, PixelsData, Collection)} to read
+     * tiles in parallel.
+     * 
+     * @param stores
+     *            The number of pixels stores
+     */
+    public void setTileFetchParallelism(int stores) {
+        if (stores < 1)
+            throw new IllegalArgumentException("Invalid number of stores");
+        this.tileFetchParallelism = stores;
+    }
+
+    /**
+     * Sets the maximum number of concurrent tile requests
+     * {@link #getTiles(SecurityContext, PixelsData, Collection)} sends to
+     * the server. The limit applies to all facilities of the {@link Gateway},
+     * see {@link Gateway#setMaxConcurrentTileRequests(int)}. Requests in
+     * flight are not affected.
+     * 
+     * @param max
+     *            The maximum number of concurrent requests
+     */
+    public void setMaxConcurrentTileRequests(int max) {
+        gateway.setMaxConcurrentTileRequests(max);
     }
 
     /**
-     * Retrieves a data sink corresponding the pixels.
+     * Retrieves a data sink corresponding the pixels, see
+     * {@link #getDataSink(SecurityContext, PixelsData, int, Gateway)}.
      *
      * @param ctx
      *            The SecurityContext
@@ -225,23 +1055,71 @@ public class RawDataFacility extends Facility implements AutoCloseable {
      * @throws DSOutOfServiceException
      *             If an error occurs when initializing the RawPixelsStore
      */
-    private DataSink getDataSink(SecurityContext ctx, PixelsData pixels,
-            Gateway gateway) throws DSOutOfServiceException {
-        DataSink ds = (DataSink) cache.get(ctx.getGroupID(), pixels.getId());
-        if (ds == null) {
-            ds = new DataSink(ctx, pixels, gateway);
-            cache.put(ctx.getGroupID(), pixels.getId(), ds);
+    private DataSink getDataSink(final SecurityContext ctx,
+            final PixelsData pixels, final Gateway gateway)
+            throws DSOutOfServiceException {
+        return getDataSink(ctx, pixels, 0, gateway);
+    }
+
+    /**
+     * Retrieves a data sink corresponding the pixels at the specified
+     * resolution level. The data sink is retained, the caller has to
+     * {@link DataSink#release()} it once done, so that it is not closed
+     * meanwhile if evicted from the cache.
+     *
+     * @param ctx
+     *            The SecurityContext
+     * @param pixels
+     *            The pixels to handle.
+     * @param level
+     *            The resolution level, <code>0</code> being the full
+     *            resolution.
+     * @param gateway
+     *            The gateway.
+     * @return See above.
+     * @throws DSOutOfServiceException
+     *             If an error occurs when initializing the RawPixelsStore
+     */
+    private DataSink getDataSink(final SecurityContext ctx,
+            final PixelsData pixels, final int level, final Gateway gateway)
+            throws DSOutOfServiceException {
+        MultiKey key = new MultiKey(ctx.getGroupID(), pixels.getId(), level);
+        try {
+            while (true) {
+                DataSink ds = cache.get(key, new Callable<DataSink>() {
+                    @Override
+                    public DataSink call() throws Exception {
+                        DataSink ds = new DataSink(ctx, pixels, gateway,
+                                level);
+                        ds.setTileCache(tileCache);
+                        ds.setDiskCache(diskTileCache);
+                        return ds;
+                    }
+                });
+                if (ds.retain())
+                    return ds;
+                // Evicted and closed meanwhile.
+                cache.asMap().remove(key, ds);
+            }
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof DSOutOfServiceException)
+                throw (DSOutOfServiceException) e.getCause();
+            throw new DSOutOfServiceException("Can't initiate DataSink",
+                    e.getCause());
         }
-        return ds;
     }
 
     @Override
     public void close() {
-        MapIterator it = cache.mapIterator();
-        while (it.hasNext()) {
-            it.next();
-            ((DataSink) it.getValue()).close();
+        cache.invalidateAll();
+        synchronized (this) {
+            if (statisticsPool != null) {
+                statisticsPool.shutdownNow();
+                statisticsPool = null;
+            }
         }
+        if (tileCache != null)
+            tileCache.clear();
         firePropertyChanged(Gateway.PROP_FACILITY_CLOSED,
                 null, getClass().getName());
         removePropertyChangeListener(null);
@@ -28,7 +28,6 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import omero.RType;
-import omero.ServerError;
 import omero.api.IQueryPrx;
 import omero.api.RawFileStorePrx;
 import omero.gateway.Gateway;
@@ -157,8 +156,9 @@ public class TransferFacilityHelper {
         while (i.hasNext()) {
             of = (OriginalFile) i.next();
 
+            boolean reusable = false;
             try {
-                store = gateway.getRawFileService(context);
+                store = gateway.acquireRawFileStore(context);
                 store.setFileId(of.getId().getValue());
 
                 f = new File(targetPath, of.getName().getValue());
@@ -176,6 +176,7 @@ public class TransferFacilityHelper {
                         stream.write(store.read(offset, (int) (size - offset)));
                         stream.close();
                     }
+                    reusable = true;
                 } catch (Exception e) {
                     if (stream != null)
                         stream.close();
@@ -195,9 +196,12 @@ public class TransferFacilityHelper {
                 throw new DSAccessException("ServerError on retrieveArchived",
                         t);
             } finally {
-                try {
-                    store.close();
-                } catch (ServerError e) {
+                if (store != null) {
+                    if (reusable)
+                        gateway.releaseService(context, store);
+                    else
+                        gateway.closeService(context, store);
+                    store = null;
                 }
             }
         }
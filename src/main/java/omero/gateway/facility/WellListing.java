@@ -0,0 +1,110 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.facility;
+
+import java.util.Arrays;
+import java.util.List;
+
+import omero.RType;
+
+/**
+ * A compact listing of wells: the id, owner, plate, row and column of each
+ * well, see {@link ObjectListing}.
+ *
+ * @since 5.5
+ */
+public class WellListing extends ObjectListing {
+
+    /**
+     * The columns of the projection query, on the <code>well</code> alias.
+     */
+    static final String COLUMNS = "well.id, well.details.owner.id, "
+            + "well.plate.id, well.row, well.column";
+
+    /** The ids of the plates. */
+    private long[] plateIds;
+
+    /** The rows of the wells. */
+    private int[] rows;
+
+    /** The columns of the wells. */
+    private int[] columns;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The initial capacity.
+     */
+    WellListing(int capacity) {
+        super(capacity);
+        plateIds = new long[capacity];
+        rows = new int[capacity];
+        columns = new int[capacity];
+    }
+
+    @Override
+    void resize(int capacity) {
+        super.resize(capacity);
+        plateIds = Arrays.copyOf(plateIds, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+    }
+
+    @Override
+    int add(List<RType> row) {
+        int i = super.add(row);
+        plateIds[i] = toLong(row.get(2));
+        rows[i] = toInt(row.get(3));
+        columns[i] = toInt(row.get(4));
+        return i;
+    }
+
+    /**
+     * Returns the id of the plate of a well.
+     *
+     * @param index The index of the well.
+     * @return See above.
+     */
+    public long getPlateId(int index) {
+        return plateIds[checkIndex(index)];
+    }
+
+    /**
+     * Returns the row of a well, starting from <code>0</code>.
+     *
+     * @param index The index of the well.
+     * @return See above.
+     */
+    public int getRow(int index) {
+        return rows[checkIndex(index)];
+    }
+
+    /**
+     * Returns the column of a well, starting from <code>0</code>.
+     *
+     * @param index The index of the well.
+     * @return See above.
+     */
+    public int getColumn(int index) {
+        return columns[checkIndex(index)];
+    }
+
+}
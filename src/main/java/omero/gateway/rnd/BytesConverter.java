@@ -20,6 +20,8 @@
  */
 package omero.gateway.rnd;
 
+import java.nio.ByteBuffer;
+
 import omero.util.ReadOnlyByteArray;
 
 /** 
@@ -71,4 +73,66 @@ abstract class BytesConverter
      */
     public abstract double pack(ReadOnlyByteArray data, int offset, int length);
 
+    /**
+     * Converts a sequence of pixel values into numeric values in one call.
+     * <code>count</code> pixels are read from the passed buffer, starting at
+     * its current position, the position of the buffer is not modified.
+     * This implementation converts one pixel at a time, sub-classes override
+     * it to decode through a typed view of the buffer.
+     *
+     * @param data The buffer containing the big-endian bytes to convert.
+     * @param length The number of bytes that make up a pixel value.
+     * @param values The array to fill.
+     * @param count The number of pixels to convert.
+     */
+    public void pack(ByteBuffer data, int length, double[] values,
+            int count)
+    {
+        checkCapacity(data, length, values, count);
+        ReadOnlyByteArray array;
+        if (data.hasArray()) {
+            array = new ReadOnlyByteArray(data.array(),
+                    data.arrayOffset()+data.position(), data.remaining());
+        } else {
+            byte[] copy = new byte[count*length];
+            data.duplicate().get(copy);
+            array = new ReadOnlyByteArray(copy, 0, copy.length);
+        }
+        for (int i = 0; i < count; i++)
+            values[i] = pack(array, i*length, length);
+    }
+
+    /**
+     * Checks that the buffer holds enough bytes for the pixels to convert
+     * and that the array can hold the converted values.
+     *
+     * @param data The buffer containing the bytes to convert.
+     * @param length The number of bytes that make up a pixel value.
+     * @param values The array to fill.
+     * @param count The number of pixels to convert.
+     */
+    static void checkCapacity(ByteBuffer data, int length, double[] values,
+            int count)
+    {
+        if (count > values.length)
+            throw new IllegalArgumentException("Cannot convert "+count+
+                    " pixels into an array of length "+values.length);
+        if ((long) count*length > data.remaining())
+            throw new IllegalArgumentException("Cannot convert "+count+
+                    " pixels of "+length+" bytes from "+data.remaining()+
+                    " bytes");
+    }
+
+    /**
+     * Returns a big-endian view of the passed buffer, starting at its
+     * current position.
+     *
+     * @param data The buffer.
+     * @return See above.
+     */
+    static ByteBuffer view(ByteBuffer data)
+    {
+        return data.slice();
+    }
+
 }
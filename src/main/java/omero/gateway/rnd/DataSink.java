@@ -20,16 +20,32 @@
  */
 package omero.gateway.rnd;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import omero.ServerError;
 import omero.api.RawPixelsStorePrx;
+import omero.api.ResolutionDescription;
+import omero.model.Details;
+import omero.model.Event;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
+import omero.gateway.ServerInformation;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.exception.DataSourceException;
 import omero.romio.PlaneDef;
-import omero.util.ReadOnlyByteArray;
 import omero.gateway.model.PixelsData;
 
 /** 
@@ -72,14 +88,23 @@ public class DataSink implements AutoCloseable
     /** Identifies the type used to store pixel values. */
     public static final String DOUBLE = PixelsData.DOUBLE_TYPE;
 
+    /**
+     * The maximum number of tiles per pixels store read ahead by
+     * {@link #getTiles(Collection, int, Semaphore)}.
+     */
+    public static final int TILES_PER_STORE = 2;
+
+    /**
+     * The number of fetched tiles per worker of the pool accumulated at
+     * once by {@link #getStatistics}.
+     */
+    private static final int STATISTICS_BATCH = 4;
+
     /** The data source. */
     private PixelsData source;
 
-    /** The number of bytes per pixel. */
-    private int bytesPerPixels;
-
-    /** Strategy used to transform the raw data. */
-    private BytesConverter strategy;
+    /** The pixels type. */
+    private String pixelsType;
 
     /** The pixels store for that pixels set.*/
     private RawPixelsStorePrx store;
@@ -89,6 +114,46 @@ public class DataSink implements AutoCloseable
 
     /**Reference to the SecurityContext.*/
     private SecurityContext ctx;
+
+    /** The optional cache for the tiles. */
+    private volatile TileCache tileCache;
+
+    /**
+     * The resolution level, <code>0</code> being the full resolution, as
+     * in {@link #getResolutionDescriptions()}.
+     */
+    private int resolutionLevel;
+
+    /**
+     * The resolution level as expected by the pixels store, which numbers
+     * the levels from the lowest resolution, or <code>-1</code> for the
+     * full resolution.
+     */
+    private int storeLevel = -1;
+
+    /** The number of pixels along the x-axis at the resolution level. */
+    private int sizeX;
+
+    /** The number of pixels along the y-axis at the resolution level. */
+    private int sizeY;
+
+    /** The available resolution levels, full resolution first. */
+    private ResolutionDescription[] resolutions;
+
+    /** The optional persistent cache for the planes and tiles. */
+    private volatile DiskTileCache diskCache;
+
+    /** The server, identifying the entries of the disk cache. */
+    private volatile String server;
+
+    /** The number of operations using this sink, see {@link #retain()}. */
+    private int users;
+
+    /** Set once {@link #close()} has been called. */
+    private boolean closing;
+
+    /** Set once the pixels store has been closed. */
+    private boolean closed;
     
     /**
      * Creates a new instance.
@@ -104,18 +169,58 @@ public class DataSink implements AutoCloseable
      */
     public DataSink(SecurityContext ctx, PixelsData source, Gateway gw)
             throws DSOutOfServiceException {
+        this(ctx, source, gw, 0);
+    }
+
+    /**
+     * Creates a new instance reading the data at the specified resolution
+     * level of a pyramidal pixels set.
+     *
+     * @param ctx
+     *            The SecurityContext
+     * @param source
+     *            The pixels set.
+     * @param gw
+     *            Reference to the gateway.
+     * @param resolutionLevel
+     *            The resolution level, <code>0</code> being the full
+     *            resolution, as in {@link #getResolutionDescriptions()}.
+     * @throws DSOutOfServiceException
+     *             If the PixelsStore can't be accessed or the resolution
+     *             level does not exist.
+     */
+    public DataSink(SecurityContext ctx, PixelsData source, Gateway gw,
+            int resolutionLevel) throws DSOutOfServiceException {
         this.ctx = ctx;
         this.gw = gw;
         this.source = source;
-        store = gw.createPixelsStore(ctx);
+        this.resolutionLevel = resolutionLevel;
+        sizeX = source.getSizeX();
+        sizeY = source.getSizeY();
+        // Pooled or closed when released, setPixelsId resets the level.
+        store = gw.acquirePixelsStore(ctx, true);
         try {
             store.setPixelsId(source.getId(), false);
+            if (resolutionLevel != 0) {
+                resolutions = store.getResolutionDescriptions();
+                if (resolutionLevel < 0
+                        || resolutionLevel >= resolutions.length)
+                    throw new DSOutOfServiceException("Resolution level "
+                            + resolutionLevel + " not available, the pixels "
+                            + "set has " + resolutions.length + " levels");
+                storeLevel = resolutions.length - 1 - resolutionLevel;
+                store.setResolutionLevel(storeLevel);
+                sizeX = resolutions[resolutionLevel].sizeX;
+                sizeY = resolutions[resolutionLevel].sizeY;
+            }
         } catch (ServerError e) {
+            gw.closeService(ctx, store);
             throw new DSOutOfServiceException("Can't set pixels id", e);
+        } catch (DSOutOfServiceException e) {
+            gw.closeService(ctx, store);
+            throw e;
         }
-        String type = source.getPixelType();
-        bytesPerPixels = getBytesPerPixels(type);
-        strategy = BytesConverter.getConverter(type);
+        pixelsType = source.getPixelType();
     }
 
     /**
@@ -124,7 +229,7 @@ public class DataSink implements AutoCloseable
      * @param v The pixels Type.
      * @return See above.
      */
-    private int getBytesPerPixels(String v)
+    static int getBytesPerPixels(String v)
     {
         if (INT_8.equals(v) || UINT_8.equals(v)) return 1;
         if (INT_16.equals(v) || UINT_16.equals(v)) return 2;
@@ -139,17 +244,21 @@ public class DataSink implements AutoCloseable
      * @param z The z-section at which data is to be fetched.
      * @param t The timepoint at which data is to be fetched.
      * @param c The channel at which data is to be fetched.
-     * @param strategy To transform bytes into pixels values.
      * @return A plane 2D object that encapsulates the actual plane pixels.
      * @throws DataSourceException If an error occurs while retrieving the
      *                              plane data from the pixels source.
      */
-    private Plane2D createPlane(int z, int t, int c,
-            BytesConverter strategy)
+    private Plane2D createPlane(int z, int t, int c)
                     throws DataSourceException
     {
+        DiskTileCache disk = diskCache;
+        if (disk != null) {
+            ByteBuffer cached = disk.get(server, source.getId(), getVersion(),
+                    resolutionLevel, z, c, t, 0, 0, sizeX, sizeY);
+            if (cached != null)
+                return Plane2D.createPlane(cached, sizeX, sizeY, pixelsType);
+        }
         //Retrieve data
-        Plane2D plane = null;
         byte[] data = null; 
         try {
             data = store.getPlane(z, c, t);
@@ -157,10 +266,11 @@ public class DataSink implements AutoCloseable
             String p = "("+z+", "+c+", "+t+")";
             throw new DataSourceException("Cannot retrieve the plane "+p, e);
         }
-        ReadOnlyByteArray array = new ReadOnlyByteArray(data, 0, data.length);
-        plane = new Plane2D(array, source.getSizeX(), source.getSizeY(), 
-                bytesPerPixels, strategy);
-        return plane;
+        if (disk != null)
+            disk.put(server, source.getId(), getVersion(), resolutionLevel, z,
+                    c, t, 0, 0, sizeX, sizeY, data);
+        return Plane2D.createPlane(ByteBuffer.wrap(data), sizeX, sizeY,
+                pixelsType);
     }
 
     /**
@@ -187,16 +297,147 @@ public class DataSink implements AutoCloseable
      */
     public Plane2D getTile(int z, int t, int c, int x,
             int y, int w, int h) throws DataSourceException {
+        return readTile(store, null, z, t, c, x, y, w, h);
+    }
+
+    /**
+     * Extracts 2D tiles from the pixels set this object is working for. The
+     * tiles are read in parallel, each worker using its own pixels store,
+     * taken from the pool of the gateway if one is available.
+     * The returned iterator blocks until the next tile is available, the
+     * tiles are returned in the order in which they complete. At most
+     * {@link #TILES_PER_STORE} tiles per pixels store are read ahead of the
+     * consumer, close the iterator if not all the tiles are consumed.
+     *
+     * @param tiles
+     *            The tiles to fetch.
+     * @param stores
+     *            The maximum number of pixels stores to read from in
+     *            parallel.
+     * @param permits
+     *            Limits the number of concurrent requests to the server, can
+     *            be <code>null</code>.
+     * @return See above.
+     */
+    public TileIterator getTiles(Collection<Tile> tiles, int stores,
+            Semaphore permits) {
+        int total = tiles.size();
+        if (total == 0)
+            return TileIterator.empty();
+        // The workers use their own stores, this sink may be closed meanwhile.
+        int n = Math.max(1, Math.min(stores, total));
+        return new TileIterator(this, tiles.iterator(), total, n,
+                n * TILES_PER_STORE, permits).start();
+    }
+
+    /**
+     * Returns a pixels store, taken from the pool of the gateway if one is
+     * available, set to the pixels set and resolution level of this sink.
+     * Release it via the gateway once done.
+     *
+     * @return See above.
+     * @throws Exception
+     *             If the pixels store can't be accessed.
+     */
+    RawPixelsStorePrx openStore() throws Exception {
+        RawPixelsStorePrx prx = gw.acquirePixelsStore(ctx, true);
+        try {
+            prx.setPixelsId(source.getId(), false);
+            if (storeLevel >= 0)
+                prx.setResolutionLevel(storeLevel);
+        } catch (Exception e) {
+            gw.closeService(ctx, prx);
+            throw e;
+        }
+        return prx;
+    }
+
+    /**
+     * Returns the gateway.
+     *
+     * @return See above.
+     */
+    Gateway getGateway() {
+        return gw;
+    }
+
+    /**
+     * Returns the security context.
+     *
+     * @return See above.
+     */
+    SecurityContext getContext() {
+        return ctx;
+    }
+
+    /**
+     * Reads a 2D tile, from the cache if possible.
+     *
+     * @param prx
+     *            The pixels store to read from.
+     * @param permits
+     *            Limits the number of concurrent requests to the server, can
+     *            be <code>null</code>.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @param w
+     *            The width of the tile
+     * @param h
+     *            The height of the tile
+     * @return A plane 2D object that encapsulates the actual plane pixels.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the plane data from the
+     *             pixels source.
+     */
+    Plane2D readTile(RawPixelsStorePrx prx, Semaphore permits, int z,
+            int t, int c, int x, int y, int w, int h)
+            throws DataSourceException {
+        TileCache cache = tileCache;
+        if (cache != null) {
+            ByteBuffer cached = cache.get(ctx.getGroupID(), source.getId(),
+                    resolutionLevel, z, c, t, x, y, w, h);
+            if (cached != null)
+                return Plane2D.createPlane(cached, w, h, pixelsType);
+        }
+        DiskTileCache disk = diskCache;
+        if (disk != null) {
+            ByteBuffer cached = disk.get(server, source.getId(), getVersion(),
+                    resolutionLevel, z, c, t, x, y, w, h);
+            if (cached != null)
+                return Plane2D.createPlane(cached, w, h, pixelsType);
+        }
         byte[] data = null;
         try {
-            data = store.getTile(z, c, t, x, y, w, h);
+            if (permits != null)
+                permits.acquire();
+            try {
+                data = prx.getTile(z, c, t, x, y, w, h);
+            } finally {
+                if (permits != null)
+                    permits.release();
+            }
         } catch (Exception e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
             String p = "(" + z + ", " + c + ", " + t + ", " + x + ", " + y
                     + ", " + w + ", " + h + ")";
             throw new DataSourceException("Cannot retrieve the plane " + p, e);
         }
-        ReadOnlyByteArray array = new ReadOnlyByteArray(data, 0, data.length);
-        return new Plane2D(array, w, h, bytesPerPixels, strategy);
+        if (cache != null)
+            cache.put(ctx.getGroupID(), source.getId(), resolutionLevel, z,
+                    c, t, x, y, w, h, data);
+        if (disk != null)
+            disk.put(server, source.getId(), getVersion(), resolutionLevel, z,
+                    c, t, x, y, w, h, data);
+        return Plane2D.createPlane(ByteBuffer.wrap(data), w, h, pixelsType);
     }
 
     /**
@@ -212,7 +453,343 @@ public class DataSink implements AutoCloseable
     public Plane2D getPlane(int z, int t, int c)
             throws DataSourceException
     {
-        return createPlane(z, t, c, strategy);
+        return createPlane(z, t, c);
+    }
+
+    /**
+     * Extracts a Z-stack from the pixels set this object is working for, in
+     * one call.
+     *
+     * @param c The channel at which data is to be fetched.
+     * @param t The timepoint at which data is to be fetched.
+     * @return See above.
+     * @throws DataSourceException If an error occurs while retrieving the
+     *                              data from the pixels source.
+     */
+    public Hypercube getStack(int c, int t)
+            throws DataSourceException
+    {
+        byte[] data = null;
+        try {
+            data = store.getStack(c, t);
+        } catch (Exception e) {
+            throw new DataSourceException("Cannot retrieve the stack ("+c+
+                    ", "+t+")", e);
+        }
+        return new Hypercube(ByteBuffer.wrap(data), pixelsType,
+                new int[] {0, 0, 0, c, t}, new int[] {sizeX, sizeY,
+                source.getSizeZ(), 1, 1});
+    }
+
+    /**
+     * Extracts all the planes of a timepoint from the pixels set this object
+     * is working for, in one call.
+     *
+     * @param t The timepoint at which data is to be fetched.
+     * @return See above.
+     * @throws DataSourceException If an error occurs while retrieving the
+     *                              data from the pixels source.
+     */
+    public Hypercube getTimepoint(int t)
+            throws DataSourceException
+    {
+        byte[] data = null;
+        try {
+            data = store.getTimepoint(t);
+        } catch (Exception e) {
+            throw new DataSourceException("Cannot retrieve the timepoint "+t,
+                    e);
+        }
+        return new Hypercube(ByteBuffer.wrap(data), pixelsType,
+                new int[] {0, 0, 0, 0, t}, new int[] {sizeX, sizeY,
+                source.getSizeZ(), source.getSizeC(), 1});
+    }
+
+    /**
+     * Extracts a 5D block from the pixels set this object is working for, in
+     * one call. The arrays are in <code>XYZCT</code> order.
+     *
+     * @param offset The offset of the block.
+     * @param size The size of the block.
+     * @param step The step along each dimension, pass <code>null</code> to
+     *             read every pixel.
+     * @return See above. The size of the returned block is
+     *         <code>ceil(size/step)</code> along each dimension.
+     * @throws DataSourceException If an error occurs while retrieving the
+     *                              data from the pixels source.
+     */
+    public Hypercube getHypercube(int[] offset, int[] size, int[] step)
+            throws DataSourceException
+    {
+        if (step == null)
+            step = new int[] {1, 1, 1, 1, 1};
+        if (offset.length != 5 || size.length != 5 || step.length != 5)
+            throw new IllegalArgumentException("Offset, size and step must "
+                    + "have five dimensions");
+        List<Integer> o = new ArrayList<Integer>(5);
+        List<Integer> s = new ArrayList<Integer>(5);
+        List<Integer> st = new ArrayList<Integer>(5);
+        int[] result = new int[5];
+        for (int i = 0; i < 5; i++) {
+            if (step[i] < 1)
+                throw new IllegalArgumentException("Invalid step: "+step[i]);
+            o.add(offset[i]);
+            s.add(size[i]);
+            st.add(step[i]);
+            result[i] = (size[i]+step[i]-1)/step[i];
+        }
+        byte[] data = null;
+        try {
+            data = store.getHypercube(o, s, st);
+        } catch (Exception e) {
+            throw new DataSourceException("Cannot retrieve the hypercube "+o+
+                    " "+s, e);
+        }
+        return new Hypercube(ByteBuffer.wrap(data), pixelsType, offset,
+                result);
+    }
+
+    /**
+     * Traverses all the planes of the pixels set this object is working for,
+     * in the given dimension order. The next planes are read asynchronously
+     * while the current one is processed. The planes are returned as
+     * {@link Tile}s covering the whole plane.
+     *
+     * @param dimensionOrder
+     *            The traversal order, e.g. <code>XYZCT</code> (or
+     *            <code>ZCT</code>) to vary the z-section fastest and the
+     *            timepoint slowest.
+     * @param readAhead
+     *            The maximum number of planes read ahead.
+     * @return See above.
+     */
+    public Spliterator<Tile> getPlanes(String dimensionOrder, int readAhead)
+    {
+        return createPlanes(dimensionOrder, readAhead);
+    }
+
+    /**
+     * Returns a stream over all the planes of the pixels set, see
+     * {@link #getPlanes(String, int)}. This sink is not closed before all the
+     * planes have been consumed or the stream has been closed.
+     *
+     * @param dimensionOrder
+     *            The traversal order, e.g. <code>XYZCT</code>.
+     * @param readAhead
+     *            The maximum number of planes read ahead.
+     * @param parallel
+     *            Pass <code>true</code> for a parallel stream.
+     * @return See above.
+     */
+    public Stream<Tile> getPlanes(String dimensionOrder, int readAhead,
+            boolean parallel)
+    {
+        final PlaneSpliterator planes = createPlanes(dimensionOrder,
+                readAhead);
+        return StreamSupport.stream(planes, parallel).onClose(new Runnable() {
+            @Override
+            public void run() {
+                planes.close();
+            }
+        });
+    }
+
+    /**
+     * Creates the spliterator traversing all the planes, see
+     * {@link #getPlanes(String, int)}. This sink is retained until all the
+     * planes have been consumed or the spliterator has been closed.
+     *
+     * @param dimensionOrder
+     *            The traversal order.
+     * @param readAhead
+     *            The maximum number of planes read ahead.
+     * @return See above.
+     */
+    private PlaneSpliterator createPlanes(String dimensionOrder,
+            int readAhead)
+    {
+        String order = dimensionOrder.toUpperCase().replace("X", "")
+                .replace("Y", "");
+        int[] dims = { order.indexOf('Z'), order.indexOf('C'),
+                order.indexOf('T') };
+        if (order.length() != 3 || dims[0] < 0 || dims[1] < 0 || dims[2] < 0)
+            throw new IllegalArgumentException("Invalid dimension order: "
+                    + dimensionOrder);
+        int[] all = { source.getSizeZ(), source.getSizeC(),
+                source.getSizeT() };
+        int[] sizes = new int[3];
+        for (int i = 0; i < 3; i++)
+            sizes[dims[i]] = all[i];
+        final boolean retained = retain();
+        return new PlaneSpliterator(this, gw, sizeX, sizeY, sizes, dims,
+                readAhead, 0, all[0]*all[1]*all[2], new Runnable() {
+                    @Override
+                    public void run() {
+                        if (retained)
+                            release();
+                    }
+                });
+    }
+
+    /**
+     * Computes the statistics of the pixel values of the given tiles, per
+     * channel, on the client, see
+     * {@link #getStatistics(Collection, double, double, int, int, Semaphore, ForkJoinPool)}.
+     * The tiles are read from as many pixels stores as the parallelism of
+     * the pool.
+     *
+     * @param tiles
+     *            The tiles, of any channel.
+     * @param rangeMin
+     *            The lower bound of the histogram range.
+     * @param rangeMax
+     *            The upper bound of the histogram range.
+     * @param binCount
+     *            The number of bins of the histogram.
+     * @param pool
+     *            The pool running the computation.
+     * @return The statistics, where the key is the channel index.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     */
+    public Map<Integer, PixelStatistics> getStatistics(Collection<Tile> tiles,
+            double rangeMin, double rangeMax, int binCount, ForkJoinPool pool)
+            throws DataSourceException
+    {
+        return getStatistics(tiles, rangeMin, rangeMax, binCount,
+                pool.getParallelism(), null, pool);
+    }
+
+    /**
+     * Computes the statistics of the pixel values of the given tiles, per
+     * channel, on the client. The tiles are fetched in parallel like by
+     * {@link #getTiles(Collection, int, Semaphore)}; the fetched tiles are
+     * decoded and accumulated in batches by the given pool, one tile at a
+     * time per worker, and the partial results are merged. The data of each
+     * tile is dropped once accumulated, so that only the tiles being read
+     * or accumulated are held in memory; the tiles are only iterated once
+     * and may be created on the fly by the collection.
+     *
+     * @param tiles
+     *            The tiles, of any channel.
+     * @param rangeMin
+     *            The lower bound of the histogram range.
+     * @param rangeMax
+     *            The upper bound of the histogram range.
+     * @param binCount
+     *            The number of bins of the histogram.
+     * @param stores
+     *            The maximum number of pixels stores to read from in
+     *            parallel.
+     * @param permits
+     *            Limits the number of concurrent requests to the server, can
+     *            be <code>null</code>.
+     * @param pool
+     *            The pool decoding and accumulating the tiles.
+     * @return The statistics, where the key is the channel index.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the data from the
+     *             pixels source.
+     */
+    public Map<Integer, PixelStatistics> getStatistics(Collection<Tile> tiles,
+            double rangeMin, double rangeMax, int binCount, int stores,
+            Semaphore permits, ForkJoinPool pool)
+            throws DataSourceException
+    {
+        Map<Integer, PixelStatistics> result =
+                new LinkedHashMap<Integer, PixelStatistics>();
+        // Bounds the number of fetched tiles held in memory, each tile is
+        // dropped once accumulated.
+        int batchSize = STATISTICS_BATCH * Math.max(1, pool.getParallelism());
+        Map<Integer, List<Tile>> batch =
+                new LinkedHashMap<Integer, List<Tile>>();
+        TileIterator i = getTiles(tiles, stores, permits);
+        int n = 0;
+        try {
+            while (i.hasNext()) {
+                Tile tile = i.next();
+                List<Tile> l = batch.get(tile.getC());
+                if (l == null) {
+                    l = new ArrayList<Tile>();
+                    batch.put(tile.getC(), l);
+                }
+                l.add(tile);
+                if (++n == batchSize || !i.hasNext()) {
+                    accumulate(batch, result, rangeMin, rangeMax, binCount,
+                            pool);
+                    batch.clear();
+                    n = 0;
+                }
+            }
+        } catch (NoSuchElementException e) {
+            throw new DataSourceException("Interrupted while computing the "
+                    + "statistics", e);
+        } finally {
+            i.close();
+            for (List<Tile> l : batch.values())
+                for (Tile tile : l)
+                    tile.clearPlane();
+        }
+        return result;
+    }
+
+    /**
+     * Decodes and accumulates a batch of fetched tiles, see
+     * {@link StatisticsTask}.
+     *
+     * @param batch
+     *            The tiles by channel index.
+     * @param result
+     *            The statistics to add the batch to, by channel index.
+     * @param rangeMin
+     *            The lower bound of the histogram range.
+     * @param rangeMax
+     *            The upper bound of the histogram range.
+     * @param binCount
+     *            The number of bins of the histogram.
+     * @param pool
+     *            The pool decoding and accumulating the tiles.
+     * @throws DataSourceException
+     *             If a tile could not be fetched.
+     */
+    private static void accumulate(Map<Integer, List<Tile>> batch,
+            Map<Integer, PixelStatistics> result, double rangeMin,
+            double rangeMax, int binCount, ForkJoinPool pool)
+            throws DataSourceException
+    {
+        Map<Integer, StatisticsTask> tasks =
+                new LinkedHashMap<Integer, StatisticsTask>();
+        for (Map.Entry<Integer, List<Tile>> e : batch.entrySet()) {
+            StatisticsTask task = new StatisticsTask(e.getValue(), 0,
+                    e.getValue().size(), rangeMin, rangeMax, binCount);
+            pool.execute(task);
+            tasks.put(e.getKey(), task);
+        }
+        try {
+            for (Map.Entry<Integer, StatisticsTask> e : tasks.entrySet()) {
+                PixelStatistics stats = result.get(e.getKey());
+                if (stats == null) {
+                    stats = new PixelStatistics(rangeMin, rangeMax, binCount);
+                    result.put(e.getKey(), stats);
+                }
+                stats.merge(e.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataSourceException("Interrupted while computing the "
+                    + "statistics", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof DataSourceException))
+                cause = cause.getCause();
+            if (cause != null)
+                throw (DataSourceException) cause;
+            throw new DataSourceException("Cannot compute the statistics", e);
+        } finally {
+            for (StatisticsTask task : tasks.values())
+                task.cancel(true);
+        }
     }
 
     /**
@@ -258,8 +835,163 @@ public class DataSink implements AutoCloseable
         return pixelsID == source.getId();
     }
 
+    /**
+     * Returns the resolution level this object reads the data at,
+     * <code>0</code> being the full resolution.
+     *
+     * @return See above.
+     */
+    public int getResolutionLevel()
+    {
+        return resolutionLevel;
+    }
+
+    /**
+     * Returns the available resolution levels of the pixels set, the full
+     * resolution first. A pixels set which is not pyramidal has a single
+     * level.
+     *
+     * @return See above.
+     * @throws DataSourceException If an error occurs while retrieving the
+     *                              levels from the pixels source.
+     */
+    public ResolutionDescription[] getResolutionDescriptions()
+            throws DataSourceException
+    {
+        if (resolutions == null) {
+            try {
+                resolutions = store.getResolutionDescriptions();
+            } catch (Exception e) {
+                throw new DataSourceException(
+                        "Cannot retrieve the resolution levels", e);
+            }
+        }
+        return resolutions.clone();
+    }
+
+    /**
+     * Returns the number of pixels along the x-axis at the resolution level.
+     *
+     * @return See above.
+     */
+    public int getSizeX()
+    {
+        return sizeX;
+    }
+
+    /**
+     * Returns the number of pixels along the y-axis at the resolution level.
+     *
+     * @return See above.
+     */
+    public int getSizeY()
+    {
+        return sizeY;
+    }
+
+    /**
+     * Sets the cache used for the tiles, pass <code>null</code> to turn
+     * caching off.
+     *
+     * @param tileCache The cache.
+     */
+    public void setTileCache(TileCache tileCache)
+    {
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * Sets the persistent cache used for the planes and tiles, pass
+     * <code>null</code> to turn caching off. The entries of the older
+     * versions of the pixels set are removed from the cache. Caching is not
+     * turned on if the version of the pixels set, i.e. its update event, is
+     * not known.
+     *
+     * @param diskCache The cache.
+     */
+    public void setDiskCache(DiskTileCache diskCache)
+    {
+        if (diskCache != null && getVersion() >= 0) {
+            ServerInformation info = gw.getServerInformation();
+            server = info == null ? "" : info.getHostname() + ":"
+                    + info.getPort();
+            diskCache.validate(server, source.getId(), getVersion());
+            this.diskCache = diskCache;
+        } else {
+            this.diskCache = null;
+        }
+    }
+
+    /**
+     * Returns the version of the pixels set, i.e. the id of its update
+     * event, or <code>-1</code> if not known.
+     *
+     * @return See above.
+     */
+    private long getVersion()
+    {
+        Details details = source.asIObject().getDetails();
+        if (details == null)
+            return -1;
+        Event event = details.getUpdateEvent();
+        if (event == null || event.getId() == null)
+            return -1;
+        return event.getId().getValue();
+    }
+
+    /**
+     * Marks this sink as in use, so that {@link #close()} does not close the
+     * pixels store before {@link #release()} has been called. Each
+     * successful call must be followed by a call to {@link #release()}.
+     *
+     * @return <code>true</code> if retained, <code>false</code> if
+     *         {@link #close()} has already been called.
+     */
+    public synchronized boolean retain()
+    {
+        if (closing)
+            return false;
+        users++;
+        return true;
+    }
+
+    /**
+     * Releases this sink after a call to {@link #retain()}. Closes the
+     * pixels store if {@link #close()} has been called meanwhile and this
+     * was the last user.
+     */
+    public void release()
+    {
+        synchronized (this) {
+            if (users > 0)
+                users--;
+            if (users > 0 || !closing || closed)
+                return;
+            closed = true;
+        }
+        closeStore();
+    }
+
+    /**
+     * Closes the pixels store, or only once all the users have released
+     * this sink, see {@link #retain()}.
+     */
     @Override
     public void close() {
-        gw.closeService(ctx, store);
+        synchronized (this) {
+            closing = true;
+            if (users > 0 || closed)
+                return;
+            closed = true;
+        }
+        closeStore();
+    }
+
+    /**
+     * Releases the pixels store. The cached tiles are kept, they are shared
+     * with the next {@link DataSink} of the pixels set.
+     */
+    private void closeStore() {
+        gw.releaseService(ctx, store);
     }
 }
@@ -0,0 +1,442 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** 
+ * Caches the raw data of planes and tiles read by {@link DataSink}s on
+ * disk, so that it survives the process and can be shared by the jobs
+ * running on the same host. Each plane or tile is stored in its own file,
+ * which is memory-mapped when read; the files are written atomically.
+ * <p>
+ * The entries are keyed by server, pixels set, version, resolution level
+ * and region. The version of a pixels set is the id of its update event,
+ * the entries of the older versions are removed when a {@link DataSink} is
+ * opened for a newer one. The least recently used entries are removed
+ * when the size limit is reached.
+ * </p>
+ * The entries are kept in the {@value #DIRECTORY} subdirectory of the
+ * directory passed to the constructor, so that the cache can be pointed at
+ * a shared directory: only the files of the cache are ever deleted, and
+ * the temporary files of the writes in progress, possibly by other
+ * processes, are only deleted once they are older than an hour.
+ *
+ * @since 5.5
+ */
+public class DiskTileCache
+{
+
+    /** The subdirectory holding the entries. */
+    public static final String DIRECTORY = "omero-tiles";
+
+    /** The extension of the files holding the data. */
+    private static final String SUFFIX = ".tile";
+
+    /** The extension of the files being written. */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * The age in milliseconds after which a file being written is
+     * considered left over by an interrupted write.
+     */
+    private static final long STALE_TMP = TimeUnit.HOURS.toMillis(1);
+
+    /** The root directory. */
+    private final Path root;
+
+    /** The maximum number of bytes to hold. */
+    private final long maxBytes;
+
+    /** The size of the entries, least recently used first. */
+    private final LinkedHashMap<Path, Long> index =
+            new LinkedHashMap<Path, Long>(16, 0.75f, true);
+
+    /** The number of bytes currently held. */
+    private long size;
+
+    /** The number of reads served from the cache. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of reads not served from the cache. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new instance. The entries already present in the directory,
+     * e.g. written by a previous run, are re-used.
+     *
+     * @param directory The directory under which the entries are kept, see
+     *                  {@link #DIRECTORY}; created if it does not exist.
+     * @param maxBytes The maximum number of bytes to hold.
+     * @throws IOException If the directory cannot be read or created.
+     */
+    public DiskTileCache(File directory, long maxBytes) throws IOException
+    {
+        this.root = directory.toPath().toAbsolutePath().resolve(DIRECTORY);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(root);
+        final List<Path> files = new ArrayList<Path>();
+        final Map<Path, BasicFileAttributes> attributes =
+                new LinkedHashMap<Path, BasicFileAttributes>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attrs) throws IOException {
+                if (file.toString().endsWith(SUFFIX)) {
+                    files.add(file);
+                    attributes.put(file, attrs);
+                } else if (isStale(file, attrs)) {
+                    // Left over by an interrupted write.
+                    Files.deleteIfExists(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files, new Comparator<Path>() {
+            @Override
+            public int compare(Path p1, Path p2) {
+                return attributes.get(p1).lastModifiedTime().compareTo(
+                        attributes.get(p2).lastModifiedTime());
+            }
+        });
+        synchronized (this) {
+            for (Path file : files) {
+                index.put(file, attributes.get(file).size());
+                size += attributes.get(file).size();
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Returns the file holding the specified entry.
+     *
+     * @param server The server, e.g. <code>host:port</code>.
+     * @param pixelsId The id of the pixels set.
+     * @param version The version of the pixels set.
+     * @param region The level, z, c, t, x, y, width and height.
+     * @return See above.
+     */
+    private Path getPath(String server, long pixelsId, long version,
+            int... region)
+    {
+        StringBuilder name = new StringBuilder();
+        for (int v : region) {
+            if (name.length() > 0)
+                name.append('_');
+            name.append(v);
+        }
+        name.append(SUFFIX);
+        return getDirectory(server, pixelsId).resolve(String.valueOf(version))
+                .resolve(name.toString());
+    }
+
+    /**
+     * Returns the directory holding the entries of a pixels set.
+     *
+     * @param server The server, e.g. <code>host:port</code>.
+     * @param pixelsId The id of the pixels set.
+     * @return See above.
+     */
+    private Path getDirectory(String server, long pixelsId)
+    {
+        return root.resolve(server.replaceAll("[^A-Za-z0-9.-]", "_"))
+                .resolve(String.valueOf(pixelsId));
+    }
+
+    /**
+     * Returns a read-only view of the memory-mapped entry or
+     * <code>null</code>.
+     *
+     * @param server The server, e.g. <code>host:port</code>.
+     * @param pixelsId The id of the pixels set.
+     * @param version The version of the pixels set.
+     * @param level The resolution level.
+     * @param z The z-section.
+     * @param c The channel.
+     * @param t The timepoint.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param w The width of the tile.
+     * @param h The height of the tile.
+     * @return See above.
+     */
+    ByteBuffer get(String server, long pixelsId, long version, int level,
+            int z, int c, int t, int x, int y, int w, int h)
+    {
+        Path file = getPath(server, pixelsId, version, level, z, c, t, x, y,
+                w, h);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Files.setLastModifiedTime(file,
+                    FileTime.fromMillis(System.currentTimeMillis()));
+            synchronized (this) {
+                // Also picks up the entries written by other processes.
+                Long old = index.put(file, channel.size());
+                if (old == null)
+                    size += channel.size();
+            }
+            hits.incrementAndGet();
+            return data;
+        } catch (IOException e) {
+            synchronized (this) {
+                Long old = index.remove(file);
+                if (old != null)
+                    size -= old;
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry to disk. Failures are ignored, the data is then
+     * simply not cached.
+     *
+     * @param server The server, e.g. <code>host:port</code>.
+     * @param pixelsId The id of the pixels set.
+     * @param version The version of the pixels set.
+     * @param level The resolution level.
+     * @param z The z-section.
+     * @param c The channel.
+     * @param t The timepoint.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param w The width of the tile.
+     * @param h The height of the tile.
+     * @param data The raw data.
+     */
+    void put(String server, long pixelsId, long version, int level, int z,
+            int c, int t, int x, int y, int w, int h, byte[] data)
+    {
+        if (data.length > maxBytes)
+            return;
+        Path file = getPath(server, pixelsId, version, level, z, c, t, x, y,
+                w, h);
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), null, TMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(
+                        FileChannel.MapMode.READ_WRITE, 0, data.length);
+                buffer.put(data);
+                buffer.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+            return;
+        }
+        synchronized (this) {
+            Long old = index.put(file, (long) data.length);
+            size += data.length - (old == null ? 0 : old);
+            evict();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the size limit is met.
+     */
+    private synchronized void evict()
+    {
+        Iterator<Map.Entry<Path, Long>> i = index.entrySet().iterator();
+        while (size > maxBytes && i.hasNext()) {
+            Map.Entry<Path, Long> e = i.next();
+            i.remove();
+            size -= e.getValue();
+            try {
+                Files.deleteIfExists(e.getKey());
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of the other versions of the specified pixels
+     * set.
+     *
+     * @param server The server, e.g. <code>host:port</code>.
+     * @param pixelsId The id of the pixels set.
+     * @param version The current version of the pixels set.
+     */
+    public void validate(String server, long pixelsId, long version)
+    {
+        Path dir = getDirectory(server, pixelsId);
+        if (!Files.isDirectory(dir))
+            return;
+        List<Path> stale = new ArrayList<Path>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path p : children) {
+                if (!p.getFileName().toString().equals(
+                        String.valueOf(version)))
+                    stale.add(p);
+            }
+        } catch (IOException e) {
+            return;
+        }
+        for (Path p : stale)
+            delete(p);
+    }
+
+    /**
+     * Removes all the entries of the specified pixels set.
+     *
+     * @param server The server, e.g. <code>host:port</code>.
+     * @param pixelsId The id of the pixels set.
+     */
+    public void invalidate(String server, long pixelsId)
+    {
+        delete(getDirectory(server, pixelsId));
+    }
+
+    /**
+     * Removes all the entries. The files which do not belong to the cache
+     * are left untouched.
+     */
+    public void clear()
+    {
+        delete(root);
+    }
+
+    /**
+     * Returns <code>true</code> if the file is a temporary file left over by
+     * an interrupted write, i.e. old enough for the write not to be in
+     * progress any more.
+     *
+     * @param file The file.
+     * @param attrs The attributes of the file.
+     * @return See above.
+     */
+    private static boolean isStale(Path file, BasicFileAttributes attrs)
+    {
+        return file.toString().endsWith(TMP_SUFFIX) &&
+                System.currentTimeMillis()-attrs.lastModifiedTime()
+                .toMillis() > STALE_TMP;
+    }
+
+    /**
+     * Deletes the entries under the specified directory, and the stale
+     * temporary files, then the directories left empty.
+     *
+     * @param dir The directory.
+     */
+    private synchronized void delete(Path dir)
+    {
+        if (!Files.isDirectory(dir))
+            return;
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file,
+                        BasicFileAttributes attrs) throws IOException {
+                    if (file.toString().endsWith(SUFFIX)) {
+                        Long old = index.remove(file);
+                        if (old != null)
+                            size -= old;
+                        Files.deleteIfExists(file);
+                    } else if (isStale(file, attrs)) {
+                        Files.deleteIfExists(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d,
+                        IOException e) {
+                    try {
+                        // Re-created by the next write.
+                        Files.deleteIfExists(d);
+                    } catch (IOException ex) {
+                        // e.g. not empty, entries added by another process
+                        // meanwhile or files which are not ours
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // ignore, the remaining files are evicted later on
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently held.
+     *
+     * @return See above.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of reads served from the cache.
+     *
+     * @return See above.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of reads not served from the cache.
+     *
+     * @return See above.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+}
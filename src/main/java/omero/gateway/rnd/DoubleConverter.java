@@ -20,6 +20,8 @@
  */
 package omero.gateway.rnd;
 
+import java.nio.ByteBuffer;
+
 import omero.util.ReadOnlyByteArray;
 
 /** 
@@ -71,4 +73,19 @@ public class DoubleConverter
         return Double.longBitsToDouble(r);
     }
 
+    /**
+     * Overridden to decode through a typed view of the buffer.
+     * @see BytesConverter#pack(ByteBuffer, int, double[], int)
+     */
+    public void pack(ByteBuffer data, int length, double[] values,
+            int count)
+    {
+        if (length != 8) {
+            super.pack(data, length, values, count);
+            return;
+        }
+        checkCapacity(data, length, values, count);
+        view(data).asDoubleBuffer().get(values, 0, count);
+    }
+
 }
@@ -20,6 +20,9 @@
  */
 package omero.gateway.rnd;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
 import omero.util.ReadOnlyByteArray;
 
 /** 
@@ -74,4 +77,21 @@ public class FloatConverter
         return Float.intBitsToFloat(r);
     }
 
+    /**
+     * Overridden to decode through a typed view of the buffer.
+     * @see BytesConverter#pack(ByteBuffer, int, double[], int)
+     */
+    public void pack(ByteBuffer data, int length, double[] values,
+            int count)
+    {
+        if (length != 4) {
+            super.pack(data, length, values, count);
+            return;
+        }
+        checkCapacity(data, length, values, count);
+        FloatBuffer floats = view(data).asFloatBuffer();
+        for (int i = 0; i < count; i++)
+            values[i] = floats.get(i);
+    }
+
 }
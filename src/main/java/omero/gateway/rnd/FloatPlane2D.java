@@ -0,0 +1,117 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/** 
+ * A plane holding <code>float</code> values. The values are read on
+ * demand from the raw big-endian data, no decoded copy of the plane is kept.
+ *
+ * @since 5.5
+ */
+public class FloatPlane2D
+    extends Plane2D
+{
+
+    /** The typed view of the raw data. */
+    private final FloatBuffer values;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param buffer The big-endian buffer holding the raw data, starting at
+     *               its current position.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     */
+    FloatPlane2D(ByteBuffer buffer, int sizeX, int sizeY)
+    {
+        super(buffer, sizeX, sizeY, 4, new FloatConverter());
+        values = buffer().asFloatBuffer();
+    }
+
+    /**
+     * Returns the stored value at the point specified by the x-coordinate
+     * and y-coordinate.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    public float getValue(int x, int y)
+    {
+        return values.get(index(x, y));
+    }
+
+    /**
+     * Copies the stored values of the specified row into the passed array.
+     *
+     * @param y The row.
+     * @param row The array to fill, at least {@link #getSizeX()} long.
+     */
+    public void getRow(int y, float[] row)
+    {
+        checkRow(y, row.length);
+        FloatBuffer view = values.duplicate();
+        view.position(y*getSizeX());
+        view.get(row, 0, getSizeX());
+    }
+
+    /**
+     * Copies the stored values of the whole plane, row after row, into the
+     * passed array.
+     *
+     * @param pixels The array to fill, at least {@link #getPixelCount()}
+     *               long.
+     */
+    public void getPixels(float[] pixels)
+    {
+        checkPlane(pixels.length);
+        FloatBuffer view = values.duplicate();
+        view.position(0);
+        view.get(pixels, 0, getPixelCount());
+    }
+
+    /**
+     * Returns the stored values of the whole plane, row after row.
+     *
+     * @return See above.
+     */
+    public float[] getPixels()
+    {
+        float[] pixels = new float[getPixelCount()];
+        getPixels(pixels);
+        return pixels;
+    }
+
+    /**
+     * Overridden to read the value from the typed view.
+     * @see Plane2D#getPixelValue(int, int)
+     */
+    @Override
+    public double getPixelValue(int x, int y)
+    {
+        return getValue(x, y);
+    }
+
+}
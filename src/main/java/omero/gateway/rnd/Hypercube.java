@@ -0,0 +1,215 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** 
+ * Holds the raw data of a 5D block of a pixels set, e.g. a stack, a
+ * timepoint or an arbitrary hypercube, in one contiguous big-endian buffer.
+ * The planes are stored in <code>XYZCT</code> order, i.e. the x-coordinate
+ * varies fastest and the timepoint slowest.
+ * <p>
+ * The data is not copied nor decoded, use {@link #getPlane(int, int, int)}
+ * to get a typed view of a single plane.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class Hypercube
+{
+
+    /** The pixels type, one of the constants defined by {@link DataSink}. */
+    private final String pixelsType;
+
+    /** The number of bytes per pixel. */
+    private final int bytesPerPixel;
+
+    /** The offset of the block within the pixels set, in XYZCT order. */
+    private final int[] offset;
+
+    /** The size of the block, in XYZCT order. */
+    private final int[] size;
+
+    /** The raw data. */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param buffer The big-endian buffer holding the raw data, starting at
+     *               its current position.
+     * @param pixelsType The pixels type.
+     * @param offset The offset of the block within the pixels set, in
+     *               XYZCT order.
+     * @param size The size of the block, in XYZCT order.
+     * @throws IllegalArgumentException If the pixels type is not supported
+     *                                  or the buffer is too small.
+     */
+    Hypercube(ByteBuffer buffer, String pixelsType, int[] offset, int[] size)
+    {
+        bytesPerPixel = DataSink.getBytesPerPixels(pixelsType);
+        if (bytesPerPixel < 0)
+            throw new IllegalArgumentException("Pixels type not supported: "
+                    + pixelsType);
+        if (offset.length != 5 || size.length != 5)
+            throw new IllegalArgumentException("Offset and size must have "
+                    + "five dimensions");
+        this.pixelsType = pixelsType;
+        this.offset = offset.clone();
+        this.size = size.clone();
+        if ((long) getPixelCount() * bytesPerPixel > buffer.remaining())
+            throw new IllegalArgumentException("Buffer too small for a "
+                    + toString());
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Returns the number of bytes of a plane.
+     *
+     * @return See above.
+     */
+    private int getPlaneSize()
+    {
+        return size[0]*size[1]*bytesPerPixel;
+    }
+
+    /** @return The pixels type. */
+    public String getPixelsType() { return pixelsType; }
+
+    /** @return The number of bytes per pixel. */
+    public int getBytesPerPixel() { return bytesPerPixel; }
+
+    /** @return The x coordinate of the block. */
+    public int getX() { return offset[0]; }
+
+    /** @return The y coordinate of the block. */
+    public int getY() { return offset[1]; }
+
+    /** @return The first z-section of the block. */
+    public int getZ() { return offset[2]; }
+
+    /** @return The first channel of the block. */
+    public int getC() { return offset[3]; }
+
+    /** @return The first timepoint of the block. */
+    public int getT() { return offset[4]; }
+
+    /** @return The number of pixels along the x-axis. */
+    public int getSizeX() { return size[0]; }
+
+    /** @return The number of pixels along the y-axis. */
+    public int getSizeY() { return size[1]; }
+
+    /** @return The number of z-sections. */
+    public int getSizeZ() { return size[2]; }
+
+    /** @return The number of channels. */
+    public int getSizeC() { return size[3]; }
+
+    /** @return The number of timepoints. */
+    public int getSizeT() { return size[4]; }
+
+    /**
+     * Returns the number of pixels of the block.
+     *
+     * @return See above.
+     */
+    public int getPixelCount()
+    {
+        long n = 1;
+        for (int s : size)
+            n *= s;
+        if (n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Block too large: "
+                    + toString());
+        return (int) n;
+    }
+
+    /**
+     * Returns a read-only view of the raw data, the position of the buffer
+     * is the first byte of the block.
+     *
+     * @return See above.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a typed view of a plane of the block. The data is not copied.
+     *
+     * @param z The z-section, relative to the block.
+     * @param c The channel, relative to the block.
+     * @param t The timepoint, relative to the block.
+     * @return See above.
+     */
+    public Plane2D getPlane(int z, int c, int t)
+    {
+        if (z < 0 || z >= size[2] || c < 0 || c >= size[3] || t < 0
+                || t >= size[4])
+            throw new IndexOutOfBoundsException("(" + z + ", " + c + ", " + t
+                    + ") is outside of the block");
+        int index = (t*size[3]+c)*size[2]+z;
+        ByteBuffer plane = buffer.duplicate();
+        plane.position(index*getPlaneSize());
+        plane.limit(plane.position()+getPlaneSize());
+        return Plane2D.createPlane(plane, size[0], size[1], pixelsType);
+    }
+
+    /**
+     * Returns the value of a pixel of the block.
+     *
+     * @param x The x-coordinate, relative to the block.
+     * @param y The y-coordinate, relative to the block.
+     * @param z The z-section, relative to the block.
+     * @param c The channel, relative to the block.
+     * @param t The timepoint, relative to the block.
+     * @return See above.
+     */
+    public double getPixelValue(int x, int y, int z, int c, int t)
+    {
+        return getPlane(z, c, t).getPixelValue(x, y);
+    }
+
+    /**
+     * Decodes all the pixels of the block, in XYZCT order, in one call.
+     *
+     * @param values The array to fill, must hold at least
+     *               {@link #getPixelCount()} values.
+     */
+    public void getPixelValues(double[] values)
+    {
+        BytesConverter.getConverter(pixelsType).pack(buffer.duplicate(),
+                bytesPerPixel, values, getPixelCount());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Hypercube [offset=" + Arrays.toString(offset)
+                + ", size=" + Arrays.toString(size)
+                + ", pixelsType=" + pixelsType + "]";
+    }
+
+}
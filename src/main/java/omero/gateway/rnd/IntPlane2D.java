@@ -0,0 +1,135 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/** 
+ * A plane holding <code>32</code>-bit integer values. The values are read on
+ * demand from the raw big-endian data, no decoded copy of the plane is kept.
+ *
+ * @since 5.5
+ */
+public class IntPlane2D
+    extends Plane2D
+{
+
+    /** Flag indicating if the values are signed. */
+    private final boolean signed;
+
+    /** The typed view of the raw data. */
+    private final IntBuffer values;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param buffer The big-endian buffer holding the raw data, starting at
+     *               its current position.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param signed Pass <code>true</code> if the values are signed,
+     *               <code>false</code> otherwise.
+     */
+    IntPlane2D(ByteBuffer buffer, int sizeX, int sizeY, boolean signed)
+    {
+        super(buffer, sizeX, sizeY, 4, signed ? new IntConverter()
+                : new UintConverter());
+        this.signed = signed;
+        values = buffer().asIntBuffer();
+    }
+
+    /**
+     * Returns <code>true</code> if the values are signed,
+     * <code>false</code> otherwise.
+     *
+     * @return See above.
+     */
+    public boolean isSigned()
+    {
+        return signed;
+    }
+
+    /**
+     * Returns the stored value at the point specified by the x-coordinate
+     * and y-coordinate.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    public int getValue(int x, int y)
+    {
+        return values.get(index(x, y));
+    }
+
+    /**
+     * Copies the stored values of the specified row into the passed array.
+     *
+     * @param y The row.
+     * @param row The array to fill, at least {@link #getSizeX()} long.
+     */
+    public void getRow(int y, int[] row)
+    {
+        checkRow(y, row.length);
+        IntBuffer view = values.duplicate();
+        view.position(y*getSizeX());
+        view.get(row, 0, getSizeX());
+    }
+
+    /**
+     * Copies the stored values of the whole plane, row after row, into the
+     * passed array.
+     *
+     * @param pixels The array to fill, at least {@link #getPixelCount()}
+     *               long.
+     */
+    public void getPixels(int[] pixels)
+    {
+        checkPlane(pixels.length);
+        IntBuffer view = values.duplicate();
+        view.position(0);
+        view.get(pixels, 0, getPixelCount());
+    }
+
+    /**
+     * Returns the stored values of the whole plane, row after row.
+     *
+     * @return See above.
+     */
+    public int[] getPixels()
+    {
+        int[] pixels = new int[getPixelCount()];
+        getPixels(pixels);
+        return pixels;
+    }
+
+    /**
+     * Overridden to read the value from the typed view.
+     * @see Plane2D#getPixelValue(int, int)
+     */
+    @Override
+    public double getPixelValue(int x, int y)
+    {
+        return signed ? getValue(x, y) : getValue(x, y) & 0xFFFFFFFFL;
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+/** 
+ * Accumulates the statistics of pixel values: count, minimum, maximum,
+ * mean, standard deviation and a histogram over a fixed range, from which
+ * the percentiles are estimated. The values are added in batches, e.g. one
+ * plane or tile at a time, and partial results computed in parallel can be
+ * merged. Instances are not thread-safe.
+ *
+ * @since 5.5
+ */
+public class PixelStatistics
+{
+
+    /** The lower bound of the histogram range. */
+    private final double rangeMin;
+
+    /** The upper bound of the histogram range. */
+    private final double rangeMax;
+
+    /** The number of values per bin. */
+    private final long[] histogram;
+
+    /** The number of values, <code>NaN</code>s excluded. */
+    private long count;
+
+    /** The minimum value. */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /** The maximum value. */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /** The mean of the values. */
+    private double mean;
+
+    /** The sum of the squared differences from the mean. */
+    private double m2;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rangeMin The lower bound of the histogram range.
+     * @param rangeMax The upper bound of the histogram range. The values
+     *                 outside of the range are counted in the first or last
+     *                 bin.
+     * @param binCount The number of bins.
+     */
+    public PixelStatistics(double rangeMin, double rangeMax, int binCount)
+    {
+        if (!(rangeMin < rangeMax))
+            throw new IllegalArgumentException("Invalid range: [" + rangeMin
+                    + ", " + rangeMax + "]");
+        if (binCount < 1)
+            throw new IllegalArgumentException("Invalid number of bins: "
+                    + binCount);
+        this.rangeMin = rangeMin;
+        this.rangeMax = rangeMax;
+        this.histogram = new long[binCount];
+    }
+
+    /**
+     * Adds a batch of values. <code>NaN</code>s are ignored.
+     *
+     * @param values The values.
+     * @param n The number of values to add, starting at index 0.
+     */
+    public void add(double[] values, int n)
+    {
+        if (n > values.length)
+            throw new IllegalArgumentException("Cannot add " + n
+                    + " values from an array of length " + values.length);
+        int bins = histogram.length;
+        double scale = bins / (rangeMax - rangeMin);
+        long batchCount = 0;
+        double batchMin = Double.POSITIVE_INFINITY;
+        double batchMax = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            double v = values[i];
+            if (v != v)
+                continue;
+            batchCount++;
+            sum += v;
+            if (v < batchMin)
+                batchMin = v;
+            if (v > batchMax)
+                batchMax = v;
+            int bin = (int) ((v - rangeMin) * scale);
+            if (bin < 0)
+                bin = 0;
+            else if (bin >= bins)
+                bin = bins - 1;
+            histogram[bin]++;
+        }
+        if (batchCount == 0)
+            return;
+        double batchMean = sum / batchCount;
+        double batchM2 = 0;
+        for (int i = 0; i < n; i++) {
+            double d = values[i] - batchMean;
+            if (d == d)
+                batchM2 += d * d;
+        }
+        combine(batchCount, batchMin, batchMax, batchMean, batchM2);
+    }
+
+    /**
+     * Merges the statistics of another instance with the same histogram
+     * range and number of bins into this one.
+     *
+     * @param other The statistics to merge.
+     * @return This instance.
+     */
+    public PixelStatistics merge(PixelStatistics other)
+    {
+        if (other.rangeMin != rangeMin || other.rangeMax != rangeMax
+                || other.histogram.length != histogram.length)
+            throw new IllegalArgumentException(
+                    "Cannot merge statistics with different histograms");
+        for (int i = 0; i < histogram.length; i++)
+            histogram[i] += other.histogram[i];
+        if (other.count > 0)
+            combine(other.count, other.min, other.max, other.mean, other.m2);
+        return this;
+    }
+
+    /**
+     * Combines the moments of a set of values with the current ones.
+     *
+     * @param n The number of values.
+     * @param otherMin The minimum of the values.
+     * @param otherMax The maximum of the values.
+     * @param otherMean The mean of the values.
+     * @param otherM2 The sum of the squared differences from the mean.
+     */
+    private void combine(long n, double otherMin, double otherMax,
+            double otherMean, double otherM2)
+    {
+        long total = count + n;
+        double delta = otherMean - mean;
+        mean += delta * n / total;
+        m2 += otherM2 + delta * delta * ((double) count * n / total);
+        count = total;
+        if (otherMin < min)
+            min = otherMin;
+        if (otherMax > max)
+            max = otherMax;
+    }
+
+    /** @return The number of values, <code>NaN</code>s excluded. */
+    public long getCount() { return count; }
+
+    /** @return The minimum value or <code>NaN</code> if empty. */
+    public double getMin() { return count == 0 ? Double.NaN : min; }
+
+    /** @return The maximum value or <code>NaN</code> if empty. */
+    public double getMax() { return count == 0 ? Double.NaN : max; }
+
+    /** @return The mean value or <code>NaN</code> if empty. */
+    public double getMean() { return count == 0 ? Double.NaN : mean; }
+
+    /** @return The population standard deviation or <code>NaN</code> if
+     *          empty. */
+    public double getStandardDeviation()
+    {
+        return count == 0 ? Double.NaN : Math.sqrt(m2 / count);
+    }
+
+    /** @return The lower bound of the histogram range. */
+    public double getRangeMin() { return rangeMin; }
+
+    /** @return The upper bound of the histogram range. */
+    public double getRangeMax() { return rangeMax; }
+
+    /** @return A copy of the histogram. */
+    public long[] getHistogram() { return histogram.clone(); }
+
+    /**
+     * Estimates a percentile from the histogram, interpolating linearly
+     * within the bin. The estimate is exact to the width of a bin.
+     *
+     * @param p The percentile, between <code>0</code> and <code>100</code>.
+     * @return See above or <code>NaN</code> if empty.
+     */
+    public double getPercentile(double p)
+    {
+        if (p < 0 || p > 100)
+            throw new IllegalArgumentException("Invalid percentile: " + p);
+        if (count == 0)
+            return Double.NaN;
+        double target = p / 100 * count;
+        double width = (rangeMax - rangeMin) / histogram.length;
+        long cumulative = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            long h = histogram[i];
+            if (h > 0 && cumulative + h >= target) {
+                double v = rangeMin + width * (i + (target - cumulative) / h);
+                return Math.min(max, Math.max(min, v));
+            }
+            cumulative += h;
+        }
+        return max;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PixelStatistics [count=" + count + ", min=" + getMin()
+                + ", max=" + getMax() + ", mean=" + getMean() + ", stddev="
+                + getStandardDeviation() + ", bins=" + histogram.length
+                + "]";
+    }
+
+}
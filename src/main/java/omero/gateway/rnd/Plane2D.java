@@ -20,10 +20,19 @@
  */
 package omero.gateway.rnd;
 
+import java.nio.ByteBuffer;
+
 import omero.util.ReadOnlyByteArray;
 
 /** 
  * Holds structure used to mapped the raw pixels data.
+ * <p>
+ * Pixel values are decoded on demand from the underlying byte array, no
+ * decoded copy of the plane is kept. Use {@link #createPlane(ByteBuffer, int,
+ * int, String)} to get a typed view ({@link BytePlane2D},
+ * {@link ShortPlane2D}, {@link IntPlane2D}, {@link FloatPlane2D} or
+ * {@link DoublePlane2D}) which also offers row-major bulk accessors.
+ * </p>
  *
  * @author Jean-Marie Burel &nbsp;&nbsp;&nbsp;&nbsp;
  * <a href="mailto:j.burel@dundee.ac.uk">j.burel@dundee.ac.uk</a>
@@ -36,19 +45,22 @@ public class Plane2D
 {
 
     /** The number of bytes per pixel. */
-    private int bytesPerPixel;
+    private final int bytesPerPixel;
 
     /** The number of elements along the x-axis. */
-    private int sizeX;
+    private final int sizeX;
 
-    /** The original array. */
-    private ReadOnlyByteArray data;
+    /** The number of elements along the y-axis. */
+    private final int sizeY;
 
-    /** Strategy used to transform original data. */
-    private BytesConverter strategy;
+    /** The original array, <code>null</code> for typed planes. */
+    private final ReadOnlyByteArray data;
 
-    /** The converted raw data. */
-    private double[][] mappedData;
+    /** The original buffer, <code>null</code> for untyped planes. */
+    private final ByteBuffer buffer;
+
+    /** Strategy used to transform original data. */
+    private final BytesConverter strategy;
 
     /** 
      * Determines the offset value.
@@ -63,39 +75,178 @@ public class Plane2D
     }
 
     /**
-     * Converts the raw data.
+     * Creates a new instance.
      *
+     * @param data The array of byte.
+     * @param sizeX The number of pixels along the x-axis.
      * @param sizeY The number of pixels along the y-axis.
+     * @param bytesPerPixel The number of bytes per pixel.
+     * @param strategy Strategy to transform pixel.
      */
-    private void mappedData(int sizeY)
+    public Plane2D(ReadOnlyByteArray data, int sizeX, int sizeY,
+            int bytesPerPixel, BytesConverter strategy)
     {
-        mappedData = new double[sizeX][sizeY];
-        int offset;
-        for (int x = 0; x < sizeX; x++) {
-            for (int y = 0; y < sizeY; y++) {
-                offset = calculateOffset(x, y);
-                mappedData[x][y] = strategy.pack(data, offset, bytesPerPixel);
-            }
-        }
+        this.bytesPerPixel = bytesPerPixel;
+        this.data = data;
+        this.buffer = null;
+        this.strategy = strategy;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
     }
 
     /**
-     * Creates a new instance.
+     * Creates a new instance for the typed sub-classes.
      *
-     * @param data The array of byte.
+     * @param buffer The big-endian buffer holding the raw data, starting at
+     *               its current position.
      * @param sizeX The number of pixels along the x-axis.
      * @param sizeY The number of pixels along the y-axis.
      * @param bytesPerPixel The number of bytes per pixel.
      * @param strategy Strategy to transform pixel.
      */
-    public Plane2D(ReadOnlyByteArray data, int sizeX, int sizeY,
-            int bytesPerPixel, BytesConverter strategy)
+    Plane2D(ByteBuffer buffer, int sizeX, int sizeY, int bytesPerPixel,
+            BytesConverter strategy)
     {
         this.bytesPerPixel = bytesPerPixel;
-        this.data = data;
+        this.data = null;
+        this.buffer = buffer.slice();
         this.strategy = strategy;
         this.sizeX = sizeX;
-        mappedData(sizeY);
+        this.sizeY = sizeY;
+    }
+
+    /**
+     * Factory method to wrap the raw data of a plane or tile into a typed
+     * plane. The data is not copied.
+     *
+     * @param buffer The big-endian buffer holding the raw data, starting at
+     *               its current position.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param pixelsType The pixels type, one of the constants defined by
+     *                   {@link DataSink}.
+     * @return See above.
+     * @throws IllegalArgumentException If the pixels type is not supported
+     *                                  or the buffer is too small.
+     */
+    public static Plane2D createPlane(ByteBuffer buffer, int sizeX,
+            int sizeY, String pixelsType)
+    {
+        int bpp = DataSink.getBytesPerPixels(pixelsType);
+        if (bpp < 0)
+            throw new IllegalArgumentException("Pixels type not supported: "
+                    + pixelsType);
+        if ((long) sizeX * sizeY * bpp > buffer.remaining())
+            throw new IllegalArgumentException("Buffer too small for a "
+                    + sizeX + "x" + sizeY + " " + pixelsType + " plane");
+        if (DataSink.INT_8.equals(pixelsType))
+            return new BytePlane2D(buffer, sizeX, sizeY, true);
+        if (DataSink.UINT_8.equals(pixelsType))
+            return new BytePlane2D(buffer, sizeX, sizeY, false);
+        if (DataSink.INT_16.equals(pixelsType))
+            return new ShortPlane2D(buffer, sizeX, sizeY, true);
+        if (DataSink.UINT_16.equals(pixelsType))
+            return new ShortPlane2D(buffer, sizeX, sizeY, false);
+        if (DataSink.INT_32.equals(pixelsType))
+            return new IntPlane2D(buffer, sizeX, sizeY, true);
+        if (DataSink.UINT_32.equals(pixelsType))
+            return new IntPlane2D(buffer, sizeX, sizeY, false);
+        if (DataSink.FLOAT.equals(pixelsType))
+            return new FloatPlane2D(buffer, sizeX, sizeY);
+        return new DoublePlane2D(buffer, sizeX, sizeY);
+    }
+
+    /**
+     * Returns the linear, row-major index of the pixel.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    int index(int x, int y)
+    {
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY)
+            throw new IndexOutOfBoundsException("(" + x + ", " + y
+                    + ") is outside of the plane");
+        return sizeX*y+x;
+    }
+
+    /**
+     * Checks that the destination array can hold a row of the plane and
+     * that the row exists.
+     *
+     * @param y The row.
+     * @param length The length of the destination array.
+     */
+    void checkRow(int y, int length)
+    {
+        if (y < 0 || y >= sizeY)
+            throw new IndexOutOfBoundsException("Row " + y
+                    + " is outside of the plane");
+        if (length < sizeX)
+            throw new IllegalArgumentException("Array too small for a row");
+    }
+
+    /**
+     * Checks that the destination array can hold the whole plane.
+     *
+     * @param length The length of the destination array.
+     */
+    void checkPlane(int length)
+    {
+        if (length < getPixelCount())
+            throw new IllegalArgumentException("Array too small for the plane");
+    }
+
+    /**
+     * Returns the buffer holding the raw data. The returned buffer is
+     * independent, i.e. its position can be modified.
+     *
+     * @return See above.
+     */
+    ByteBuffer buffer()
+    {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Returns the number of pixels along the x-axis.
+     *
+     * @return See above.
+     */
+    public int getSizeX()
+    {
+        return sizeX;
+    }
+
+    /**
+     * Returns the number of pixels along the y-axis.
+     *
+     * @return See above.
+     */
+    public int getSizeY()
+    {
+        return sizeY;
+    }
+
+    /**
+     * Returns the number of pixels of the plane.
+     *
+     * @return See above.
+     */
+    public int getPixelCount()
+    {
+        return sizeX*sizeY;
+    }
+
+    /**
+     * Returns the number of bytes per pixel.
+     *
+     * @return See above.
+     */
+    public int getBytesPerPixel()
+    {
+        return bytesPerPixel;
     }
 
     /**
@@ -108,16 +259,63 @@ public class Plane2D
      */
     public double getPixelValue(int x, int y)
     {
-        return mappedData[x][y];
+        index(x, y);
+        return strategy.pack(data, calculateOffset(x, y), bytesPerPixel);
+    }
+
+    /**
+     * Copies the values of the specified row into the passed array.
+     *
+     * @param y The row.
+     * @param values The array to fill, at least {@link #getSizeX()} long.
+     */
+    public void getRow(int y, double[] values)
+    {
+        checkRow(y, values.length);
+        if (buffer == null) {
+            for (int x = 0; x < sizeX; x++)
+                values[x] = getPixelValue(x, y);
+            return;
+        }
+        ByteBuffer row = buffer();
+        row.position(bytesPerPixel*sizeX*y);
+        strategy.pack(row, bytesPerPixel, values, sizeX);
     }
 
     /**
-     * Returns the pixels values
+     * Copies the values of the whole plane, row after row, into the passed
+     * array.
+     *
+     * @param values The array to fill, at least {@link #getPixelCount()}
+     *               long.
+     */
+    public void getPixelValues(double[] values)
+    {
+        checkPlane(values.length);
+        if (buffer == null) {
+            for (int y = 0; y < sizeY; y++)
+                for (int x = 0; x < sizeX; x++)
+                    values[sizeX*y+x] = getPixelValue(x, y);
+            return;
+        }
+        strategy.pack(buffer(), bytesPerPixel, values, getPixelCount());
+    }
+
+    /**
+     * Returns the pixels values, the array is indexed <code>[x][y]</code>.
+     * This decodes the whole plane, use the row-major accessors of the typed
+     * planes for large planes.
      * 
      * @return See above.
      */
     public double[][] getPixelValues() {
-        return copyArray(mappedData);
+        double[][] values = new double[sizeX][sizeY];
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                values[x][y] = getPixelValue(x, y);
+            }
+        }
+        return values;
     }
 
     /**
@@ -128,22 +326,8 @@ public class Plane2D
      */
     public byte getRawValue(int offset)
     {
-        return data.get(offset);
-    }
-    
-    /**
-     * Simply copies a 2-dimensional double array
-     * 
-     * @param src
-     *            The array to copy
-     * @return A copy of the array
-     */
-    private double[][] copyArray(double[][] src) {
-        int length = src.length;
-        double[][] target = new double[length][src[0].length];
-        for (int i = 0; i < length; i++) {
-            System.arraycopy(src[i], 0, target[i], 0, src[i].length);
-        }
-        return target;
+        if (data != null)
+            return data.get(offset);
+        return buffer.get(offset);
     }
 }
@@ -0,0 +1,334 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import omero.gateway.Gateway;
+import omero.gateway.exception.DataSourceException;
+
+/** 
+ * Traverses the planes of a pixels set in a given dimension order, reading
+ * the next planes ahead asynchronously. At most <code>readAhead</code>
+ * planes are held or in flight per spliterator, i.e. per split when used by
+ * a parallel stream.
+ * The planes are returned as {@link Tile}s covering the whole plane,
+ * {@link Tile#getPlane()} throws a {@link DataSourceException} if a plane
+ * could not be retrieved.
+ * A callback, e.g. releasing the {@link DataSink}, is run once all the
+ * planes of all the splits have been consumed or {@link #close()} has been
+ * called. On close, the reads not started yet are cancelled and the ones
+ * running are awaited before the callback is run, so that the
+ * {@link DataSink} is not released while still in use.
+ *
+ * @since 5.5
+ */
+class PlaneSpliterator
+    implements Spliterator<Tile>
+{
+
+    /** The reads of all the splits, guarded by this object. */
+    private static final class Reads
+    {
+
+        /** The reads submitted and not consumed yet. */
+        private final Set<Future<Tile>> submitted =
+                new HashSet<Future<Tile>>();
+
+        /** The number of reads running. */
+        private int running;
+
+        /** Set once the spliterator has been closed. */
+        private boolean closed;
+    }
+
+    /** The data sink to read the planes from. */
+    private final DataSink sink;
+
+    /** Reference to the gateway. */
+    private final Gateway gw;
+
+    /** The number of pixels along the x-axis. */
+    private final int sizeX;
+
+    /** The number of pixels along the y-axis. */
+    private final int sizeY;
+
+    /**
+     * The size of the dimensions in traversal order, the first one varying
+     * fastest.
+     */
+    private final int[] sizes;
+
+    /** The indexes of z, c and t in {@link #sizes}. */
+    private final int[] dims;
+
+    /** The maximum number of planes read ahead. */
+    private final int readAhead;
+
+    /** The planes read ahead, in traversal order. */
+    private final Deque<Future<Tile>> inflight = new ArrayDeque<Future<Tile>>();
+
+    /** The index of the next plane to read. */
+    private int next;
+
+    /** The index after the last plane to read. */
+    private final int end;
+
+    /** The number of planes not consumed yet, shared by the splits. */
+    private final AtomicInteger remaining;
+
+    /** The reads, shared by the splits. */
+    private final Reads reads;
+
+    /** Run once all the planes have been consumed. */
+    private final Runnable onEnd;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sink The data sink to read the planes from.
+     * @param gw Reference to the gateway.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param sizes The size of the dimensions in traversal order.
+     * @param dims The indexes of z, c and t in <code>sizes</code>.
+     * @param readAhead The maximum number of planes read ahead.
+     * @param start The index of the first plane to read.
+     * @param end The index after the last plane to read.
+     * @param onEnd Run once all the planes have been consumed or
+     *              {@link #close()} has been called.
+     */
+    PlaneSpliterator(DataSink sink, Gateway gw, int sizeX, int sizeY,
+            int[] sizes, int[] dims, int readAhead, int start, int end,
+            Runnable onEnd)
+    {
+        this(sink, gw, sizeX, sizeY, sizes, dims, readAhead, start, end,
+                new AtomicInteger(end-start), new Reads(), onEnd);
+        if (end <= start)
+            close();
+    }
+
+    /**
+     * Creates a split.
+     *
+     * @param sink The data sink to read the planes from.
+     * @param gw Reference to the gateway.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param sizes The size of the dimensions in traversal order.
+     * @param dims The indexes of z, c and t in <code>sizes</code>.
+     * @param readAhead The maximum number of planes read ahead.
+     * @param start The index of the first plane to read.
+     * @param end The index after the last plane to read.
+     * @param remaining The number of planes not consumed yet.
+     * @param reads The reads of all the splits.
+     * @param onEnd Run once all the planes have been consumed.
+     */
+    private PlaneSpliterator(DataSink sink, Gateway gw, int sizeX,
+            int sizeY, int[] sizes, int[] dims, int readAhead, int start,
+            int end, AtomicInteger remaining, Reads reads, Runnable onEnd)
+    {
+        this.remaining = remaining;
+        this.reads = reads;
+        this.onEnd = onEnd;
+        this.sink = sink;
+        this.gw = gw;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizes = sizes;
+        this.dims = dims;
+        this.readAhead = Math.max(1, readAhead);
+        this.next = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates the tile covering the plane at the given index.
+     *
+     * @param index The index of the plane in traversal order.
+     * @return See above.
+     */
+    private Tile createTile(int index)
+    {
+        int[] pos = new int[3];
+        for (int i = 0; i < 3; i++) {
+            pos[i] = index % sizes[i];
+            index /= sizes[i];
+        }
+        return new Tile(pos[dims[0]], pos[dims[2]], pos[dims[1]], 0, 0, sizeX,
+                sizeY);
+    }
+
+    /**
+     * Submits reads until <code>readAhead</code> planes are in flight,
+     * unless closed.
+     */
+    private void fill()
+    {
+        synchronized (reads) {
+            while (!reads.closed && inflight.size() < readAhead
+                    && next < end) {
+                final Tile tile = createTile(next++);
+                Future<Tile> f = gw.submitWorker(new Callable<Tile>() {
+                    @Override
+                    public Tile call() {
+                        read(tile);
+                        return tile;
+                    }
+                });
+                reads.submitted.add(f);
+                inflight.add(f);
+            }
+        }
+    }
+
+    /**
+     * Reads the plane of the given tile, unless closed meanwhile.
+     *
+     * @param tile The tile.
+     */
+    private void read(Tile tile)
+    {
+        synchronized (reads) {
+            if (reads.closed) {
+                tile.setException(new DataSourceException("Closed"));
+                return;
+            }
+            reads.running++;
+        }
+        try {
+            tile.setPlane(sink.getPlane(tile.getZ(), tile.getT(),
+                    tile.getC()));
+        } catch (DataSourceException e) {
+            tile.setException(e);
+        } finally {
+            synchronized (reads) {
+                reads.running--;
+                reads.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Tile> action)
+    {
+        synchronized (reads) {
+            if (reads.closed) {
+                inflight.clear();
+                return false;
+            }
+        }
+        fill();
+        Future<Tile> f = inflight.poll();
+        if (f == null)
+            return false;
+        fill();
+        Tile tile;
+        try {
+            tile = f.get();
+        } catch (CancellationException e) {
+            // Closed meanwhile.
+            inflight.clear();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading ahead",
+                    e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to read ahead",
+                    e.getCause());
+        } finally {
+            synchronized (reads) {
+                reads.submitted.remove(f);
+            }
+            if (remaining.decrementAndGet() == 0)
+                close();
+        }
+        action.accept(tile);
+        return true;
+    }
+
+    @Override
+    public Spliterator<Tile> trySplit()
+    {
+        int mid = (next+end) >>> 1;
+        if (mid <= next)
+            return null;
+        // The prefix takes over the planes already in flight.
+        PlaneSpliterator prefix = new PlaneSpliterator(sink, gw, sizeX, sizeY,
+                sizes, dims, readAhead, next, mid, remaining, reads, onEnd);
+        prefix.inflight.addAll(inflight);
+        inflight.clear();
+        next = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return inflight.size()+(end-next);
+    }
+
+    /**
+     * Cancels the reads not started yet, waits for the running ones and runs
+     * the callback, if not done yet. No plane is returned afterwards.
+     */
+    void close()
+    {
+        boolean interrupted = false;
+        synchronized (reads) {
+            if (reads.closed)
+                return;
+            reads.closed = true;
+            for (Future<Tile> f : reads.submitted)
+                f.cancel(false);
+            reads.submitted.clear();
+            while (reads.running > 0) {
+                try {
+                    reads.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        onEnd.run();
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+}
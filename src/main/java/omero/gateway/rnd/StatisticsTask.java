@@ -0,0 +1,111 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import omero.gateway.exception.DataSourceException;
+
+/** 
+ * Computes the {@link PixelStatistics} of a list of tiles already fetched,
+ * splitting the list until a single tile is left. Each tile is decoded and
+ * accumulated on its own, and its data dropped; the partial results are
+ * merged on the way back.
+ * The tiles are fetched beforehand, see
+ * {@link DataSink#getTiles(java.util.Collection, int, java.util.concurrent.Semaphore)},
+ * so that no worker of the fork-join pool waits for the server.
+ *
+ * @since 5.5
+ */
+class StatisticsTask extends RecursiveTask<PixelStatistics>
+{
+
+    /** The tiles. */
+    private final List<Tile> tiles;
+
+    /** The index of the first tile to process. */
+    private final int from;
+
+    /** The index after the last tile to process. */
+    private final int to;
+
+    /** The lower bound of the histogram range. */
+    private final double rangeMin;
+
+    /** The upper bound of the histogram range. */
+    private final double rangeMax;
+
+    /** The number of bins. */
+    private final int binCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param tiles The tiles.
+     * @param from The index of the first tile to process.
+     * @param to The index after the last tile to process.
+     * @param rangeMin The lower bound of the histogram range.
+     * @param rangeMax The upper bound of the histogram range.
+     * @param binCount The number of bins.
+     */
+    StatisticsTask(List<Tile> tiles, int from, int to, double rangeMin,
+            double rangeMax, int binCount)
+    {
+        this.tiles = tiles;
+        this.from = from;
+        this.to = to;
+        this.rangeMin = rangeMin;
+        this.rangeMax = rangeMax;
+        this.binCount = binCount;
+    }
+
+    @Override
+    protected PixelStatistics compute()
+    {
+        if (to - from > 1) {
+            int mid = (from + to) >>> 1;
+            StatisticsTask left = new StatisticsTask(tiles, from, mid,
+                    rangeMin, rangeMax, binCount);
+            left.fork();
+            PixelStatistics right = new StatisticsTask(tiles, mid, to,
+                    rangeMin, rangeMax, binCount).compute();
+            return left.join().merge(right);
+        }
+        PixelStatistics stats = new PixelStatistics(rangeMin, rangeMax,
+                binCount);
+        if (from == to)
+            return stats;
+        try {
+            Tile tile = tiles.get(from);
+            Plane2D plane = tile.getPlane();
+            // Accumulated once, not held until the whole list is done.
+            tile.clearPlane();
+            double[] values = new double[plane.getPixelCount()];
+            plane.getPixelValues(values);
+            stats.add(values, values.length);
+        } catch (DataSourceException e) {
+            throw new IllegalStateException(e);
+        }
+        return stats;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import omero.gateway.exception.DataSourceException;
+
+/** 
+ * Identifies a tile of a pixels set and, once fetched, holds its data.
+ *
+ * @since 5.5
+ */
+public class Tile
+{
+
+    /** The z-section. */
+    private final int z;
+
+    /** The timepoint. */
+    private final int t;
+
+    /** The channel. */
+    private final int c;
+
+    /** The x coordinate. */
+    private final int x;
+
+    /** The y coordinate. */
+    private final int y;
+
+    /** The width of the tile. */
+    private final int width;
+
+    /** The height of the tile. */
+    private final int height;
+
+    /** The data of the tile, once fetched. */
+    private volatile Plane2D plane;
+
+    /** The error which occurred while fetching the tile, if any. */
+    private volatile DataSourceException exception;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param z The z-section.
+     * @param t The timepoint.
+     * @param c The channel.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param width The width of the tile.
+     * @param height The height of the tile.
+     */
+    public Tile(int z, int t, int c, int x, int y, int width, int height)
+    {
+        this.z = z;
+        this.t = t;
+        this.c = c;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns the z-section.
+     *
+     * @return See above.
+     */
+    public int getZ() { return z; }
+
+    /**
+     * Returns the timepoint.
+     *
+     * @return See above.
+     */
+    public int getT() { return t; }
+
+    /**
+     * Returns the channel.
+     *
+     * @return See above.
+     */
+    public int getC() { return c; }
+
+    /**
+     * Returns the x coordinate.
+     *
+     * @return See above.
+     */
+    public int getX() { return x; }
+
+    /**
+     * Returns the y coordinate.
+     *
+     * @return See above.
+     */
+    public int getY() { return y; }
+
+    /**
+     * Returns the width of the tile.
+     *
+     * @return See above.
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the height of the tile.
+     *
+     * @return See above.
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the data of the tile or <code>null</code> if it has not been
+     * fetched yet.
+     *
+     * @return See above.
+     * @throws DataSourceException If the tile could not be fetched.
+     */
+    public Plane2D getPlane() throws DataSourceException
+    {
+        if (exception != null)
+            throw exception;
+        return plane;
+    }
+
+    /**
+     * Sets the data of the tile.
+     *
+     * @param plane The data.
+     */
+    void setPlane(Plane2D plane)
+    {
+        this.plane = plane;
+    }
+
+    /**
+     * Drops the data of the tile, once processed, so that it can be garbage
+     * collected while the tile itself is still referenced.
+     */
+    public void clearPlane()
+    {
+        this.plane = null;
+    }
+
+    /**
+     * Sets the error which occurred while fetching the tile.
+     *
+     * @param exception The error.
+     */
+    void setException(DataSourceException exception)
+    {
+        this.exception = exception;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "(" + z + ", " + c + ", " + t + ", " + x + ", " + y + ", "
+                + width + ", " + height + ")";
+    }
+
+}
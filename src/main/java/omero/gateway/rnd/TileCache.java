@@ -0,0 +1,357 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+/** 
+ * Caches the raw data of tiles read by {@link DataSink}s, up to a given
+ * number of bytes. The data is held in direct buffers, i.e. outside of the
+ * Java heap, so that a large cache does not add to the garbage collection
+ * work. The buffers of the evicted tiles are pooled by size and reused for
+ * the next tiles, tiles usually having the same size; at most the byte
+ * limit of a segment is pooled. The least recently used tiles are evicted
+ * first.
+ * The cache is split into segments for concurrent access, the byte limit
+ * being enforced per segment: a tile larger than the limit of a segment is
+ * not cached.
+ * Tiles are scoped by group and pixels set, and outlive the
+ * {@link DataSink}s which read them: a pixels set is read again from the
+ * cache after its {@link DataSink} has been evicted and recreated. Use
+ * {@link #invalidate(long, long)} to drop the tiles of a pixels set.
+ *
+ * @since 5.5
+ */
+public class TileCache
+{
+
+    /** The default number of segments. */
+    static final int DEFAULT_CONCURRENCY_LEVEL = 4;
+
+    /** Identifies a tile. */
+    private static final class TileKey
+    {
+
+        /** The id of the group. */
+        private final long groupId;
+
+        /** The id of the pixels set. */
+        private final long pixelsId;
+
+        /** The level, z, c, t, x, y, width and height of the tile. */
+        private final int[] region;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param groupId The id of the group.
+         * @param pixelsId The id of the pixels set.
+         * @param region The resolution level, z, c, t, x, y, width and
+         *               height of the tile.
+         */
+        TileKey(long groupId, long pixelsId, int... region)
+        {
+            this.groupId = groupId;
+            this.pixelsId = pixelsId;
+            this.region = region;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int h = 31*Long.hashCode(groupId)+Long.hashCode(pixelsId);
+            for (int v : region)
+                h = 31*h+v;
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof TileKey))
+                return false;
+            TileKey k = (TileKey) o;
+            if (groupId != k.groupId || pixelsId != k.pixelsId)
+                return false;
+            for (int i = 0; i < region.length; i++)
+                if (region[i] != k.region[i])
+                    return false;
+            return true;
+        }
+    }
+
+    /**
+     * A cached tile. The buffer is recycled once the tile has been removed,
+     * the tile is read and freed under its own lock.
+     */
+    private static final class Slot
+    {
+
+        /** The data of the tile. */
+        private final ByteBuffer buffer;
+
+        /** Set once the tile has been removed and its buffer recycled. */
+        private boolean freed;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param buffer The data of the tile.
+         */
+        Slot(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+    }
+
+    /** The tiles. */
+    private final Cache<TileKey, Slot> tiles;
+
+    /**
+     * The size of the largest tile which can be cached, i.e. the byte limit
+     * of a segment, and the maximum number of bytes pooled.
+     */
+    private final long maxTileBytes;
+
+    /** The buffers of the removed tiles by size, guarded by itself. */
+    private final Map<Integer, Deque<ByteBuffer>> pool =
+            new HashMap<Integer, Deque<ByteBuffer>>();
+
+    /** The number of bytes pooled, guarded by {@link #pool}. */
+    private long pooled;
+
+    /** The number of bytes currently held by the tiles. */
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxBytes The maximum number of bytes to hold.
+     */
+    public TileCache(long maxBytes)
+    {
+        this(maxBytes, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxBytes The maximum number of bytes to hold.
+     * @param concurrencyLevel The number of segments.
+     */
+    TileCache(long maxBytes, int concurrencyLevel)
+    {
+        this.maxTileBytes = maxBytes/Math.max(1, concurrencyLevel);
+        tiles = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel)
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<TileKey, Slot>() {
+                    @Override
+                    public int weigh(TileKey key, Slot value) {
+                        return value.buffer.capacity();
+                    }
+                })
+                .removalListener(new RemovalListener<TileKey, Slot>() {
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<TileKey, Slot> n) {
+                        free(n.getValue());
+                    }
+                })
+                .recordStats().build();
+    }
+
+    /**
+     * Returns a direct buffer of the given size, from the pool if possible.
+     *
+     * @param capacity The size of the buffer.
+     * @return See above.
+     */
+    private ByteBuffer allocate(int capacity)
+    {
+        synchronized (pool) {
+            Deque<ByteBuffer> buffers = pool.get(capacity);
+            if (buffers != null && !buffers.isEmpty()) {
+                pooled -= capacity;
+                return buffers.poll();
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Frees a removed tile and pools its buffer, unless the pool is full.
+     *
+     * @param slot The tile.
+     */
+    private void free(Slot slot)
+    {
+        synchronized (slot) {
+            slot.freed = true;
+        }
+        int capacity = slot.buffer.capacity();
+        size.addAndGet(-capacity);
+        synchronized (pool) {
+            if (pooled+capacity > maxTileBytes)
+                return;
+            Deque<ByteBuffer> buffers = pool.get(capacity);
+            if (buffers == null) {
+                buffers = new ArrayDeque<ByteBuffer>();
+                pool.put(capacity, buffers);
+            }
+            buffers.add(slot.buffer);
+            pooled += capacity;
+        }
+    }
+
+    /**
+     * Returns a copy of the cached tile, on the heap, or <code>null</code>.
+     *
+     * @param groupId The id of the group.
+     * @param pixelsId The id of the pixels set.
+     * @param level The resolution level.
+     * @param z The z-section.
+     * @param c The channel.
+     * @param t The timepoint.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param w The width of the tile.
+     * @param h The height of the tile.
+     * @return See above.
+     */
+    ByteBuffer get(long groupId, long pixelsId, int level, int z, int c,
+            int t, int x, int y, int w, int h)
+    {
+        Slot slot = tiles.getIfPresent(
+                new TileKey(groupId, pixelsId, level, z, c, t, x, y, w, h));
+        if (slot == null)
+            return null;
+        synchronized (slot) {
+            // Removed and recycled meanwhile.
+            if (slot.freed)
+                return null;
+            byte[] data = new byte[slot.buffer.capacity()];
+            slot.buffer.duplicate().get(data);
+            return ByteBuffer.wrap(data);
+        }
+    }
+
+    /**
+     * Copies the tile into the cache. A tile larger than the byte limit of
+     * a segment is ignored.
+     *
+     * @param groupId The id of the group.
+     * @param pixelsId The id of the pixels set.
+     * @param level The resolution level.
+     * @param z The z-section.
+     * @param c The channel.
+     * @param t The timepoint.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param w The width of the tile.
+     * @param h The height of the tile.
+     * @param data The raw data of the tile.
+     */
+    void put(long groupId, long pixelsId, int level, int z, int c, int t,
+            int x, int y, int w, int h, byte[] data)
+    {
+        if (data.length > maxTileBytes)
+            return;
+        ByteBuffer buffer = allocate(data.length);
+        buffer.clear();
+        buffer.put(data).flip();
+        size.addAndGet(data.length);
+        tiles.put(new TileKey(groupId, pixelsId, level, z, c, t, x, y, w, h),
+                new Slot(buffer));
+    }
+
+    /**
+     * Removes the tiles of the specified pixels set.
+     *
+     * @param groupId The id of the group.
+     * @param pixelsId The id of the pixels set.
+     */
+    public void invalidate(long groupId, long pixelsId)
+    {
+        Iterator<TileKey> i = tiles.asMap().keySet().iterator();
+        TileKey key;
+        while (i.hasNext()) {
+            key = i.next();
+            if (key.groupId == groupId && key.pixelsId == pixelsId)
+                i.remove();
+        }
+    }
+
+    /** Removes all the tiles and releases the pooled buffers. */
+    public void clear()
+    {
+        tiles.invalidateAll();
+        synchronized (pool) {
+            pool.clear();
+            pooled = 0;
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently held by the tiles.
+     *
+     * @return See above.
+     */
+    public long getSize()
+    {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of bytes held by the pooled buffers.
+     *
+     * @return See above.
+     */
+    public long getPooledSize()
+    {
+        synchronized (pool) {
+            return pooled;
+        }
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts.
+     *
+     * @return See above.
+     */
+    public CacheStats getStats()
+    {
+        return tiles.stats();
+    }
+
+}
@@ -0,0 +1,314 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import omero.api.RawPixelsStorePrx;
+import omero.gateway.exception.DataSourceException;
+
+/**
+ * Iterates over tiles read in parallel by several workers, each using its
+ * own pixels store, see {@link DataSink#getTiles(java.util.Collection, int,
+ * Semaphore)}. The tiles are returned in the order in which they complete,
+ * {@link Tile#getPlane()} throws a {@link DataSourceException} if a tile
+ * could not be retrieved.
+ * At most <code>capacity</code> tiles are fetched and not consumed yet; the
+ * workers stop, releasing their pixels stores, when the consumer falls
+ * behind and are restarted when it catches up. Call {@link #close()} when
+ * the iteration stops early, so that the remaining tiles are not read.
+ * Instances are not thread-safe.
+ *
+ * @since 5.5
+ */
+public class TileIterator
+    implements Iterator<Tile>, AutoCloseable
+{
+
+    /** The data sink the tiles are read from. */
+    private final DataSink sink;
+
+    /** The tiles not read yet, guarded by this object. */
+    private final Iterator<Tile> pending;
+
+    /** The tiles read and not consumed yet, guarded by this object. */
+    private final Deque<Tile> done = new ArrayDeque<Tile>();
+
+    /** The total number of tiles. */
+    private final int total;
+
+    /** The maximum number of workers. */
+    private final int maxWorkers;
+
+    /** Limits the number of concurrent requests to the server, or null. */
+    private final Semaphore permits;
+
+    /** The number of tiles returned so far. */
+    private int returned;
+
+    /** The number of running workers, guarded by this object. */
+    private int workers;
+
+    /**
+     * The number of tiles which can still be read before the consumer takes
+     * one, guarded by this object.
+     */
+    private int slots;
+
+    /** The error which stopped a worker, guarded by this object. */
+    private Exception failure;
+
+    /** Set once {@link #close()} has been called, guarded by this object. */
+    private boolean closed;
+
+    /**
+     * Creates a new instance. Call {@link #start()} to start reading.
+     *
+     * @param sink The data sink the tiles are read from.
+     * @param tiles The tiles to read.
+     * @param total The number of tiles.
+     * @param maxWorkers The maximum number of workers.
+     * @param capacity The maximum number of tiles fetched and not consumed.
+     * @param permits Limits the number of concurrent requests to the server,
+     *                can be <code>null</code>.
+     */
+    TileIterator(DataSink sink, Iterator<Tile> tiles, int total,
+            int maxWorkers, int capacity, Semaphore permits)
+    {
+        this.sink = sink;
+        this.pending = tiles;
+        this.total = total;
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.slots = Math.max(this.maxWorkers, capacity);
+        this.permits = permits;
+    }
+
+    /**
+     * Returns an iterator without tiles.
+     *
+     * @return See above.
+     */
+    public static TileIterator empty()
+    {
+        return new TileIterator(null, Collections.<Tile>emptyIterator(), 0,
+                1, 1, null);
+    }
+
+    /**
+     * Starts the workers.
+     *
+     * @return This iterator.
+     */
+    TileIterator start()
+    {
+        int n;
+        synchronized (this) {
+            n = Math.min(maxWorkers, total);
+            workers += n;
+        }
+        for (int i = 0; i < n; i++)
+            submit();
+        return this;
+    }
+
+    /**
+     * Submits a worker, already counted in {@link #workers}.
+     */
+    private void submit()
+    {
+        try {
+            sink.getGateway().submitWorker(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    work();
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                workers--;
+                failure = e;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Reads tiles until none is left, there is no free slot or this
+     * iterator has been closed.
+     */
+    private void work()
+    {
+        RawPixelsStorePrx prx = null;
+        boolean retired = false;
+        try {
+            prx = sink.openStore();
+            Tile tile;
+            while ((tile = take()) != null) {
+                try {
+                    tile.setPlane(sink.readTile(prx, permits, tile.getZ(),
+                            tile.getT(), tile.getC(), tile.getX(),
+                            tile.getY(), tile.getWidth(), tile.getHeight()));
+                } catch (DataSourceException e) {
+                    tile.setException(e);
+                } catch (RuntimeException e) {
+                    tile.setException(new DataSourceException(
+                            "Cannot retrieve the tile " + tile, e));
+                }
+                deliver(tile);
+            }
+            retired = true;
+            sink.getGateway().releaseService(sink.getContext(), prx);
+            prx = null;
+        } catch (Exception e) {
+            // The other workers take over the remaining tiles.
+            synchronized (this) {
+                failure = e;
+            }
+        } finally {
+            if (prx != null)
+                sink.getGateway().closeService(sink.getContext(), prx);
+            if (!retired) {
+                synchronized (this) {
+                    workers--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next tile to read and takes a slot, or retires the
+     * calling worker and returns <code>null</code>.
+     *
+     * @return See above.
+     */
+    private synchronized Tile take()
+    {
+        if (!closed && slots > 0 && pending.hasNext()) {
+            slots--;
+            return pending.next();
+        }
+        workers--;
+        notifyAll();
+        return null;
+    }
+
+    /**
+     * Hands a read tile over to the consumer.
+     *
+     * @param tile The tile.
+     */
+    private synchronized void deliver(Tile tile)
+    {
+        if (closed) {
+            tile.clearPlane();
+            return;
+        }
+        done.add(tile);
+        notifyAll();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        synchronized (this) {
+            if (closed)
+                return false;
+        }
+        return returned < total;
+    }
+
+    @Override
+    public Tile next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        boolean restart = false;
+        Tile tile;
+        synchronized (this) {
+            while (done.isEmpty()) {
+                if (closed)
+                    throw new NoSuchElementException("Iterator closed");
+                if (workers == 0) {
+                    // All the workers have failed.
+                    tile = pending.next();
+                    tile.setException(new DataSourceException(
+                            "Cannot retrieve the tile " + tile, failure));
+                    returned++;
+                    return tile;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new NoSuchElementException(
+                            "Interrupted while waiting for a tile");
+                }
+            }
+            tile = done.poll();
+            returned++;
+            slots++;
+            if (workers < maxWorkers && pending.hasNext()) {
+                workers++;
+                restart = true;
+            }
+        }
+        if (restart)
+            submit();
+        return tile;
+    }
+
+    /**
+     * Stops reading the tiles. The tiles being read by the workers are
+     * discarded, the workers release their pixels stores. The tiles not
+     * read yet are left untouched.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this) {
+            closed = true;
+            for (Tile tile : done)
+                tile.clearPlane();
+            done.clear();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of running workers.
+     *
+     * @return See above.
+     */
+    synchronized int getWorkerCount()
+    {
+        return workers;
+    }
+
+}
@@ -20,6 +20,10 @@
  */
 package omero.gateway.rnd;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
 import omero.util.ReadOnlyByteArray;
 
 /** 
@@ -78,4 +82,33 @@ public class UintConverter
         return r;
     }
 
+    /**
+     * Overridden to decode through a typed view of the buffer.
+     * @see BytesConverter#pack(ByteBuffer, int, double[], int)
+     */
+    public void pack(ByteBuffer data, int length, double[] values,
+            int count)
+    {
+        checkCapacity(data, length, values, count);
+        ByteBuffer buf = view(data);
+        switch (length) {
+            case 1:
+                for (int i = 0; i < count; i++)
+                    values[i] = buf.get(i)&0xFF;
+                break;
+            case 2:
+                ShortBuffer shorts = buf.asShortBuffer();
+                for (int i = 0; i < count; i++)
+                    values[i] = shorts.get(i)&0xFFFF;
+                break;
+            case 4:
+                IntBuffer ints = buf.asIntBuffer();
+                for (int i = 0; i < count; i++)
+                    values[i] = ints.get(i)&0xFFFFFFFFL;
+                break;
+            default:
+                super.pack(data, length, values, count);
+        }
+    }
+
 }
@@ -0,0 +1,454 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.util;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link ExecutorService} which can be passed to the
+ * {@link omero.gateway.Gateway} to bound the resources used by the
+ * asynchronous tasks. Two execution models are supported:
+ * <ul>
+ * <li>A bounded thread pool with a bounded queue. When the queue is full the
+ * task is run by the submitting thread, which slows the submitter down
+ * instead of spawning more threads.</li>
+ * <li>One virtual thread per task (on JDKs providing virtual threads). The
+ * number of concurrently running tasks is capped; submitting blocks until a
+ * running task has completed.</li>
+ * </ul>
+ * Both report the number of active and waiting tasks. As with any bounded
+ * executor, tasks must not block waiting for other tasks submitted to the
+ * same executor; the gateway runs its own fan-out on a separate pool, see
+ * {@link #newWorkerExecutor()} and
+ * {@link omero.gateway.Gateway#submitWorker(java.util.concurrent.Callable)}.
+ *
+ * @since 5.5
+ */
+public class GatewayExecutor extends AbstractExecutorService {
+
+    /** The default capacity of the queue of the bounded pool. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /** The time in seconds after which idle pool threads terminate. */
+    private static final long KEEP_ALIVE = 60;
+
+    /** The prefix of the names of the pool threads. */
+    private static final String THREAD_NAME = "omero-gateway-";
+
+    /** The prefix of the names of the worker pool threads. */
+    private static final String WORKER_THREAD_NAME = "omero-gateway-worker-";
+
+    /** The bounded pool, <code>null</code> in virtual thread mode. */
+    private final ThreadPoolExecutor pool;
+
+    /** The virtual thread executor, <code>null</code> in pool mode. */
+    private final ExecutorService virtual;
+
+    /** Limits the concurrent tasks in virtual thread mode. */
+    private final Semaphore permits;
+
+    /** The maximum number of concurrently running tasks. */
+    private final int maxConcurrency;
+
+    /** The number of running tasks. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** The number of completed tasks. */
+    private final AtomicLong completed = new AtomicLong();
+
+    /** The number of tasks run by the submitting thread. */
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    /**
+     * Creates a bounded thread pool.
+     *
+     * @param poolSize
+     *            The maximum number of threads
+     * @param queueCapacity
+     *            The maximum number of waiting tasks
+     * @return See above
+     */
+    public static GatewayExecutor newBoundedExecutor(int poolSize,
+            int queueCapacity) {
+        if (poolSize < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException(
+                    "Pool size and queue capacity must be positive");
+        return new GatewayExecutor(poolSize,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), THREAD_NAME,
+                false);
+    }
+
+    /**
+     * Creates a bounded thread pool sized for the available processors.
+     *
+     * @return See above
+     */
+    public static GatewayExecutor newBoundedExecutor() {
+        return newBoundedExecutor(getDefaultPoolSize(),
+                DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates the pool running the tasks the gateway itself waits for, e.g.
+     * the tile reads of a {@link omero.gateway.rnd.DataSink}. The number of
+     * threads is bounded, the tasks wait in an unbounded queue instead of
+     * being run by the submitting thread, which may hold locks or be the
+     * one consuming the results. The threads are daemon threads.
+     *
+     * @param poolSize
+     *            The maximum number of threads
+     * @return See above
+     */
+    public static GatewayExecutor newWorkerExecutor(int poolSize) {
+        return newWorkerExecutor(poolSize, WORKER_THREAD_NAME);
+    }
+
+    /**
+     * Creates a pool like {@link #newWorkerExecutor(int)}, naming its
+     * threads with the given prefix.
+     *
+     * @param poolSize
+     *            The maximum number of threads
+     * @param threadName
+     *            The prefix of the names of the threads
+     * @return See above
+     */
+    public static GatewayExecutor newWorkerExecutor(int poolSize,
+            String threadName) {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("Pool size must be positive");
+        return new GatewayExecutor(poolSize,
+                new LinkedBlockingQueue<Runnable>(), threadName, true);
+    }
+
+    /**
+     * Creates the pool running the tasks the gateway itself waits for, see
+     * {@link #newWorkerExecutor(int)}, sized for blocking I/O.
+     *
+     * @return See above
+     */
+    public static GatewayExecutor newWorkerExecutor() {
+        return newWorkerExecutor(4 * getDefaultPoolSize());
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task. If the JDK does
+     * not support virtual threads, a bounded thread pool with at most
+     * <code>maxConcurrency</code> threads is returned instead, see
+     * {@link #isVirtual()}.
+     *
+     * @param maxConcurrency
+     *            The maximum number of concurrently running tasks
+     * @return See above
+     */
+    public static GatewayExecutor newVirtualThreadExecutor(int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException(
+                    "Maximum concurrency must be positive");
+        ExecutorService virtual = createVirtualThreadExecutor();
+        if (virtual == null)
+            return newBoundedExecutor(
+                    Math.min(maxConcurrency, getDefaultPoolSize()),
+                    DEFAULT_QUEUE_CAPACITY);
+        return new GatewayExecutor(virtual, maxConcurrency);
+    }
+
+    /**
+     * Returns <code>true</code> if the JDK supports virtual threads,
+     * <code>false</code> otherwise.
+     *
+     * @return See above
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * Returns the default pool size, twice the number of available
+     * processors but at least 4.
+     *
+     * @return See above
+     */
+    public static int getDefaultPoolSize() {
+        return Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the <code>Executors.newVirtualThreadPerTaskExecutor</code>
+     * method or <code>null</code> if not available.
+     *
+     * @return See above
+     */
+    private static Method getVirtualThreadFactoryMethod() {
+        try {
+            return java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor or returns
+     * <code>null</code> if not supported.
+     *
+     * @return See above
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        Method m = getVirtualThreadFactoryMethod();
+        if (m == null)
+            return null;
+        try {
+            return (ExecutorService) m.invoke(null);
+        } catch (Exception e) {
+            // e.g. preview feature not enabled
+            return null;
+        }
+    }
+
+    /**
+     * Creates a bounded thread pool.
+     *
+     * @param poolSize
+     *            The maximum number of threads
+     * @param queue
+     *            The queue of the waiting tasks
+     * @param threadName
+     *            The prefix of the names of the threads
+     * @param daemon
+     *            Pass <code>true</code> to create daemon threads
+     */
+    private GatewayExecutor(int poolSize, BlockingQueue<Runnable> queue,
+            final String threadName, final boolean daemon) {
+        this.maxConcurrency = poolSize;
+        this.virtual = null;
+        this.permits = null;
+        final AtomicInteger index = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE,
+                TimeUnit.SECONDS, queue, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, threadName
+                                + index.incrementAndGet());
+                        t.setDaemon(daemon);
+                        return t;
+                    }
+                }, new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r,
+                            ThreadPoolExecutor executor) {
+                        if (executor.isShutdown())
+                            throw new RejectedExecutionException(
+                                    "Executor has been shut down");
+                        callerRuns.incrementAndGet();
+                        r.run();
+                    }
+                });
+        // Don't keep idle threads (and the JVM) alive
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates a virtual thread per task executor.
+     *
+     * @param virtual
+     *            The underlying executor
+     * @param maxConcurrency
+     *            The maximum number of concurrently running tasks
+     */
+    private GatewayExecutor(ExecutorService virtual, int maxConcurrency) {
+        this.pool = null;
+        this.virtual = virtual;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * Returns <code>true</code> if the tasks run on virtual threads,
+     * <code>false</code> if they run on a bounded thread pool.
+     *
+     * @return See above
+     */
+    public boolean isVirtual() {
+        return virtual != null;
+    }
+
+    /**
+     * Returns the maximum number of concurrently running tasks (excluding
+     * tasks run by the submitting thread).
+     *
+     * @return See above
+     */
+    public int getMaximumConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the number of currently running tasks.
+     *
+     * @return See above
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run. In virtual thread mode
+     * this is the number of threads blocked in a submit call.
+     *
+     * @return See above
+     */
+    public int getQueueSize() {
+        if (pool != null)
+            return pool.getQueue().size();
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Returns the number of completed tasks.
+     *
+     * @return See above
+     */
+    public long getCompletedTaskCount() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of tasks which had to be run by the submitting
+     * thread because the queue was full.
+     *
+     * @return See above
+     */
+    public long getCallerRunsCount() {
+        return callerRuns.get();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null)
+            throw new NullPointerException();
+        if (pool != null) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runTask(command);
+                }
+            });
+            return;
+        }
+        if (virtual.isShutdown())
+            throw new RejectedExecutionException("Executor has been shut down");
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(
+                    "Interrupted while waiting to submit", e);
+        }
+        try {
+            virtual.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runTask(command);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the task and updates the counters.
+     *
+     * @param command
+     *            The task
+     */
+    private void runTask(Runnable command) {
+        active.incrementAndGet();
+        try {
+            command.run();
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the underlying executor.
+     *
+     * @return See above
+     */
+    private ExecutorService delegate() {
+        return pool != null ? pool : virtual;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate().shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate().shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate().isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate().isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return delegate().awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayExecutor [virtual=" + isVirtual() + ", active="
+                + getActiveCount() + ", queued=" + getQueueSize()
+                + ", completed=" + getCompletedTaskCount() + "]";
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.util;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import omero.log.LogMessage;
+import omero.log.Logger;
+
+/**
+ * Tracks the health of the connection to the server without blocking the
+ * callers. The state is learnt passively from the outcome of the calls to
+ * the server and actively by a background check, using the
+ * {@link NetworkChecker} if any. A connection failure triggers an
+ * immediate background check.
+ *
+ * @since 5.5
+ */
+public class HealthMonitor {
+
+    /** The checker used by the background checks, may be <code>null</code>. */
+    private final NetworkChecker checker;
+
+    /** Runs the background checks. */
+    private final ScheduledExecutorService executor;
+
+    /** Reference to the logger. */
+    private final Logger logger;
+
+    /** The current state of the network. */
+    private volatile boolean networkUp = true;
+
+    /** Flag indicating that a background check is queued or running. */
+    private final AtomicBoolean checkPending = new AtomicBoolean();
+
+    /** The number of successful calls. */
+    private final AtomicLong successes = new AtomicLong();
+
+    /** The number of calls which failed due to the connection. */
+    private final AtomicLong failures = new AtomicLong();
+
+    /** The time of the last successful call or check. */
+    private final AtomicLong lastSuccess = new AtomicLong(
+            System.currentTimeMillis());
+
+    /** Performs a background check. */
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                setNetworkUp(checker == null || checker.isNetworkup(false));
+            } catch (Throwable t) {
+                setNetworkUp(false);
+                if (logger != null)
+                    logger.debug(this, new LogMessage("Network check failed",
+                            t));
+            } finally {
+                checkPending.set(false);
+            }
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     *
+     * @param checker
+     *            The checker used by the background checks, may be
+     *            <code>null</code>.
+     * @param executor
+     *            Runs the background checks.
+     * @param logger
+     *            Reference to the logger, may be <code>null</code>.
+     */
+    public HealthMonitor(NetworkChecker checker,
+            ScheduledExecutorService executor, Logger logger) {
+        this.checker = checker;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    /**
+     * Schedules the periodic background checks.
+     *
+     * @param period
+     *            The time between two checks.
+     * @param unit
+     *            The unit of the period.
+     */
+    public void start(long period, TimeUnit unit) {
+        executor.scheduleWithFixedDelay(check, period, period, unit);
+    }
+
+    /**
+     * Returns the last known state of the network, never blocks.
+     *
+     * @return See above.
+     */
+    public boolean isNetworkUp() {
+        return networkUp;
+    }
+
+    /**
+     * Sets the state of the network, e.g. after an explicit check.
+     *
+     * @param up
+     *            Pass <code>true</code> if the network is up,
+     *            <code>false</code> otherwise.
+     */
+    public void setNetworkUp(boolean up) {
+        networkUp = up;
+        if (up)
+            lastSuccess.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a successful call to the server.
+     */
+    public void recordSuccess() {
+        successes.incrementAndGet();
+        lastSuccess.set(System.currentTimeMillis());
+        networkUp = true;
+    }
+
+    /**
+     * Records a failed call to the server. Failures which are not due to
+     * the connection are ignored, the others trigger a background check.
+     *
+     * @param t
+     *            The failure.
+     * @return <code>true</code> if the failure is due to the connection,
+     *         <code>false</code> otherwise.
+     */
+    public boolean recordFailure(Throwable t) {
+        if (!isConnectionFailure(t))
+            return false;
+        failures.incrementAndGet();
+        requestCheck();
+        return true;
+    }
+
+    /**
+     * Queues a background check unless one is already pending.
+     */
+    public void requestCheck() {
+        if (checkPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(check);
+            } catch (RuntimeException e) {
+                // e.g. rejected after shutdown
+                checkPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of successful calls.
+     *
+     * @return See above.
+     */
+    public long getSuccessCount() {
+        return successes.get();
+    }
+
+    /**
+     * Returns the number of calls which failed due to the connection.
+     *
+     * @return See above.
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the time of the last successful call or check, in
+     * milliseconds since the epoch.
+     *
+     * @return See above.
+     */
+    public long getLastSuccess() {
+        return lastSuccess.get();
+    }
+
+    /**
+     * Returns <code>true</code> if the specified exception indicates that
+     * the server could not be reached or the connection was lost,
+     * <code>false</code> otherwise.
+     *
+     * @param t
+     *            The exception.
+     * @return See above.
+     */
+    public static boolean isConnectionFailure(Throwable t) {
+        return t instanceof Ice.SocketException
+                || t instanceof Ice.TimeoutException
+                || t instanceof Ice.DNSException
+                || t instanceof Ice.CommunicatorDestroyedException;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2026 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import omero.gateway.ServiceCallListener;
+
+/**
+ * A {@link ServiceCallListener} aggregating the calls per service and
+ * operation: number of calls, errors, binary payload bytes (see
+ * {@link ServiceCallListener#callCompleted}) and a latency
+ * histogram. The histogram uses power of two buckets: bucket <code>0</code>
+ * counts the calls shorter than 1 microsecond, bucket <code>i</code> the
+ * calls taking between <code>2^(i-1)</code> and <code>2^i</code>
+ * microseconds; the last bucket also counts all longer calls.
+ *
+ * @since 5.5
+ */
+public class ServiceCallMetrics implements ServiceCallListener {
+
+    /** The number of buckets of the latency histograms. */
+    public static final int BUCKETS = 32;
+
+    /** The metrics by <code>service.operation</code>. */
+    private final ConcurrentMap<String, Operation> operations =
+            new ConcurrentHashMap<String, Operation>();
+
+    @Override
+    public void callCompleted(String service, String operation,
+            long durationNanos, long bytes, Throwable error) {
+        String key = service + "." + operation;
+        Operation op = operations.get(key);
+        if (op == null) {
+            Operation created = new Operation(service, operation);
+            op = operations.putIfAbsent(key, created);
+            if (op == null)
+                op = created;
+        }
+        op.record(durationNanos, bytes, error != null);
+    }
+
+    /**
+     * Returns the metrics of the specified operation or <code>null</code> if
+     * it hasn't been called.
+     *
+     * @param service
+     *            The name of the service, e.g. <code>IQuery</code>
+     * @param operation
+     *            The name of the operation
+     * @return See above
+     */
+    public Operation getOperation(String service, String operation) {
+        return operations.get(service + "." + operation);
+    }
+
+    /**
+     * Returns the metrics of all operations called so far, keyed and sorted
+     * by <code>service.operation</code>.
+     *
+     * @return See above
+     */
+    public Map<String, Operation> getOperations() {
+        return Collections.unmodifiableMap(new TreeMap<String, Operation>(
+                operations));
+    }
+
+    /**
+     * Discards all metrics.
+     */
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * Returns the histogram bucket of the specified duration.
+     *
+     * @param durationNanos
+     *            The duration in nanoseconds
+     * @return See above
+     */
+    static int bucket(long durationNanos) {
+        long micros = durationNanos / 1000;
+        if (micros <= 0)
+            return 0;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * The metrics of a single operation of a service.
+     */
+    public static class Operation {
+
+        /** The name of the service. */
+        private final String service;
+
+        /** The name of the operation. */
+        private final String operation;
+
+        /** The number of calls. */
+        private final LongAdder count = new LongAdder();
+
+        /** The number of failed calls. */
+        private final LongAdder errors = new LongAdder();
+
+        /** The number of binary payload bytes. */
+        private final LongAdder bytes = new LongAdder();
+
+        /** The accumulated duration of the calls in nanoseconds. */
+        private final LongAdder totalNanos = new LongAdder();
+
+        /** The duration of the longest call in nanoseconds. */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /** The latency histogram. */
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        /**
+         * Creates a new instance.
+         *
+         * @param service
+         *            The name of the service
+         * @param operation
+         *            The name of the operation
+         */
+        Operation(String service, String operation) {
+            this.service = service;
+            this.operation = operation;
+        }
+
+        /**
+         * Records a call.
+         *
+         * @param durationNanos
+         *            The duration in nanoseconds
+         * @param bytes
+         *            The number of binary payload bytes
+         * @param failed
+         *            Pass <code>true</code> if the call failed
+         */
+        void record(long durationNanos, long bytes, boolean failed) {
+            count.increment();
+            if (failed)
+                errors.increment();
+            if (bytes > 0)
+                this.bytes.add(bytes);
+            totalNanos.add(durationNanos);
+            histogram.incrementAndGet(bucket(durationNanos));
+            long max = maxNanos.get();
+            while (durationNanos > max
+                    && !maxNanos.compareAndSet(max, durationNanos))
+                max = maxNanos.get();
+        }
+
+        /**
+         * Returns the name of the service.
+         *
+         * @return See above
+         */
+        public String getService() {
+            return service;
+        }
+
+        /**
+         * Returns the name of the operation.
+         *
+         * @return See above
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Returns the number of calls.
+         *
+         * @return See above
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the number of failed calls.
+         *
+         * @return See above
+         */
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /**
+         * Returns the number of binary payload bytes, i.e. of the
+         * <code>byte[]</code> arguments and results.
+         *
+         * @return See above
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * Returns the accumulated duration of the calls in nanoseconds.
+         *
+         * @return See above
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Returns the mean duration of the calls in nanoseconds.
+         *
+         * @return See above
+         */
+        public double getMeanNanos() {
+            long n = getCount();
+            return n == 0 ? 0 : (double) getTotalNanos() / n;
+        }
+
+        /**
+         * Returns the duration of the longest call in nanoseconds.
+         *
+         * @return See above
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Returns a copy of the latency histogram, see
+         * {@link ServiceCallMetrics}.
+         *
+         * @return See above
+         */
+        public long[] getHistogram() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                copy[i] = histogram.get(i);
+            return copy;
+        }
+
+        /**
+         * Returns an upper bound of the specified latency percentile in
+         * nanoseconds, derived from the histogram.
+         *
+         * @param percentile
+         *            The percentile between <code>0</code> and
+         *            <code>100</code>
+         * @return See above
+         */
+        public long getPercentileNanos(double percentile) {
+            long[] h = getHistogram();
+            long n = 0;
+            for (long c : h)
+                n += c;
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(percentile / 100 * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += h[i];
+                if (seen >= rank && h[i] > 0)
+                    return i == BUCKETS - 1 ? getMaxNanos() : (1L << i) * 1000;
+            }
+            return getMaxNanos();
+        }
+
+        @Override
+        public String toString() {
+            return service + "." + operation + " [count=" + getCount()
+                    + ", errors=" + getErrorCount() + ", bytes=" + getBytes()
+                    + ", meanNanos=" + (long) getMeanNanos() + ", maxNanos="
+                    + getMaxNanos() + "]";
+        }
+    }
+}
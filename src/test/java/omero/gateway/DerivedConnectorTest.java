@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway;
+
+import java.util.concurrent.TimeUnit;
+
+import omero.api.RawPixelsStorePrx;
+import omero.gateway.model.ExperimenterData;
+import omero.gateway.standin.StandInServer;
+import omero.log.SimpleLogger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the connectors opened on behalf of other users against the
+ * {@link StandInServer}.
+ *
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class DerivedConnectorTest {
+
+    /** The server. */
+    private StandInServer server;
+
+    /** The gateway connected to the server. */
+    private Gateway gw;
+
+    /** The context of the user. */
+    private SecurityContext ctx;
+
+    /** The context acting on behalf of the user. */
+    private SecurityContext sudo;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        gw = server.createGateway(new SimpleLogger());
+        ExperimenterData user = gw.connect(server.getCredentials());
+        ctx = new SecurityContext(user.getGroupId());
+        sudo = new SecurityContext(user.getGroupId());
+        sudo.setExperimenter(user);
+        sudo.sudo();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        gw.disconnect();
+        server.close();
+    }
+
+    /**
+     * Returns the connector of the gateway, closing the evicted derived
+     * connectors in the calling thread.
+     *
+     * @param leaseTime The lease time of the derived connectors.
+     * @return See above.
+     */
+    private Connector getParent(long leaseTime) throws Exception {
+        gw.setDerivedConnectorLimits(1, 1, TimeUnit.HOURS);
+        Connector parent = gw.getConnector(ctx);
+        parent.setBackgroundExecutor(null);
+        parent.setDerivedLeaseTime(leaseTime);
+        return parent;
+    }
+
+    /**
+     * Test that an evicted derived connector is closed only once its
+     * services are no longer in use.
+     */
+    @Test
+    public void testBusyConnectorEviction() throws Exception {
+        Connector parent = getParent(0);
+        RawPixelsStorePrx store = gw.acquirePixelsStore(sudo);
+        Assert.assertEquals(server.getSessionCount(), 2);
+        parent.getConnector("other");
+        Assert.assertEquals(gw.getDerivedConnectorStats().evictionCount(), 1);
+        parent.cleanUpDerived();
+        // Still in use.
+        Assert.assertEquals(gw.getDerivedConnectorCount(), 2);
+        Assert.assertEquals(server.getSessionCount(), 3);
+
+        gw.releaseService(sudo, store);
+        parent.cleanUpDerived();
+        Assert.assertEquals(gw.getDerivedConnectorCount(), 1);
+        Assert.assertEquals(server.getSessionCount(), 2);
+    }
+
+    /**
+     * Test that an evicted derived connector is kept open during its lease,
+     * even if none of its services has been used yet.
+     */
+    @Test
+    public void testLeasedConnectorEviction() throws Exception {
+        Connector parent = getParent(TimeUnit.HOURS.toMillis(1));
+        Connector first = parent.getConnector("first");
+        parent.getConnector("second");
+        Assert.assertEquals(gw.getDerivedConnectorStats().evictionCount(), 1);
+        parent.cleanUpDerived();
+        Assert.assertEquals(gw.getDerivedConnectorCount(), 2);
+        Assert.assertEquals(server.getSessionCount(), 3);
+        Assert.assertNotNull(first.getQueryService());
+
+        parent.setDerivedLeaseTime(0);
+        parent.cleanUpDerived();
+        Assert.assertEquals(gw.getDerivedConnectorCount(), 1);
+        Assert.assertEquals(server.getSessionCount(), 2);
+    }
+}
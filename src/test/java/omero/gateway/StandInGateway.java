@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway;
+
+import java.util.concurrent.ExecutorService;
+
+import omero.client;
+import omero.gateway.cache.DefaultCacheService;
+import omero.gateway.standin.StandInServer;
+import omero.log.Logger;
+
+/**
+ * A {@link Gateway} connecting to a {@link StandInServer} whatever the
+ * credentials say.
+ *
+ * @since 5.5
+ */
+public class StandInGateway extends Gateway {
+
+    /** The server. */
+    private final StandInServer server;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param log
+     *            The logger
+     * @param server
+     *            The server
+     */
+    public StandInGateway(Logger log, StandInServer server) {
+        super(log);
+        this.server = server;
+    }
+
+    /**
+     * Creates a new instance running the asynchronous tasks on the
+     * specified executor, shut down on disconnect.
+     *
+     * @param log
+     *            The logger
+     * @param server
+     *            The server
+     * @param executor
+     *            The executor
+     */
+    public StandInGateway(Logger log, StandInServer server,
+            ExecutorService executor) {
+        super(log, new DefaultCacheService(), executor, true);
+        this.server = server;
+    }
+
+    @Override
+    client createClient(ServerInformation s) {
+        int port = s.getPort();
+        return server.createClient(s.getHostname(),
+                port > 0 ? port : omero.constants.GLACIER2PORT.value);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway;
+
+import java.util.concurrent.TimeUnit;
+
+import omero.api.RawPixelsStorePrx;
+import omero.gateway.model.ExperimenterData;
+import omero.gateway.standin.StandInServer;
+import omero.log.SimpleLogger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the pooled stateful services against the {@link StandInServer}.
+ *
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class StatefulServicePoolTest {
+
+    /** The server. */
+    private StandInServer server;
+
+    /** The gateway connected to the server. */
+    private Gateway gw;
+
+    /** The context of the user. */
+    private SecurityContext ctx;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        gw = server.createGateway(new SimpleLogger());
+        ExperimenterData user = gw.connect(server.getCredentials());
+        ctx = new SecurityContext(user.getGroupId());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        gw.disconnect();
+        server.close();
+    }
+
+    /**
+     * Test that a released store is closed once it has been idle for too
+     * long, and replaced by a new one when acquired again.
+     */
+    @Test
+    public void testIdleStoreExpiry() throws Exception {
+        Connector c = gw.getConnector(ctx);
+        c.setBackgroundExecutor(null);
+        gw.setStatefulServiceIdleTime(1, TimeUnit.HOURS);
+        RawPixelsStorePrx store = gw.acquirePixelsStore(ctx);
+        gw.releaseService(ctx, store);
+        c.closeIdleStores();
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "close"),
+                0);
+
+        gw.setStatefulServiceIdleTime(0, TimeUnit.MILLISECONDS);
+        c.closeIdleStores();
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "close"),
+                1);
+        Assert.assertEquals(c.getLoad(), 0);
+
+        store = gw.acquirePixelsStore(ctx);
+        Assert.assertEquals(server.getCallCount("ServiceFactory",
+                "createByName"), 2);
+        gw.releaseService(ctx, store);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway;
+
+import java.lang.reflect.Proxy;
+
+import omero.api.IQueryPrx;
+import omero.gateway.model.ExperimenterData;
+import omero.gateway.standin.StandInServer;
+import omero.log.SimpleLogger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the wrappers counting the calls made to the services, run against
+ * the {@link StandInServer}.
+ *
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class TrackedServiceTest {
+
+    /** The server. */
+    private StandInServer server;
+
+    /** The gateway connected to the server. */
+    private Gateway gw;
+
+    /** The context of the user. */
+    private SecurityContext ctx;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        gw = server.createGateway(new SimpleLogger());
+        ExperimenterData user = gw.connect(server.getCredentials());
+        ctx = new SecurityContext(user.getGroupId());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        gw.disconnect();
+        server.close();
+    }
+
+    /**
+     * Test that the lookups of a stateless service return the same wrapper.
+     */
+    @Test
+    public void testWrapperReused() throws Exception {
+        Connector c = gw.getConnector(ctx);
+        IQueryPrx query = c.getQueryService();
+        Assert.assertTrue(Proxy.isProxyClass(query.getClass()));
+        Assert.assertSame(c.getQueryService(), query);
+    }
+
+    /**
+     * Test that a wrapper can be replaced by the service it wraps, as done
+     * for the arguments of the calls so that they can be marshalled.
+     */
+    @Test
+    public void testWrapperUnwrapped() throws Exception {
+        Connector c = gw.getConnector(ctx);
+        IQueryPrx query = c.getQueryService();
+        Object plain = Connector.untrack(query);
+        Assert.assertTrue(plain instanceof Ice.ObjectPrxHelperBase);
+        Assert.assertTrue(query.equals(plain));
+        Assert.assertSame(Connector.untrack(plain), plain);
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.cache;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link DefaultCacheService}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class DefaultCacheServiceTest {
+
+    /** The directory holding the disk caches. */
+    private File dir;
+
+    /** The service. */
+    private DefaultCacheService service;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("cachetest").toFile();
+        service = new DefaultCacheService(dir);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        service.shutDown();
+        dir.delete();
+    }
+
+    /**
+     * Test that the in-memory cache is bounded and counts hits, misses and
+     * evictions.
+     */
+    @Test
+    public void testMemoryCache() {
+        int id = service.createCache(CacheService.IN_MEMORY, 100);
+        for (int i = 0; i < 500; i++)
+            service.addElement(id, i, "v" + i);
+        CacheStatistics stats = service.getStatistics(id);
+        Assert.assertEquals(stats.getSize(), 100);
+        Assert.assertEquals(stats.getMaximumSize(), 100);
+        Assert.assertEquals(stats.getEvictionCount(), 400);
+
+        int found = 0;
+        for (int i = 0; i < 500; i++) {
+            Object v = service.getElement(id, i);
+            if (v != null) {
+                Assert.assertEquals(v, "v" + i);
+                found++;
+            }
+        }
+        stats = service.getStatistics(id);
+        Assert.assertEquals(found, 100);
+        Assert.assertEquals(stats.getHitCount(), 100);
+        Assert.assertEquals(stats.getMissCount(), 400);
+
+        service.clearCache(id);
+        Assert.assertEquals(service.getStatistics(id).getSize(), 0);
+        Assert.assertNull(service.getElement(id, 499));
+    }
+
+    /**
+     * Test that elements in use are not evicted by a scan of elements used
+     * once.
+     */
+    @Test
+    public void testMemoryCacheAdmission() {
+        int id = service.createCache(CacheService.IN_MEMORY, 100);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                service.addElement(id, "hot" + i, i);
+                service.getElement(id, "hot" + i);
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            service.addElement(id, "cold" + i, i);
+            if (i % 500 == 0) {
+                for (int j = 0; j < 50; j++)
+                    service.getElement(id, "hot" + j);
+            }
+        }
+        for (int i = 0; i < 50; i++)
+            Assert.assertEquals(service.getElement(id, "hot" + i), i);
+        Assert.assertEquals(service.getStatistics(id).getSize(), 100);
+    }
+
+    /**
+     * Test that the cache is resized.
+     */
+    @Test
+    public void testResize() {
+        int[] ids = { service.createCache(CacheService.IN_MEMORY, 50),
+                service.createCache(CacheService.PERSISTENCE_ON_DISK, 50) };
+        for (int id : ids) {
+            for (int i = 0; i < 50; i++)
+                service.addElement(id, i, i);
+            service.setCacheEntries(id, 10);
+            CacheStatistics stats = service.getStatistics(id);
+            Assert.assertEquals(stats.getSize(), 10);
+            Assert.assertEquals(stats.getMaximumSize(), 10);
+            Assert.assertEquals(stats.getEvictionCount(), 40);
+            service.setCacheEntries(id, 100);
+            for (int i = 0; i < 100; i++)
+                service.addElement(id, "k" + i, i);
+            Assert.assertEquals(service.getStatistics(id).getSize(), 100);
+            service.setCacheEntries(id, 0);
+            service.addElement(id, "k", 1);
+            Assert.assertEquals(service.getStatistics(id).getSize(), 0);
+        }
+    }
+
+    /**
+     * Test that the elements of the disk cache are read back, and that the
+     * least recently used ones are evicted.
+     */
+    @Test
+    public void testDiskCache() {
+        int id = service.createCache(CacheService.PERSISTENCE_ON_DISK, 3);
+        List<Long> value = new ArrayList<Long>();
+        value.add(1L);
+        service.addElement(id, "a", value);
+        service.addElement(id, "b", "b");
+        service.addElement(id, "c", "c");
+        Assert.assertEquals(service.getElement(id, "a"), value);
+        Assert.assertNotSame(service.getElement(id, "a"), value);
+        service.addElement(id, "d", "d");
+        Assert.assertNull(service.getElement(id, "b"));
+        Assert.assertEquals(service.getElement(id, "d"), "d");
+
+        service.addElement(id, "c", "c2");
+        Assert.assertEquals(service.getElement(id, "c"), "c2");
+        service.addElement(id, "e", new Object());
+        Assert.assertNull(service.getElement(id, "e"));
+
+        CacheStatistics stats = service.getStatistics(id);
+        Assert.assertEquals(stats.getSize(), 3);
+        Assert.assertEquals(stats.getEvictionCount(), 1);
+        Assert.assertEquals(stats.getHitCount(), 4);
+        Assert.assertEquals(stats.getMissCount(), 2);
+
+        service.removeCache(id);
+        Assert.assertNull(service.getStatistics(id));
+        Assert.assertNull(service.getElement(id, "a"));
+    }
+
+    /**
+     * Test that the segments of the disk cache are reclaimed when the
+     * elements are replaced.
+     */
+    @Test
+    public void testDiskCacheSegments() throws Exception {
+        int id = service.createCache(CacheService.PERSISTENCE_ON_DISK, 4);
+        byte[] data = new byte[DiskCache.SEGMENT_SIZE / 8];
+        for (int i = 0; i < 200; i++) {
+            data[0] = (byte) i;
+            service.addElement(id, i % 4, data.clone());
+        }
+        for (int i = 196; i < 200; i++)
+            Assert.assertEquals(((byte[]) service.getElement(id, i % 4))[0],
+                    (byte) i);
+        long bytes = 0;
+        for (File f : listFiles(dir))
+            bytes += f.length();
+        Assert.assertTrue(bytes <= 3 * DiskCache.SEGMENT_SIZE, "" + bytes);
+
+        service.shutDown();
+        Assert.assertTrue(listFiles(dir).isEmpty());
+        Assert.assertNull(service.getElement(id, 0));
+        // Still usable.
+        id = service.createCache(CacheService.PERSISTENCE_ON_DISK);
+        service.addElement(id, "a", "a");
+        Assert.assertEquals(service.getElement(id, "a"), "a");
+    }
+
+    /**
+     * Test that the caches can be used concurrently.
+     */
+    @Test
+    public void testConcurrency() throws Exception {
+        final int id = service.createCache(CacheService.DEFAULT, 64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                final int seed = t;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 20000; i++) {
+                            int key = (i * 31 + seed) % 200;
+                            Object v = service.getElement(id, key);
+                            if (v == null)
+                                service.addElement(id, key, key);
+                            else
+                                Assert.assertEquals(v, key);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : results)
+                f.get();
+        } finally {
+            executor.shutdown();
+        }
+        CacheStatistics stats = service.getStatistics(id);
+        Assert.assertTrue(stats.getSize() <= 64);
+        Assert.assertEquals(stats.getHitCount() + stats.getMissCount(),
+                80000);
+    }
+
+    /**
+     * Returns the files under a directory.
+     *
+     * @param d
+     *            The directory
+     * @return See above.
+     */
+    private static List<File> listFiles(File d) {
+        List<File> files = new ArrayList<File>();
+        File[] children = d.listFiles();
+        if (children == null)
+            return files;
+        for (File f : children) {
+            if (f.isDirectory())
+                files.addAll(listFiles(f));
+            else
+                files.add(f);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.rnd;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the persistence, eviction and validation of the
+ * {@link DiskTileCache}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class DiskTileCacheTest {
+
+    /**
+     * Adds a 4x4 uint8 tile at the origin of the first plane.
+     * @param cache the cache
+     * @param pixelsId the pixels ID
+     * @param version the version of the pixels set
+     */
+    private static void put(DiskTileCache cache, long pixelsId,
+            long version) {
+        final byte[] data = new byte[16];
+        data[0] = (byte) pixelsId;
+        cache.put("host:4064", pixelsId, version, 0, 0, 0, 0, 0, 0, 4, 4,
+                data);
+    }
+
+    /**
+     * Gets the tile added by {@link #put(DiskTileCache, long, long)}.
+     * @param cache the cache
+     * @param pixelsId the pixels ID
+     * @param version the version of the pixels set
+     * @return the tile or {@code null}
+     */
+    private static ByteBuffer get(DiskTileCache cache, long pixelsId,
+            long version) {
+        return cache.get("host:4064", pixelsId, version, 0, 0, 0, 0, 0, 0, 4,
+                4);
+    }
+
+    /**
+     * Test that the entries are re-used by a new instance and that the
+     * least recently used ones are evicted.
+     * @throws Exception unexpected
+     */
+    @Test
+    public void testPersistence() throws Exception {
+        final File dir = Files.createTempDirectory("tiles").toFile();
+        final DiskTileCache cache = new DiskTileCache(dir, 32);
+        try {
+            put(cache, 1, 1);
+            put(cache, 2, 1);
+            Assert.assertEquals(get(cache, 1, 1).get(0), 1);
+            put(cache, 3, 1);
+            Assert.assertEquals(cache.getSize(), 32);
+            Assert.assertNull(get(cache, 2, 1));
+            final DiskTileCache other = new DiskTileCache(dir, 32);
+            Assert.assertEquals(other.getSize(), 32);
+            Assert.assertEquals(get(other, 3, 1).get(0), 3);
+            Assert.assertEquals(other.getHitCount(), 1);
+        } finally {
+            cache.clear();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Test that the entries of the older versions of a pixels set are
+     * removed.
+     * @throws Exception unexpected
+     */
+    @Test
+    public void testValidate() throws Exception {
+        final File dir = Files.createTempDirectory("tiles").toFile();
+        final DiskTileCache cache = new DiskTileCache(dir, 1024);
+        try {
+            put(cache, 1, 1);
+            put(cache, 2, 1);
+            cache.validate("host:4064", 1, 2);
+            Assert.assertNull(get(cache, 1, 1));
+            Assert.assertNotNull(get(cache, 2, 1));
+            Assert.assertEquals(cache.getSize(), 16);
+            cache.invalidate("host:4064", 2);
+            Assert.assertNull(get(cache, 2, 1));
+            Assert.assertEquals(cache.getSize(), 0);
+        } finally {
+            cache.clear();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Test that only the files of the cache are deleted, and the temporary
+     * files once they are stale.
+     * @throws Exception unexpected
+     */
+    @Test
+    public void testSharedDirectory() throws Exception {
+        final File dir = Files.createTempDirectory("tiles").toFile();
+        final File other = new File(dir, "notes.txt");
+        Files.write(other.toPath(), new byte[] { 1 });
+        final DiskTileCache cache = new DiskTileCache(dir, 1024);
+        final File tiles = new File(dir, DiskTileCache.DIRECTORY);
+        final File mine = new File(tiles, "mine.txt");
+        final File pending = new File(tiles, "pending.tmp");
+        final File stale = new File(tiles, "stale.tmp");
+        try {
+            put(cache, 1, 1);
+            Files.write(mine.toPath(), new byte[] { 1 });
+            Files.write(pending.toPath(), new byte[] { 1 });
+            Files.write(stale.toPath(), new byte[] { 1 });
+            Files.setLastModifiedTime(stale.toPath(), FileTime.fromMillis(
+                    System.currentTimeMillis() - 2 * 3600 * 1000L));
+            Assert.assertEquals(new DiskTileCache(dir, 1024).getSize(), 16);
+            Assert.assertTrue(pending.exists());
+            Assert.assertFalse(stale.exists());
+            cache.clear();
+            Assert.assertNull(get(cache, 1, 1));
+            Assert.assertTrue(other.exists());
+            Assert.assertTrue(mine.exists());
+            Assert.assertTrue(pending.exists());
+        } finally {
+            mine.delete();
+            pending.delete();
+            cache.clear();
+            other.delete();
+            dir.delete();
+        }
+        Assert.assertFalse(dir.exists());
+    }
+}
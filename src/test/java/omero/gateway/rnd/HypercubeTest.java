@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the access to the planes and pixels of a {@link Hypercube}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class HypercubeTest {
+
+    /**
+     * Test that the planes are laid out in XYZCT order.
+     */
+    @Test
+    public void testPlaneOrder() {
+        // 2x2 pixels, 3 z-sections, 2 channels, 1 timepoint
+        final byte[] data = new byte[2 * 2 * 3 * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final Hypercube cube = new Hypercube(ByteBuffer.wrap(data),
+                DataSink.UINT_8, new int[] {0, 0, 0, 0, 5},
+                new int[] {2, 2, 3, 2, 1});
+        Assert.assertEquals(cube.getPixelCount(), data.length);
+        Assert.assertEquals(cube.getT(), 5);
+        Assert.assertEquals(cube.getPlane(0, 0, 0).getPixelValue(0, 0), 0.0);
+        Assert.assertEquals(cube.getPlane(2, 0, 0).getPixelValue(1, 1), 11.0);
+        Assert.assertEquals(cube.getPlane(0, 1, 0).getPixelValue(0, 0), 12.0);
+        Assert.assertEquals(cube.getPixelValue(1, 0, 1, 1, 0), 17.0);
+        final double[] values = new double[data.length];
+        cube.getPixelValues(values);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], (double) i);
+        }
+    }
+
+    /**
+     * Test that planes outside of the block are rejected.
+     */
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        final Hypercube cube = new Hypercube(ByteBuffer.wrap(new byte[8]),
+                DataSink.UINT_16, new int[5], new int[] {2, 2, 1, 1, 1});
+        cube.getPlane(1, 0, 0);
+    }
+
+    /**
+     * Test that a buffer too small for the block is rejected.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBufferTooSmall() {
+        new Hypercube(ByteBuffer.wrap(new byte[7]), DataSink.UINT_16,
+                new int[5], new int[] {2, 2, 1, 1, 1});
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.rnd;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the accumulation and merging of {@link PixelStatistics}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class PixelStatisticsTest {
+
+    /**
+     * Test the statistics of the values 0 to 99.
+     */
+    @Test
+    public void testStatistics() {
+        final double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        final PixelStatistics stats = new PixelStatistics(0, 100, 100);
+        stats.add(values, values.length);
+        Assert.assertEquals(stats.getCount(), 100);
+        Assert.assertEquals(stats.getMin(), 0.0);
+        Assert.assertEquals(stats.getMax(), 99.0);
+        Assert.assertEquals(stats.getMean(), 49.5, 1e-9);
+        Assert.assertEquals(stats.getStandardDeviation(),
+                Math.sqrt((100 * 100 - 1) / 12.0), 1e-9);
+        Assert.assertEquals(stats.getHistogram()[42], 1);
+        Assert.assertEquals(stats.getPercentile(50), 50.0, 1.0);
+        Assert.assertEquals(stats.getPercentile(0), 0.0);
+        Assert.assertEquals(stats.getPercentile(100), 99.0);
+    }
+
+    /**
+     * Test that merging partial results gives the statistics of all the
+     * values and that <code>NaN</code>s are ignored.
+     */
+    @Test
+    public void testMerge() {
+        final double[] all = {1, 2, 3, 4, 5, 6, 7, 8};
+        final PixelStatistics expected = new PixelStatistics(0, 10, 10);
+        expected.add(all, all.length);
+        final PixelStatistics left = new PixelStatistics(0, 10, 10);
+        left.add(new double[] {1, 2, 3, Double.NaN}, 4);
+        final PixelStatistics right = new PixelStatistics(0, 10, 10);
+        right.add(new double[] {4, 5, 6, 7, 8, 42}, 5);
+        left.merge(right);
+        Assert.assertEquals(left.getCount(), expected.getCount());
+        Assert.assertEquals(left.getMin(), expected.getMin());
+        Assert.assertEquals(left.getMax(), expected.getMax());
+        Assert.assertEquals(left.getMean(), expected.getMean(), 1e-12);
+        Assert.assertEquals(left.getStandardDeviation(),
+                expected.getStandardDeviation(), 1e-12);
+        Assert.assertTrue(Arrays.equals(left.getHistogram(),
+                expected.getHistogram()));
+    }
+
+    /**
+     * Test that an empty instance has no statistics.
+     */
+    @Test
+    public void testEmpty() {
+        final PixelStatistics stats = new PixelStatistics(0, 1, 1);
+        Assert.assertEquals(stats.getCount(), 0);
+        Assert.assertTrue(Double.isNaN(stats.getMean()));
+        Assert.assertTrue(Double.isNaN(stats.getPercentile(50)));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+
+import omero.util.ReadOnlyByteArray;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the typed {@link Plane2D} implementations and the bulk conversion
+ * against the per-pixel {@link BytesConverter}s.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class Plane2DTest {
+
+    /** The number of pixels along the x-axis of the test planes. */
+    private static final int SIZE_X = 7;
+
+    /** The number of pixels along the y-axis of the test planes. */
+    private static final int SIZE_Y = 5;
+
+    /**
+     * Creates a plane of pseudo-random raw data.
+     * @param bpp the number of bytes per pixel
+     * @return the raw data
+     */
+    private static byte[] createData(int bpp) {
+        final byte[] data = new byte[SIZE_X * SIZE_Y * bpp];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 37 + 11);
+        }
+        return data;
+    }
+
+    /**
+     * Checks that a typed plane gives the same values as the per-pixel
+     * converter, in both layouts.
+     * @param type the pixels type
+     */
+    private static void assertSameValues(String type) {
+        final int bpp = DataSink.getBytesPerPixels(type);
+        final byte[] data = createData(bpp);
+        final Plane2D legacy = new Plane2D(
+                new ReadOnlyByteArray(data, 0, data.length), SIZE_X, SIZE_Y,
+                bpp, BytesConverter.getConverter(type));
+        final Plane2D typed = Plane2D.createPlane(ByteBuffer.wrap(data),
+                SIZE_X, SIZE_Y, type);
+        final double[][] values = typed.getPixelValues();
+        final double[] pixels = new double[SIZE_X * SIZE_Y];
+        typed.getPixelValues(pixels);
+        final double[] row = new double[SIZE_X];
+        for (int y = 0; y < SIZE_Y; y++) {
+            typed.getRow(y, row);
+            for (int x = 0; x < SIZE_X; x++) {
+                final double expected = legacy.getPixelValue(x, y);
+                Assert.assertEquals(typed.getPixelValue(x, y), expected, type);
+                Assert.assertEquals(values[x][y], expected, type);
+                Assert.assertEquals(pixels[y * SIZE_X + x], expected, type);
+                Assert.assertEquals(row[x], expected, type);
+            }
+        }
+        Assert.assertEquals(typed.getRawValue(3), data[3]);
+    }
+
+    /**
+     * Test that the typed planes decode every pixel type like the converters.
+     */
+    @Test
+    public void testPixelValues() {
+        assertSameValues(DataSink.INT_8);
+        assertSameValues(DataSink.UINT_8);
+        assertSameValues(DataSink.INT_16);
+        assertSameValues(DataSink.UINT_16);
+        assertSameValues(DataSink.INT_32);
+        assertSameValues(DataSink.UINT_32);
+        assertSameValues(DataSink.FLOAT);
+        assertSameValues(DataSink.DOUBLE);
+    }
+
+    /**
+     * Test that the bulk conversion reads from the position of the buffer
+     * without moving it.
+     */
+    @Test
+    public void testBulkConversion() {
+        final byte[] data = createData(4);
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(8);
+        final BytesConverter converter = BytesConverter
+                .getConverter(DataSink.FLOAT);
+        final double[] values = new double[4];
+        converter.pack(buffer, 4, values, 3);
+        Assert.assertEquals(buffer.position(), 8);
+        final ReadOnlyByteArray array = new ReadOnlyByteArray(data, 0,
+                data.length);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(values[i], converter.pack(array, 8 + i * 4, 4),
+                    DataSink.FLOAT);
+        }
+        Assert.assertEquals(values[3], 0d, DataSink.FLOAT);
+    }
+
+    /**
+     * Test the row-major bulk accessors of a typed plane.
+     */
+    @Test
+    public void testRowMajorAccess() {
+        final byte[] data = createData(2);
+        final ShortPlane2D plane = (ShortPlane2D) Plane2D.createPlane(
+                ByteBuffer.wrap(data), SIZE_X, SIZE_Y, DataSink.UINT_16);
+        final short[] pixels = plane.getPixels();
+        Assert.assertEquals(pixels.length, SIZE_X * SIZE_Y);
+        final short[] row = new short[SIZE_X];
+        plane.getRow(2, row);
+        for (int x = 0; x < SIZE_X; x++) {
+            Assert.assertEquals(row[x], pixels[2 * SIZE_X + x]);
+            Assert.assertEquals(plane.getValue(x, 2), row[x]);
+        }
+        Assert.assertFalse(plane.isSigned());
+    }
+
+    /**
+     * Test that a buffer too small for the plane is rejected.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBufferTooSmall() {
+        Plane2D.createPlane(ByteBuffer.allocate(3), SIZE_X, SIZE_Y,
+                DataSink.UINT_8);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the eviction and invalidation of the {@link TileCache}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class TileCacheTest {
+
+    /**
+     * Adds a 4x4 uint8 tile at the origin of the first plane.
+     * @param cache the cache
+     * @param groupId the group ID
+     * @param pixelsId the pixels ID
+     */
+    private static void put(TileCache cache, long groupId, long pixelsId) {
+        final byte[] data = new byte[16];
+        data[0] = (byte) pixelsId;
+        cache.put(groupId, pixelsId, 0, 0, 0, 0, 0, 0, 4, 4, data);
+    }
+
+    /**
+     * Gets the tile added by {@link #put(TileCache, long, long)}.
+     * @param cache the cache
+     * @param groupId the group ID
+     * @param pixelsId the pixels ID
+     * @return the tile or {@code null}
+     */
+    private static ByteBuffer get(TileCache cache, long groupId,
+            long pixelsId) {
+        return cache.get(groupId, pixelsId, 0, 0, 0, 0, 0, 0, 4, 4);
+    }
+
+    /**
+     * Test that the least recently used tile is evicted once the size limit
+     * is reached.
+     */
+    @Test
+    public void testEviction() {
+        final TileCache cache = new TileCache(32, 1);
+        put(cache, 1, 1);
+        put(cache, 1, 2);
+        Assert.assertNotNull(get(cache, 1, 1));
+        put(cache, 1, 3);
+        Assert.assertEquals(cache.getSize(), 32);
+        Assert.assertNotNull(get(cache, 1, 1));
+        Assert.assertNull(get(cache, 1, 2));
+        Assert.assertEquals(cache.getStats().evictionCount(), 1);
+        final ByteBuffer tile = get(cache, 1, 3);
+        Assert.assertFalse(tile.isDirect());
+        Assert.assertEquals(tile.get(0), 3);
+    }
+
+    /**
+     * Test that the buffers of the evicted tiles are reused and that a tile
+     * larger than the limit of a segment is not cached.
+     */
+    @Test
+    public void testPooledBuffers() {
+        final TileCache cache = new TileCache(1024, 4);
+        put(cache, 1, 1);
+        put(cache, 1, 2);
+        Assert.assertEquals(cache.getSize(), 32);
+        cache.invalidate(1, 1);
+        Assert.assertEquals(cache.getPooledSize(), 16);
+        put(cache, 1, 3);
+        Assert.assertEquals(cache.getPooledSize(), 0);
+        Assert.assertEquals(get(cache, 1, 3).get(0), 3);
+
+        final TileCache small = new TileCache(32, 4);
+        put(small, 1, 1);
+        Assert.assertNull(get(small, 1, 1));
+        Assert.assertEquals(small.getSize(), 0);
+    }
+
+    /**
+     * Test that the tiles are scoped by group and removed per pixels set.
+     */
+    @Test
+    public void testInvalidate() {
+        final TileCache cache = new TileCache(1024);
+        put(cache, 1, 1);
+        put(cache, 2, 1);
+        Assert.assertNull(cache.get(3, 1, 0, 0, 0, 0, 0, 0, 4, 4));
+        cache.invalidate(1, 1);
+        Assert.assertNull(get(cache, 1, 1));
+        Assert.assertNotNull(get(cache, 2, 1));
+        Assert.assertEquals(cache.getSize(), 16);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The delay the {@link StandInServer} adds to each call: a round trip time
+ * picked uniformly between a minimum and a maximum, optionally overridden
+ * per service or per operation, plus the time needed to transfer the
+ * payload at the configured bandwidth.
+ * By default calls are not delayed at all.
+ *
+ * @since 5.5
+ */
+public class LatencyModel {
+
+    /** The default minimum and maximum round trip time in nanoseconds. */
+    private volatile long[] defaultRange = new long[] { 0, 0 };
+
+    /**
+     * The round trip times overriding the default, keyed by service or by
+     * <code>service.operation</code>.
+     */
+    private final ConcurrentMap<String, long[]> ranges =
+            new ConcurrentHashMap<String, long[]>();
+
+    /** The bandwidth in bytes per second, <code>0</code> if unlimited. */
+    private volatile long bytesPerSecond;
+
+    /**
+     * Sets the round trip time of all calls which are not overridden.
+     *
+     * @param min
+     *            The minimum round trip time
+     * @param max
+     *            The maximum round trip time
+     * @param unit
+     *            The unit of <code>min</code> and <code>max</code>
+     */
+    public void setLatency(long min, long max, TimeUnit unit) {
+        defaultRange = range(min, max, unit);
+    }
+
+    /**
+     * Sets the round trip time of the calls to a service or to one of its
+     * operations.
+     *
+     * @param service
+     *            The name of the service, e.g. <code>IQuery</code>
+     * @param operation
+     *            The name of the operation or <code>null</code> for all the
+     *            operations of the service
+     * @param min
+     *            The minimum round trip time
+     * @param max
+     *            The maximum round trip time
+     * @param unit
+     *            The unit of <code>min</code> and <code>max</code>
+     */
+    public void setLatency(String service, String operation, long min,
+            long max, TimeUnit unit) {
+        ranges.put(key(service, operation), range(min, max, unit));
+    }
+
+    /**
+     * Sets the bandwidth used to compute the transfer time of the payload.
+     *
+     * @param bytesPerSecond
+     *            The bandwidth in bytes per second, <code>0</code> for
+     *            unlimited
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        if (bytesPerSecond < 0)
+            throw new IllegalArgumentException("Negative bandwidth");
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Removes all overrides and delays.
+     */
+    public void reset() {
+        ranges.clear();
+        defaultRange = new long[] { 0, 0 };
+        bytesPerSecond = 0;
+    }
+
+    /**
+     * Returns the delay of a call.
+     *
+     * @param service
+     *            The name of the service
+     * @param operation
+     *            The name of the operation
+     * @param bytes
+     *            The number of bytes transferred by the call
+     * @return The delay in nanoseconds
+     */
+    public long getDelayNanos(String service, String operation, long bytes) {
+        long[] range = ranges.get(key(service, operation));
+        if (range == null)
+            range = ranges.get(service);
+        if (range == null)
+            range = defaultRange;
+        long delay = range[0];
+        if (range[1] > range[0])
+            delay += ThreadLocalRandom.current().nextLong(
+                    range[1] - range[0] + 1);
+        long bandwidth = bytesPerSecond;
+        if (bandwidth > 0 && bytes > 0)
+            delay += bytes * TimeUnit.SECONDS.toNanos(1) / bandwidth;
+        return delay;
+    }
+
+    /**
+     * Blocks the calling thread for the delay of a call.
+     *
+     * @param service
+     *            The name of the service
+     * @param operation
+     *            The name of the operation
+     * @param bytes
+     *            The number of bytes transferred by the call
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting
+     */
+    void await(String service, String operation, long bytes)
+            throws InterruptedException {
+        long delay = getDelayNanos(service, operation, bytes);
+        if (delay > 0)
+            TimeUnit.NANOSECONDS.sleep(delay);
+    }
+
+    /**
+     * Converts and checks a round trip time range.
+     *
+     * @param min
+     *            The minimum
+     * @param max
+     *            The maximum
+     * @param unit
+     *            The unit
+     * @return The range in nanoseconds
+     */
+    private static long[] range(long min, long max, TimeUnit unit) {
+        if (min < 0 || max < min)
+            throw new IllegalArgumentException("Invalid latency range " + min
+                    + " - " + max);
+        return new long[] { unit.toNanos(min), unit.toNanos(max) };
+    }
+
+    /**
+     * Returns the key of an override.
+     *
+     * @param service
+     *            The name of the service
+     * @param operation
+     *            The name of the operation or <code>null</code>
+     * @return See above.
+     */
+    private static String key(String service, String operation) {
+        return operation == null ? service : service + "." + operation;
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import Ice.AsyncResult;
+import Ice.Callback;
+import Ice.FeatureNotSupportedException;
+import Ice.Identity;
+import Ice.ObjectNotExistException;
+import Ice.OperationNotExistException;
+
+/**
+ * Implements the proxy interface of a service by calling the methods of the
+ * same name of a servant, i.e. a plain object, after the delay given by the
+ * {@link LatencyModel} of the server. The <code>begin_</code> and
+ * <code>end_</code> methods run the operation on the executor of the
+ * server. Operations the servant doesn't implement are accepted if they
+ * return nothing, e.g. the setters of a search, and fail with an
+ * {@link OperationNotExistException} otherwise.
+ *
+ * @since 5.5
+ */
+class ServantHandler implements InvocationHandler {
+
+    /** The prefix of the asynchronous invocation methods. */
+    private static final String BEGIN = "begin_";
+
+    /** The prefix of the methods collecting asynchronous results. */
+    private static final String END = "end_";
+
+    /** The methods of the servant, by name and number of arguments. */
+    private final ConcurrentMap<String, Method> methods =
+            new ConcurrentHashMap<String, Method>();
+
+    /** The server. */
+    private final StandInServer server;
+
+    /** The session the service belongs to. */
+    private final StandInServer.Session session;
+
+    /** The name of the service, e.g. <code>IQuery</code>. */
+    private final String service;
+
+    /** The servant. */
+    private final Object servant;
+
+    /** The identity of the proxy. */
+    private final Identity identity;
+
+    /** Set when a stateful service is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param server
+     *            The server
+     * @param session
+     *            The session the service belongs to
+     * @param service
+     *            The name of the service
+     * @param servant
+     *            The servant
+     */
+    ServantHandler(StandInServer server, StandInServer.Session session,
+            String service, Object servant) {
+        this.server = server;
+        this.session = session;
+        this.service = service;
+        this.servant = servant;
+        identity = new Identity(UUID.randomUUID().toString(),
+                session.getUuid());
+    }
+
+    /**
+     * Marks a stateful service as closed.
+     */
+    void close() {
+        closed = true;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+        String name = method.getName();
+        Object[] values = args == null ? new Object[0] : args;
+        if (method.getDeclaringClass() == Object.class)
+            return invokeObject(proxy, name, values);
+        if (name.startsWith("ice_"))
+            return invokeIce(proxy, method, values);
+        if (name.startsWith(BEGIN))
+            return begin(proxy, name.substring(BEGIN.length()), values);
+        if (name.startsWith(END))
+            return end(values[values.length - 1]);
+        return call(name, values, method.getReturnType());
+    }
+
+    /**
+     * Implements the methods of {@link Object}.
+     *
+     * @param proxy
+     *            The proxy
+     * @param name
+     *            The name of the method
+     * @param args
+     *            The arguments
+     * @return See above.
+     */
+    private Object invokeObject(Object proxy, String name, Object[] args) {
+        if (name.equals("equals"))
+            return proxy == args[0];
+        if (name.equals("hashCode"))
+            return System.identityHashCode(proxy);
+        return service + " [" + identity.name + "]";
+    }
+
+    /**
+     * Implements the methods of {@link Ice.ObjectPrx}. The proxy doesn't
+     * have any configuration so the methods returning a modified proxy
+     * return the proxy itself.
+     *
+     * @param proxy
+     *            The proxy
+     * @param method
+     *            The method
+     * @param args
+     *            The arguments
+     * @return See above.
+     */
+    private Object invokeIce(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        Class<?> type = method.getReturnType();
+        if (name.equals("ice_ping")) {
+            checkAlive();
+            return null;
+        }
+        if (name.equals("ice_getIdentity"))
+            return identity;
+        if (name.equals("ice_isA"))
+            return true;
+        if (name.equals("ice_id"))
+            return "::omero::api::" + service;
+        if (type.isInstance(proxy))
+            return proxy;
+        if (type == boolean.class)
+            return name.equals("ice_isTwoway");
+        if (type == int.class)
+            return -1;
+        return null;
+    }
+
+    /**
+     * Calls an operation of the servant after the delay of the latency
+     * model.
+     *
+     * @param operation
+     *            The name of the operation
+     * @param args
+     *            The arguments, possibly followed by the call context
+     * @param type
+     *            The return type of the operation
+     * @return The value returned by the servant
+     * @throws Throwable
+     *             The exception thrown by the servant
+     */
+    private Object call(String operation, Object[] args, Class<?> type)
+            throws Throwable {
+        checkAlive();
+        server.countCall(service, operation);
+        Method m = find(operation, args);
+        Object result = null;
+        long bytes = 0;
+        if (m == null) {
+            if (type != void.class)
+                throw new OperationNotExistException();
+        } else {
+            Object[] actual = args.length == m.getParameterTypes().length ?
+                    args : Arrays.copyOf(args, args.length - 1);
+            bytes = countBytes(actual);
+            try {
+                result = m.invoke(servant, actual);
+            } catch (InvocationTargetException e) {
+                server.getLatency().await(service, operation, bytes);
+                throw e.getCause();
+            }
+            if (result instanceof byte[])
+                bytes += ((byte[]) result).length;
+        }
+        if (operation.equals("close"))
+            closed = true;
+        server.getLatency().await(service, operation, bytes);
+        return result;
+    }
+
+    /**
+     * Starts an operation on the executor of the server.
+     *
+     * @param proxy
+     *            The proxy
+     * @param operation
+     *            The name of the operation
+     * @param args
+     *            The arguments, possibly followed by the call context and
+     *            a callback
+     * @return The {@link AsyncResult} of the operation
+     */
+    private AsyncResult begin(Object proxy, final String operation,
+            Object[] args) {
+        int n = args.length;
+        Object callback = null;
+        if (n > 0 && args[n - 1] instanceof IceInternal.CallbackBase) {
+            callback = args[--n];
+        } else if (n > 0 && args[n - 1] != null
+                && args[n - 1].getClass().getName().startsWith(
+                        "IceInternal.Functional")) {
+            throw new FeatureNotSupportedException("Functional callbacks");
+        }
+        final Object[] values = Arrays.copyOf(args, n);
+        final Class<?> type = getEndType(proxy, operation);
+        final Result result = new Result(proxy, operation);
+        final AsyncResult r = (AsyncResult) Proxy.newProxyInstance(
+                AsyncResult.class.getClassLoader(),
+                new Class<?>[] { AsyncResult.class }, result);
+        final Object cb = callback;
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(call(operation, values, type), null);
+                } catch (Throwable t) {
+                    result.complete(null, t);
+                }
+                if (cb != null)
+                    notify(cb, r);
+            }
+        };
+        try {
+            server.getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+        return r;
+    }
+
+    /**
+     * Collects the result of an operation started with a
+     * <code>begin_</code> method.
+     *
+     * @param r
+     *            The {@link AsyncResult} returned by the <code>begin_</code>
+     *            method
+     * @return The value returned by the operation
+     * @throws Throwable
+     *             The exception thrown by the operation
+     */
+    private Object end(Object r) throws Throwable {
+        Result result = (Result) Proxy.getInvocationHandler(r);
+        return result.get();
+    }
+
+    /**
+     * Returns the return type of the <code>end_</code> method of an
+     * operation.
+     *
+     * @param proxy
+     *            The proxy
+     * @param operation
+     *            The name of the operation
+     * @return See above.
+     */
+    private static Class<?> getEndType(Object proxy, String operation) {
+        for (Method m : proxy.getClass().getMethods()) {
+            if (m.getName().equals(END + operation))
+                return m.getReturnType();
+        }
+        return Object.class;
+    }
+
+    /**
+     * Notifies a callback passed to a <code>begin_</code> method.
+     *
+     * @param callback
+     *            The callback
+     * @param r
+     *            The result of the operation
+     */
+    private static void notify(Object callback, AsyncResult r) {
+        try {
+            if (callback instanceof Callback) {
+                ((Callback) callback).completed(r);
+            } else {
+                Method m = callback.getClass().getMethod("__completed",
+                        AsyncResult.class);
+                m.setAccessible(true);
+                m.invoke(callback, r);
+            }
+        } catch (Exception e) {
+            // Ice ignores the exceptions thrown by callbacks too.
+        }
+    }
+
+    /**
+     * Throws an {@link ObjectNotExistException} if the session or the
+     * service has been closed.
+     */
+    private void checkAlive() {
+        if (closed || session.isClosed())
+            throw new ObjectNotExistException();
+    }
+
+    /**
+     * Returns the method of the servant implementing an operation.
+     *
+     * @param operation
+     *            The name of the operation
+     * @param args
+     *            The arguments, possibly followed by the call context
+     * @return See above or <code>null</code> if the servant doesn't
+     *         implement the operation.
+     */
+    private Method find(String operation, Object[] args) {
+        Method m = find(operation, args.length);
+        if (m == null && args.length > 0
+                && (args[args.length - 1] == null
+                || args[args.length - 1] instanceof Map))
+            m = find(operation, args.length - 1);
+        return m;
+    }
+
+    /**
+     * Returns the method of the servant with the specified name and number
+     * of parameters.
+     *
+     * @param name
+     *            The name of the method
+     * @param count
+     *            The number of parameters
+     * @return See above or <code>null</code> if there's no such method.
+     */
+    private Method find(String name, int count) {
+        String key = name + "/" + count;
+        Method m = methods.get(key);
+        if (m != null)
+            return m;
+        for (Method candidate : servant.getClass().getMethods()) {
+            if (candidate.getName().equals(name)
+                    && candidate.getParameterTypes().length == count) {
+                candidate.setAccessible(true);
+                methods.putIfAbsent(key, candidate);
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes of the byte arrays among the arguments.
+     *
+     * @param args
+     *            The arguments
+     * @return See above.
+     */
+    private static long countBytes(Object[] args) {
+        long bytes = 0;
+        for (Object arg : args) {
+            if (arg instanceof byte[])
+                bytes += ((byte[]) arg).length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Implements the {@link AsyncResult} of an operation started with a
+     * <code>begin_</code> method.
+     */
+    private static class Result implements InvocationHandler {
+
+        /** Released when the operation has completed. */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /** The proxy the operation was invoked on. */
+        private final Object proxy;
+
+        /** The name of the operation. */
+        private final String operation;
+
+        /** The value returned by the operation. */
+        private volatile Object value;
+
+        /** The exception thrown by the operation. */
+        private volatile Throwable error;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param proxy
+         *            The proxy the operation was invoked on
+         * @param operation
+         *            The name of the operation
+         */
+        Result(Object proxy, String operation) {
+            this.proxy = proxy;
+            this.operation = operation;
+        }
+
+        /**
+         * Sets the outcome of the operation.
+         *
+         * @param value
+         *            The value returned by the operation
+         * @param error
+         *            The exception thrown by the operation
+         */
+        void complete(Object value, Throwable error) {
+            this.value = value;
+            this.error = error;
+            done.countDown();
+        }
+
+        /**
+         * Waits for the operation to complete and returns its outcome.
+         *
+         * @return The value returned by the operation
+         * @throws Throwable
+         *             The exception thrown by the operation
+         */
+        Object get() throws Throwable {
+            done.await();
+            if (error != null)
+                throw error;
+            return value;
+        }
+
+        @Override
+        public Object invoke(Object r, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals"))
+                return r == args[0];
+            if (name.equals("hashCode"))
+                return System.identityHashCode(r);
+            if (name.equals("toString"))
+                return operation;
+            if (name.equals("getProxy"))
+                return proxy;
+            if (name.equals("getOperation"))
+                return operation;
+            if (name.equals("isCompleted"))
+                return done.getCount() == 0;
+            if (name.equals("waitForCompleted")) {
+                done.await();
+                return null;
+            }
+            if (name.equals("throwLocalException")) {
+                if (done.getCount() == 0 && error instanceof Ice.LocalException)
+                    throw error;
+                return null;
+            }
+            if (method.getReturnType() == boolean.class)
+                return true;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,1887 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import static omero.rtypes.rlong;
+import static omero.rtypes.robject;
+import static omero.rtypes.rstring;
+import static omero.rtypes.rtime;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import omero.ApiUsageException;
+import omero.RLong;
+import omero.RType;
+import omero.ServerError;
+import omero.ValidationException;
+import omero.api.ResolutionDescription;
+import omero.api.RoiOptions;
+import omero.api.RoiResult;
+import omero.grid.Column;
+import omero.grid.Data;
+import omero.grid.DoubleColumn;
+import omero.grid.ImageColumn;
+import omero.grid.RepositoryMap;
+import omero.grid.StringColumn;
+import omero.grid.TablePrx;
+import omero.model.Annotation;
+import omero.model.Dataset;
+import omero.model.Experimenter;
+import omero.model.ExperimenterGroup;
+import omero.model.IObject;
+import omero.model.Image;
+import omero.model.OriginalFile;
+import omero.model.OriginalFileI;
+import omero.model.Pixels;
+import omero.model.Project;
+import omero.model.Roi;
+import omero.model.SessionI;
+import omero.model.Shape;
+import omero.sys.EventContext;
+import omero.sys.Filter;
+import omero.sys.Parameters;
+import omero.sys.Principal;
+import omero.sys.Roles;
+
+/**
+ * The servants of the {@link StandInServer}, i.e. the implementations of the
+ * services on top of {@link SyntheticData}. Each servant only implements the
+ * operations used by the gateway and the facilities, with the signatures of
+ * the corresponding proxy methods minus the call context, see
+ * {@link ServantHandler}.
+ * The queries are not parsed: the rows are built from the type and alias
+ * of the first <code>from</code> clause and the <code>join</code>s
+ * following it, and only the conditions comparing a property path of one of
+ * the aliases to a named parameter, e.g.
+ * <code>img.details.owner.id = :userID</code> or
+ * <code>l.child.id in (:ids)</code>, and a single <code>order by</code>
+ * are applied.
+ *
+ * @since 5.5
+ */
+final class Servants {
+
+    /** The root type and alias of a query. */
+    private static final Pattern FROM = Pattern.compile(
+            "from\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    /** The conditions of a query applied to the selected objects. */
+    private static final Pattern CONDITION = Pattern.compile(
+            "([\\w.]+)\\s*(=|<=|>=|<|>|in)\\s*\\(?\\s*:(\\w+)\\s*\\)?",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The joins of a query: outer or not, the property path followed and
+     * the alias of the joined objects.
+     */
+    private static final Pattern JOIN = Pattern.compile(
+            "(left\\s+(?:outer\\s+)?)?join\\s+(?:fetch\\s+)?([\\w.]+)\\s+"
+            + "(?:as\\s+)?(?!(?:left|right|inner|join|where|order|group)\\b)"
+            + "(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    /** The sort order of a query. */
+    private static final Pattern ORDER = Pattern.compile(
+            "order\\s+by\\s+([\\w.]+)(\\s+desc)?", Pattern.CASE_INSENSITIVE);
+
+    /** The select clause of a query. */
+    private static final Pattern SELECT = Pattern.compile(
+            "select\\s+(.*?)\\s+from\\s", Pattern.CASE_INSENSITIVE
+                    | Pattern.DOTALL);
+
+    /** Returned when a property path can't be followed. */
+    private static final Object UNKNOWN = new Object();
+
+    /** Prevents instantiation. */
+    private Servants() {
+    }
+
+    /**
+     * Returns the model type matching a type name as used in queries and
+     * in the <code>IContainer</code> and <code>IMetadata</code> services,
+     * e.g. <code>Image</code>, <code>omero.model.ImageI</code> or
+     * <code>ome.model.annotations.TagAnnotation</code>.
+     *
+     * @param name
+     *            The name of the type
+     * @return See above.
+     * @throws ApiUsageException
+     *             If there's no such type
+     */
+    static Class<?> getModelType(String name) throws ApiUsageException {
+        String simple = name.substring(name.lastIndexOf('.') + 1);
+        try {
+            return Class.forName("omero.model." + simple);
+        } catch (ClassNotFoundException e) {
+            ApiUsageException ex = new ApiUsageException();
+            ex.message = "Unknown type " + name;
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns all the objects of a type.
+     *
+     * @param data
+     *            The data
+     * @param type
+     *            The type
+     * @return See above.
+     */
+    static List<IObject> getAll(SyntheticData data, Class<?> type) {
+        List<IObject> result = new ArrayList<IObject>();
+        for (Object o : data.getAll(type))
+            result.add((IObject) o);
+        return result;
+    }
+
+    /**
+     * Returns the values of ids passed as a list of numbers or of
+     * {@link RLong}s.
+     *
+     * @param ids
+     *            The ids, may be <code>null</code>
+     * @return See above, empty if <code>ids</code> is <code>null</code>.
+     */
+    static Set<Long> toIds(Collection<?> ids) {
+        Set<Long> result = new HashSet<Long>();
+        if (ids == null)
+            return result;
+        for (Object id : ids) {
+            Object v = id instanceof RType ? omero.rtypes.unwrap((RType) id)
+                    : id;
+            if (v instanceof Number)
+                result.add(((Number) v).longValue());
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the objects owned by the owner of a filter, if any, and applies
+     * its offset and limit.
+     *
+     * @param objects
+     *            The objects
+     * @param filter
+     *            The filter, may be <code>null</code>
+     * @return See above.
+     */
+    static List<IObject> filter(List<IObject> objects, Filter filter) {
+        if (filter == null)
+            return objects;
+        List<IObject> result = objects;
+        if (filter.ownerId != null && filter.ownerId.getValue() >= 0) {
+            result = new ArrayList<IObject>();
+            long owner = filter.ownerId.getValue();
+            for (IObject o : objects) {
+                if (o.getDetails().getOwner() != null
+                        && o.getDetails().getOwner().getId().getValue()
+                        == owner)
+                    result.add(o);
+            }
+        }
+        return page(result, filter);
+    }
+
+    /**
+     * Applies the offset and limit of a filter.
+     *
+     * @param l
+     *            The list
+     * @param filter
+     *            The filter, may be <code>null</code>
+     * @return See above.
+     */
+    static <T> List<T> page(List<T> l, Filter filter) {
+        if (filter == null)
+            return l;
+        int offset = filter.offset == null ? 0 : filter.offset.getValue();
+        int limit = filter.limit == null ? Integer.MAX_VALUE : filter.limit
+                .getValue();
+        if (offset <= 0 && limit >= l.size())
+            return l;
+        int from = Math.min(Math.max(offset, 0), l.size());
+        int to = (int) Math.min((long) from + limit, l.size());
+        return new ArrayList<T>(l.subList(from, to));
+    }
+
+    /**
+     * Returns the rows of a query, i.e. the objects of the
+     * <code>from</code> clause combined with the objects they are joined
+     * to, by alias. The rows are filtered by the conditions, sorted by the
+     * <code>order by</code> clause and paged by the filter of the
+     * parameters.
+     *
+     * @param data
+     *            The data
+     * @param query
+     *            The query
+     * @param params
+     *            The parameters of the query, may be <code>null</code>
+     * @return See above.
+     * @throws ApiUsageException
+     *             If the query selects an unknown type
+     */
+    static List<Map<String, Object>> rows(SyntheticData data, String query,
+            Parameters params) throws ApiUsageException {
+        Matcher from = FROM.matcher(query);
+        if (!from.find()) {
+            ApiUsageException ex = new ApiUsageException();
+            ex.message = "No from clause in " + query;
+            throw ex;
+        }
+        String alias = from.group(2);
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (IObject o : getAll(data, getModelType(from.group(1)))) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put(alias, o);
+            rows.add(row);
+        }
+        rows = restrict(rows, query, params);
+
+        Matcher join = JOIN.matcher(query);
+        while (join.find()) {
+            boolean outer = join.group(1) != null;
+            String path = join.group(2);
+            String target = join.group(3);
+            List<Map<String, Object>> joined =
+                    new ArrayList<Map<String, Object>>();
+            for (Map<String, Object> row : rows) {
+                Object value = resolve(row, path, false);
+                if (value == UNKNOWN) {
+                    // A join of a subquery.
+                    joined.add(row);
+                    continue;
+                }
+                Collection<?> values = value instanceof Collection ?
+                        (Collection<?>) value : value == null ?
+                        Collections.emptyList() : Collections.singletonList(
+                                value);
+                if (values.isEmpty() && outer) {
+                    Map<String, Object> r = new HashMap<String, Object>(row);
+                    r.put(target, null);
+                    joined.add(r);
+                }
+                for (Object v : values) {
+                    Map<String, Object> r = new HashMap<String, Object>(row);
+                    r.put(target, v);
+                    joined.add(r);
+                }
+            }
+            rows = restrict(joined, query, params);
+        }
+
+        Matcher order = ORDER.matcher(query);
+        if (order.find()) {
+            final String path = order.group(1);
+            final int sign = order.group(2) == null ? 1 : -1;
+            Collections.sort(rows, new Comparator<Map<String, Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(Map<String, Object> r1,
+                        Map<String, Object> r2) {
+                    Object v1 = resolve(r1, path, true);
+                    Object v2 = resolve(r2, path, true);
+                    if (!(v1 instanceof Comparable)
+                            || !(v2 instanceof Comparable))
+                        return 0;
+                    return sign * ((Comparable<Object>) v1).compareTo(v2);
+                }
+            });
+        }
+
+        Filter filter = params == null ? null : params.theFilter;
+        if (filter != null && filter.ownerId != null
+                && filter.ownerId.getValue() >= 0) {
+            List<Map<String, Object>> owned =
+                    new ArrayList<Map<String, Object>>();
+            for (Map<String, Object> row : rows) {
+                if (matches(resolve(row, alias + ".details.owner.id", true),
+                        filter.ownerId.getValue()))
+                    owned.add(row);
+            }
+            rows = owned;
+        }
+        return page(rows, filter);
+    }
+
+    /**
+     * Keeps the rows matching the conditions of a query. The conditions on
+     * aliases not joined yet are ignored.
+     *
+     * @param rows
+     *            The rows
+     * @param query
+     *            The query
+     * @param params
+     *            The parameters of the query, may be <code>null</code>
+     * @return See above.
+     */
+    private static List<Map<String, Object>> restrict(
+            List<Map<String, Object>> rows, String query, Parameters params) {
+        Map<String, RType> values = params == null || params.map == null ?
+                Collections.<String, RType> emptyMap() : params.map;
+        Matcher m = CONDITION.matcher(query);
+        while (m.find()) {
+            RType value = values.get(m.group(3));
+            if (value == null)
+                continue;
+            Object expected = omero.rtypes.unwrap(value);
+            String op = m.group(2);
+            List<Map<String, Object>> matching =
+                    new ArrayList<Map<String, Object>>();
+            for (Map<String, Object> row : rows) {
+                Object actual = resolve(row, m.group(1), true);
+                if (actual == UNKNOWN || matches(actual, op, expected))
+                    matching.add(row);
+            }
+            rows = matching;
+        }
+
+        return rows;
+    }
+
+    /**
+     * Returns the objects selected by a query: the objects of the path of
+     * the <code>select</code> clause if any, otherwise the objects of the
+     * <code>from</code> clause. Each object is returned once, like with
+     * <code>select distinct</code>.
+     *
+     * @param data
+     *            The data
+     * @param query
+     *            The query
+     * @param params
+     *            The parameters of the query, may be <code>null</code>
+     * @return See above.
+     * @throws ApiUsageException
+     *             If the query selects an unknown type
+     */
+    static List<IObject> select(SyntheticData data, String query,
+            Parameters params) throws ApiUsageException {
+        Matcher select = SELECT.matcher(query);
+        String path = select.find() ? select.group(1).trim().replaceFirst(
+                "(?i)^distinct\\s+", "") : null;
+        if (path == null) {
+            Matcher from = FROM.matcher(query);
+            from.find();
+            path = from.group(2);
+        }
+        Set<IObject> result = new LinkedHashSet<IObject>();
+        for (Map<String, Object> row : rows(data, query, params)) {
+            Object o = resolve(row, path, false);
+            if (o instanceof IObject)
+                result.add((IObject) o);
+        }
+        return new ArrayList<IObject>(result);
+    }
+
+    /**
+     * Returns the value of a property path starting with an alias.
+     *
+     * @param row
+     *            The objects by alias
+     * @param path
+     *            The path, e.g. <code>img.details.owner.id</code>
+     * @param unwrap
+     *            Pass <code>true</code> to unwrap the value, and to return
+     *            {@link #UNKNOWN} for collections
+     * @return See above or {@link #UNKNOWN} if the alias is unknown or a
+     *         property doesn't exist.
+     */
+    static Object resolve(Map<String, Object> row, String path,
+            boolean unwrap) {
+        String[] segments = path.split("\\.");
+        if (!row.containsKey(segments[0]))
+            return UNKNOWN;
+        Object current = row.get(segments[0]);
+        for (int i = 1; i < segments.length; i++) {
+            if (current == null)
+                return null;
+            current = get(current, segments[i]);
+            if (current == UNKNOWN)
+                return UNKNOWN;
+        }
+        if (!unwrap)
+            return current;
+        if (current instanceof Collection)
+            return UNKNOWN;
+        return current instanceof RType ? omero.rtypes.unwrap(
+                (RType) current) : current;
+    }
+
+    /**
+     * Returns the value of a property, the collections being copied.
+     *
+     * @param o
+     *            The object
+     * @param property
+     *            The name of the property
+     * @return See above or {@link #UNKNOWN} if there's no such property.
+     */
+    private static Object get(Object o, String property) {
+        String name = Character.toUpperCase(property.charAt(0))
+                + property.substring(1);
+        for (String prefix : new String[] { "get", "copy" }) {
+            try {
+                return o.getClass().getMethod(prefix + name).invoke(o);
+            } catch (Exception e) {
+                // Try the next accessor.
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns <code>true</code> if a value compares to the value of a
+     * parameter as specified by an operator.
+     *
+     * @param actual
+     *            The value
+     * @param op
+     *            The operator, <code>=</code>, <code>in</code> or a
+     *            comparison of numbers
+     * @param expected
+     *            The unwrapped value of the parameter
+     * @return See above.
+     */
+    private static boolean matches(Object actual, String op,
+            Object expected) {
+        if (op.equals("=") || op.equalsIgnoreCase("in"))
+            return matches(actual, expected);
+        if (!(actual instanceof Number) || !(expected instanceof Number))
+            return false;
+        int c = Long.compare(((Number) actual).longValue(),
+                ((Number) expected).longValue());
+        switch (op) {
+            case "<":
+                return c < 0;
+            case "<=":
+                return c <= 0;
+            case ">":
+                return c > 0;
+            default:
+                return c >= 0;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a value matches the value of a
+     * parameter, i.e. is equal to it or contained in it.
+     *
+     * @param actual
+     *            The value
+     * @param expected
+     *            The unwrapped value of the parameter
+     * @return See above.
+     */
+    private static boolean matches(Object actual, Object expected) {
+        if (expected instanceof Collection) {
+            for (Object e : (Collection<?>) expected) {
+                if (matches(actual, e))
+                    return true;
+            }
+            return false;
+        }
+        if (actual instanceof Number && expected instanceof Number)
+            return ((Number) actual).longValue()
+                    == ((Number) expected).longValue();
+        return actual != null && actual.equals(expected);
+    }
+
+    /**
+     * Creates a {@link ValidationException}.
+     *
+     * @param message
+     *            The message
+     * @return See above.
+     */
+    static ValidationException invalid(String message) {
+        ValidationException e = new ValidationException();
+        e.message = message;
+        return e;
+    }
+
+    /** Implements <code>IQuery</code>. */
+    static class Query {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        Query(SyntheticData data) {
+            this.data = data;
+        }
+
+        public IObject get(String klass, long id) throws ServerError {
+            IObject o = find(klass, id);
+            if (o == null)
+                throw invalid("No " + klass + " with id " + id);
+            return o;
+        }
+
+        public IObject find(String klass, long id) throws ServerError {
+            Object o = data.get(getModelType(klass), id);
+            return (IObject) o;
+        }
+
+        public List<IObject> findAll(String klass, Filter filter)
+                throws ServerError {
+            return Servants.filter(getAll(data, getModelType(klass)), filter);
+        }
+
+        public IObject findByQuery(String query, Parameters params)
+                throws ServerError {
+            List<IObject> result = select(data, query, params);
+            return result.isEmpty() ? null : result.get(0);
+        }
+
+        public List<IObject> findAllByQuery(String query, Parameters params)
+                throws ServerError {
+            return select(data, query, params);
+        }
+
+        public List<List<RType>> projection(String query, Parameters params)
+                throws ServerError {
+            List<Map<String, Object>> objects = rows(data, query, params);
+            Matcher select = SELECT.matcher(query);
+            String[] items;
+            if (select.find()) {
+                items = select.group(1).split(",");
+            } else {
+                Matcher from = FROM.matcher(query);
+                from.find();
+                items = new String[] { from.group(2) };
+            }
+            List<List<RType>> rows = new ArrayList<List<RType>>();
+            if (items.length == 1 && items[0].trim().toLowerCase(Locale.ROOT)
+                    .startsWith("count(")) {
+                rows.add(Collections.<RType> singletonList(rlong(objects
+                        .size())));
+                return rows;
+            }
+            boolean distinct = items[0].trim().toLowerCase(Locale.ROOT)
+                    .startsWith("distinct ");
+            Set<List<Object>> seen = new HashSet<List<Object>>();
+            for (Map<String, Object> o : objects) {
+                List<RType> row = new ArrayList<RType>(items.length);
+                List<Object> values = new ArrayList<Object>(items.length);
+                for (String item : items) {
+                    String path = item.trim().replaceFirst(
+                            "(?i)^distinct\\s+", "");
+                    Object value = resolve(o, path, false);
+                    values.add(value instanceof RType ? omero.rtypes.unwrap(
+                            (RType) value) : value);
+                    row.add(project(value));
+                }
+                if (!distinct || seen.add(values))
+                    rows.add(row);
+            }
+            return rows;
+        }
+
+        /**
+         * Returns the value of an item of the select clause.
+         *
+         * @param value
+         *            The value of the property path of the item
+         * @return See above.
+         */
+        private RType project(Object value) {
+            if (value instanceof IObject)
+                return robject((IObject) value);
+            return value instanceof RType ? (RType) value : null;
+        }
+    }
+
+    /** Implements <code>IContainer</code>. */
+    static class Container {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        Container(SyntheticData data) {
+            this.data = data;
+        }
+
+        public List<IObject> loadContainerHierarchy(String rootType,
+                List<?> rootIds, Parameters options) throws ServerError {
+            return filter(roots(rootType, rootIds),
+                    options == null ? null : options.theFilter);
+        }
+
+        public List<Image> getImages(String rootType, List<?> rootIds,
+                Parameters options) throws ServerError {
+            Map<Long, Image> images = new LinkedHashMap<Long, Image>();
+            for (IObject root : roots(rootType, rootIds)) {
+                if (root instanceof Project) {
+                    for (Dataset d : ((Project) root).linkedDatasetList()) {
+                        for (Image i : d.linkedImageList())
+                            images.put(i.getId().getValue(), i);
+                    }
+                } else if (root instanceof Dataset) {
+                    for (Image i : ((Dataset) root).linkedImageList())
+                        images.put(i.getId().getValue(), i);
+                } else if (root instanceof Image) {
+                    images.put(root.getId().getValue(), (Image) root);
+                }
+            }
+            List<IObject> result = filter(new ArrayList<IObject>(
+                    images.values()), options == null ? null
+                    : options.theFilter);
+            List<Image> l = new ArrayList<Image>(result.size());
+            for (IObject o : result)
+                l.add((Image) o);
+            return l;
+        }
+
+        public List<Image> getUserImages(Parameters options)
+                throws ServerError {
+            return getImages(Image.class.getName(), null, options);
+        }
+
+        /**
+         * Returns the objects of a type, restricted to the specified ids
+         * if any.
+         *
+         * @param rootType
+         *            The type of the objects
+         * @param rootIds
+         *            The ids or <code>null</code>
+         * @return See above.
+         * @throws ServerError
+         *             If the type is unknown
+         */
+        private List<IObject> roots(String rootType, List<?> rootIds)
+                throws ServerError {
+            List<IObject> all = getAll(data, getModelType(rootType));
+            if (rootIds == null || rootIds.isEmpty())
+                return all;
+            Set<Long> ids = toIds(rootIds);
+            List<IObject> result = new ArrayList<IObject>();
+            for (IObject o : all) {
+                if (ids.contains(o.getId().getValue()))
+                    result.add(o);
+            }
+            return result;
+        }
+    }
+
+    /** Implements <code>IMetadata</code>. */
+    static class Metadata {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        Metadata(SyntheticData data) {
+            this.data = data;
+        }
+
+        public Map<Long, List<IObject>> loadAnnotations(String rootType,
+                List<?> rootIds, List<String> annotationTypes,
+                List<?> annotatorIds, Parameters options)
+                throws ServerError {
+            List<Class<?>> types = new ArrayList<Class<?>>();
+            if (annotationTypes != null) {
+                for (String type : annotationTypes)
+                    types.add(getModelType(type));
+            }
+            Set<Long> annotators = toIds(annotatorIds);
+            Map<Long, List<IObject>> result =
+                    new HashMap<Long, List<IObject>>();
+            for (Long id : toIds(rootIds)) {
+                List<IObject> l = new ArrayList<IObject>();
+                for (Annotation a : data.getAnnotations(id)) {
+                    if (accept(a, types, annotators))
+                        l.add(a);
+                }
+                result.put(id, l);
+            }
+            return result;
+        }
+
+        public List<Annotation> loadSpecifiedAnnotations(
+                String annotationType, List<String> include,
+                List<String> exclude, Parameters options)
+                throws ServerError {
+            Class<?> type = getModelType(annotationType);
+            List<Annotation> result = new ArrayList<Annotation>();
+            for (IObject o : getAll(data, type)) {
+                Annotation a = (Annotation) o;
+                String ns = a.getNs() == null ? null : a.getNs().getValue();
+                if (include != null && !include.isEmpty()
+                        && !include.contains(ns))
+                    continue;
+                if (exclude != null && exclude.contains(ns))
+                    continue;
+                result.add(a);
+            }
+            return result;
+        }
+
+        public List<Annotation> loadAnnotation(List<?> annotationIds)
+                throws ServerError {
+            List<Annotation> result = new ArrayList<Annotation>();
+            for (Long id : toIds(annotationIds)) {
+                Annotation a = data.get(Annotation.class, id);
+                if (a != null)
+                    result.add(a);
+            }
+            return result;
+        }
+
+        /**
+         * Returns <code>true</code> if an annotation is of one of the
+         * specified types and linked by one of the specified users.
+         *
+         * @param a
+         *            The annotation
+         * @param types
+         *            The types, all types if empty
+         * @param annotators
+         *            The ids of the users, all users if empty
+         * @return See above.
+         */
+        private static boolean accept(Annotation a, List<Class<?>> types,
+                Set<Long> annotators) {
+            if (!annotators.isEmpty()
+                    && !annotators.contains(a.getDetails().getOwner().getId()
+                            .getValue()))
+                return false;
+            if (types.isEmpty())
+                return true;
+            for (Class<?> type : types) {
+                if (type.isInstance(a))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /** Implements <code>IRoi</code>. */
+    static class RoiService {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        RoiService(SyntheticData data) {
+            this.data = data;
+        }
+
+        public RoiResult findByImage(long imageId, RoiOptions opts)
+                throws ServerError {
+            return result(data.getRois(imageId), opts);
+        }
+
+        public RoiResult findByRoi(long roiId, RoiOptions opts)
+                throws ServerError {
+            Roi roi = data.get(Roi.class, roiId);
+            List<Roi> l = roi == null ? Collections.<Roi> emptyList()
+                    : Collections.singletonList(roi);
+            return result(l, opts);
+        }
+
+        public RoiResult findByPlane(long imageId, int z, int t,
+                RoiOptions opts) throws ServerError {
+            List<Roi> l = new ArrayList<Roi>();
+            for (Roi roi : data.getRois(imageId)) {
+                for (Shape s : roi.copyShapes()) {
+                    if (onPlane(s, z, t)) {
+                        l.add(roi);
+                        break;
+                    }
+                }
+            }
+            return result(l, opts);
+        }
+
+        /**
+         * Returns <code>true</code> if a shape is on the specified plane or
+         * on all planes.
+         *
+         * @param s
+         *            The shape
+         * @param z
+         *            The z section
+         * @param t
+         *            The timepoint
+         * @return See above.
+         */
+        private static boolean onPlane(Shape s, int z, int t) {
+            return (s.getTheZ() == null || s.getTheZ().getValue() == z)
+                    && (s.getTheT() == null || s.getTheT().getValue() == t);
+        }
+
+        /**
+         * Creates the result of a search, applying the offset and limit of
+         * the options.
+         *
+         * @param rois
+         *            The regions of interest found
+         * @param opts
+         *            The options, may be <code>null</code>
+         * @return See above.
+         */
+        private static RoiResult result(List<Roi> rois, RoiOptions opts) {
+            int from = 0;
+            int to = rois.size();
+            if (opts != null && opts.offset != null)
+                from = Math.min(Math.max(opts.offset.getValue(), 0), to);
+            if (opts != null && opts.limit != null)
+                to = (int) Math.min((long) from + opts.limit.getValue(), to);
+            RoiResult result = new RoiResult();
+            result.opts = opts;
+            result.rois = new ArrayList<Roi>(rois.subList(from, to));
+            return result;
+        }
+    }
+
+    /** Implements <code>IUpdate</code>. */
+    static class Update {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        Update(SyntheticData data) {
+            this.data = data;
+        }
+
+        public void saveObject(IObject object) {
+            saveAndReturnObject(object);
+        }
+
+        public IObject saveAndReturnObject(IObject object) {
+            return save(object);
+        }
+
+        public void saveArray(List<IObject> objects) {
+            saveAndReturnArray(objects);
+        }
+
+        public List<IObject> saveAndReturnArray(List<IObject> objects) {
+            List<IObject> result = new ArrayList<IObject>(objects.size());
+            for (IObject o : objects)
+                result.add(save(o));
+            return result;
+        }
+
+        public List<Long> saveAndReturnIds(List<IObject> objects) {
+            List<Long> result = new ArrayList<Long>(objects.size());
+            for (IObject o : objects)
+                result.add(save(o).getId().getValue());
+            return result;
+        }
+
+        /**
+         * Adds an object. Links to annotations are registered so that the
+         * annotations are returned by <code>IMetadata</code>.
+         *
+         * @param object
+         *            The object to save
+         * @return See above.
+         */
+        private IObject save(IObject object) {
+            data.add(object);
+            try {
+                Method parent = object.getClass().getMethod("getParent");
+                Method child = object.getClass().getMethod("getChild");
+                IObject p = (IObject) parent.invoke(object);
+                IObject c = (IObject) child.invoke(object);
+                if (c != null)
+                    data.add(c);
+                if (p != null && p.getId() != null
+                        && c instanceof Annotation)
+                    data.annotate(p.getId().getValue(), (Annotation) c);
+            } catch (NoSuchMethodException e) {
+                // Not a link.
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return object;
+        }
+    }
+
+    /** Implements <code>IConfig</code>. */
+    static class Config {
+
+        /** The version of the server, the same as the client's. */
+        private final String version;
+
+        /**
+         * Creates a new instance.
+         */
+        Config() {
+            String v;
+            try {
+                v = ResourceBundle.getBundle("omero").getString(
+                        "omero.version");
+            } catch (Exception e) {
+                v = "5.5.0";
+            }
+            version = v;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getConfigValue(String key) {
+            return "";
+        }
+
+        public Map<String, String> getConfigValues(String keyRegex) {
+            return new HashMap<String, String>();
+        }
+
+        public Map<String, String> getClientConfigValues() {
+            return new HashMap<String, String>();
+        }
+
+        public Map<String, String> getClientConfigDefaults() {
+            return new HashMap<String, String>();
+        }
+
+        public omero.RTime getServerTime() {
+            return rtime(System.currentTimeMillis());
+        }
+    }
+
+    /** Implements <code>IAdmin</code>. */
+    static class Admin {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /** The session. */
+        private final StandInServer.Session session;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         * @param session
+         *            The session
+         */
+        Admin(SyntheticData data, StandInServer.Session session) {
+            this.data = data;
+            this.session = session;
+        }
+
+        public EventContext getEventContext() {
+            Experimenter user = data.getUser();
+            ExperimenterGroup group = data.getGroup();
+            long groupId = group.getId().getValue();
+            EventContext ec = new EventContext();
+            ec.userId = user.getId().getValue();
+            ec.userName = user.getOmeName().getValue();
+            ec.groupId = groupId;
+            ec.groupName = group.getName().getValue();
+            ec.sessionUuid = session.getUuid();
+            ec.sessionId = session.getId();
+            ec.isAdmin = false;
+            ec.memberOfGroups = new ArrayList<Long>(Arrays.asList(groupId));
+            ec.leaderOfGroups = new ArrayList<Long>();
+            ec.adminPrivileges = new ArrayList<String>();
+            ec.groupPermissions = group.getDetails().getPermissions();
+            ec.eventType = "User";
+            return ec;
+        }
+
+        public Experimenter lookupExperimenter(String name)
+                throws ServerError {
+            Experimenter user = data.getUser();
+            if (!user.getOmeName().getValue().equals(name))
+                throw invalid("No such experimenter: " + name);
+            return user;
+        }
+
+        public List<Experimenter> lookupExperimenters() {
+            return Collections.singletonList(data.getUser());
+        }
+
+        public Experimenter getExperimenter(long id) throws ServerError {
+            Experimenter user = data.get(Experimenter.class, id);
+            if (user == null)
+                throw invalid("No experimenter with id " + id);
+            return user;
+        }
+
+        public ExperimenterGroup getGroup(long id) throws ServerError {
+            ExperimenterGroup group = data.get(ExperimenterGroup.class, id);
+            if (group == null)
+                throw invalid("No group with id " + id);
+            return group;
+        }
+
+        public ExperimenterGroup lookupGroup(String name)
+                throws ServerError {
+            ExperimenterGroup group = data.getGroup();
+            if (!group.getName().getValue().equals(name))
+                throw invalid("No such group: " + name);
+            return group;
+        }
+
+        public ExperimenterGroup getDefaultGroup(long experimenterId) {
+            return data.getGroup();
+        }
+
+        public List<ExperimenterGroup> containedGroups(long experimenterId) {
+            return Collections.singletonList(data.getGroup());
+        }
+
+        public List<Experimenter> containedExperimenters(long groupId) {
+            return Collections.singletonList(data.getUser());
+        }
+
+        public Roles getSecurityRoles() {
+            Roles roles = new Roles();
+            roles.rootId = 0;
+            roles.rootName = "root";
+            roles.systemGroupId = 0;
+            roles.systemGroupName = "system";
+            roles.userGroupId = 1;
+            roles.userGroupName = "user";
+            roles.guestId = 1;
+            roles.guestName = "guest";
+            roles.guestGroupId = 2;
+            roles.guestGroupName = "guest";
+            return roles;
+        }
+    }
+
+    /** Implements <code>ISession</code>. */
+    static class SessionService {
+
+        /** The server. */
+        private final StandInServer server;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param server
+         *            The server
+         */
+        SessionService(StandInServer server) {
+            this.server = server;
+        }
+
+        public omero.model.Session getSession(String uuid)
+                throws ServerError {
+            StandInServer.Session s = server.getSession(uuid);
+            if (s == null)
+                throw invalid("No session " + uuid);
+            SessionI session = new SessionI();
+            session.setId(rlong(s.getId()));
+            session.setUuid(rstring(uuid));
+            session.setStarted(rtime(s.getStarted()));
+            session.setTimeToIdle(rlong(server.getSessionTimeout()));
+            session.setTimeToLive(rlong(0));
+            return session;
+        }
+
+        public omero.model.Session createSessionWithTimeouts(Principal p,
+                long timeToLive, long timeToIdle) throws ServerError {
+            return getSession(server.open().getUuid());
+        }
+    }
+
+    /** Implements the <code>RawFileStore</code> service. */
+    static class FileStore {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /** The id of the current file or <code>-1</code>. */
+        private long fileId = -1;
+
+        /** The content of the current file. */
+        private byte[] content;
+
+        /** Set when the content has been written but not saved. */
+        private boolean dirty;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        FileStore(SyntheticData data) {
+            this.data = data;
+        }
+
+        public synchronized void setFileId(long id) throws ServerError {
+            byte[] c = data.getContent(id);
+            if (c == null)
+                throw invalid("No file with id " + id);
+            fileId = id;
+            content = c;
+            dirty = false;
+        }
+
+        public synchronized RLong getFileId() {
+            return fileId < 0 ? null : rlong(fileId);
+        }
+
+        public synchronized long size() throws ServerError {
+            check();
+            return content.length;
+        }
+
+        public synchronized boolean exists() {
+            return fileId >= 0;
+        }
+
+        public synchronized byte[] read(long position, int length)
+                throws ServerError {
+            check();
+            int from = (int) Math.min(position, content.length);
+            int to = (int) Math.min(position + length, content.length);
+            return Arrays.copyOfRange(content, from, to);
+        }
+
+        public synchronized void write(byte[] buf, long position, int length)
+                throws ServerError {
+            check();
+            long end = position + length;
+            if (end > content.length)
+                content = Arrays.copyOf(content, (int) end);
+            System.arraycopy(buf, 0, content, (int) position, length);
+            dirty = true;
+        }
+
+        public synchronized boolean truncate(long length) throws ServerError {
+            check();
+            if (length >= content.length)
+                return false;
+            content = Arrays.copyOf(content, (int) length);
+            dirty = true;
+            return true;
+        }
+
+        public synchronized OriginalFile save() throws ServerError {
+            check();
+            if (dirty) {
+                data.setContent(fileId, content);
+                dirty = false;
+            }
+            return data.get(OriginalFile.class, fileId);
+        }
+
+        /**
+         * Fails if no file has been set.
+         *
+         * @throws ServerError
+         *             See above.
+         */
+        private void check() throws ServerError {
+            if (fileId < 0) {
+                ApiUsageException e = new ApiUsageException();
+                e.message = "No file set";
+                throw e;
+            }
+        }
+    }
+
+    /** Implements the <code>RawPixelsStore</code> service. */
+    static class PixelsStore {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /** The current pixels set or <code>null</code>. */
+        private Pixels pixels;
+
+        /** The id of the current pixels set. */
+        private long id;
+
+        /** The dimensions of the current pixels set. */
+        private int sizeX, sizeY, sizeZ, sizeC, sizeT;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        PixelsStore(SyntheticData data) {
+            this.data = data;
+        }
+
+        public synchronized void setPixelsId(long pixelsId, boolean bypass)
+                throws ServerError {
+            Pixels p = data.get(Pixels.class, pixelsId);
+            if (p == null)
+                throw invalid("No pixels with id " + pixelsId);
+            pixels = p;
+            id = pixelsId;
+            sizeX = p.getSizeX().getValue();
+            sizeY = p.getSizeY().getValue();
+            sizeZ = p.getSizeZ().getValue();
+            sizeC = p.getSizeC().getValue();
+            sizeT = p.getSizeT().getValue();
+        }
+
+        public synchronized long getPixelsId() throws ServerError {
+            check();
+            return id;
+        }
+
+        public int getByteWidth() {
+            return data.getBytesPerPixel();
+        }
+
+        public boolean isSigned() {
+            return false;
+        }
+
+        public boolean isFloat() {
+            return false;
+        }
+
+        public synchronized long getPlaneSize() throws ServerError {
+            check();
+            return (long) sizeX * sizeY;
+        }
+
+        public synchronized int getRowSize() throws ServerError {
+            check();
+            return sizeX * data.getBytesPerPixel();
+        }
+
+        public synchronized long getStackSize() throws ServerError {
+            check();
+            return (long) sizeX * sizeY * sizeZ * data.getBytesPerPixel();
+        }
+
+        public synchronized long getTimepointSize() throws ServerError {
+            return getStackSize() * sizeC;
+        }
+
+        public synchronized long getTotalSize() throws ServerError {
+            return getTimepointSize() * sizeT;
+        }
+
+        public int getResolutionLevels() {
+            return 1;
+        }
+
+        public int getResolutionLevel() {
+            return 0;
+        }
+
+        public void setResolutionLevel(int level) throws ServerError {
+            if (level != 0)
+                throw invalid("No resolution level " + level);
+        }
+
+        public synchronized ResolutionDescription[] getResolutionDescriptions()
+                throws ServerError {
+            check();
+            return new ResolutionDescription[] {
+                    new ResolutionDescription(sizeX, sizeY) };
+        }
+
+        public synchronized int[] getTileSize() throws ServerError {
+            check();
+            return new int[] { Math.min(sizeX, 256), Math.min(sizeY, 256) };
+        }
+
+        public boolean requiresPixelsPyramid() {
+            return false;
+        }
+
+        public synchronized byte[] getPlane(int z, int c, int t)
+                throws ServerError {
+            check();
+            return region(z, c, t, 0, 0, sizeX, sizeY);
+        }
+
+        public synchronized byte[] getTile(int z, int c, int t, int x, int y,
+                int w, int h) throws ServerError {
+            check();
+            if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > sizeX
+                    || y + h > sizeY)
+                throw invalid("Tile out of bounds");
+            return region(z, c, t, x, y, w, h);
+        }
+
+        public synchronized byte[] getRow(int y, int z, int c, int t)
+                throws ServerError {
+            check();
+            return region(z, c, t, 0, y, sizeX, 1);
+        }
+
+        public synchronized byte[] getCol(int x, int z, int c, int t)
+                throws ServerError {
+            check();
+            return region(z, c, t, x, 0, 1, sizeY);
+        }
+
+        public synchronized byte[] getStack(int c, int t) throws ServerError {
+            check();
+            return concat(sizeZ, c, t, false);
+        }
+
+        public synchronized byte[] getTimepoint(int t) throws ServerError {
+            check();
+            return concat(sizeC, 0, t, true);
+        }
+
+        public synchronized byte[] getHypercube(List<Integer> offset,
+                List<Integer> size, List<Integer> step) throws ServerError {
+            check();
+            int[] o = new int[5];
+            int[] s = new int[5];
+            int[] st = new int[5];
+            for (int i = 0; i < 5; i++) {
+                o[i] = offset.get(i);
+                s[i] = size.get(i);
+                st[i] = step == null ? 1 : Math.max(1, step.get(i));
+            }
+            int bpp = data.getBytesPerPixel();
+            int n = 1;
+            for (int i = 0; i < 5; i++)
+                n *= (s[i] + st[i] - 1) / st[i];
+            byte[] result = new byte[n * bpp];
+            int k = 0;
+            for (int t = o[4]; t < o[4] + s[4]; t += st[4])
+                for (int c = o[3]; c < o[3] + s[3]; c += st[3])
+                    for (int z = o[2]; z < o[2] + s[2]; z += st[2])
+                        for (int y = o[1]; y < o[1] + s[1]; y += st[1])
+                            for (int x = o[0]; x < o[0] + s[0]; x += st[0]) {
+                                put(result, k, SyntheticData.getValue(id, x,
+                                        y, z, c, t));
+                                k += bpp;
+                            }
+            return result;
+        }
+
+        /**
+         * Returns the planes of a stack or of a timepoint.
+         *
+         * @param count
+         *            The number of planes
+         * @param c
+         *            The channel, ignored for a timepoint
+         * @param t
+         *            The timepoint
+         * @param timepoint
+         *            Pass <code>true</code> to read all the channels,
+         *            <code>false</code> to read all the z sections
+         * @return See above.
+         */
+        private byte[] concat(int count, int c, int t, boolean timepoint) {
+            int planeSize = sizeX * sizeY * data.getBytesPerPixel();
+            byte[] result = new byte[planeSize * count * (timepoint ? sizeZ
+                    : 1)];
+            int k = 0;
+            for (int i = 0; i < count; i++) {
+                for (int z = 0; z < (timepoint ? sizeZ : 1); z++) {
+                    byte[] plane = timepoint ? region(z, i, t, 0, 0, sizeX,
+                            sizeY) : region(i, c, t, 0, 0, sizeX, sizeY);
+                    System.arraycopy(plane, 0, result, k, planeSize);
+                    k += planeSize;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the big endian values of a region of a plane.
+         *
+         * @param z
+         *            The z section
+         * @param c
+         *            The channel
+         * @param t
+         *            The timepoint
+         * @param x
+         *            The x coordinate of the region
+         * @param y
+         *            The y coordinate of the region
+         * @param w
+         *            The width of the region
+         * @param h
+         *            The height of the region
+         * @return See above.
+         */
+        private byte[] region(int z, int c, int t, int x, int y, int w,
+                int h) {
+            int bpp = data.getBytesPerPixel();
+            byte[] result = new byte[w * h * bpp];
+            int k = 0;
+            for (int j = y; j < y + h; j++) {
+                for (int i = x; i < x + w; i++) {
+                    put(result, k, SyntheticData.getValue(id, i, j, z, c, t));
+                    k += bpp;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Writes a big endian value.
+         *
+         * @param buf
+         *            The buffer
+         * @param index
+         *            The index of the first byte
+         * @param value
+         *            The value
+         */
+        private void put(byte[] buf, int index, int value) {
+            int bpp = data.getBytesPerPixel();
+            for (int b = 0; b < bpp; b++)
+                buf[index + b] = (byte) (value >>> (8 * (bpp - 1 - b)));
+        }
+
+        /**
+         * Fails if no pixels set has been set.
+         *
+         * @throws ServerError
+         *             See above.
+         */
+        private void check() throws ServerError {
+            if (pixels == null) {
+                ApiUsageException e = new ApiUsageException();
+                e.message = "No pixels set";
+                throw e;
+            }
+        }
+    }
+
+    /** Implements <code>SharedResources</code>. */
+    static class Resources {
+
+        /** The server. */
+        private final StandInServer server;
+
+        /** The session. */
+        private final StandInServer.Session session;
+
+        /** The file standing for the repository of the tables. */
+        private final OriginalFile repository;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param server
+         *            The server
+         * @param session
+         *            The session
+         */
+        Resources(StandInServer server, StandInServer.Session session) {
+            this.server = server;
+            this.session = session;
+            repository = new OriginalFileI(0L, true);
+            repository.setName(rstring("StandInRepository"));
+            repository.setPath(rstring("/"));
+        }
+
+        public boolean areTablesEnabled() {
+            return true;
+        }
+
+        public RepositoryMap repositories() {
+            RepositoryMap map = new RepositoryMap();
+            map.descriptions = Collections.singletonList(repository);
+            map.proxies = Collections.emptyList();
+            return map;
+        }
+
+        public TablePrx openTable(OriginalFile file) throws ServerError {
+            long fileId = file.getId().getValue();
+            long[] rows = server.getData().getTableRows(fileId);
+            if (rows == null)
+                throw invalid("File " + fileId + " is not a table");
+            return server.createTable(session, new Table(server.getData(),
+                    server.getData().get(OriginalFile.class, fileId), rows));
+        }
+
+        public TablePrx newTable(long repository, String path) {
+            OriginalFileI file = new OriginalFileI();
+            file.setName(rstring(path));
+            file.setPath(rstring("/standin/"));
+            file.setMimetype(rstring(SyntheticData.TABLE_MIMETYPE));
+            file.setSize(rlong(0));
+            server.getData().add(file);
+            return server.createTable(session, new Table(server.getData(),
+                    file, null));
+        }
+    }
+
+    /**
+     * Implements <code>Table</code>. The synthetic tables list the images
+     * of a dataset with their name and a mean value.
+     */
+    static class Table {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /** The file of the table. */
+        private final OriginalFile file;
+
+        /** The columns, including the values. */
+        private Column[] columns;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         * @param file
+         *            The file of the table
+         * @param images
+         *            The ids of the images of a synthetic table or
+         *            <code>null</code> for a new table
+         */
+        Table(SyntheticData data, OriginalFile file, long[] images) {
+            this.data = data;
+            this.file = file;
+            if (images == null)
+                return;
+            double[] means = new double[images.length];
+            String[] names = new String[images.length];
+            for (int i = 0; i < images.length; i++) {
+                Image image = data.get(Image.class, images[i]);
+                means[i] = images[i] % 256;
+                names[i] = image == null ? "" : image.getName().getValue();
+            }
+            columns = new Column[] {
+                    new ImageColumn("Image", "", images),
+                    new DoubleColumn("Mean", "", means),
+                    new StringColumn("Name", "", 64, names) };
+        }
+
+        public synchronized Column[] getHeaders() {
+            Column[] headers = new Column[columns.length];
+            for (int i = 0; i < columns.length; i++)
+                headers[i] = copy(columns[i], new long[0]);
+            return headers;
+        }
+
+        public synchronized long getNumberOfRows() {
+            return columns == null || columns.length == 0 ? 0 : Array
+                    .getLength(values(columns[0]));
+        }
+
+        public OriginalFile getOriginalFile() {
+            return file;
+        }
+
+        public synchronized void initialize(Column[] headers) {
+            columns = new Column[headers.length];
+            for (int i = 0; i < headers.length; i++)
+                columns[i] = copy(headers[i], new long[0]);
+        }
+
+        public synchronized void addData(Column[] cols) {
+            for (int i = 0; i < columns.length; i++) {
+                Object current = values(columns[i]);
+                Object added = values(cols[i]);
+                int n = Array.getLength(current);
+                int m = Array.getLength(added);
+                Object merged = Array.newInstance(current.getClass()
+                        .getComponentType(), n + m);
+                System.arraycopy(current, 0, merged, 0, n);
+                System.arraycopy(added, 0, merged, n, m);
+                setValues(columns[i], merged);
+            }
+        }
+
+        public synchronized Data read(long[] colNumbers, long start,
+                long stop) {
+            int n = (int) getNumberOfRows();
+            int to = (int) Math.min(stop, n);
+            int from = (int) Math.min(Math.max(start, 0), to);
+            long[] rows = new long[to - from];
+            for (int i = 0; i < rows.length; i++)
+                rows[i] = from + i;
+            return slice(colNumbers, rows);
+        }
+
+        public synchronized Data readCoordinates(long[] rowNumbers) {
+            long[] all = new long[columns.length];
+            for (int i = 0; i < all.length; i++)
+                all[i] = i;
+            return slice(all, rowNumbers);
+        }
+
+        public synchronized Data slice(long[] colNumbers, long[] rowNumbers) {
+            Data d = new Data();
+            d.lastModification = System.currentTimeMillis();
+            d.rowNumbers = rowNumbers;
+            d.columns = new Column[colNumbers.length];
+            for (int i = 0; i < colNumbers.length; i++)
+                d.columns[i] = copy(columns[(int) colNumbers[i]],
+                        rowNumbers);
+            return d;
+        }
+
+        public synchronized long[] getWhereList(String condition,
+                Map<String, RType> variables, long start, long stop,
+                long step) {
+            long n = getNumberOfRows();
+            long to = stop <= 0 ? n : Math.min(stop, n);
+            long inc = Math.max(step, 1);
+            List<Long> rows = new ArrayList<Long>();
+            for (long r = Math.max(start, 0); r < to; r += inc)
+                rows.add(r);
+            long[] result = new long[rows.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = rows.get(i);
+            return result;
+        }
+
+        /**
+         * Copies a column keeping the specified rows only.
+         *
+         * @param column
+         *            The column
+         * @param rows
+         *            The rows to keep
+         * @return See above.
+         */
+        private static Column copy(Column column, long[] rows) {
+            try {
+                Column copy = column.getClass().newInstance();
+                for (Field f : column.getClass().getFields()) {
+                    if (Modifier.isStatic(f.getModifiers()))
+                        continue;
+                    if (f.getName().equals("values")) {
+                        Object values = f.get(column);
+                        Object sliced = Array.newInstance(values.getClass()
+                                .getComponentType(), rows.length);
+                        for (int i = 0; i < rows.length; i++)
+                            Array.set(sliced, i, Array.get(values,
+                                    (int) rows[i]));
+                        f.set(copy, sliced);
+                    } else {
+                        f.set(copy, f.get(column));
+                    }
+                }
+                return copy;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Returns the values of a column.
+         *
+         * @param column
+         *            The column
+         * @return See above.
+         */
+        private static Object values(Column column) {
+            try {
+                return column.getClass().getField("values").get(column);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Sets the values of a column.
+         *
+         * @param column
+         *            The column
+         * @param values
+         *            The values
+         */
+        private static void setValues(Column column, Object values) {
+            try {
+                column.getClass().getField("values").set(column, values);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Implements the <code>Search</code> service. The terms of the query
+     * are matched against the names of the objects of the selected type.
+     */
+    static class Search {
+
+        /** The data. */
+        private final SyntheticData data;
+
+        /** The type of the objects to search. */
+        private Class<?> type = Image.class;
+
+        /** The maximum number of results returned at once. */
+        private int batchSize = 1000;
+
+        /** The results not returned yet. */
+        private final List<IObject> pending = new ArrayList<IObject>();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data
+         *            The data
+         */
+        Search(SyntheticData data) {
+            this.data = data;
+        }
+
+        public synchronized void onlyType(String klass) throws ServerError {
+            type = getModelType(klass);
+        }
+
+        public synchronized void setBatchSize(int size) {
+            batchSize = size;
+        }
+
+        public synchronized int getBatchSize() {
+            return batchSize;
+        }
+
+        public synchronized void byFullText(String query) {
+            search(query);
+        }
+
+        public synchronized void byLuceneQueryBuilder(String fields,
+                String from, String to, String dateType, String query) {
+            search(query);
+        }
+
+        public synchronized void clearQueries() {
+            pending.clear();
+        }
+
+        public synchronized boolean hasNext() {
+            return !pending.isEmpty();
+        }
+
+        public synchronized IObject next() throws ServerError {
+            if (pending.isEmpty())
+                throw invalid("No more results");
+            return pending.remove(0);
+        }
+
+        public synchronized List<IObject> results() throws ServerError {
+            if (pending.isEmpty())
+                throw invalid("No more results");
+            int n = Math.min(batchSize, pending.size());
+            List<IObject> batch = new ArrayList<IObject>(pending.subList(0,
+                    n));
+            pending.subList(0, n).clear();
+            return batch;
+        }
+
+        /**
+         * Adds the objects of the selected type whose name contains one of
+         * the terms of a query.
+         *
+         * @param query
+         *            The query
+         */
+        private void search(String query) {
+            List<String> terms = new ArrayList<String>();
+            for (String term : query.toLowerCase(Locale.ROOT).split(
+                    "[\\s()\"]+")) {
+                String t = term.replaceFirst("^[\\w]+:", "").replace("*", "")
+                        .replace("?", "");
+                if (!t.isEmpty() && !t.equals("and") && !t.equals("or"))
+                    terms.add(t);
+            }
+            for (IObject o : getAll(data, type)) {
+                String name = name(o);
+                if (name == null)
+                    continue;
+                for (String term : terms) {
+                    if (name.contains(term)) {
+                        pending.add(o);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the lower case name of an object.
+         *
+         * @param o
+         *            The object
+         * @return See above or <code>null</code> if it has no name.
+         */
+        private static String name(IObject o) {
+            try {
+                Object name = o.getClass().getMethod("getName").invoke(o);
+                return name == null ? null : ((omero.RString) name)
+                        .getValue().toLowerCase(Locale.ROOT);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+}
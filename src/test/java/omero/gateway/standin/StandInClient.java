@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import Glacier2.PermissionDeniedException;
+import omero.ClientError;
+import omero.client;
+import omero.api.ServiceFactoryPrx;
+
+/**
+ * A {@link client} whose sessions are created on a {@link StandInServer}.
+ * The communicator is initialized as usual, so that the configuration of
+ * the client can be read, but it never connects.
+ *
+ * @since 5.5
+ */
+class StandInClient extends client {
+
+    /** The server. */
+    private final StandInServer server;
+
+    /** Set when the communicator has been destroyed. */
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+
+    /** The current session or <code>null</code>. */
+    private volatile StandInServer.Session session;
+
+    /** The uuid of the last session. */
+    private volatile String sessionId;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param server
+     *            The server
+     * @param host
+     *            The host
+     * @param port
+     *            The port
+     */
+    StandInClient(StandInServer server, String host, int port) {
+        super(host, port);
+        this.server = server;
+    }
+
+    @Override
+    public ServiceFactoryPrx createSession()
+            throws PermissionDeniedException {
+        return createSession(getProperty("omero.user"),
+                getProperty("omero.pass"));
+    }
+
+    @Override
+    public ServiceFactoryPrx createSession(String username, String password)
+            throws PermissionDeniedException {
+        return attach(server.login(username, password));
+    }
+
+    @Override
+    public ServiceFactoryPrx joinSession(String uuid)
+            throws PermissionDeniedException {
+        return attach(server.join(uuid));
+    }
+
+    @Override
+    public ServiceFactoryPrx getSession() {
+        StandInServer.Session s = session;
+        if (s == null)
+            throw new ClientError("No session available");
+        return s.getFactory();
+    }
+
+    @Override
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public client createClient(boolean secure)
+            throws PermissionDeniedException {
+        StandInClient c = new StandInClient(server,
+                getProperty("omero.host"), Integer.parseInt(getProperty(
+                        "omero.port")));
+        c.joinSession(getSessionId());
+        return c;
+    }
+
+    @Override
+    public void closeSession() {
+        StandInServer.Session s = session;
+        session = null;
+        if (s != null)
+            s.release();
+        if (destroyed.compareAndSet(false, true))
+            getCommunicator().destroy();
+    }
+
+    /**
+     * Makes a session the current one.
+     *
+     * @param s
+     *            The session
+     * @return The entry point of the session
+     */
+    private ServiceFactoryPrx attach(StandInServer.Session s) {
+        StandInServer.Session previous = session;
+        session = s;
+        sessionId = s.getUuid();
+        if (previous != null)
+            previous.release();
+        return s.getFactory();
+    }
+}
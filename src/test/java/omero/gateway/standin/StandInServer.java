@@ -0,0 +1,758 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Glacier2.PermissionDeniedException;
+import omero.ApiUsageException;
+import omero.client;
+import omero.api.IAdminPrx;
+import omero.api.IConfigPrx;
+import omero.api.IContainerPrx;
+import omero.api.IMetadataPrx;
+import omero.api.IQueryPrx;
+import omero.api.IRoiPrx;
+import omero.api.ISessionPrx;
+import omero.api.IUpdatePrx;
+import omero.api.RawFileStorePrx;
+import omero.api.RawPixelsStorePrx;
+import omero.api.SearchPrx;
+import omero.api.ServiceFactoryPrx;
+import omero.api.ServiceInterfacePrx;
+import omero.api.SharedResourcesPrx;
+import omero.api.StatefulServiceInterfacePrx;
+import omero.gateway.Gateway;
+import omero.gateway.LoginCredentials;
+import omero.gateway.StandInGateway;
+import omero.grid.TablePrx;
+import omero.log.Logger;
+import omero.model.IObject;
+
+/**
+ * An in-process stand-in for an OMERO server, used to run the
+ * {@link Gateway} and the facilities offline, e.g. for load tests.
+ * The services are dynamic proxies implemented by the servants in
+ * {@link Servants} on top of {@link SyntheticData}; nothing is marshaled and
+ * no connection is made. Every call is delayed as configured by the
+ * {@link LatencyModel} and counted, see {@link #getCallCount(String, String)}.
+ * The stand-in implements <code>IQuery</code>, <code>IContainer</code>,
+ * <code>IMetadata</code>, <code>IRoi</code>, <code>IUpdate</code>,
+ * <code>RawFileStore</code>, <code>RawPixelsStore</code>,
+ * <code>SharedResources</code> with its tables and <code>Search</code>,
+ * as well as what is needed to log in.
+ *
+ * <pre>
+ * try (StandInServer server = new StandInServer()) {
+ *     server.getLatency().setLatency(1, 5, TimeUnit.MILLISECONDS);
+ *     Gateway gw = server.createGateway(new SimpleLogger());
+ *     ExperimenterData user = gw.connect(server.getCredentials());
+ *     ...
+ * }
+ * </pre>
+ *
+ * @since 5.5
+ */
+public class StandInServer implements AutoCloseable {
+
+    /** The default time to idle of the sessions in milliseconds. */
+    public static final long SESSION_TIMEOUT = 600000;
+
+    /** The password accepted for {@link SyntheticData#USER_NAME}. */
+    public static final String PASSWORD = "standin";
+
+    /** The data served. */
+    private final SyntheticData data;
+
+    /** The delays added to the calls. */
+    private final LatencyModel latency = new LatencyModel();
+
+    /** Runs the asynchronous invocations. */
+    private final ExecutorService executor;
+
+    /** The open sessions, by uuid. */
+    private final ConcurrentMap<String, Session> sessions =
+            new ConcurrentHashMap<String, Session>();
+
+    /** The number of calls, by <code>service.operation</code>. */
+    private final ConcurrentMap<String, AtomicLong> calls =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    /** Used to assign the ids of the sessions. */
+    private final AtomicLong sessionIds = new AtomicLong();
+
+    /** The time to idle of the sessions in milliseconds. */
+    private volatile long sessionTimeout = SESSION_TIMEOUT;
+
+    /**
+     * Creates a new instance serving the default {@link SyntheticData}.
+     */
+    public StandInServer() {
+        this(new SyntheticData());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param data
+     *            The data to serve
+     */
+    public StandInServer(SyntheticData data) {
+        this.data = data;
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "standin-server-"
+                        + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Returns the data served.
+     *
+     * @return See above.
+     */
+    public SyntheticData getData() {
+        return data;
+    }
+
+    /**
+     * Returns the model of the delays added to the calls.
+     *
+     * @return See above.
+     */
+    public LatencyModel getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the time to idle reported for the sessions.
+     *
+     * @return See above.
+     */
+    public long getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Sets the time to idle reported for the sessions, which determines the
+     * keep alive intervals of the {@link Gateway}.
+     *
+     * @param millis
+     *            The time to idle in milliseconds
+     */
+    public void setSessionTimeout(long millis) {
+        sessionTimeout = millis;
+    }
+
+    /**
+     * Returns the credentials to log in with.
+     *
+     * @return See above.
+     */
+    public LoginCredentials getCredentials() {
+        LoginCredentials c = new LoginCredentials(SyntheticData.USER_NAME,
+                PASSWORD, "localhost");
+        c.setCheckNetwork(false);
+        return c;
+    }
+
+    /**
+     * Creates a {@link Gateway} connecting to this server.
+     *
+     * @param log
+     *            The logger
+     * @return See above.
+     */
+    public Gateway createGateway(Logger log) {
+        return new StandInGateway(log, this);
+    }
+
+    /**
+     * Creates a {@link Gateway} connecting to this server, running the
+     * asynchronous tasks on the specified executor.
+     *
+     * @param log
+     *            The logger
+     * @param executor
+     *            The executor
+     * @return See above.
+     */
+    public Gateway createGateway(Logger log, ExecutorService executor) {
+        return new StandInGateway(log, this, executor);
+    }
+
+    /**
+     * Creates a client connecting to this server.
+     *
+     * @param host
+     *            The host, only used to configure the client
+     * @param port
+     *            The port, only used to configure the client
+     * @return See above.
+     */
+    public client createClient(String host, int port) {
+        return new StandInClient(this, host, port);
+    }
+
+    /**
+     * Returns the number of calls to an operation of a service.
+     *
+     * @param service
+     *            The name of the service, e.g. <code>IQuery</code>
+     * @param operation
+     *            The name of the operation
+     * @return See above.
+     */
+    public long getCallCount(String service, String operation) {
+        AtomicLong count = calls.get(service + "." + operation);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns the total number of calls.
+     *
+     * @return See above.
+     */
+    public long getCallCount() {
+        long total = 0;
+        for (AtomicLong count : calls.values())
+            total += count.get();
+        return total;
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return See above.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Closes all the sessions as a server restart would.
+     */
+    public void closeSessions() {
+        for (Session s : new ArrayList<Session>(sessions.values()))
+            s.close();
+    }
+
+    /**
+     * Closes all the sessions and stops the threads of the server.
+     */
+    @Override
+    public void close() {
+        closeSessions();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates a session.
+     *
+     * @param username
+     *            The name of the user
+     * @param password
+     *            The password
+     * @return See above.
+     * @throws PermissionDeniedException
+     *             If the credentials are not valid
+     */
+    Session login(String username, String password)
+            throws PermissionDeniedException {
+        if (username != null && username.equals(password)) {
+            // Logging in with the uuid of a session opened for a user.
+            Session s = sessions.get(username);
+            if (s != null && s.claim())
+                return s;
+        }
+        if (!SyntheticData.USER_NAME.equals(username)
+                || !PASSWORD.equals(password))
+            throw new PermissionDeniedException("Invalid credentials for "
+                    + username);
+        Session s = open();
+        s.claim();
+        return s;
+    }
+
+    /**
+     * Opens a session, held by the first client logging in with its uuid,
+     * see {@link #login(String, String)}.
+     *
+     * @return See above.
+     */
+    Session open() {
+        Session s = new Session(this, sessionIds.incrementAndGet());
+        sessions.put(s.getUuid(), s);
+        return s;
+    }
+
+    /**
+     * Joins an open session.
+     *
+     * @param uuid
+     *            The uuid of the session
+     * @return See above.
+     * @throws PermissionDeniedException
+     *             If there's no such session
+     */
+    Session join(String uuid) throws PermissionDeniedException {
+        Session s = sessions.get(uuid);
+        if (s == null || !s.acquire())
+            throw new PermissionDeniedException("No session " + uuid);
+        return s;
+    }
+
+    /**
+     * Returns an open session.
+     *
+     * @param uuid
+     *            The uuid of the session
+     * @return See above or <code>null</code> if there's no such session.
+     */
+    Session getSession(String uuid) {
+        return sessions.get(uuid);
+    }
+
+    /**
+     * Counts a call.
+     *
+     * @param service
+     *            The name of the service
+     * @param operation
+     *            The name of the operation
+     */
+    void countCall(String service, String operation) {
+        String key = service + "." + operation;
+        AtomicLong count = calls.get(key);
+        if (count == null) {
+            AtomicLong added = new AtomicLong();
+            count = calls.putIfAbsent(key, added);
+            if (count == null)
+                count = added;
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the executor running the asynchronous invocations.
+     *
+     * @return See above.
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Creates the proxy of a table.
+     *
+     * @param session
+     *            The session
+     * @param table
+     *            The servant of the table
+     * @return See above.
+     */
+    TablePrx createTable(Session session, Servants.Table table) {
+        return session.createProxy(TablePrx.class, "Table", table);
+    }
+
+    /**
+     * A session, shared by the clients which joined it and closed when all
+     * of them have closed it.
+     */
+    static class Session {
+
+        /** The server. */
+        private final StandInServer server;
+
+        /** The id of the session. */
+        private final long id;
+
+        /** The uuid of the session. */
+        private final String uuid = UUID.randomUUID().toString();
+
+        /** When the session was created. */
+        private final long started = System.currentTimeMillis();
+
+        /** The number of clients using the session. */
+        private final AtomicInteger clients = new AtomicInteger(1);
+
+        /** The stateless services, by name. */
+        private final ConcurrentMap<String, ServiceInterfacePrx> services =
+                new ConcurrentHashMap<String, ServiceInterfacePrx>();
+
+        /** The handlers of all the proxies. */
+        private final List<ServantHandler> handlers =
+                new CopyOnWriteArrayList<ServantHandler>();
+
+        /** The entry point of the session. */
+        private final ServiceFactoryPrx factory;
+
+        /** Set when the session is closed. */
+        private volatile boolean closed;
+
+        /** Set once the first client has logged in. */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param server
+         *            The server
+         * @param id
+         *            The id of the session
+         */
+        Session(StandInServer server, long id) {
+            this.server = server;
+            this.id = id;
+            factory = createProxy(ServiceFactoryPrx.class, "ServiceFactory",
+                    new Factory(this));
+        }
+
+        /**
+         * Returns the id of the session.
+         *
+         * @return See above.
+         */
+        long getId() {
+            return id;
+        }
+
+        /**
+         * Returns the uuid of the session.
+         *
+         * @return See above.
+         */
+        String getUuid() {
+            return uuid;
+        }
+
+        /**
+         * Returns when the session was created.
+         *
+         * @return See above.
+         */
+        long getStarted() {
+            return started;
+        }
+
+        /**
+         * Returns the entry point of the session.
+         *
+         * @return See above.
+         */
+        ServiceFactoryPrx getFactory() {
+            return factory;
+        }
+
+        /**
+         * Returns <code>true</code> if the session is closed.
+         *
+         * @return See above.
+         */
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Registers the first client of the session, which holds the
+         * reference taken when the session was opened.
+         *
+         * @return <code>false</code> if already claimed or closed.
+         */
+        boolean claim() {
+            return !closed && claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Registers a client joining the session.
+         *
+         * @return <code>false</code> if the session is closed.
+         */
+        boolean acquire() {
+            while (true) {
+                int n = clients.get();
+                if (n <= 0 || closed)
+                    return false;
+                if (clients.compareAndSet(n, n + 1))
+                    return true;
+            }
+        }
+
+        /**
+         * Unregisters a client, closing the session if it was the last
+         * one.
+         */
+        void release() {
+            if (clients.decrementAndGet() <= 0)
+                close();
+        }
+
+        /**
+         * Closes the session and all its services.
+         */
+        void close() {
+            closed = true;
+            server.sessions.remove(uuid, this);
+            for (ServantHandler h : handlers)
+                h.close();
+        }
+
+        /**
+         * Creates a proxy.
+         *
+         * @param type
+         *            The proxy interface
+         * @param service
+         *            The name of the service
+         * @param servant
+         *            The servant
+         * @return See above.
+         */
+        <T> T createProxy(Class<T> type, String service, Object servant) {
+            ServantHandler h = new ServantHandler(server, this, service,
+                    servant);
+            handlers.add(h);
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                    new Class<?>[] { type }, h));
+        }
+
+        /**
+         * Returns a stateless service.
+         *
+         * @param name
+         *            The name of the service, e.g.
+         *            <code>omero.api.IQuery</code>
+         * @return See above.
+         * @throws ApiUsageException
+         *             If the service is not implemented
+         */
+        ServiceInterfacePrx getService(String name) throws ApiUsageException {
+            ServiceInterfacePrx prx = services.get(name);
+            if (prx != null)
+                return prx;
+            SyntheticData data = server.getData();
+            if (name.equals(omero.constants.QUERYSERVICE.value))
+                prx = createProxy(IQueryPrx.class, "IQuery",
+                        new Servants.Query(data));
+            else if (name.equals(omero.constants.CONTAINERSERVICE.value))
+                prx = createProxy(IContainerPrx.class, "IContainer",
+                        new Servants.Container(data));
+            else if (name.equals(omero.constants.METADATASERVICE.value))
+                prx = createProxy(IMetadataPrx.class, "IMetadata",
+                        new Servants.Metadata(data));
+            else if (name.equals(omero.constants.ROISERVICE.value))
+                prx = createProxy(IRoiPrx.class, "IRoi",
+                        new Servants.RoiService(data));
+            else if (name.equals(omero.constants.UPDATESERVICE.value))
+                prx = createProxy(IUpdatePrx.class, "IUpdate",
+                        new Servants.Update(data));
+            else if (name.equals(omero.constants.CONFIGSERVICE.value))
+                prx = createProxy(IConfigPrx.class, "IConfig",
+                        new Servants.Config());
+            else if (name.equals(omero.constants.ADMINSERVICE.value))
+                prx = createProxy(IAdminPrx.class, "IAdmin",
+                        new Servants.Admin(data, this));
+            else if (name.equals(omero.constants.SESSIONSERVICE.value))
+                prx = createProxy(ISessionPrx.class, "ISession",
+                        new Servants.SessionService(server));
+            else if (name.equals(omero.constants.SHAREDRESOURCES.value))
+                prx = createProxy(SharedResourcesPrx.class, "SharedResources",
+                        new Servants.Resources(server, this));
+            else
+                throw unsupported(name);
+            ServiceInterfacePrx existing = services.putIfAbsent(name, prx);
+            return existing == null ? prx : existing;
+        }
+
+        /**
+         * Creates a stateful service.
+         *
+         * @param name
+         *            The name of the service, e.g.
+         *            <code>omero.api.RawFileStore</code>
+         * @return See above.
+         * @throws ApiUsageException
+         *             If the service is not implemented
+         */
+        StatefulServiceInterfacePrx createService(String name)
+                throws ApiUsageException {
+            SyntheticData data = server.getData();
+            if (name.equals(omero.constants.RAWFILESTORE.value))
+                return createProxy(RawFileStorePrx.class, "RawFileStore",
+                        new Servants.FileStore(data));
+            if (name.equals(omero.constants.RAWPIXELSSTORE.value))
+                return createProxy(RawPixelsStorePrx.class, "RawPixelsStore",
+                        new Servants.PixelsStore(data));
+            if (name.equals(omero.constants.SEARCH.value))
+                return createProxy(SearchPrx.class, "Search",
+                        new Servants.Search(data));
+            throw unsupported(name);
+        }
+
+        /**
+         * Creates the exception thrown for the services not implemented.
+         *
+         * @param name
+         *            The name of the service
+         * @return See above.
+         */
+        private static ApiUsageException unsupported(String name) {
+            ApiUsageException e = new ApiUsageException();
+            e.message = "Service not available on the stand-in server: "
+                    + name;
+            return e;
+        }
+    }
+
+    /** Implements <code>ServiceFactory</code>. */
+    static class Factory {
+
+        /** The session. */
+        private final Session session;
+
+        /** The current security context. */
+        private volatile IObject context;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param session
+         *            The session
+         */
+        Factory(Session session) {
+            this.session = session;
+        }
+
+        public ServiceInterfacePrx getByName(String name)
+                throws ApiUsageException {
+            return session.getService(name);
+        }
+
+        public StatefulServiceInterfacePrx createByName(String name)
+                throws ApiUsageException {
+            return session.createService(name);
+        }
+
+        public IQueryPrx getQueryService() throws ApiUsageException {
+            return (IQueryPrx) getByName(omero.constants.QUERYSERVICE.value);
+        }
+
+        public IContainerPrx getContainerService() throws ApiUsageException {
+            return (IContainerPrx) getByName(
+                    omero.constants.CONTAINERSERVICE.value);
+        }
+
+        public IMetadataPrx getMetadataService() throws ApiUsageException {
+            return (IMetadataPrx) getByName(
+                    omero.constants.METADATASERVICE.value);
+        }
+
+        public IRoiPrx getRoiService() throws ApiUsageException {
+            return (IRoiPrx) getByName(omero.constants.ROISERVICE.value);
+        }
+
+        public IUpdatePrx getUpdateService() throws ApiUsageException {
+            return (IUpdatePrx) getByName(
+                    omero.constants.UPDATESERVICE.value);
+        }
+
+        public IConfigPrx getConfigService() throws ApiUsageException {
+            return (IConfigPrx) getByName(
+                    omero.constants.CONFIGSERVICE.value);
+        }
+
+        public IAdminPrx getAdminService() throws ApiUsageException {
+            return (IAdminPrx) getByName(omero.constants.ADMINSERVICE.value);
+        }
+
+        public ISessionPrx getSessionService() throws ApiUsageException {
+            return (ISessionPrx) getByName(
+                    omero.constants.SESSIONSERVICE.value);
+        }
+
+        public SharedResourcesPrx sharedResources()
+                throws ApiUsageException {
+            return (SharedResourcesPrx) getByName(
+                    omero.constants.SHAREDRESOURCES.value);
+        }
+
+        public RawFileStorePrx createRawFileStore() throws ApiUsageException {
+            return (RawFileStorePrx) createByName(
+                    omero.constants.RAWFILESTORE.value);
+        }
+
+        public RawPixelsStorePrx createRawPixelsStore()
+                throws ApiUsageException {
+            return (RawPixelsStorePrx) createByName(
+                    omero.constants.RAWPIXELSSTORE.value);
+        }
+
+        public SearchPrx createSearchService() throws ApiUsageException {
+            return (SearchPrx) createByName(omero.constants.SEARCH.value);
+        }
+
+        public long keepAllAlive(Object proxies) {
+            return 0;
+        }
+
+        public boolean keepAlive(Object proxy) {
+            return true;
+        }
+
+        public IObject setSecurityContext(IObject obj) {
+            IObject previous = context;
+            context = obj;
+            return previous;
+        }
+
+        public List<IObject> getSecurityContexts() {
+            IObject c = context;
+            return c == null ? Collections.<IObject> emptyList()
+                    : Collections.singletonList(c);
+        }
+
+        public List<String> activeServices() {
+            return new ArrayList<String>(session.services.keySet());
+        }
+
+        public void destroy() {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import omero.api.RawPixelsStorePrx;
+import omero.gateway.ConnectorSelection;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.facility.BrowseFacility;
+import omero.gateway.facility.DataManagerFacility;
+import omero.gateway.facility.DatasetListing;
+import omero.gateway.facility.ImageListing;
+import omero.gateway.facility.MetadataFacility;
+import omero.gateway.facility.PagedIterator;
+import omero.gateway.facility.RawDataFacility;
+import omero.gateway.model.AnnotationData;
+import omero.gateway.model.DataObject;
+import omero.gateway.model.DatasetData;
+import omero.gateway.model.ExperimenterData;
+import omero.gateway.model.ImageData;
+import omero.gateway.model.PixelsData;
+import omero.gateway.model.ProjectData;
+import omero.gateway.rnd.DataSink;
+import omero.gateway.rnd.PixelStatistics;
+import omero.gateway.rnd.Plane2D;
+import omero.gateway.rnd.Tile;
+import omero.gateway.rnd.TileIterator;
+import omero.gateway.util.GatewayExecutor;
+import omero.gateway.util.ServiceCallMetrics;
+import omero.log.SimpleLogger;
+import omero.model.IObject;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link Gateway} and the facilities against the
+ * {@link StandInServer}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class StandInServerTest {
+
+    /** The server. */
+    private StandInServer server;
+
+    /** The gateway connected to the server. */
+    private Gateway gw;
+
+    /** The context of the user. */
+    private SecurityContext ctx;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new StandInServer(new SyntheticData(2, 2, 3, 64, 48, 2));
+        gw = server.createGateway(new SimpleLogger());
+        ExperimenterData user = gw.connect(server.getCredentials());
+        ctx = new SecurityContext(user.getGroupId());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        gw.disconnect();
+        server.close();
+    }
+
+    /**
+     * Test that the user is logged in and logged out.
+     */
+    @Test
+    public void testConnect() {
+        Assert.assertTrue(gw.isConnected());
+        Assert.assertEquals(gw.getLoggedInUser().getUserName(),
+                SyntheticData.USER_NAME);
+        Assert.assertEquals(server.getSessionCount(), 1);
+        gw.disconnect();
+        Assert.assertEquals(server.getSessionCount(), 0);
+    }
+
+    /**
+     * Test that the pool of connectors of a group grows only once all its
+     * connectors are in use, also with the round-robin selection.
+     */
+    @Test
+    public void testConnectorPoolGrowth() throws Exception {
+        gw.setConnectorPoolSize(3);
+        gw.setConnectorSelection(ConnectorSelection.ROUND_ROBIN);
+        RawPixelsStorePrx store = gw.acquirePixelsStore(ctx);
+        Assert.assertEquals(server.getSessionCount(), 1);
+        gw.getConnector(ctx);
+        Assert.assertEquals(server.getSessionCount(), 2);
+        // One of the connectors is idle.
+        for (int i = 0; i < 4; i++)
+            gw.getConnector(ctx);
+        Assert.assertEquals(server.getSessionCount(), 2);
+        gw.releaseService(ctx, store);
+    }
+
+    /**
+     * Test that the hierarchy is browsed.
+     */
+    @Test
+    public void testBrowse() throws Exception {
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        Collection<ProjectData> projects = browse.getProjects(ctx);
+        Assert.assertEquals(projects.size(), 2);
+        ProjectData project = projects.iterator().next();
+        List<Long> datasetIds = new ArrayList<Long>();
+        for (Object o : project.getDatasets())
+            datasetIds.add(((DatasetData) o).getId());
+        Assert.assertEquals(datasetIds.size(), 2);
+
+        Collection<ImageData> images = browse.getImagesForDatasets(ctx,
+                datasetIds);
+        Assert.assertEquals(images.size(), 6);
+        ImageData image = images.iterator().next();
+        ImageData found = browse.findObject(ctx, ImageData.class,
+                image.getId());
+        Assert.assertEquals(found.getName(), image.getName());
+        Assert.assertEquals(browse.findObjectAsync(ctx, ImageData.class,
+                image.getId(), false).get(1, TimeUnit.SECONDS).getId(),
+                image.getId());
+    }
+
+    /**
+     * Test that the annotations and the pixels of an image are read.
+     */
+    @Test
+    public void testImage() throws Exception {
+        ImageData image = new ImageData(server.getData().getAll(
+                omero.model.Image.class).get(0));
+
+        List<AnnotationData> annotations = gw.getFacility(
+                MetadataFacility.class).getAnnotations(ctx, image);
+        Assert.assertEquals(annotations.size(), 3);
+
+        PixelsData pixels = image.getDefaultPixels();
+        Plane2D plane = gw.getFacility(RawDataFacility.class).getPlane(ctx,
+                pixels, 0, 0, 1);
+        Assert.assertEquals((int) plane.getPixelValue(5, 7),
+                SyntheticData.getValue(pixels.getId(), 5, 7, 0, 1, 0));
+        Assert.assertEquals(server.getCallCount("RawPixelsStore",
+                "getPlane"), 1);
+    }
+
+    /**
+     * Test that the calls are delayed as configured.
+     */
+    @Test
+    public void testLatency() throws Exception {
+        long id = server.getData().getAll(omero.model.Image.class).get(0)
+                .getId().getValue();
+        server.getLatency().setLatency("IQuery", "find", 50, 50,
+                TimeUnit.MILLISECONDS);
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        long start = System.nanoTime();
+        browse.findObject(ctx, ImageData.class, id);
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS
+                .toNanos(50));
+        Assert.assertEquals(server.getCallCount("IQuery", "find"), 1);
+
+        LatencyModel model = new LatencyModel();
+        Assert.assertEquals(model.getDelayNanos("IQuery", "find", 1000), 0);
+        model.setBandwidth(1000);
+        Assert.assertEquals(model.getDelayNanos("IQuery", "find", 500),
+                TimeUnit.MILLISECONDS.toNanos(500));
+        model.setLatency(1, 1, TimeUnit.MILLISECONDS);
+        model.setLatency("IQuery", null, 2, 2, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(model.getDelayNanos("IQuery", "find", 0),
+                TimeUnit.MILLISECONDS.toNanos(2));
+        Assert.assertEquals(model.getDelayNanos("IRoi", "findByImage", 0),
+                TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Test that an asynchronous call is reported once, from its start to
+     * its completion.
+     */
+    @Test
+    public void testAsyncCallMetrics() throws Exception {
+        long id = server.getData().getAll(omero.model.Image.class).get(0)
+                .getId().getValue();
+        server.getLatency().setLatency("IQuery", "find", 50, 50,
+                TimeUnit.MILLISECONDS);
+        ServiceCallMetrics metrics = new ServiceCallMetrics();
+        gw.setServiceCallListener(metrics);
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        Assert.assertEquals(browse.findObjectAsync(ctx, ImageData.class, id,
+                false).get(1, TimeUnit.SECONDS).getId(), id);
+        ServiceCallMetrics.Operation find = metrics.getOperation("IQuery",
+                "find");
+        Assert.assertEquals(find.getCount(), 1);
+        Assert.assertEquals(find.getErrorCount(), 0);
+        Assert.assertTrue(find.getMaxNanos() >= TimeUnit.MILLISECONDS
+                .toNanos(50));
+        Assert.assertNull(metrics.getOperation("IQuery", "begin_find"));
+        Assert.assertNull(metrics.getOperation("IQuery", "end_find"));
+    }
+
+    /**
+     * Test that the asynchronous loading of annotations reports invalid
+     * arguments through the returned future.
+     */
+    @Test
+    public void testAsyncInvalidArguments() throws Exception {
+        List<DataObject> objects = new ArrayList<DataObject>();
+        objects.add(new ImageData(server.getData().getAll(
+                omero.model.Image.class).get(0)));
+        objects.add(new DatasetData(server.getData().getAll(
+                omero.model.Dataset.class).get(0)));
+        CompletableFuture<Map<DataObject, List<AnnotationData>>> annos = gw
+                .getFacility(MetadataFacility.class).getAnnotationsAsync(ctx,
+                        objects, null, null);
+        try {
+            annos.get(1, TimeUnit.SECONDS);
+            Assert.fail("Objects of different types accepted");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(
+                    e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * Test that copies of the objects found are cached until saved or
+     * expired.
+     */
+    @Test
+    public void testObjectCache() throws Exception {
+        long id = server.getData().getAll(omero.model.Image.class).get(0)
+                .getId().getValue();
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        browse.setObjectCache(100, 1, TimeUnit.MINUTES);
+        ImageData image = browse.findObject(ctx, ImageData.class, id);
+        String name = image.getName();
+        image.setName("modified");
+        ImageData cached = (ImageData) browse.findObject(ctx, "ImageData",
+                id);
+        Assert.assertNotSame(cached.asIObject(), image.asIObject());
+        Assert.assertEquals(cached.getName(), name);
+        cached.setName("modified");
+        Assert.assertEquals(browse.findIObject(ctx, "omero.model.ImageI", id)
+                .getId().getValue(), id);
+        Assert.assertEquals(browse.findObject(ctx, ImageData.class, id)
+                .getName(), name);
+        Assert.assertEquals(server.getCallCount("IQuery", "find"), 1);
+        Assert.assertEquals(browse.getObjectCacheStats().hitCount(), 3);
+
+        // Other groups are cached separately.
+        browse.findObject(ctx, ImageData.class, id, true);
+        Assert.assertEquals(server.getCallCount("IQuery", "find"), 2);
+
+        image.setName("renamed");
+        gw.getFacility(DataManagerFacility.class).saveAndReturnObject(ctx,
+                image);
+        Assert.assertEquals(browse.findObject(ctx, ImageData.class, id)
+                .getName(), "renamed");
+        Assert.assertEquals(server.getCallCount("IQuery", "find"), 3);
+
+        browse.setObjectCache(100, 1, TimeUnit.MILLISECONDS);
+        browse.findObject(ctx, ImageData.class, id);
+        Thread.sleep(10);
+        IObject found = browse.findIObject(ctx, "Image", id);
+        Assert.assertEquals(found.getId().getValue(), id);
+        Assert.assertEquals(server.getCallCount("IQuery", "find"), 5);
+
+        browse.setObjectCache(0, 0, TimeUnit.SECONDS);
+        Assert.assertNull(browse.getObjectCacheStats());
+        browse.findObject(ctx, ImageData.class, id);
+        Assert.assertEquals(server.getCallCount("IQuery", "find"), 6);
+    }
+
+    /**
+     * Test that the objects are iterated over one page at a time.
+     */
+    @Test
+    public void testPagedIteration() throws Exception {
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        List<Long> expected = new ArrayList<Long>();
+        for (omero.model.Image img : server.getData().getAll(
+                omero.model.Image.class))
+            expected.add(img.getId().getValue());
+
+        List<Long> ids = new ArrayList<Long>();
+        Iterator<ImageData> it = browse.iterateUserImages(ctx, 5);
+        while (it.hasNext())
+            ids.add(it.next().getId());
+        Assert.assertEquals(ids, expected);
+        // 5 + 5 + 2, the short page is the last one.
+        Assert.assertEquals(server.getCallCount("IQuery", "projection"), 3);
+        Assert.assertEquals(server.getCallCount("IContainer", "getImages"),
+                3);
+
+        Assert.assertEquals(browse.iterateDatasets(ctx, 2).stream()
+                .count(), 4);
+        // 2 + 2 + an empty page.
+        Assert.assertEquals(server.getCallCount("IQuery", "projection"), 6);
+
+        PagedIterator<ProjectData> projects = browse.iterateProjects(ctx, 1);
+        Assert.assertEquals(projects.next().getName(), "Project 0");
+        projects.close();
+        Assert.assertFalse(projects.hasNext());
+    }
+
+    /**
+     * Test that the images and datasets are listed using projections.
+     */
+    @Test
+    public void testListings() throws Exception {
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        ImageListing images = browse.listUserImages(ctx);
+        Assert.assertEquals(images.size(), 12);
+        Assert.assertEquals(images.getName(0), "Image 0.0.0");
+        Assert.assertEquals(images.getSizeX(0), 64);
+        Assert.assertEquals(images.getSizeY(0), 48);
+        Assert.assertEquals(images.getSizeC(0), 2);
+        Assert.assertEquals(images.getPixelsType(11), "uint16");
+        Assert.assertEquals(images.getOwnerId(0),
+                gw.getLoggedInUser().getId());
+        // A page of ids, then the properties of the images of the page.
+        Assert.assertEquals(server.getCallCount("IQuery", "projection"), 2);
+        Assert.assertEquals(server.getCallCount("IContainer", "getImages"),
+                0);
+
+        DatasetListing datasets = browse.listDatasets(ctx, -1);
+        Assert.assertEquals(datasets.size(), 4);
+        Assert.assertEquals(datasets.getName(1), "Dataset 0.1");
+        List<Long> ids = new ArrayList<Long>();
+        ids.add(datasets.getId(0));
+        ids.add(datasets.getId(3));
+        ImageListing contained = browse.listImagesForDatasets(ctx, ids);
+        Assert.assertEquals(contained.size(), 6);
+        Assert.assertEquals(contained.getName(0), "Image 0.0.0");
+        Assert.assertEquals(contained.getName(5), "Image 1.1.2");
+        Assert.assertEquals(contained.indexOf(images.getId(4)), -1);
+
+        ids.clear();
+        ids.add(images.getId(4));
+        Assert.assertEquals(browse.listImages(ctx, ids).getName(0),
+                "Image 0.1.1");
+        Assert.assertTrue(browse.listWells(ctx, 1).isEmpty());
+    }
+
+    /**
+     * Test that the ids of a listing are queried in chunks and that the
+     * rows are merged in ascending id order.
+     */
+    @Test
+    public void testChunkedListing() throws Exception {
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        ImageListing images = browse.listUserImages(ctx);
+        List<Long> ids = new ArrayList<Long>();
+        for (long id = 1000; id < 1600; id++)
+            ids.add(id);
+        for (int i = images.size() - 1; i >= 0; i--)
+            ids.add(images.getId(i));
+        int calls = server.getCallCount("IQuery", "projection");
+        ImageListing listed = browse.listImages(ctx, ids);
+        Assert.assertEquals(server.getCallCount("IQuery", "projection"),
+                calls + 2);
+        Assert.assertEquals(listed.getIds(), images.getIds());
+        Assert.assertEquals(listed.indexOf(images.getId(3)), 3);
+        Assert.assertEquals(listed.indexOf(999), -1);
+    }
+
+    /**
+     * Test that the images of datasets and projects are loaded through the
+     * links, in chunks, without loading the containers.
+     */
+    @Test
+    public void testImagesForContainers() throws Exception {
+        BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        List<Long> ids = new ArrayList<Long>();
+        for (omero.model.Dataset ds : server.getData().getAll(
+                omero.model.Dataset.class))
+            ids.add(ds.getId().getValue());
+        Collection<ImageData> images = browse.getImagesForDatasets(ctx,
+                ids.subList(0, 2));
+        Assert.assertEquals(images.size(), 6);
+        Assert.assertNotNull(images.iterator().next().getDefaultPixels());
+        Assert.assertEquals(server.getCallCount("IQuery", "findAllByQuery"),
+                1);
+
+        // Unknown ids, to get 3 chunks.
+        for (long id = -1; ids.size() < 1200; id--)
+            ids.add(id);
+        Assert.assertEquals(browse.getImagesForDatasets(ctx, ids).size(), 12);
+        Assert.assertEquals(server.getCallCount("IQuery", "findAllByQuery"),
+                4);
+
+        ids.clear();
+        for (omero.model.Project p : server.getData().getAll(
+                omero.model.Project.class))
+            ids.add(p.getId().getValue());
+        Assert.assertEquals(browse.getImagesForProjects(ctx, ids).size(), 12);
+        Assert.assertEquals(browse.getImagesForProjects(ctx,
+                ids.subList(1, 2)).iterator().next().getName(),
+                "Image 1.0.0");
+        Assert.assertEquals(server.getCallCount("IContainer",
+                "loadContainerHierarchy"), 0);
+    }
+
+    /**
+     * Test that the statistics are computed from the tiles read through the
+     * pixels stores of the workers.
+     */
+    @Test
+    public void testStatistics() throws Exception {
+        PixelsData pixels = new ImageData(server.getData().getAll(
+                omero.model.Image.class).get(0)).getDefaultPixels();
+        RawDataFacility rdf = gw.getFacility(RawDataFacility.class);
+        rdf.setTileFetchParallelism(2);
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int c = 0; c < 2; c++)
+            for (int y = 0; y < 48; y += 16)
+                tiles.add(new Tile(0, 0, c, 0, y, 64, 16));
+        Map<Integer, PixelStatistics> stats = rdf.getStatistics(ctx, pixels,
+                tiles, 0, 65536, 256);
+        for (int c = 0; c < 2; c++) {
+            double max = 0;
+            for (int y = 0; y < 48; y++)
+                for (int x = 0; x < 64; x++)
+                    max = Math.max(max, SyntheticData.getValue(
+                            pixels.getId(), x, y, 0, c, 0));
+            Assert.assertEquals(stats.get(c).getCount(), 64 * 48);
+            Assert.assertEquals(stats.get(c).getMax(), max);
+        }
+        for (Tile tile : tiles)
+            Assert.assertNull(tile.getPlane());
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "getTile"),
+                6);
+    }
+
+    /**
+     * Test that only a few tiles are read ahead of the consumer and that
+     * the remaining tiles are not read once the iterator has been closed.
+     */
+    @Test
+    public void testTileReadAhead() throws Exception {
+        PixelsData pixels = new ImageData(server.getData().getAll(
+                omero.model.Image.class).get(0)).getDefaultPixels();
+        RawDataFacility rdf = gw.getFacility(RawDataFacility.class);
+        rdf.setTileFetchParallelism(2);
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int i = 0; i < 50; i++)
+            tiles.add(new Tile(0, 0, 0, 0, 0, 8, 8));
+        TileIterator it = rdf.getTiles(ctx, pixels, tiles);
+        Assert.assertNotNull(it.next().getPlane());
+        it.close();
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(server.getCallCount("RawPixelsStore", "getTile")
+                <= 1 + 2 * DataSink.TILES_PER_STORE);
+    }
+
+    /**
+     * Test that an evicted {@link omero.gateway.rnd.DataSink} is closed only
+     * once the planes being read have been consumed.
+     */
+    @Test
+    public void testEvictedDataSink() throws Exception {
+        PixelsData pixels = new ImageData(server.getData().getAll(
+                omero.model.Image.class).get(0)).getDefaultPixels();
+        RawDataFacility rdf = gw.getFacility(RawDataFacility.class);
+        Iterator<Tile> planes = rdf.getPlanes(ctx, pixels, "XYZCT", 1, false)
+                .iterator();
+        Assert.assertNotNull(planes.next().getPlane());
+        rdf.setDataSinkCacheLimits(0, 1, TimeUnit.SECONDS);
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "close"),
+                0);
+        Assert.assertNotNull(planes.next().getPlane());
+        Assert.assertFalse(planes.hasNext());
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "close"),
+                1);
+    }
+
+    /**
+     * Test that closing a stream of planes stops the iteration and waits for
+     * the planes being read before releasing the
+     * {@link omero.gateway.rnd.DataSink}.
+     */
+    @Test
+    public void testClosedPlanes() throws Exception {
+        PixelsData pixels = new ImageData(server.getData().getAll(
+                omero.model.Image.class).get(0)).getDefaultPixels();
+        RawDataFacility rdf = gw.getFacility(RawDataFacility.class);
+        Stream<Tile> stream = rdf.getPlanes(ctx, pixels, "XYZCT", 1, false);
+        Iterator<Tile> planes = stream.iterator();
+        Assert.assertNotNull(planes.next().getPlane());
+        stream.close();
+        Assert.assertFalse(planes.hasNext());
+        rdf.setDataSinkCacheLimits(0, 1, TimeUnit.SECONDS);
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "close"),
+                1);
+    }
+
+    /**
+     * Test that the pixels stores of the closed
+     * {@link omero.gateway.rnd.DataSink}s are reused.
+     */
+    @Test
+    public void testPooledPixelsStores() throws Exception {
+        List<omero.model.Image> images = server.getData().getAll(
+                omero.model.Image.class);
+        RawDataFacility rdf = gw.getFacility(RawDataFacility.class);
+        rdf.getPlane(ctx, new ImageData(images.get(0)).getDefaultPixels(),
+                0, 0, 0);
+        Assert.assertEquals(server.getCallCount("ServiceFactory",
+                "createByName"), 1);
+        rdf.setDataSinkCacheLimits(10, 1, TimeUnit.MINUTES);
+        rdf.getPlane(ctx, new ImageData(images.get(1)).getDefaultPixels(),
+                0, 0, 0);
+        Assert.assertEquals(server.getCallCount("ServiceFactory",
+                "createByName"), 1);
+        Assert.assertEquals(server.getCallCount("RawPixelsStore",
+                "setPixelsId"), 2);
+        Assert.assertEquals(server.getCallCount("RawPixelsStore", "close"),
+                0);
+    }
+
+    /**
+     * Test that a task of a bounded executor can wait for the prefetch of
+     * a paged iteration, which runs on the worker pool of the gateway.
+     */
+    @Test
+    public void testBoundedExecutor() throws Exception {
+        gw.disconnect();
+        gw = server.createGateway(new SimpleLogger(),
+                GatewayExecutor.newBoundedExecutor(1, 1));
+        gw.connect(server.getCredentials());
+        final BrowseFacility browse = gw.getFacility(BrowseFacility.class);
+        Future<Long> count = gw.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return browse.iterateUserImages(ctx, 5).stream().count();
+            }
+        });
+        Assert.assertEquals(count.get(10, TimeUnit.SECONDS).longValue(), 12);
+    }
+}
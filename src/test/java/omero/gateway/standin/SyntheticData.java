@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.standin;
+
+import static omero.rtypes.rbool;
+import static omero.rtypes.rdouble;
+import static omero.rtypes.rint;
+import static omero.rtypes.rlong;
+import static omero.rtypes.rstring;
+import static omero.rtypes.rtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import omero.model.Annotation;
+import omero.model.CommentAnnotationI;
+import omero.model.DatasetI;
+import omero.model.DimensionOrderI;
+import omero.model.Experimenter;
+import omero.model.ExperimenterGroup;
+import omero.model.ExperimenterGroupI;
+import omero.model.ExperimenterI;
+import omero.model.FileAnnotationI;
+import omero.model.IObject;
+import omero.model.ImageI;
+import omero.model.OriginalFile;
+import omero.model.OriginalFileI;
+import omero.model.Permissions;
+import omero.model.PermissionsI;
+import omero.model.Pixels;
+import omero.model.PixelsI;
+import omero.model.PixelsTypeI;
+import omero.model.ProjectI;
+import omero.model.RectangleI;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.TagAnnotationI;
+
+/**
+ * The data served by the {@link StandInServer}: a hierarchy of projects,
+ * datasets and images owned by a single user, with tags, comments, an
+ * attachment and regions of interest on every image and a table on every
+ * dataset.
+ * Pixels and file contents are computed on the fly so that large data sets
+ * do not take up memory.
+ * The objects are shared by all the sessions, callers must not modify them.
+ *
+ * @since 5.5
+ */
+public class SyntheticData {
+
+    /** The name of the user owning the data. */
+    public static final String USER_NAME = "standin";
+
+    /** The namespace of the table annotations. */
+    public static final String TABLE_NS =
+            "openmicroscopy.org/omero/bulk_annotations";
+
+    /** The mimetype of the table files. */
+    public static final String TABLE_MIMETYPE = "OMERO.tables";
+
+    /** The type of the pixels. */
+    private static final String PIXELS_TYPE = "uint16";
+
+    /** The number of bytes per pixel. */
+    private static final int BYTES_PER_PIXEL = 2;
+
+    /** The size of the attachment of every image. */
+    private static final int FILE_SIZE = 64 * 1024;
+
+    /** The number of regions of interest of every image. */
+    private static final int ROIS_PER_IMAGE = 2;
+
+    /** Used to assign the ids, unique across all types. */
+    private final AtomicLong ids = new AtomicLong();
+
+    /** All the objects, by id. */
+    private final ConcurrentSkipListMap<Long, IObject> objects =
+            new ConcurrentSkipListMap<Long, IObject>();
+
+    /** The annotations, by id of the annotated object. */
+    private final ConcurrentMap<Long, List<Annotation>> annotations =
+            new ConcurrentHashMap<Long, List<Annotation>>();
+
+    /** The regions of interest, by id of the image. */
+    private final ConcurrentMap<Long, List<Roi>> rois =
+            new ConcurrentHashMap<Long, List<Roi>>();
+
+    /** The ids of the images of each table, by id of the table file. */
+    private final ConcurrentMap<Long, long[]> tables =
+            new ConcurrentHashMap<Long, long[]>();
+
+    /** The contents of the files written by clients, by id of the file. */
+    private final ConcurrentMap<Long, byte[]> contents =
+            new ConcurrentHashMap<Long, byte[]>();
+
+    /** The permissions of all the objects. */
+    private final Permissions permissions = new PermissionsI("rwr---");
+
+    /** The group of the user. */
+    private final ExperimenterGroup group;
+
+    /** The owner of all the data. */
+    private final Experimenter user;
+
+    /** The width of the images. */
+    private final int sizeX;
+
+    /** The height of the images. */
+    private final int sizeY;
+
+    /** The number of channels of the images. */
+    private final int sizeC;
+
+    /**
+     * Creates 2 projects with 2 datasets of 5 images each, the images
+     * having 3 channels of 512x512 pixels.
+     */
+    public SyntheticData() {
+        this(2, 2, 5, 512, 512, 3);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param projects
+     *            The number of projects
+     * @param datasetsPerProject
+     *            The number of datasets in each project
+     * @param imagesPerDataset
+     *            The number of images in each dataset
+     * @param sizeX
+     *            The width of the images
+     * @param sizeY
+     *            The height of the images
+     * @param sizeC
+     *            The number of channels of the images
+     */
+    public SyntheticData(int projects, int datasetsPerProject,
+            int imagesPerDataset, int sizeX, int sizeY, int sizeC) {
+        if (sizeX <= 0 || sizeY <= 0 || sizeC <= 0)
+            throw new IllegalArgumentException("Invalid image size");
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeC = sizeC;
+
+        group = new ExperimenterGroupI();
+        group.setName(rstring("standin-group"));
+        group.setLdap(rbool(false));
+        group.getDetails().setPermissions(permissions);
+        add(group);
+
+        user = new ExperimenterI();
+        user.setOmeName(rstring(USER_NAME));
+        user.setFirstName(rstring("Stand"));
+        user.setMiddleName(rstring(""));
+        user.setLastName(rstring("In"));
+        user.setEmail(rstring(USER_NAME + "@localhost"));
+        user.setInstitution(rstring(""));
+        user.setLdap(rbool(false));
+        user.linkExperimenterGroup(group);
+        add(user);
+
+        for (int p = 0; p < projects; p++) {
+            ProjectI project = new ProjectI();
+            project.setName(rstring("Project " + p));
+            own(project);
+            for (int d = 0; d < datasetsPerProject; d++) {
+                DatasetI dataset = new DatasetI();
+                dataset.setName(rstring("Dataset " + p + "." + d));
+                own(dataset);
+                own(project.linkDataset(dataset));
+                long[] rows = new long[imagesPerDataset];
+                for (int i = 0; i < imagesPerDataset; i++) {
+                    ImageI image = createImage("Image " + p + "." + d + "."
+                            + i);
+                    own(dataset.linkImage(image));
+                    rows[i] = image.getId().getValue();
+                }
+                createTable(dataset, rows);
+            }
+        }
+    }
+
+    /**
+     * Returns the owner of all the data.
+     *
+     * @return See above.
+     */
+    public Experimenter getUser() {
+        return user;
+    }
+
+    /**
+     * Returns the group of the owner.
+     *
+     * @return See above.
+     */
+    public ExperimenterGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Returns the object with the specified id.
+     *
+     * @param id
+     *            The id of the object
+     * @return See above or <code>null</code> if there's no such object.
+     */
+    public IObject get(long id) {
+        return objects.get(id);
+    }
+
+    /**
+     * Returns the object of the specified type and id.
+     *
+     * @param type
+     *            The type of the object, e.g. <code>omero.model.Image</code>
+     * @param id
+     *            The id of the object
+     * @return See above or <code>null</code> if there's no such object.
+     */
+    public <T> T get(Class<T> type, long id) {
+        IObject o = objects.get(id);
+        return type.isInstance(o) ? type.cast(o) : null;
+    }
+
+    /**
+     * Returns all the objects of the specified type, ordered by id.
+     *
+     * @param type
+     *            The type of the objects, e.g. <code>omero.model.Image</code>
+     * @return See above.
+     */
+    public <T> List<T> getAll(Class<T> type) {
+        List<T> result = new ArrayList<T>();
+        for (IObject o : objects.values()) {
+            if (type.isInstance(o))
+                result.add(type.cast(o));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the annotations linked to an object.
+     *
+     * @param id
+     *            The id of the annotated object
+     * @return See above.
+     */
+    public List<Annotation> getAnnotations(long id) {
+        List<Annotation> l = annotations.get(id);
+        return l == null ? Collections.<Annotation> emptyList() : l;
+    }
+
+    /**
+     * Returns the regions of interest of an image.
+     *
+     * @param imageId
+     *            The id of the image
+     * @return See above.
+     */
+    public List<Roi> getRois(long imageId) {
+        List<Roi> l = rois.get(imageId);
+        return l == null ? Collections.<Roi> emptyList() : l;
+    }
+
+    /**
+     * Returns the ids of the images listed in a table.
+     *
+     * @param fileId
+     *            The id of the table file
+     * @return See above or <code>null</code> if the file is not a table.
+     */
+    public long[] getTableRows(long fileId) {
+        return tables.get(fileId);
+    }
+
+    /**
+     * Adds an object, assigning it an id if it doesn't have one yet.
+     *
+     * @param object
+     *            The object to add
+     * @return The object
+     */
+    public <T extends IObject> T add(T object) {
+        if (object.getId() == null)
+            object.setId(rlong(ids.incrementAndGet()));
+        objects.put(object.getId().getValue(), object);
+        return object;
+    }
+
+    /**
+     * Returns the content of a file.
+     *
+     * @param fileId
+     *            The id of the file
+     * @return See above or <code>null</code> if there's no such file.
+     */
+    byte[] getContent(long fileId) {
+        byte[] content = contents.get(fileId);
+        if (content != null)
+            return content;
+        OriginalFile file = get(OriginalFile.class, fileId);
+        if (file == null)
+            return null;
+        content = new byte[(int) file.getSize().getValue()];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i * 31 + fileId);
+        return content;
+    }
+
+    /**
+     * Replaces the content of a file.
+     *
+     * @param fileId
+     *            The id of the file
+     * @param content
+     *            The new content
+     */
+    void setContent(long fileId, byte[] content) {
+        contents.put(fileId, content);
+        OriginalFile file = get(OriginalFile.class, fileId);
+        if (file != null)
+            file.setSize(rlong(content.length));
+    }
+
+    /**
+     * Returns the number of bytes per pixel.
+     *
+     * @return See above.
+     */
+    int getBytesPerPixel() {
+        return BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Returns the value of a pixel. The value depends on all the
+     * coordinates so that misplaced reads can be detected.
+     *
+     * @param pixelsId
+     *            The id of the pixels set
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @param z
+     *            The z section
+     * @param c
+     *            The channel
+     * @param t
+     *            The timepoint
+     * @return See above.
+     */
+    public static int getValue(long pixelsId, int x, int y, int z, int c,
+            int t) {
+        return (int) ((x + 3 * y + 7 * z + 13 * c + 17 * t + pixelsId)
+                & 0xFFFF);
+    }
+
+    /**
+     * Sets the owner, group and permissions of an object and adds it.
+     *
+     * @param object
+     *            The object
+     * @return The object
+     */
+    private <T extends IObject> T own(T object) {
+        object.getDetails().setOwner(user);
+        object.getDetails().setGroup(group);
+        object.getDetails().setPermissions(permissions);
+        return add(object);
+    }
+
+    /**
+     * Links an annotation to an object.
+     *
+     * @param id
+     *            The id of the annotated object
+     * @param annotation
+     *            The annotation
+     */
+    void annotate(long id, Annotation annotation) {
+        List<Annotation> l = annotations.get(id);
+        if (l == null) {
+            l = new CopyOnWriteArrayList<Annotation>();
+            List<Annotation> existing = annotations.putIfAbsent(id, l);
+            if (existing != null)
+                l = existing;
+        }
+        l.add(own(annotation));
+    }
+
+    /**
+     * Creates an image with its pixels, annotations and regions of
+     * interest.
+     *
+     * @param name
+     *            The name of the image
+     * @return See above.
+     */
+    private ImageI createImage(String name) {
+        ImageI image = new ImageI();
+        image.setName(rstring(name));
+        image.setAcquisitionDate(rtime(System.currentTimeMillis()));
+        own(image);
+
+        PixelsTypeI type = new PixelsTypeI();
+        type.setValue(rstring(PIXELS_TYPE));
+        type.setBitSize(rint(BYTES_PER_PIXEL * 8));
+        DimensionOrderI order = new DimensionOrderI();
+        order.setValue(rstring("XYZCT"));
+        PixelsI pixels = new PixelsI();
+        pixels.setSizeX(rint(sizeX));
+        pixels.setSizeY(rint(sizeY));
+        pixels.setSizeZ(rint(1));
+        pixels.setSizeC(rint(sizeC));
+        pixels.setSizeT(rint(1));
+        pixels.setPixelsType(type);
+        pixels.setDimensionOrder(order);
+        pixels.setSignificantBits(rint(BYTES_PER_PIXEL * 8));
+        pixels.setSha1(rstring(""));
+        image.addPixels(own(pixels));
+
+        long id = image.getId().getValue();
+        TagAnnotationI tag = new TagAnnotationI();
+        tag.setTextValue(rstring("tag-" + (id % 10)));
+        annotate(id, tag);
+        CommentAnnotationI comment = new CommentAnnotationI();
+        comment.setTextValue(rstring("Comment on " + name));
+        annotate(id, comment);
+        FileAnnotationI attachment = new FileAnnotationI();
+        attachment.setFile(createFile(name + ".txt", "text/plain",
+                FILE_SIZE));
+        annotate(id, attachment);
+
+        List<Roi> l = new ArrayList<Roi>(ROIS_PER_IMAGE);
+        for (int i = 0; i < ROIS_PER_IMAGE; i++) {
+            RoiI roi = new RoiI();
+            roi.setName(rstring("ROI " + i));
+            roi.setImage(image);
+            RectangleI rect = new RectangleI();
+            rect.setX(rdouble(i * 10));
+            rect.setY(rdouble(i * 10));
+            rect.setWidth(rdouble(Math.max(1, sizeX / 4)));
+            rect.setHeight(rdouble(Math.max(1, sizeY / 4)));
+            rect.setTheZ(rint(0));
+            rect.setTheT(rint(0));
+            roi.addShape(own(rect));
+            l.add(own(roi));
+        }
+        rois.put(id, new CopyOnWriteArrayList<Roi>(l));
+        return image;
+    }
+
+    /**
+     * Creates a table listing the images of a dataset.
+     *
+     * @param dataset
+     *            The dataset
+     * @param rows
+     *            The ids of the images
+     */
+    private void createTable(DatasetI dataset, long[] rows) {
+        OriginalFile file = createFile("bulk_annotations", TABLE_MIMETYPE,
+                0);
+        tables.put(file.getId().getValue(), rows);
+        FileAnnotationI table = new FileAnnotationI();
+        table.setNs(rstring(TABLE_NS));
+        table.setFile(file);
+        annotate(dataset.getId().getValue(), table);
+    }
+
+    /**
+     * Creates a file.
+     *
+     * @param name
+     *            The name of the file
+     * @param mimetype
+     *            The mimetype of the file
+     * @param size
+     *            The size of the file
+     * @return See above.
+     */
+    private OriginalFile createFile(String name, String mimetype, long size) {
+        OriginalFileI file = new OriginalFileI();
+        file.setName(rstring(name));
+        file.setPath(rstring("/standin/"));
+        file.setMimetype(rstring(mimetype));
+        file.setSize(rlong(size));
+        return own(file);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the bounds and metrics of the {@link GatewayExecutor}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class GatewayExecutorTest {
+
+    /**
+     * Test that the bounded pool queues up to its capacity and then runs
+     * the tasks in the submitting thread.
+     * @throws Exception unexpected
+     */
+    @Test
+    public void testBoundedBackpressure() throws Exception {
+        final GatewayExecutor executor = GatewayExecutor.newBoundedExecutor(1,
+                1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocking = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> queued = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        Assert.assertEquals(executor.getActiveCount(), 1);
+        Assert.assertEquals(executor.getQueueSize(), 1);
+
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                runner.set(Thread.currentThread());
+            }
+        });
+        Assert.assertEquals(runner.get(), Thread.currentThread());
+        Assert.assertEquals(executor.getCallerRunsCount(), 1);
+
+        release.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(executor.getCompletedTaskCount(), 3);
+        Assert.assertEquals(executor.getActiveCount(), 0);
+    }
+
+    /**
+     * Test that the worker pool queues the tasks beyond its size instead of
+     * running them in the submitting thread.
+     * @throws Exception unexpected
+     */
+    @Test
+    public void testWorkerQueue() throws Exception {
+        final GatewayExecutor executor = GatewayExecutor.newWorkerExecutor(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Future<?> queued = null;
+        for (int i = 0; i < 3; i++) {
+            queued = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runner.set(Thread.currentThread());
+                }
+            });
+        }
+        Assert.assertEquals(executor.getQueueSize(), 3);
+        Assert.assertEquals(executor.getCallerRunsCount(), 0);
+        release.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+        Assert.assertNotEquals(runner.get(), Thread.currentThread());
+        Assert.assertTrue(runner.get().isDaemon());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that the virtual thread executor (or its fallback) never runs
+     * more tasks concurrently than allowed.
+     * @throws Exception unexpected
+     */
+    @Test
+    public void testVirtualMaxConcurrency() throws Exception {
+        final GatewayExecutor executor = GatewayExecutor
+                .newVirtualThreadExecutor(2);
+        Assert.assertEquals(executor.isVirtual(),
+                GatewayExecutor.isVirtualThreadSupported());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int n = running.incrementAndGet();
+                    int max;
+                    while ((max = maxRunning.get()) < n
+                            && !maxRunning.compareAndSet(max, n))
+                        ;
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(executor.getCompletedTaskCount(), 20);
+        Assert.assertTrue(maxRunning.get() <= 2);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.util;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the aggregation of the {@link ServiceCallMetrics}.
+ * @since 5.5
+ */
+@Test(groups = "unit")
+public class ServiceCallMetricsTest {
+
+    /**
+     * Test that the calls are aggregated per service and operation.
+     */
+    @Test
+    public void testAggregation() {
+        ServiceCallMetrics metrics = new ServiceCallMetrics();
+        metrics.callCompleted("IQuery", "find", 3000, 0, null);
+        metrics.callCompleted("IQuery", "find", 5000, 0,
+                new RuntimeException());
+        metrics.callCompleted("RawPixelsStore", "getPlane", 1000000, 4096,
+                null);
+
+        ServiceCallMetrics.Operation find = metrics.getOperation("IQuery",
+                "find");
+        Assert.assertEquals(find.getCount(), 2);
+        Assert.assertEquals(find.getErrorCount(), 1);
+        Assert.assertEquals(find.getBytes(), 0);
+        Assert.assertEquals(find.getTotalNanos(), 8000);
+        Assert.assertEquals(find.getMeanNanos(), 4000.0);
+        Assert.assertEquals(find.getMaxNanos(), 5000);
+
+        ServiceCallMetrics.Operation plane = metrics.getOperation(
+                "RawPixelsStore", "getPlane");
+        Assert.assertEquals(plane.getBytes(), 4096);
+        Assert.assertNull(metrics.getOperation("IQuery", "findAll"));
+
+        Map<String, ServiceCallMetrics.Operation> all = metrics
+                .getOperations();
+        Assert.assertEquals(all.size(), 2);
+        Assert.assertEquals(all.keySet().iterator().next(), "IQuery.find");
+
+        metrics.reset();
+        Assert.assertTrue(metrics.getOperations().isEmpty());
+    }
+
+    /**
+     * Test the latency histogram buckets and percentiles.
+     */
+    @Test
+    public void testHistogram() {
+        Assert.assertEquals(ServiceCallMetrics.bucket(500), 0);
+        Assert.assertEquals(ServiceCallMetrics.bucket(1000), 1);
+        Assert.assertEquals(ServiceCallMetrics.bucket(3000), 2);
+        Assert.assertEquals(ServiceCallMetrics.bucket(Long.MAX_VALUE),
+                ServiceCallMetrics.BUCKETS - 1);
+
+        ServiceCallMetrics metrics = new ServiceCallMetrics();
+        for (int i = 0; i < 99; i++)
+            metrics.callCompleted("IQuery", "find", 3000, 0, null);
+        metrics.callCompleted("IQuery", "find", 900000, 0, null);
+        ServiceCallMetrics.Operation find = metrics.getOperation("IQuery",
+                "find");
+        Assert.assertEquals(find.getHistogram()[2], 99);
+        Assert.assertEquals(find.getHistogram()[10], 1);
+        Assert.assertEquals(find.getPercentileNanos(50), 4000);
+        Assert.assertEquals(find.getPercentileNanos(100), 1024000);
+    }
+}